@@ -0,0 +1,174 @@
+package com.lablinkriparo.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of APK digests, stored in the app's private files dir. Entries are
+ * keyed by file path and only served while the file's size and modification time
+ * still match, so a re-scan hashes just the APKs that were installed or updated.
+ */
+final class ApkHashCache {
+
+    private static final int MAGIC = 0x41504b48; // "APKH"
+    private static final int FORMAT_VERSION = 1;
+
+    static final class Entry {
+        final String path;
+        final long lastModified;
+        final long size;
+        final byte[] sha256;
+
+        Entry(String path, long lastModified, long size, byte[] sha256) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+    // Serializes flushes, so mutators only wait for the snapshot and not for the write
+    private final Object flushLock = new Object();
+
+    ApkHashCache(File file) {
+        this.file = file;
+    }
+
+    // Returns the cached digest only if the file has not changed since it was hashed
+    byte[] get(String path, long lastModified, long size) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.lastModified != lastModified || entry.size != size) {
+            return null;
+        }
+        return entry.sha256;
+    }
+
+    synchronized void put(Entry entry) {
+        ensureLoaded();
+        entries.put(entry.path, entry);
+        dirty = true;
+    }
+
+    // Drops entries for APKs that no longer exist
+    synchronized void retainOnly(Collection<String> paths) {
+        ensureLoaded();
+        Set<String> keep = new HashSet<>(paths);
+        if (entries.keySet().retainAll(keep)) {
+            dirty = true;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        dirty = true;
+    }
+
+    int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    void flush() throws IOException {
+        synchronized (flushLock) {
+            List<Entry> snapshot;
+            synchronized (this) {
+                if (!dirty) return;
+                snapshot = new ArrayList<>(entries.values());
+                dirty = false;
+            }
+            try {
+                write(snapshot);
+            } catch (IOException | RuntimeException e) {
+                // Nothing reached the file, so the next flush writes the entries again
+                dirty = true;
+                throw e;
+            }
+        }
+    }
+
+    private void write(List<Entry> snapshot) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Entry e : snapshot) {
+                    out.writeUTF(e.path);
+                    out.writeLong(e.lastModified);
+                    out.writeLong(e.size);
+                    out.write(e.sha256);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            try {
+                read();
+            } catch (IOException e) {
+                // Corrupt or foreign cache file: start over
+                entries.clear();
+                dirty = true;
+            }
+            loaded = true;
+        }
+    }
+
+    private void read() throws IOException {
+        if (!file.exists()) return;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                byte[] sha256 = new byte[ApkHasher.DIGEST_BYTES];
+                in.readFully(sha256);
+                entries.put(path, new Entry(path, lastModified, size, sha256));
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
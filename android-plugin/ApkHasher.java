@@ -0,0 +1,80 @@
+package com.lablinkriparo.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of APK files, read with FileChannel into a direct buffer that is kept
+ * per thread, so hashing allocates nothing per file and the native read needs no
+ * extra copy. Files are not memory-mapped: a mapping is only released when its
+ * buffer is garbage-collected, so parallel hashing of multi-GB APKs would pile up
+ * mappings and can exhaust a 32-bit address space. One file hashes on one
+ * thread; callers parallelise across files. Plain Java, so it runs on a desktop
+ * JVM as well.
+ */
+final class ApkHasher {
+
+    static final int DIGEST_BYTES = HashIndex.DIGEST_BYTES;
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_BYTES);
+        }
+    };
+
+    private ApkHasher() {
+    }
+
+    static byte[] sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+        ByteBuffer buffer = BUFFER.get();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            while (true) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) break;
+                buffer.flip();
+                digest.update(buffer);
+            }
+        } finally {
+            raf.close();
+        }
+        return digest.digest();
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    // null unless value is exactly DIGEST_BYTES of hex, either case
+    static byte[] unhex(String value) {
+        if (value == null || value.length() != DIGEST_BYTES * 2) return null;
+        byte[] bytes = new byte[DIGEST_BYTES];
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            int high = Character.digit(value.charAt(i * 2), 16);
+            int low = Character.digit(value.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) return null;
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
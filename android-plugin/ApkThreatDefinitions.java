@@ -0,0 +1,114 @@
+package com.lablinkriparo.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Local set of known-bad APK digests for scanInstalledApks. Definitions arrive
+ * as versioned JSON, are stored in the app's private files dir and compiled into
+ * a HashIndex on first use. Until a set has been stored the index is empty
+ * (version 0), so a scan still hashes and caches but cannot flag anything.
+ */
+final class ApkThreatDefinitions {
+
+    static final class Definitions {
+        final int version;
+        final HashIndex index;
+
+        Definitions(int version, HashIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+    private static final Definitions EMPTY = new Definitions(0, new HashIndex.Builder().build());
+
+    private final File file;
+    private Definitions definitions;
+
+    ApkThreatDefinitions(File file) {
+        this.file = file;
+    }
+
+    synchronized Definitions current() {
+        if (definitions == null) {
+            definitions = EMPTY;
+            if (file.isFile()) {
+                try {
+                    definitions = parse(read(file));
+                } catch (Exception e) {
+                    // Unreadable or corrupt file: scan without definitions until the next update
+                }
+            }
+        }
+        return definitions;
+    }
+
+    // Stores and switches to the given definitions when they are newer than the
+    // current ones (or force is set); returns false when they were not applied
+    synchronized boolean update(String json, boolean force) throws JSONException, IOException {
+        Definitions parsed = parse(json);
+        if (!force && parsed.version <= current().version) {
+            return false;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        definitions = parsed;
+        return true;
+    }
+
+    // {"version": 3, "hashes": [{"sha256": "<64 hex>", "name": "Joker.A", "category": "malware"}]}
+    static Definitions parse(String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        int version = root.getInt("version");
+        JSONArray hashes = root.getJSONArray("hashes");
+        HashIndex.Builder builder = new HashIndex.Builder();
+        for (int i = 0; i < hashes.length(); i++) {
+            JSONObject entry = hashes.getJSONObject(i);
+            byte[] digest = ApkHasher.unhex(entry.getString("sha256"));
+            if (digest == null) {
+                throw new JSONException("Invalid sha256 in entry " + i);
+            }
+            builder.add(digest, entry.getString("name"), entry.optString("category", "malware"));
+        }
+        return new Definitions(version, builder.build());
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, n);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
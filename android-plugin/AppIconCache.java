@@ -0,0 +1,295 @@
+package com.lablinkriparo.monitor;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.Base64;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Icon subsystem for the app list methods. Icons are rendered once per package
+ * version (48x48 PNG), kept in a memory LRU and in a size-capped disk LRU under
+ * the app cache dir, and served in batches through getAppIcons. List methods only
+ * return the icon key, so icons are rendered just for the rows the UI shows.
+ * The disk index (keys in LRU order and their total size) is loaded once from a
+ * directory listing and kept in memory; icons are written to a temp file and
+ * renamed, so a concurrent reader never sees a partial PNG.
+ */
+final class AppIconCache {
+
+    private static final int ICON_SIZE = 48;
+    private static final String DATA_URL_PREFIX = "data:image/png;base64,";
+
+    private final PackageManager pm;
+    private final File dir;
+    private final long maxDiskBytes;
+    // Sized in chars of the base64 data URL
+    private final LruCache<String, String> memory;
+    private final Object diskLock = new Object();
+    // Key -> file size, in access order; null until the directory is first listed
+    private LinkedHashMap<String, Long> diskIndex;
+    private long diskBytes;
+
+    AppIconCache(PackageManager pm, File dir, int maxMemoryChars, long maxDiskBytes) {
+        this.pm = pm;
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LruCache<String, String>(maxMemoryChars) {
+            @Override
+            protected int sizeOf(String key, String value) {
+                return value.length();
+            }
+        };
+    }
+
+    // Content key: changes whenever the package is updated, so stale icons are never served
+    static String iconKey(String packageName, long versionCode, long lastUpdateTime) {
+        return packageName + "@" + versionCode + "-" + Long.toHexString(lastUpdateTime);
+    }
+
+    String get(String key, ApplicationInfo appInfo) {
+        String dataUrl = getCached(key);
+        return dataUrl != null ? dataUrl : renderAndStore(key, appInfo);
+    }
+
+    // Memory or disk hit only; null when the icon still has to be rendered
+    String getCached(String key) {
+        String cached = memory.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (diskLock) {
+            // Also moves the key to the most recently used end
+            if (diskIndex().get(key) == null) {
+                return null;
+            }
+        }
+        File file = new File(dir, key + ".png");
+        byte[] png = readFile(file);
+        if (png == null) {
+            // Deleted behind the index (or unreadable): forget it so its bytes stop counting
+            synchronized (diskLock) {
+                if (diskIndex != null) {
+                    Long length = diskIndex.remove(key);
+                    if (length != null) {
+                        diskBytes -= length;
+                    }
+                }
+            }
+            return null;
+        }
+        // Persists the LRU order for the next process
+        file.setLastModified(System.currentTimeMillis());
+        String dataUrl = DATA_URL_PREFIX + Base64.encodeToString(png, Base64.NO_WRAP);
+        memory.put(key, dataUrl);
+        return dataUrl;
+    }
+
+    String renderAndStore(String key, ApplicationInfo appInfo) {
+        byte[] png = render(appInfo);
+        if (png == null) {
+            return null;
+        }
+        store(appInfo.packageName, key, png);
+        String dataUrl = DATA_URL_PREFIX + Base64.encodeToString(png, Base64.NO_WRAP);
+        memory.put(key, dataUrl);
+        return dataUrl;
+    }
+
+    void evict(String packageName) {
+        String prefix = packageName + "@";
+        for (String key : memory.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                memory.remove(key);
+            }
+        }
+        synchronized (diskLock) {
+            deletePackage(prefix);
+        }
+    }
+
+    // For when the directory was emptied externally (clearAppCache); relisted on next use
+    void invalidateDisk() {
+        synchronized (diskLock) {
+            diskIndex = null;
+            diskBytes = 0;
+        }
+    }
+
+    private byte[] render(ApplicationInfo appInfo) {
+        try {
+            Drawable icon = pm.getApplicationIcon(appInfo);
+            Bitmap bitmap = drawableToBitmap(icon);
+            if (bitmap == null) return null;
+
+            // Scale down for performance
+            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, ICON_SIZE, ICON_SIZE, true);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            scaledBitmap.compress(Bitmap.CompressFormat.PNG, 80, baos);
+            // Never recycle the drawable's own bitmap, it is shared with the framework
+            if (scaledBitmap != bitmap) {
+                scaledBitmap.recycle();
+            }
+            if (!(icon instanceof BitmapDrawable)) {
+                bitmap.recycle();
+            }
+            return baos.toByteArray();
+        } catch (Exception e) {
+            // Icon not available
+            return null;
+        }
+    }
+
+    private Bitmap drawableToBitmap(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) {
+            return ((BitmapDrawable) drawable).getBitmap();
+        }
+
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+
+        if (width <= 0 || height <= 0) {
+            width = ICON_SIZE;
+            height = ICON_SIZE;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    private void store(String packageName, String key, byte[] png) {
+        synchronized (diskLock) {
+            Map<String, Long> index = diskIndex();
+            if (!dir.exists() && !dir.mkdirs()) return;
+
+            // Older versions of the same package are unreachable from now on
+            deletePackage(packageName + "@");
+
+            File file = new File(dir, key + ".png");
+            File tmp = new File(dir, key + ".png.tmp");
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(tmp);
+                out.write(png);
+                out.close();
+                out = null;
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return;
+                }
+            } catch (IOException e) {
+                tmp.delete();
+                return;
+            } finally {
+                closeQuietly(out);
+            }
+            index.put(key, (long) png.length);
+            diskBytes += png.length;
+            trimDisk();
+        }
+    }
+
+    // Lists the directory once; later lookups and trims use the in-memory index
+    private Map<String, Long> diskIndex() {
+        if (diskIndex != null) return diskIndex;
+        diskIndex = new LinkedHashMap<>(64, 0.75f, true);
+        diskBytes = 0;
+        File[] files = dir.listFiles();
+        if (files == null) return diskIndex;
+
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        for (int i : order) {
+            File file = files[i];
+            String name = file.getName();
+            if (!name.endsWith(".png")) {
+                // Leftover temp file from an interrupted write
+                file.delete();
+                continue;
+            }
+            long length = file.length();
+            diskIndex.put(name.substring(0, name.length() - ".png".length()), length);
+            diskBytes += length;
+        }
+        return diskIndex;
+    }
+
+    private void deletePackage(String prefix) {
+        Iterator<Map.Entry<String, Long>> it = diskIndex().entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                new File(dir, entry.getKey() + ".png").delete();
+                diskBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    // Deletes least recently used icons until the index fits in maxDiskBytes
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            new File(dir, entry.getKey() + ".png").delete();
+            diskBytes -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    private byte[] readFile(File file) {
+        if (!file.isFile()) return null;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) return null;
+                offset += read;
+            }
+            return data;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.lablinkriparo.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeatable battery drain test: runs a CpuLoadGenerator for the test duration
+ * while level, charge counter, current, voltage and temperature are sampled at a
+ * fixed cadence into a TelemetryRing, then hands the series to DischargeAnalyzer
+ * for the capacity estimate and wear score. Blocks the calling thread for the
+ * whole run; abort() ends it early with the samples taken so far.
+ */
+final class BatteryStressTest {
+
+    static final String EVENT_PROGRESS = "batteryStressProgress";
+
+    private static final int COLUMN_LEVEL = 0;
+    private static final int COLUMN_CHARGE_COUNTER = 1;
+    private static final int COLUMN_CURRENT = 2;
+    private static final int COLUMN_VOLTAGE = 3;
+    private static final int COLUMN_TEMPERATURE = 4;
+    private static final int COLUMNS = 5;
+
+    private final Context context;
+    private final ScanProgressEmitter.Sink sink;
+    private final String testId;
+    private final long durationMs;
+    private final long sampleMs;
+    private final CpuLoadGenerator load;
+    private final CountDownLatch abortSignal = new CountDownLatch(1);
+
+    // Updated by the ACTION_BATTERY_CHANGED receiver
+    private volatile double voltageMv = Double.NaN;
+    private volatile double temperatureC = Double.NaN;
+    private volatile boolean plugged;
+    private volatile boolean pluggedDuringTest;
+
+    BatteryStressTest(Context context, ScanProgressEmitter.Sink sink, String testId, long durationMs, long sampleMs,
+                      CpuLoadGenerator load) {
+        this.context = context;
+        this.sink = sink;
+        this.testId = testId;
+        this.durationMs = durationMs;
+        this.sampleMs = sampleMs;
+        this.load = load;
+    }
+
+    String testId() {
+        return testId;
+    }
+
+    void abort() {
+        abortSignal.countDown();
+    }
+
+    JSObject run() throws Exception {
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                update(intent);
+            }
+        };
+        Intent sticky = context.registerReceiver(receiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (sticky != null) {
+            update(sticky);
+        }
+        boolean pluggedAtStart = plugged;
+
+        TelemetryRing ring = new TelemetryRing((int) (durationMs / sampleMs) + 2, COLUMNS);
+        double[] row = new double[COLUMNS];
+        long start = SystemClock.elapsedRealtime();
+        boolean aborted = false;
+        load.start();
+        try {
+            long tick = 0;
+            while (true) {
+                row[COLUMN_LEVEL] = property(batteryManager, BatteryManager.BATTERY_PROPERTY_CAPACITY);
+                row[COLUMN_CHARGE_COUNTER] = property(batteryManager, BatteryManager.BATTERY_PROPERTY_CHARGE_COUNTER);
+                row[COLUMN_CURRENT] = property(batteryManager, BatteryManager.BATTERY_PROPERTY_CURRENT_NOW);
+                row[COLUMN_VOLTAGE] = voltageMv;
+                row[COLUMN_TEMPERATURE] = temperatureC;
+                ring.add(System.currentTimeMillis(), row);
+                long elapsed = SystemClock.elapsedRealtime() - start;
+                emitProgress(elapsed, row);
+
+                if (aborted || elapsed >= durationMs) break;
+                long next = Math.min(durationMs, ++tick * sampleMs);
+                // Take one last sample when aborted, so the series ends at the abort time
+                aborted = abortSignal.await(Math.max(0, next - elapsed), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            load.stop();
+            try {
+                context.unregisterReceiver(receiver);
+            } catch (Exception e) {
+                // Already unregistered
+            }
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        TelemetryRing.Batch batch = ring.drain();
+        DischargeAnalyzer.Result analysis = DischargeAnalyzer.analyze(batch.timestamps,
+            batch.values[COLUMN_LEVEL], batch.values[COLUMN_CHARGE_COUNTER], batch.values[COLUMN_CURRENT],
+            batch.values[COLUMN_VOLTAGE], batch.values[COLUMN_TEMPERATURE], designCapacityMah());
+
+        JSObject result = new JSObject();
+        result.put("testId", testId);
+        result.put("durationSec", elapsed / 1000.0);
+        result.put("plannedDurationSec", durationMs / 1000);
+        result.put("aborted", aborted);
+        result.put("threads", load.threads());
+        result.put("duty", load.duty());
+        result.put("loadIterations", load.iterations());
+        result.put("chargingAtStart", pluggedAtStart);
+        result.put("chargingDuringTest", pluggedDuringTest);
+        result.put("samples", batch.size());
+        result.put("sampleIntervalMs", sampleMs);
+
+        JSObject capacity = new JSObject();
+        putNumber(capacity, "estimatedMah", analysis.estimatedCapacityMah);
+        capacity.put("source", analysis.capacitySource);
+        putNumber(capacity, "drainMah", analysis.drainCapacityMah);
+        putNumber(capacity, "gaugeMah", analysis.gaugeCapacityMah);
+        putNumber(capacity, "currentMah", analysis.currentCapacityMah);
+        putNumber(capacity, "designMah", analysis.designCapacityMah);
+        putNumber(capacity, "healthPct", analysis.healthPct);
+        putNumber(capacity, "degradationScore", analysis.degradationScore);
+        result.put("capacity", capacity);
+
+        JSObject discharge = new JSObject();
+        discharge.put("levelDrop", analysis.levelDrop);
+        discharge.put("drainPctPerHour", analysis.drainPctPerHour);
+        discharge.put("consumedMah", analysis.consumedMah);
+        discharge.put("avgCurrentMa", analysis.avgCurrentMa);
+        discharge.put("avgPowerMw", analysis.avgPowerMw);
+        putNumber(discharge, "minVoltageMv", analysis.minVoltageMv);
+        putNumber(discharge, "maxVoltageMv", analysis.maxVoltageMv);
+        putNumber(discharge, "maxTemperatureC", analysis.maxTemperatureC);
+        putNumber(discharge, "temperatureRiseC", analysis.temperatureRiseC);
+        result.put("discharge", discharge);
+
+        JSObject series = new JSObject();
+        JSArray timestamps = new JSArray();
+        for (long timestamp : batch.timestamps) {
+            timestamps.put(timestamp);
+        }
+        series.put("timestamps", timestamps);
+        series.put("levelPct", TelemetrySampler.series(batch.values[COLUMN_LEVEL]));
+        series.put("currentUa", TelemetrySampler.series(batch.values[COLUMN_CURRENT]));
+        series.put("voltageMv", TelemetrySampler.series(batch.values[COLUMN_VOLTAGE]));
+        series.put("temperatureC", TelemetrySampler.series(batch.values[COLUMN_TEMPERATURE]));
+        result.put("series", series);
+        return result;
+    }
+
+    private void update(Intent intent) {
+        int voltage = intent.getIntExtra(BatteryManager.EXTRA_VOLTAGE, -1);
+        int temperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+        voltageMv = voltage > 0 ? voltage : Double.NaN;
+        temperatureC = temperature != Integer.MIN_VALUE ? temperature / 10.0 : Double.NaN;
+        plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        if (plugged) {
+            pluggedDuringTest = true;
+        }
+    }
+
+    private void emitProgress(long elapsedMs, double[] row) {
+        JSObject event = new JSObject();
+        event.put("testId", testId);
+        event.put("elapsedSec", elapsedMs / 1000);
+        event.put("durationSec", durationMs / 1000);
+        putNumber(event, "levelPct", row[COLUMN_LEVEL]);
+        putNumber(event, "currentUa", row[COLUMN_CURRENT]);
+        putNumber(event, "voltageMv", row[COLUMN_VOLTAGE]);
+        putNumber(event, "temperatureC", row[COLUMN_TEMPERATURE]);
+        sink.emit(EVENT_PROGRESS, event);
+    }
+
+    private static double property(BatteryManager batteryManager, int property) {
+        int value = batteryManager.getIntProperty(property);
+        return value != Integer.MIN_VALUE ? value : Double.NaN;
+    }
+
+    private static void putNumber(JSObject target, String key, double value) {
+        if (Double.isNaN(value)) {
+            target.put(key, JSONObject.NULL);
+        } else {
+            target.put(key, value);
+        }
+    }
+
+    // Rated capacity from the framework power profile (hidden API); NaN when unavailable
+    private double designCapacityMah() {
+        try {
+            Class<?> powerProfile = Class.forName("com.android.internal.os.PowerProfile");
+            Object profile = powerProfile.getConstructor(Context.class).newInstance(context);
+            double capacity = (Double) powerProfile.getMethod("getBatteryCapacity").invoke(profile);
+            return capacity > 0 ? capacity : Double.NaN;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
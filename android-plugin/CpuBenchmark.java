@@ -0,0 +1,267 @@
+package com.lablinkriparo.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Short, deterministic compute benchmark for "my phone feels slow" triage. Three
+ * fixed workloads (integer hashing, a dense double matrix multiply, a STREAM-style
+ * triad over large primitive arrays) run once on the calling thread and once
+ * split across a ForkJoinPool; scores are work per second in fixed units, so they
+ * compare across devices. Repeated all-core hashing rounds expose thermal
+ * throttling as score decay. Each workload returns a checksum so the JIT cannot
+ * drop it and runs can be checked for determinism. No Android dependency.
+ */
+final class CpuBenchmark {
+
+    static final String HASH = "integerHash";
+    static final String MATRIX = "matrixMultiply";
+    static final String MEMORY = "memoryBandwidth";
+    // Bumped whenever a workload changes; scores only compare within one version
+    static final int VERSION = 1;
+
+    // Work per unit; the number of units is fixed, so elapsed time varies by device
+    private static final int HASH_MIXES_PER_UNIT = 1 << 20;
+    private static final int HASH_UNITS = 32;
+    private static final int MATRIX_SIZE = 96;
+    private static final int MATRIX_UNITS = 48;
+    private static final int MEMORY_PASSES = 4;
+
+    static final class Score {
+        final String workload;
+        final String unit;
+        final double singleThread;
+        final double allCores;
+        // allCores / singleThread
+        final double scaling;
+        final long checksum;
+
+        Score(String workload, String unit, double singleThread, double allCores, long checksum) {
+            this.workload = workload;
+            this.unit = unit;
+            this.singleThread = singleThread;
+            this.allCores = allCores;
+            this.scaling = singleThread > 0 ? allCores / singleThread : 0;
+            this.checksum = checksum;
+        }
+    }
+
+    static final class Report {
+        final List<Score> scores;
+        final int threads;
+        // Geometric means of the per-workload scores
+        final double singleThreadScore;
+        final double allCoreScore;
+        // All-core hashing score (Mops/s) per round
+        final double[] rounds;
+        // Drop from the best round to the last one, in percent
+        final double throttlePct;
+        final long elapsedMs;
+
+        Report(List<Score> scores, int threads, double singleThreadScore, double allCoreScore, double[] rounds,
+               double throttlePct, long elapsedMs) {
+            this.scores = scores;
+            this.threads = threads;
+            this.singleThreadScore = singleThreadScore;
+            this.allCoreScore = allCoreScore;
+            this.rounds = rounds;
+            this.throttlePct = throttlePct;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int memoryMb;
+
+    // memoryMb is the total size of the three triad arrays
+    CpuBenchmark(ForkJoinPool pool, int memoryMb) {
+        this.pool = pool;
+        this.memoryMb = Math.max(3, memoryMb);
+    }
+
+    Report run(int rounds) {
+        long start = System.nanoTime();
+        int threads = pool.getParallelism();
+
+        // Warm-up so the first measurement is not paying for compilation
+        hash(0, 2);
+        matrix(0, 2);
+
+        List<Score> scores = new ArrayList<>();
+        scores.add(measureHash(threads));
+        scores.add(measureMatrix(threads));
+        scores.add(measureMemory());
+
+        double[] roundScores = new double[Math.max(1, rounds)];
+        double best = 0;
+        for (int r = 0; r < roundScores.length; r++) {
+            long roundStart = System.nanoTime();
+            pool.invoke(new Split(Split.HASH, 0, HASH_UNITS * threads, null));
+            roundScores[r] = millionsPerSecond((double) HASH_UNITS * threads * HASH_MIXES_PER_UNIT, System.nanoTime() - roundStart);
+            best = Math.max(best, roundScores[r]);
+        }
+        double last = roundScores[roundScores.length - 1];
+        double throttlePct = best > 0 ? Math.max(0, (best - last) * 100 / best) : 0;
+
+        double single = 1;
+        double all = 1;
+        for (Score score : scores) {
+            single *= score.singleThread;
+            all *= score.allCores;
+        }
+        return new Report(scores, threads, Math.pow(single, 1.0 / scores.size()), Math.pow(all, 1.0 / scores.size()),
+            roundScores, throttlePct, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Score measureHash(int threads) {
+        long t0 = System.nanoTime();
+        long singleChecksum = hash(0, HASH_UNITS);
+        long single = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        long allChecksum = pool.invoke(new Split(Split.HASH, 0, HASH_UNITS * threads, null));
+        long all = System.nanoTime() - t0;
+        double mixes = (double) HASH_UNITS * HASH_MIXES_PER_UNIT;
+        return new Score(HASH, "Mops/s", millionsPerSecond(mixes, single), millionsPerSecond(mixes * threads, all),
+            singleChecksum ^ allChecksum);
+    }
+
+    private Score measureMatrix(int threads) {
+        long t0 = System.nanoTime();
+        long singleChecksum = matrix(0, MATRIX_UNITS);
+        long single = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        long allChecksum = pool.invoke(new Split(Split.MATRIX, 0, MATRIX_UNITS * threads, null));
+        long all = System.nanoTime() - t0;
+        double flops = 2.0 * MATRIX_SIZE * MATRIX_SIZE * MATRIX_SIZE * MATRIX_UNITS;
+        return new Score(MATRIX, "MFLOPS", millionsPerSecond(flops, single), millionsPerSecond(flops * threads, all),
+            singleChecksum ^ allChecksum);
+    }
+
+    // Same arrays for both runs: the all-core run splits the array, not the passes
+    private Score measureMemory() {
+        int length = (int) ((long) memoryMb * 1024 * 1024 / 3 / 8);
+        double[][] arrays = {new double[length], new double[length], new double[length]};
+        for (int i = 0; i < length; i++) {
+            arrays[1][i] = i;
+            arrays[2][i] = length - i;
+        }
+        triad(arrays, 0, length, 1);
+
+        long t0 = System.nanoTime();
+        long singleChecksum = triad(arrays, 0, length, MEMORY_PASSES);
+        long single = System.nanoTime() - t0;
+        // One split per pass, so each pass streams the whole array rather than a cached slice
+        t0 = System.nanoTime();
+        long allChecksum = 0;
+        for (int pass = 0; pass < MEMORY_PASSES; pass++) {
+            allChecksum ^= pool.invoke(new Split(Split.MEMORY, 0, length, arrays));
+        }
+        long all = System.nanoTime() - t0;
+        // Two reads and one write of 8 bytes per element and pass
+        double megabytes = 24.0 * length * MEMORY_PASSES / (1024 * 1024);
+        return new Score(MEMORY, "MB/s", megabytes * 1e9 / single, megabytes * 1e9 / all,
+            singleChecksum ^ allChecksum);
+    }
+
+    private static double millionsPerSecond(double operations, long nanos) {
+        return nanos > 0 ? operations / nanos * 1000 : 0;
+    }
+
+    // Integer mixing (splitmix64) over units * HASH_MIXES_PER_UNIT steps, seeded by the unit index
+    static long hash(int fromUnit, int toUnit) {
+        long checksum = 0;
+        for (int unit = fromUnit; unit < toUnit; unit++) {
+            long state = unit;
+            for (int i = 0; i < HASH_MIXES_PER_UNIT; i++) {
+                state += 0x9E3779B97F4A7C15L;
+                long z = state;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                checksum += z ^ (z >>> 31);
+            }
+        }
+        return checksum;
+    }
+
+    // One MATRIX_SIZE^3 multiply per unit, i-k-j order over row-major arrays
+    static long matrix(int fromUnit, int toUnit) {
+        int n = MATRIX_SIZE;
+        double[] a = new double[n * n];
+        double[] b = new double[n * n];
+        double[] c = new double[n * n];
+        long checksum = 0;
+        for (int unit = fromUnit; unit < toUnit; unit++) {
+            for (int i = 0; i < n * n; i++) {
+                a[i] = ((i * 31 + unit) % 97) / 97.0;
+                b[i] = ((i * 17 + unit) % 89) / 89.0;
+                c[i] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                int row = i * n;
+                for (int k = 0; k < n; k++) {
+                    double aik = a[row + k];
+                    int bRow = k * n;
+                    for (int j = 0; j < n; j++) {
+                        c[row + j] += aik * b[bRow + j];
+                    }
+                }
+            }
+            checksum += Double.doubleToLongBits(c[unit % (n * n)]);
+        }
+        return checksum;
+    }
+
+    // a = b + 3 * c over [from, to), passes times
+    static long triad(double[][] arrays, int from, int to, int passes) {
+        double[] a = arrays[0];
+        double[] b = arrays[1];
+        double[] c = arrays[2];
+        for (int pass = 0; pass < passes; pass++) {
+            for (int i = from; i < to; i++) {
+                a[i] = b[i] + 3.0 * c[i];
+            }
+        }
+        return to > from ? Double.doubleToLongBits(a[from]) + Double.doubleToLongBits(a[to - 1]) : 0;
+    }
+
+    private static final class Split extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        static final int HASH = 0;
+        static final int MATRIX = 1;
+        static final int MEMORY = 2;
+        // Elements per leaf for the memory split
+        private static final int MEMORY_LEAF = 1 << 16;
+
+        private final int kind;
+        private final int from;
+        private final int to;
+        private final double[][] arrays;
+
+        Split(int kind, int from, int to, double[][] arrays) {
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+            this.arrays = arrays;
+        }
+
+        @Override
+        protected Long compute() {
+            int leaf = kind == MEMORY ? MEMORY_LEAF : 1;
+            if (to - from <= leaf) {
+                switch (kind) {
+                    case HASH: return hash(from, to);
+                    case MATRIX: return matrix(from, to);
+                    default: return triad(arrays, from, to, 1);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            Split left = new Split(kind, from, mid, arrays);
+            left.fork();
+            long right = new Split(kind, mid, to, arrays).compute();
+            return left.join() ^ right;
+        }
+    }
+}
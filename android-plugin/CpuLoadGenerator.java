@@ -0,0 +1,99 @@
+package com.lablinkriparo.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controlled CPU load for the battery stress test: threads workers, each busy for
+ * duty of every periodMs and asleep for the rest, so the load is repeatable across
+ * devices instead of depending on the scheduler. The busy part is integer hashing
+ * whose result is kept, so the JIT cannot drop it. No Android dependency.
+ */
+final class CpuLoadGenerator {
+
+    private final int threads;
+    private final double duty;
+    private final long periodMs;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong iterations = new AtomicLong();
+    private volatile boolean running;
+    private volatile long sink;
+
+    // duty is clamped to [0, 1]; zero threads or zero duty generates no load
+    CpuLoadGenerator(int threads, double duty, long periodMs) {
+        this.threads = Math.max(0, threads);
+        this.duty = Math.max(0, Math.min(1, duty));
+        this.periodMs = Math.max(1, periodMs);
+    }
+
+    int threads() {
+        return threads;
+    }
+
+    double duty() {
+        return duty;
+    }
+
+    // Hashing rounds completed so far across all workers
+    long iterations() {
+        return iterations.get();
+    }
+
+    synchronized void start() {
+        if (running || threads == 0 || duty == 0) return;
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "diag-load-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(periodMs + 1000);
+        }
+        workers.clear();
+    }
+
+    private void work() {
+        long busyNs = (long) (periodMs * 1_000_000L * duty);
+        long periodNs = periodMs * 1_000_000L;
+        long hash = Thread.currentThread().getId();
+        while (running) {
+            long periodStart = System.nanoTime();
+            long rounds = 0;
+            while (System.nanoTime() - periodStart < busyNs) {
+                for (int i = 0; i < 1024; i++) {
+                    // 64-bit mix (splitmix64 finalizer)
+                    hash += 0x9E3779B97F4A7C15L;
+                    hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+                    hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+                    hash ^= hash >>> 31;
+                }
+                rounds++;
+            }
+            iterations.addAndGet(rounds);
+            sink = hash;
+            long idleNs = periodNs - (System.nanoTime() - periodStart);
+            if (idleNs > 0) {
+                try {
+                    Thread.sleep(idleNs / 1_000_000L, (int) (idleNs % 1_000_000L));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
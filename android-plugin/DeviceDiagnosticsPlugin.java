@@ -1,9 +1,11 @@
 package com.lablinkriparo.monitor;
 
 import android.app.ActivityManager;
+import android.app.ApplicationExitInfo;
 import android.app.DownloadManager;
+import android.app.usage.ExternalStorageStats;
 import android.app.usage.StorageStats;
-import android.app.usage.StorageStatsManager;
+import android.app.usage.UsageEvents;
 import android.app.usage.UsageStats;
 import android.app.usage.UsageStatsManager;
 import android.content.BroadcastReceiver;
@@ -12,13 +14,10 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
+import android.content.pm.PermissionInfo;
 import android.net.Uri;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.BatteryManager;
@@ -29,8 +28,8 @@ import android.os.storage.StorageManager;
 import android.os.SystemClock;
 import android.app.AppOpsManager;
 import android.provider.Settings;
-import android.util.Base64;
 import android.util.Log;
+import android.view.WindowManager;
 import android.Manifest;
 
 import androidx.core.content.FileProvider;
@@ -42,15 +41,35 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
-import java.io.ByteArrayOutputStream;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @CapacitorPlugin(name = "DeviceDiagnostics")
 public class DeviceDiagnosticsPlugin extends Plugin {
@@ -58,302 +77,1277 @@ public class DeviceDiagnosticsPlugin extends Plugin {
     private static final String TAG = "DeviceDiagnostics";
     private long downloadId = -1;
     private PluginCall pendingDownloadCall = null;
+    private DiagnosticsExecutor executor;
+    private StorageStatsReader storageStats;
+    private Map<String, Probe> probes;
+    private DirectorySizer dirSizer;
+    private PackageScanner scanner;
+    private AppIconCache iconCache;
+    private SensorSampler sensorSampler;
+    private SecurityProbes securityProbes;
+    private ApkHashCache apkHashes;
+    private ApkThreatDefinitions apkThreats;
+    private UsageHistoryStore usageHistory;
+    // The running telemetry session, if any
+    private TelemetrySampler telemetry;
+    // The running battery stress test, if any; set and cleared under batteryStressLock, which is
+    // separate from this so runBatteryStressTest on the bridge thread never waits behind telemetry
+    private final Object batteryStressLock = new Object();
+    private volatile BatteryStressTest batteryStress;
+    private final AtomicBoolean storageBenchmarkRunning = new AtomicBoolean();
+    private BroadcastReceiver packageChangeReceiver;
+    // Dangerous permissions as declared on this device, rebuilt after package changes
+    private volatile PermissionClassifier platformPermissions;
+    // Own lock, so the lane hint on the bridge thread never waits behind the telemetry lock on this
+    private final Object permissionIndexLock = new Object();
+    // Granted permission -> apps, for the package snapshot it was built from
+    private PermissionIndex permissionIndex;
+    private List<PackageScanner.PackageRecord> permissionIndexSource;
+
+    // Cached storage sizes are reused for one repair session
+    private static final long SCAN_CACHE_STORAGE_MAX_AGE_MS = 10 * 60 * 1000;
+    private static final int ICON_CACHE_MEMORY_CHARS = 2 * 1024 * 1024;
+    private static final long ICON_CACHE_DISK_BYTES = 8L * 1024 * 1024;
+    private static final int STREAM_BATCH_SIZE = 25;
+    private static final long DEFAULT_PROBE_TIMEOUT_MS = 5000;
+    // Per directory; deeper or slower trees are reported as estimated
+    private static final int DIR_SIZE_MAX_DEPTH = 64;
+    private static final long DIR_SIZE_BUDGET_MS = 2000;
+    // testSensor sampling window, and the longest wait for a first reading
+    private static final long SENSOR_SAMPLE_MS = 500;
+    private static final long SENSOR_TIMEOUT_MS = 2000;
+    private static final long TELEMETRY_INTERVAL_MS = 1000;
+    private static final long TELEMETRY_MIN_INTERVAL_MS = 50;
+    private static final int BATTERY_STRESS_DEFAULT_SEC = 300;
+    private static final int BATTERY_STRESS_MAX_SEC = 3600;
+    // Samples per test, whatever the duration
+    private static final int BATTERY_STRESS_SAMPLES = 600;
+    private static final long BATTERY_STRESS_LOAD_PERIOD_MS = 100;
+    private static final int CPU_BENCHMARK_ROUNDS = 5;
+    private static final int CPU_BENCHMARK_MEMORY_MB = 48;
+    // Score drop across rounds reported as throttling
+    private static final double CPU_THROTTLE_THRESHOLD_PCT = 10;
+    private static final int MEMORY_BANDWIDTH_MB = 32;
+    private static final int MEMORY_BANDWIDTH_MAX_MB = 128;
+    private static final long MEMORY_BANDWIDTH_BUDGET_MS = 1000;
+    // Low-memory kills of this app older than this are not counted
+    private static final long MEMORY_KILL_WINDOW_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final int STORAGE_BENCHMARK_SIZE_MB = 64;
+    private static final int STORAGE_BENCHMARK_BLOCK = 1024 * 1024;
+    private static final int STORAGE_BENCHMARK_RANDOM_OPS = 2000;
+    private static final long STORAGE_BENCHMARK_PHASE_MS = 15_000;
+    // Free space left untouched on top of the test file
+    private static final long STORAGE_BENCHMARK_RESERVE_BYTES = 256L * 1024 * 1024;
+    private static final int USAGE_DEFAULT_DAYS = 7;
+    // Days kept in the usage history; also the longest range getAppUsageStats answers
+    private static final int USAGE_HISTORY_MAX_DAYS = 400;
+    // How far back the system's event log is trusted; older gaps come from daily aggregates
+    private static final int USAGE_EVENT_DAYS = 7;
+
+    private static final String[] DANGEROUS_PERMISSIONS = {
+        Manifest.permission.READ_CONTACTS,
+        Manifest.permission.WRITE_CONTACTS,
+        Manifest.permission.READ_SMS,
+        Manifest.permission.SEND_SMS,
+        Manifest.permission.READ_CALL_LOG,
+        Manifest.permission.WRITE_CALL_LOG,
+        Manifest.permission.ACCESS_FINE_LOCATION,
+        Manifest.permission.ACCESS_COARSE_LOCATION,
+        Manifest.permission.CAMERA,
+        Manifest.permission.RECORD_AUDIO,
+        Manifest.permission.READ_EXTERNAL_STORAGE,
+        Manifest.permission.WRITE_EXTERNAL_STORAGE,
+        Manifest.permission.READ_PHONE_STATE,
+        Manifest.permission.CALL_PHONE,
+        Manifest.permission.READ_CALENDAR,
+        Manifest.permission.WRITE_CALENDAR
+    };
+    private static final PermissionClassifier DANGEROUS_PERMISSION_CLASSIFIER =
+        new PermissionClassifier(DANGEROUS_PERMISSIONS, PackageInfo.REQUESTED_PERMISSION_GRANTED);
+
+    @Override
+    public void load() {
+        executor = new DiagnosticsExecutor();
+        PackageScanCache scanCache = new PackageScanCache(
+            new File(getContext().getFilesDir(), "diagnostics/package-scan-cache.bin"),
+            java.util.Locale.getDefault().toString(),
+            SCAN_CACHE_STORAGE_MAX_AGE_MS);
+        storageStats = new StorageStatsReader(getContext());
+        dirSizer = new DirectorySizer(executor.forkJoin(), Build.VERSION.SDK_INT >= Build.VERSION_CODES.O,
+            DIR_SIZE_MAX_DEPTH, DIR_SIZE_BUDGET_MS);
+        scanner = new PackageScanner(getContext(), executor.workers(), executor.workerCount(), scanCache,
+            storageStats);
+        probes = createProbes();
+        sensorSampler = new SensorSampler((SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE));
+        securityProbes = new SecurityProbes(getContext(),
+            new File(getContext().getFilesDir(), "diagnostics/root-signatures.json"));
+        apkHashes = new ApkHashCache(new File(getContext().getFilesDir(), "diagnostics/apk-hash-cache.bin"));
+        apkThreats = new ApkThreatDefinitions(
+            new File(getContext().getFilesDir(), "diagnostics/apk-threat-definitions.json"));
+        usageHistory = new UsageHistoryStore(new File(getContext().getFilesDir(), "diagnostics/usage-history.bin"));
+        iconCache = new AppIconCache(getContext().getPackageManager(),
+            new File(getContext().getCacheDir(), "app-icons"),
+            ICON_CACHE_MEMORY_CHARS, ICON_CACHE_DISK_BYTES);
+
+        // Invalidate cached scan results as soon as a package is installed, removed or updated
+        packageChangeReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                String packageName = data != null ? data.getSchemeSpecificPart() : null;
+                scanner.invalidate(packageName);
+                // Installed apps can declare their own dangerous permissions
+                platformPermissions = null;
+                invalidatePermissionIndex();
+                // A root manager may have been installed or removed
+                securityProbes.invalidate();
+                if (packageName != null) {
+                    iconCache.evict(packageName);
+                }
+            }
+        };
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        getContext().registerReceiver(packageChangeReceiver, packageFilter);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (packageChangeReceiver != null) {
+            try {
+                getContext().unregisterReceiver(packageChangeReceiver);
+            } catch (Exception e) {
+                // Already unregistered
+            }
+            packageChangeReceiver = null;
+        }
+        if (sensorSampler != null) {
+            sensorSampler.shutdown();
+        }
+        BatteryStressTest stress = batteryStress;
+        if (stress != null) {
+            stress.abort();
+        }
+        try {
+            stopTelemetrySession();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    // Runs a plugin method body off the bridge thread on the given lane
+    private void runOnLane(DiagnosticsExecutor.Lane lane, final PluginCall call, final Runnable body) {
+        try {
+            executor.execute(lane, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        body.run();
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Unhandled error in " + call.getMethodName() + ": " + t.getMessage());
+                        call.reject("Unexpected error: " + t.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            call.reject("Diagnostics busy (" + lane.name().toLowerCase() + " queue full), retry later");
+        }
+    }
 
+    // A diagnostic that can run on its own or as part of runFullDiagnostics
+    private interface Probe {
+        JSObject run(DiagnosticsSession session) throws Exception;
+    }
+
+    private Map<String, Probe> createProbes() {
+        Map<String, Probe> probes = new LinkedHashMap<>();
+        probes.put("storage", session -> dataPartitionInfo(new StatFs(Environment.getDataDirectory().getPath())));
+        probes.put("storageBreakdown", session -> storageBreakdown());
+        probes.put("ram", session -> ramInfo());
+        probes.put("sensors", session -> sensorsInfo());
+        probes.put("battery", session -> batteryInfo());
+        probes.put("security", this::securityStatus);
+        probes.put("integrity", this::systemIntegrity);
+        probes.put("uptime", session -> deviceUptime());
+        probes.put("cache", session -> totalCacheSize());
+        return Collections.unmodifiableMap(probes);
+    }
+
+    private static final class ProbeRun {
+        final String name;
+        final long submittedAt;
+        volatile long startedAt;
+        volatile long finishedAt;
+        FutureTask<JSObject> task;
+        volatile ScheduledFuture<?> deadline;
+
+        ProbeRun(String name, long submittedAt) {
+            this.name = name;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    // Runs the selected probes concurrently on the probe lane with a shared session and
+    // returns one report. Each probe gets timeoutMs from submission; late probes are
+    // cancelled and reported as "timeout" without failing the others. No thread waits on
+    // the probes: each one counts down as it completes or is cancelled, and the last
+    // resolves the call.
     @PluginMethod
-    public void getStorageInfo(PluginCall call) {
+    public void runFullDiagnostics(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                JSArray requested = call.getArray("probes", new JSArray());
+                final long timeoutMs = Math.max(1, call.getLong("timeoutMs", DEFAULT_PROBE_TIMEOUT_MS));
+                List<String> names = new ArrayList<>();
+                for (int i = 0; i < requested.length(); i++) {
+                    String name = requested.optString(i, null);
+                    if (name != null && !names.contains(name)) names.add(name);
+                }
+                if (names.isEmpty()) {
+                    names.addAll(probes.keySet());
+                }
+
+                final DiagnosticsSession session = new DiagnosticsSession();
+                final long runStart = SystemClock.elapsedRealtime();
+                final JSObject results = new JSObject();
+                final List<ProbeRun> runs = new ArrayList<>();
+                // One count per submitted probe plus one held by this loop, so the report
+                // is not built before every probe has been submitted
+                final AtomicInteger pending = new AtomicInteger(1);
+                final Runnable finish = () -> resolveFullDiagnostics(call, results, runs, runStart, timeoutMs);
+
+                for (String name : names) {
+                    final Probe probe = probes.get(name);
+                    if (probe == null) {
+                        results.put(name, probeStatus("unknown", null));
+                        continue;
+                    }
+                    final ProbeRun run = new ProbeRun(name, SystemClock.elapsedRealtime());
+                    run.task = new FutureTask<JSObject>(() -> {
+                        run.startedAt = SystemClock.elapsedRealtime();
+                        try {
+                            return probe.run(session);
+                        } finally {
+                            run.finishedAt = SystemClock.elapsedRealtime();
+                        }
+                    }) {
+                        @Override
+                        protected void done() {
+                            ScheduledFuture<?> deadline = run.deadline;
+                            if (deadline != null) {
+                                deadline.cancel(false);
+                            }
+                            if (pending.decrementAndGet() == 0) {
+                                finish.run();
+                            }
+                        }
+                    };
+                    pending.incrementAndGet();
+                    try {
+                        executor.execute(DiagnosticsExecutor.Lane.PROBE, run.task);
+                    } catch (RejectedExecutionException e) {
+                        pending.decrementAndGet();
+                        results.put(name, probeStatus("rejected", "Probe queue full"));
+                        continue;
+                    }
+                    runs.add(run);
+                    try {
+                        // A queued probe that is cancelled never runs and frees its slot
+                        run.deadline = executor.schedule(() -> run.task.cancel(true), timeoutMs);
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down
+                        run.task.cancel(true);
+                    }
+                }
+                if (pending.decrementAndGet() == 0) {
+                    finish.run();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error running full diagnostics: " + e.getMessage());
+                call.reject("Error running full diagnostics: " + e.getMessage());
+            }
+        });
+    }
+
+    // Called once every probe is done, on the thread that completed or cancelled the last one
+    private void resolveFullDiagnostics(PluginCall call, JSObject results, List<ProbeRun> runs,
+                                        long runStart, long timeoutMs) {
         try {
-            StatFs statFs = new StatFs(Environment.getDataDirectory().getPath());
-            long totalBytes = statFs.getTotalBytes();
-            long availableBytes = statFs.getAvailableBytes();
-            long usedBytes = totalBytes - availableBytes;
+            int completed = 0;
+            int failed = 0;
+            int timedOut = 0;
+            for (ProbeRun run : runs) {
+                JSObject entry;
+                if (run.task.isCancelled()) {
+                    entry = probeStatus("timeout", "No result within " + timeoutMs + " ms");
+                    timedOut++;
+                } else {
+                    try {
+                        JSObject data = run.task.get();
+                        entry = probeStatus("ok", null);
+                        entry.put("data", data);
+                        completed++;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        entry = probeStatus("error", cause.getMessage());
+                        failed++;
+                    }
+                }
+                long now = SystemClock.elapsedRealtime();
+                long startedAt = run.startedAt;
+                long finishedAt = run.finishedAt;
+                entry.put("waitMs", (startedAt > 0 ? startedAt : now) - run.submittedAt);
+                entry.put("durationMs", startedAt > 0 ? (finishedAt > 0 ? finishedAt : now) - startedAt : 0);
+                results.put(run.name, entry);
+            }
 
-            JSObject result = new JSObject();
-            result.put("totalBytes", totalBytes);
-            result.put("availableBytes", availableBytes);
-            result.put("usedBytes", usedBytes);
-            result.put("totalGb", totalBytes / (1024.0 * 1024.0 * 1024.0));
-            result.put("availableGb", availableBytes / (1024.0 * 1024.0 * 1024.0));
-            result.put("usedGb", usedBytes / (1024.0 * 1024.0 * 1024.0));
-            result.put("percentUsed", (usedBytes * 100.0) / totalBytes);
+            JSObject report = new JSObject();
+            report.put("probes", results);
+            report.put("totalMs", SystemClock.elapsedRealtime() - runStart);
+            report.put("timeoutMs", timeoutMs);
+            report.put("completed", completed);
+            report.put("failed", failed);
+            report.put("timedOut", timedOut);
+            call.resolve(report);
+        } catch (Exception e) {
+            Log.e(TAG, "Error running full diagnostics: " + e.getMessage());
+            call.reject("Error running full diagnostics: " + e.getMessage());
+        }
+    }
 
-            call.resolve(result);
+    private JSObject probeStatus(String status, String error) {
+        JSObject entry = new JSObject();
+        entry.put("status", status);
+        if (error != null) {
+            entry.put("error", error);
+        }
+        return entry;
+    }
+
+    @PluginMethod
+    public void getExecutorStats(PluginCall call) {
+        JSObject lanes = new JSObject();
+        for (DiagnosticsExecutor.Lane lane : DiagnosticsExecutor.Lane.values()) {
+            DiagnosticsExecutor.LaneStats stats = executor.stats(lane);
+            JSObject laneData = new JSObject();
+            laneData.put("threads", stats.threads);
+            laneData.put("queueDepth", stats.queueDepth);
+            laneData.put("queueCapacity", stats.queueCapacity);
+            laneData.put("active", stats.active);
+            laneData.put("submitted", stats.submitted);
+            laneData.put("completed", stats.completed);
+            laneData.put("rejected", stats.rejected);
+            laneData.put("avgWaitMs", stats.avgWaitMs);
+            laneData.put("maxWaitMs", stats.maxWaitMs);
+            laneData.put("avgRunMs", stats.avgRunMs);
+            laneData.put("maxRunMs", stats.maxRunMs);
+            lanes.put(stats.name, laneData);
+        }
+
+        JSObject result = new JSObject();
+        result.put("lanes", lanes);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getStorageInfo(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(dataPartitionInfo(new StatFs(Environment.getDataDirectory().getPath())));
+            } catch (Exception e) {
+                call.reject("Error getting storage info: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject dataPartitionInfo(StatFs statFs) {
+        long totalBytes = statFs.getTotalBytes();
+        long availableBytes = statFs.getAvailableBytes();
+        long usedBytes = totalBytes - availableBytes;
+
+        JSObject result = new JSObject();
+        result.put("totalBytes", totalBytes);
+        result.put("availableBytes", availableBytes);
+        result.put("usedBytes", usedBytes);
+        result.put("totalGb", totalBytes / (1024.0 * 1024.0 * 1024.0));
+        result.put("availableGb", availableBytes / (1024.0 * 1024.0 * 1024.0));
+        result.put("usedGb", usedBytes / (1024.0 * 1024.0 * 1024.0));
+        result.put("percentUsed", (usedBytes * 100.0) / totalBytes);
+        return result;
+    }
+
+    // Headline split of internal storage: apps / app data / cache / media / other.
+    // Uses the per-user aggregates (two system calls); without usage access it falls
+    // back to summing the package scan, and media is then unknown.
+    @PluginMethod
+    public void getStorageBreakdown(PluginCall call) {
+        DiagnosticsExecutor.Lane lane = hasUsageStatsPermission()
+            ? DiagnosticsExecutor.Lane.FAST : DiagnosticsExecutor.Lane.HEAVY;
+        runOnLane(lane, call, () -> {
+            try {
+                call.resolve(storageBreakdown());
+            } catch (Exception e) {
+                call.reject("Error getting storage breakdown: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject storageBreakdown() throws Exception {
+        StatFs statFs = new StatFs(Environment.getDataDirectory().getPath());
+        JSObject result = dataPartitionInfo(statFs);
+        long usedBytes = statFs.getTotalBytes() - statFs.getAvailableBytes();
+
+        long appBytes = 0;
+        long dataBytes = 0;
+        long cacheBytes = 0;
+        long mediaBytes = -1;
+        String source = null;
+
+        if (storageStats.isSupported()) {
+            try {
+                StorageStats user = storageStats.queryUser(StorageManager.UUID_DEFAULT);
+                appBytes = user.getAppBytes();
+                dataBytes = user.getDataBytes();
+                cacheBytes = user.getCacheBytes();
+                ExternalStorageStats external = storageStats.queryExternalUser(StorageManager.UUID_DEFAULT);
+                mediaBytes = external.getAudioBytes() + external.getVideoBytes() + external.getImageBytes();
+                source = "user";
+            } catch (Exception e) {
+                // Usage access denied: use the per-package path below
+            }
+        }
+
+        if (source == null) {
+            // Without usage access other packages' data and cache cannot be measured (the scan
+            // falls back to the APK size), so only app sizes are summed and data stays in "other"
+            PackageScanner.ScanResult scan = scanner.scan(PackageScanner.FACET_STORAGE);
+            for (PackageScanner.PackageRecord app : scan.records) {
+                if (!storageStats.isSupported() || !isExternalVolume(app.appInfo)) {
+                    appBytes += app.appBytes();
+                }
+            }
+            source = "package";
+            result.put("cacheHits", scan.cacheHits);
+            result.put("cacheMisses", scan.cacheMisses);
+        }
+
+        // Data sizes include the cache; report them as separate slices
+        long appDataBytes = Math.max(0, dataBytes - cacheBytes);
+        long otherBytes = Math.max(0, usedBytes - appBytes - dataBytes - Math.max(0, mediaBytes));
+
+        JSObject breakdown = new JSObject();
+        boolean measuredData = "user".equals(source);
+        breakdown.put("appsBytes", appBytes);
+        if (measuredData) {
+            breakdown.put("appDataBytes", appDataBytes);
+            breakdown.put("cacheBytes", cacheBytes);
+        }
+        if (mediaBytes >= 0) {
+            breakdown.put("mediaBytes", mediaBytes);
+        }
+        breakdown.put("otherBytes", otherBytes);
+        breakdown.put("appsGb", appBytes / (1024.0 * 1024.0 * 1024.0));
+        if (measuredData) {
+            breakdown.put("appDataGb", appDataBytes / (1024.0 * 1024.0 * 1024.0));
+            breakdown.put("cacheGb", cacheBytes / (1024.0 * 1024.0 * 1024.0));
+        }
+        if (mediaBytes >= 0) {
+            breakdown.put("mediaGb", mediaBytes / (1024.0 * 1024.0 * 1024.0));
+        }
+        breakdown.put("otherGb", otherBytes / (1024.0 * 1024.0 * 1024.0));
+
+        result.put("breakdown", breakdown);
+        result.put("source", source);
+        result.put("needsPermission", !"user".equals(source));
+        return result;
+    }
+
+    // Apps moved to adopted storage do not use the internal partition
+    private boolean isExternalVolume(ApplicationInfo appInfo) {
+        try {
+            return !StorageManager.UUID_DEFAULT.equals(storageStats.volumeOf(appInfo));
         } catch (Exception e) {
-            call.reject("Error getting storage info: " + e.getMessage());
+            return false;
         }
     }
 
     @PluginMethod
     public void getRamInfo(PluginCall call) {
-        try {
-            ActivityManager activityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
-            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
-            activityManager.getMemoryInfo(memoryInfo);
+        boolean extended = call.getBoolean("extended", false);
+        boolean bandwidthTest = extended && call.getBoolean("bandwidthTest", false);
+        int bandwidthMb = Math.max(2, Math.min(MEMORY_BANDWIDTH_MAX_MB, call.getInt("bandwidthMb", MEMORY_BANDWIDTH_MB)));
+        // The bandwidth test keeps a thread busy for a while, so it does not hold a fast lane slot
+        DiagnosticsExecutor.Lane lane = bandwidthTest ? DiagnosticsExecutor.Lane.HEAVY : DiagnosticsExecutor.Lane.FAST;
+        runOnLane(lane, call, () -> {
+            try {
+                JSObject result = ramInfo();
+                if (extended) {
+                    extendedRamInfo(result, bandwidthTest ? bandwidthMb : 0);
+                }
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error getting RAM info: " + e.getMessage());
+            }
+        });
+    }
 
-            long totalMb = memoryInfo.totalMem / (1024 * 1024);
-            long availableMb = memoryInfo.availMem / (1024 * 1024);
-            long usedMb = totalMb - availableMb;
+    private JSObject ramInfo() throws Exception {
+        ActivityManager activityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
 
-            JSObject result = new JSObject();
-            result.put("totalMb", totalMb);
-            result.put("availableMb", availableMb);
-            result.put("usedMb", usedMb);
-            result.put("percentUsed", (usedMb * 100.0) / totalMb);
+        long totalMb = memoryInfo.totalMem / (1024 * 1024);
+        long availableMb = memoryInfo.availMem / (1024 * 1024);
+        long usedMb = totalMb - availableMb;
 
-            call.resolve(result);
+        JSObject result = new JSObject();
+        result.put("totalMb", totalMb);
+        result.put("availableMb", availableMb);
+        result.put("usedMb", usedMb);
+        result.put("percentUsed", (usedMb * 100.0) / totalMb);
+        result.put("lowMemory", memoryInfo.lowMemory);
+        result.put("thresholdMb", memoryInfo.threshold / (1024 * 1024));
+
+        return result;
+    }
+
+    // /proc/meminfo, PSI, recent low-memory kills of this app and an optional
+    // bandwidth test, folded into a health score; unreadable sources are null
+    private void extendedRamInfo(JSObject result, int bandwidthMb) {
+        ActivityManager activityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+
+        Map<String, Long> meminfo = null;
+        try {
+            meminfo = MemoryHealth.readMeminfo("/proc/meminfo");
+            JSObject meminfoKb = new JSObject();
+            for (Map.Entry<String, Long> entry : meminfo.entrySet()) {
+                meminfoKb.put(entry.getKey(), entry.getValue());
+            }
+            result.put("meminfoKb", meminfoKb);
         } catch (Exception e) {
-            call.reject("Error getting RAM info: " + e.getMessage());
+            result.put("meminfoKb", JSONObject.NULL);
+        }
+
+        // PSI needs a 4.20+ kernel with CONFIG_PSI, and SELinux may still deny it
+        MemoryHealth.Pressure pressure = null;
+        try {
+            pressure = MemoryHealth.readPressure("/proc/pressure/memory");
+            JSObject psi = new JSObject();
+            psi.put("someAvg10", pressure.someAvg10);
+            psi.put("someAvg60", pressure.someAvg60);
+            psi.put("someAvg300", pressure.someAvg300);
+            psi.put("someTotalUs", pressure.someTotalUs);
+            if (pressure.hasFull) {
+                psi.put("fullAvg10", pressure.fullAvg10);
+                psi.put("fullAvg60", pressure.fullAvg60);
+                psi.put("fullAvg300", pressure.fullAvg300);
+                psi.put("fullTotalUs", pressure.fullTotalUs);
+            }
+            result.put("pressure", psi);
+        } catch (Exception e) {
+            result.put("pressure", JSONObject.NULL);
+        }
+
+        // Kills of this app only; other packages' exit reasons are not visible to it, so this
+        // is reported as-is and left out of the health score (PSI and meminfo judge background kills)
+        int thisAppKills = -1;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            try {
+                long since = System.currentTimeMillis() - MEMORY_KILL_WINDOW_MS;
+                thisAppKills = 0;
+                for (ApplicationExitInfo exit : activityManager.getHistoricalProcessExitReasons(
+                        getContext().getPackageName(), 0, 0)) {
+                    if (exit.getReason() == ApplicationExitInfo.REASON_LOW_MEMORY && exit.getTimestamp() >= since) {
+                        thisAppKills++;
+                    }
+                }
+            } catch (Exception e) {
+                thisAppKills = -1;
+            }
+        }
+        result.put("thisAppLowMemoryKills", thisAppKills >= 0 ? (Object) thisAppKills : JSONObject.NULL);
+
+        if (bandwidthMb > 0) {
+            try {
+                MemoryHealth.Bandwidth bandwidth = MemoryHealth.bandwidth(bandwidthMb, MEMORY_BANDWIDTH_BUDGET_MS);
+                JSObject test = new JSObject();
+                test.put("bufferMb", bandwidth.bufferBytes / (1024 * 1024));
+                test.put("passes", bandwidth.passes);
+                test.put("copyMbPerSecond", bandwidth.copyMbPerSecond);
+                test.put("readMbPerSecond", bandwidth.readMbPerSecond);
+                test.put("elapsedMs", bandwidth.elapsedMs);
+                result.put("bandwidth", test);
+            } catch (OutOfMemoryError e) {
+                // Not enough native memory for the buffers, itself a sign of pressure
+                result.put("bandwidth", JSONObject.NULL);
+                result.put("bandwidthError", "Could not allocate " + bandwidthMb + " MB of direct buffers");
+            }
         }
+
+        MemoryHealth.Score score = MemoryHealth.score(memoryInfo.totalMem, memoryInfo.availMem, memoryInfo.threshold,
+            memoryInfo.lowMemory, meminfo, pressure);
+        JSArray factors = new JSArray();
+        for (MemoryHealth.Factor factor : score.factors) {
+            JSObject entry = new JSObject();
+            entry.put("name", factor.name);
+            entry.put("penalty", factor.penalty);
+            entry.put("detail", factor.detail);
+            factors.put(entry);
+        }
+        JSObject health = new JSObject();
+        health.put("score", score.score);
+        health.put("grade", score.grade);
+        health.put("factors", factors);
+        result.put("health", health);
     }
 
     @PluginMethod
-    public void getSensorsInfo(PluginCall call) {
-        try {
-            SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
-            JSObject result = new JSObject();
+    public void startTelemetry(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                List<String> channels = new ArrayList<>();
+                JSArray requested = call.getArray("channels", null);
+                if (requested != null) {
+                    for (String channel : requested.<String>toList()) {
+                        if (!Arrays.asList(TelemetrySampler.CHANNELS).contains(channel)) {
+                            call.reject("Unknown telemetry channel: " + channel);
+                            return;
+                        }
+                        channels.add(channel);
+                    }
+                }
+                if (channels.isEmpty()) {
+                    Collections.addAll(channels, TelemetrySampler.CHANNELS);
+                }
+                long intervalMs = Math.max(TELEMETRY_MIN_INTERVAL_MS,
+                    call.getLong("intervalMs", TELEMETRY_INTERVAL_MS));
+                // Rows are pushed to JS in one event per batch, at most once per second by default
+                long batchMs = Math.max(intervalMs, call.getLong("batchMs", Math.max(1000, intervalMs)));
 
-            // GPS
-            JSObject gps = new JSObject();
-            gps.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_LOCATION_GPS));
-            gps.put("name", "GPS");
-            result.put("gps", gps);
-
-            // Accelerometer
-            JSObject accelerometer = new JSObject();
-            accelerometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
-            accelerometer.put("name", "Accelerometro");
-            result.put("accelerometer", accelerometer);
-
-            // Gyroscope
-            JSObject gyroscope = new JSObject();
-            gyroscope.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE) != null);
-            gyroscope.put("name", "Giroscopio");
-            result.put("gyroscope", gyroscope);
-
-            // Magnetometer
-            JSObject magnetometer = new JSObject();
-            magnetometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD) != null);
-            magnetometer.put("name", "Magnetometro");
-            result.put("magnetometer", magnetometer);
-
-            // Proximity
-            JSObject proximity = new JSObject();
-            proximity.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY) != null);
-            proximity.put("name", "Prossimità");
-            result.put("proximity", proximity);
-
-            // Light sensor
-            JSObject lightSensor = new JSObject();
-            lightSensor.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT) != null);
-            lightSensor.put("name", "Sensore Luce");
-            result.put("lightSensor", lightSensor);
-
-            // Barometer
-            JSObject barometer = new JSObject();
-            barometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE) != null);
-            barometer.put("name", "Barometro");
-            result.put("barometer", barometer);
-
-            // Microphone
-            JSObject microphone = new JSObject();
-            microphone.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_MICROPHONE));
-            microphone.put("name", "Microfono");
-            result.put("microphone", microphone);
-
-            // Camera
-            JSObject camera = new JSObject();
-            camera.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY));
-            camera.put("name", "Fotocamera");
-            result.put("camera", camera);
+                TelemetrySampler session = startTelemetrySession(channels, intervalMs, batchMs);
+                JSObject result = new JSObject();
+                result.put("sessionId", session.sessionId());
+                result.put("intervalMs", intervalMs);
+                result.put("batchMs", batchMs);
+                JSArray enabled = new JSArray();
+                for (String channel : session.channels()) {
+                    enabled.put(channel);
+                }
+                result.put("channels", enabled);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error starting telemetry: " + e.getMessage());
+                call.reject("Error starting telemetry: " + e.getMessage());
+            }
+        });
+    }
 
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting sensors info: " + e.getMessage());
+    @PluginMethod
+    public void stopTelemetry(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                TelemetrySampler.Summary summary = stopTelemetrySession();
+                JSObject result = new JSObject();
+                result.put("stopped", summary != null);
+                if (summary != null) {
+                    result.put("sessionId", summary.sessionId);
+                    result.put("drained", summary.drained);
+                    if (summary.drained) {
+                        result.put("samples", summary.samples);
+                        result.put("batches", summary.batches);
+                        result.put("dropped", summary.dropped);
+                        result.put("durationMs", summary.durationMs);
+                    }
+                }
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error stopping telemetry: " + e.getMessage());
+                call.reject("Error stopping telemetry: " + e.getMessage());
+            }
+        });
+    }
+
+    // One session at a time; starting again replaces the running one
+    private synchronized TelemetrySampler startTelemetrySession(List<String> channels, long intervalMs, long batchMs)
+            throws InterruptedException {
+        stopTelemetrySession();
+        telemetry = new TelemetrySampler(getContext(), (eventName, data) -> notifyListeners(eventName, data),
+            UUID.randomUUID().toString(), channels, intervalMs, batchMs);
+        telemetry.start();
+        return telemetry;
+    }
+
+    // Returns null when no session was running
+    private synchronized TelemetrySampler.Summary stopTelemetrySession() throws InterruptedException {
+        if (telemetry == null) return null;
+        TelemetrySampler.Summary summary = telemetry.stop();
+        telemetry = null;
+        return summary;
+    }
+
+    @PluginMethod
+    public void runBatteryStressTest(PluginCall call) {
+        int durationSec = Math.max(30, Math.min(BATTERY_STRESS_MAX_SEC,
+            call.getInt("durationSec", BATTERY_STRESS_DEFAULT_SEC)));
+        String loadLevel = call.getString("loadLevel", "medium");
+        boolean keepScreenOn = call.getBoolean("keepScreenOn", true);
+
+        // none: screen only; low: half the cores at 50%; medium: every core at 60%; high: every core flat out
+        int cores = Runtime.getRuntime().availableProcessors();
+        CpuLoadGenerator load;
+        switch (loadLevel) {
+            case "none":
+                load = new CpuLoadGenerator(0, 0, BATTERY_STRESS_LOAD_PERIOD_MS);
+                break;
+            case "low":
+                load = new CpuLoadGenerator(Math.max(1, cores / 2), 0.5, BATTERY_STRESS_LOAD_PERIOD_MS);
+                break;
+            case "medium":
+                load = new CpuLoadGenerator(cores, 0.6, BATTERY_STRESS_LOAD_PERIOD_MS);
+                break;
+            case "high":
+                load = new CpuLoadGenerator(cores, 1.0, BATTERY_STRESS_LOAD_PERIOD_MS);
+                break;
+            default:
+                call.reject("Unknown load level: " + loadLevel);
+                return;
         }
+
+        long durationMs = durationSec * 1000L;
+        final BatteryStressTest test;
+        synchronized (batteryStressLock) {
+            if (batteryStress != null) {
+                call.reject("A battery stress test is already running");
+                return;
+            }
+            test = new BatteryStressTest(getContext(), (eventName, data) -> notifyListeners(eventName, data),
+                UUID.randomUUID().toString(), durationMs,
+                Math.max(1000, durationMs / BATTERY_STRESS_SAMPLES), load);
+            batteryStress = test;
+        }
+
+        // Runs for minutes, so it gets its own thread instead of holding a lane
+        Thread runner = new Thread(() -> {
+            if (keepScreenOn) {
+                setKeepScreenOn(true);
+            }
+            try {
+                JSObject result = test.run();
+                result.put("loadLevel", loadLevel);
+                result.put("keepScreenOn", keepScreenOn);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error running battery stress test: " + e.getMessage());
+                call.reject("Error running battery stress test: " + e.getMessage());
+            } finally {
+                if (keepScreenOn) {
+                    setKeepScreenOn(false);
+                }
+                synchronized (batteryStressLock) {
+                    batteryStress = null;
+                }
+            }
+        }, "diag-battery-stress");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    @PluginMethod
+    public void stopBatteryStressTest(PluginCall call) {
+        BatteryStressTest test = batteryStress;
+        if (test != null) {
+            // The running call resolves with the samples taken so far
+            test.abort();
+        }
+        JSObject result = new JSObject();
+        result.put("stopped", test != null);
+        if (test != null) {
+            result.put("testId", test.testId());
+        }
+        call.resolve(result);
+    }
+
+    // Screen-on load for the stress test, also keeps the device awake without a wake lock
+    private void setKeepScreenOn(boolean on) {
+        if (getActivity() == null) return;
+        getActivity().runOnUiThread(() -> {
+            if (on) {
+                getActivity().getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+            } else {
+                getActivity().getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void runCpuBenchmark(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                int rounds = Math.max(1, Math.min(20, call.getInt("rounds", CPU_BENCHMARK_ROUNDS)));
+                int memoryMb = Math.max(3, Math.min(256, call.getInt("memoryMb", CPU_BENCHMARK_MEMORY_MB)));
+                CpuBenchmark.Report report = new CpuBenchmark(executor.forkJoin(), memoryMb).run(rounds);
+
+                JSObject scores = new JSObject();
+                for (CpuBenchmark.Score score : report.scores) {
+                    JSObject entry = new JSObject();
+                    entry.put("unit", score.unit);
+                    entry.put("singleThread", score.singleThread);
+                    entry.put("allCores", score.allCores);
+                    entry.put("scaling", score.scaling);
+                    // 64-bit, so hex: JS numbers would lose the low bits
+                    entry.put("checksum", Long.toHexString(score.checksum));
+                    scores.put(score.workload, entry);
+                }
+                JSArray roundScores = new JSArray();
+                for (double round : report.rounds) {
+                    roundScores.put(round);
+                }
+
+                JSObject result = new JSObject();
+                result.put("benchmarkVersion", CpuBenchmark.VERSION);
+                result.put("scores", scores);
+                result.put("singleThreadScore", report.singleThreadScore);
+                result.put("allCoreScore", report.allCoreScore);
+                result.put("threads", report.threads);
+                result.put("cores", Runtime.getRuntime().availableProcessors());
+                // Per-core efficiency of the all-core run, 1.0 = perfect scaling
+                result.put("coreEfficiency", report.allCoreScore / report.singleThreadScore / report.threads);
+                result.put("rounds", roundScores);
+                result.put("throttlePct", report.throttlePct);
+                result.put("throttled", report.throttlePct >= CPU_THROTTLE_THRESHOLD_PCT);
+                result.put("elapsedMs", report.elapsedMs);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error running CPU benchmark: " + e.getMessage());
+                call.reject("Error running CPU benchmark: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void runStorageBenchmark(PluginCall call) {
+        int sizeMb = Math.max(8, Math.min(1024, call.getInt("sizeMb", STORAGE_BENCHMARK_SIZE_MB)));
+        int blockSize = Math.max(StorageBenchmark.RANDOM_BLOCK,
+            Math.min(16 * 1024 * 1024, call.getInt("blockSize", STORAGE_BENCHMARK_BLOCK)));
+        int randomOps = Math.max(100, Math.min(100_000, call.getInt("randomOps", STORAGE_BENCHMARK_RANDOM_OPS)));
+        boolean syncRandomWrites = call.getBoolean("syncRandomWrites", true);
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            // Claimed on the lane, so a call rejected by a full queue never holds the flag
+            if (!storageBenchmarkRunning.compareAndSet(false, true)) {
+                call.reject("A storage benchmark is already running");
+                return;
+            }
+            try {
+                File directory = new File(getContext().getCacheDir(), "storage-benchmark");
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    call.reject("Cannot create benchmark directory");
+                    return;
+                }
+                StorageBenchmark.deleteLeftovers(directory);
+                long sizeBytes = sizeMb * 1024L * 1024L;
+                long available = new StatFs(directory.getPath()).getAvailableBytes();
+                if (available < sizeBytes + STORAGE_BENCHMARK_RESERVE_BYTES) {
+                    call.reject("Not enough free space for a " + sizeMb + " MB storage benchmark");
+                    return;
+                }
+
+                StorageBenchmark.Report report = new StorageBenchmark(directory, sizeBytes, blockSize, randomOps,
+                    STORAGE_BENCHMARK_PHASE_MS, syncRandomWrites).run();
+                JSObject phases = new JSObject();
+                for (StorageBenchmark.Phase phase : report.phases) {
+                    phases.put(phase.name, storagePhaseResult(phase));
+                }
+                JSObject result = new JSObject();
+                result.put("phases", phases);
+                result.put("fileBytes", report.fileBytes);
+                result.put("blockSize", blockSize);
+                result.put("syncRandomWrites", syncRandomWrites);
+                result.put("availableBytes", available);
+                result.put("elapsedMs", report.elapsedMs);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error running storage benchmark: " + e.getMessage());
+                call.reject("Error running storage benchmark: " + e.getMessage());
+            } finally {
+                storageBenchmarkRunning.set(false);
+            }
+        });
+    }
+
+    private JSObject storagePhaseResult(StorageBenchmark.Phase phase) {
+        StorageBenchmark.Latencies latencies = phase.latencies;
+        JSObject latencyUs = new JSObject();
+        latencyUs.put("p50", latencies.percentileNs(50) / 1000);
+        latencyUs.put("p99", latencies.percentileNs(99) / 1000);
+        latencyUs.put("max", latencies.maxNs() / 1000);
+        latencyUs.put("mean", latencies.meanNs() / 1000);
+
+        // Power-of-two buckets, trimmed after the last one in use
+        long[] counts = latencies.histogram();
+        int used = counts.length;
+        while (used > 0 && counts[used - 1] == 0) {
+            used--;
+        }
+        JSArray upperBoundsUs = new JSArray();
+        JSArray histogram = new JSArray();
+        for (int i = 0; i < used; i++) {
+            upperBoundsUs.put(i == StorageBenchmark.HISTOGRAM_BUCKETS - 1 ? JSONObject.NULL : (Object) (2L << i));
+            histogram.put(counts[i]);
+        }
+        latencyUs.put("histogramUpperBounds", upperBoundsUs);
+        latencyUs.put("histogram", histogram);
+
+        JSObject result = new JSObject();
+        result.put("blockSize", phase.blockSize);
+        result.put("bytes", phase.bytes);
+        result.put("operations", phase.operations);
+        result.put("mbPerSecond", phase.mbPerSecond());
+        result.put("iops", phase.iops());
+        result.put("elapsedMs", phase.elapsedNs / 1_000_000);
+        result.put("syncMs", phase.syncNs / 1_000_000);
+        result.put("truncated", phase.truncated);
+        result.put("latencyUs", latencyUs);
+        return result;
+    }
+
+    @PluginMethod
+    public void getSensorsInfo(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(sensorsInfo());
+            } catch (Exception e) {
+                call.reject("Error getting sensors info: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject sensorsInfo() throws Exception {
+        SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
+        JSObject result = new JSObject();
+
+        // GPS
+        JSObject gps = new JSObject();
+        gps.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_LOCATION_GPS));
+        gps.put("name", "GPS");
+        result.put("gps", gps);
+
+        // Accelerometer
+        JSObject accelerometer = new JSObject();
+        accelerometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
+        accelerometer.put("name", "Accelerometro");
+        result.put("accelerometer", accelerometer);
+
+        // Gyroscope
+        JSObject gyroscope = new JSObject();
+        gyroscope.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE) != null);
+        gyroscope.put("name", "Giroscopio");
+        result.put("gyroscope", gyroscope);
+
+        // Magnetometer
+        JSObject magnetometer = new JSObject();
+        magnetometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD) != null);
+        magnetometer.put("name", "Magnetometro");
+        result.put("magnetometer", magnetometer);
+
+        // Proximity
+        JSObject proximity = new JSObject();
+        proximity.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY) != null);
+        proximity.put("name", "Prossimità");
+        result.put("proximity", proximity);
+
+        // Light sensor
+        JSObject lightSensor = new JSObject();
+        lightSensor.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT) != null);
+        lightSensor.put("name", "Sensore Luce");
+        result.put("lightSensor", lightSensor);
+
+        // Barometer
+        JSObject barometer = new JSObject();
+        barometer.put("available", sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE) != null);
+        barometer.put("name", "Barometro");
+        result.put("barometer", barometer);
+
+        // Microphone
+        JSObject microphone = new JSObject();
+        microphone.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_MICROPHONE));
+        microphone.put("name", "Microfono");
+        result.put("microphone", microphone);
+
+        // Camera
+        JSObject camera = new JSObject();
+        camera.put("available", getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY));
+        camera.put("name", "Fotocamera");
+        result.put("camera", camera);
+
+        return result;
     }
 
     @PluginMethod
     public void getBatteryAdvancedInfo(PluginCall call) {
-        try {
-            IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-            Intent batteryStatus = getContext().registerReceiver(null, ifilter);
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(batteryInfo());
+            } catch (Exception e) {
+                call.reject("Error getting battery info: " + e.getMessage());
+            }
+        });
+    }
 
-            JSObject result = new JSObject();
+    private JSObject batteryInfo() throws Exception {
+        IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        Intent batteryStatus = getContext().registerReceiver(null, ifilter);
+
+        JSObject result = new JSObject();
+
+        if (batteryStatus != null) {
+            int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            float batteryPct = level * 100 / (float) scale;
+            result.put("level", batteryPct);
+
+            int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
+                    status == BatteryManager.BATTERY_STATUS_FULL;
+            result.put("isCharging", isCharging);
+
+            int temperature = batteryStatus.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, -1);
+            result.put("temperature", temperature / 10.0); // Convert to Celsius
 
-            if (batteryStatus != null) {
-                int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                float batteryPct = level * 100 / (float) scale;
-                result.put("level", batteryPct);
-
-                int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
-                boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
-                        status == BatteryManager.BATTERY_STATUS_FULL;
-                result.put("isCharging", isCharging);
-
-                int temperature = batteryStatus.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, -1);
-                result.put("temperature", temperature / 10.0); // Convert to Celsius
-
-                int voltage = batteryStatus.getIntExtra(BatteryManager.EXTRA_VOLTAGE, -1);
-                result.put("voltage", voltage);
-
-                String technology = batteryStatus.getStringExtra(BatteryManager.EXTRA_TECHNOLOGY);
-                result.put("technology", technology);
-
-                int health = batteryStatus.getIntExtra(BatteryManager.EXTRA_HEALTH, -1);
-                String healthStr = "unknown";
-                switch (health) {
-                    case BatteryManager.BATTERY_HEALTH_GOOD:
-                        healthStr = "good";
-                        break;
-                    case BatteryManager.BATTERY_HEALTH_OVERHEAT:
-                        healthStr = "overheat";
-                        break;
-                    case BatteryManager.BATTERY_HEALTH_DEAD:
-                        healthStr = "dead";
-                        break;
-                    case BatteryManager.BATTERY_HEALTH_OVER_VOLTAGE:
-                        healthStr = "over_voltage";
-                        break;
-                    case BatteryManager.BATTERY_HEALTH_UNSPECIFIED_FAILURE:
-                        healthStr = "unspecified_failure";
-                        break;
-                    case BatteryManager.BATTERY_HEALTH_COLD:
-                        healthStr = "cold";
-                        break;
-                }
-                result.put("health", healthStr);
-
-                int plugged = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, -1);
-                String pluggedStr = "none";
-                switch (plugged) {
-                    case BatteryManager.BATTERY_PLUGGED_AC:
-                        pluggedStr = "ac";
-                        break;
-                    case BatteryManager.BATTERY_PLUGGED_USB:
-                        pluggedStr = "usb";
-                        break;
-                    case BatteryManager.BATTERY_PLUGGED_WIRELESS:
-                        pluggedStr = "wireless";
-                        break;
-                }
-                result.put("plugged", pluggedStr);
+            int voltage = batteryStatus.getIntExtra(BatteryManager.EXTRA_VOLTAGE, -1);
+            result.put("voltage", voltage);
+
+            String technology = batteryStatus.getStringExtra(BatteryManager.EXTRA_TECHNOLOGY);
+            result.put("technology", technology);
+
+            int health = batteryStatus.getIntExtra(BatteryManager.EXTRA_HEALTH, -1);
+            String healthStr = "unknown";
+            switch (health) {
+                case BatteryManager.BATTERY_HEALTH_GOOD:
+                    healthStr = "good";
+                    break;
+                case BatteryManager.BATTERY_HEALTH_OVERHEAT:
+                    healthStr = "overheat";
+                    break;
+                case BatteryManager.BATTERY_HEALTH_DEAD:
+                    healthStr = "dead";
+                    break;
+                case BatteryManager.BATTERY_HEALTH_OVER_VOLTAGE:
+                    healthStr = "over_voltage";
+                    break;
+                case BatteryManager.BATTERY_HEALTH_UNSPECIFIED_FAILURE:
+                    healthStr = "unspecified_failure";
+                    break;
+                case BatteryManager.BATTERY_HEALTH_COLD:
+                    healthStr = "cold";
+                    break;
             }
+            result.put("health", healthStr);
 
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting battery info: " + e.getMessage());
+            int plugged = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, -1);
+            String pluggedStr = "none";
+            switch (plugged) {
+                case BatteryManager.BATTERY_PLUGGED_AC:
+                    pluggedStr = "ac";
+                    break;
+                case BatteryManager.BATTERY_PLUGGED_USB:
+                    pluggedStr = "usb";
+                    break;
+                case BatteryManager.BATTERY_PLUGGED_WIRELESS:
+                    pluggedStr = "wireless";
+                    break;
+            }
+            result.put("plugged", pluggedStr);
         }
+
+        return result;
     }
 
     @PluginMethod
     public void getInstalledAppsStorage(PluginCall call) {
-        try {
-            PackageManager pm = getContext().getPackageManager();
-            List<ApplicationInfo> apps = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            JSArray appsArray = new JSArray();
-            List<JSObject> appsList = new ArrayList<>();
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                boolean includeIcons = call.getBoolean("includeIcons", false);
+                boolean includeSystem = call.getBoolean("includeSystem", true);
+                int limit = Math.max(0, call.getInt("limit", 50));
+                int offset = Math.max(0, call.getInt("offset", 0));
+                String sortBy = call.getString("sortBy", "total");
+
+                if (call.getBoolean("stream", false)) {
+                    final ScanProgressEmitter emitter = newEmitter(call, "getInstalledAppsStorage");
+                    final boolean withSystem = includeSystem;
+                    PackageScanner.ScanResult scan = scanner.scan(
+                        PackageScanner.FACET_STORAGE | PackageScanner.FACET_LABEL,
+                        app -> emitter.add(withSystem || !app.isSystemApp ? appStorageEntry(app, includeIcons) : null));
+                    JSObject summary = new JSObject();
+                    summary.put("cacheHits", scan.cacheHits);
+                    summary.put("cacheMisses", scan.cacheMisses);
+                    call.resolve(emitter.complete(summary));
+                    return;
+                }
 
-            for (ApplicationInfo appInfo : apps) {
-                try {
-                    JSObject appData = new JSObject();
-                    appData.put("packageName", appInfo.packageName);
-                    
-                    String appName = pm.getApplicationLabel(appInfo).toString();
-                    appData.put("appName", appName);
-                    
-                    boolean isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
-                    appData.put("isSystemApp", isSystemApp);
-
-                    // Get app size
-                    long totalSize = 0;
-                    long appSize = 0;
-                    long dataSize = 0;
-                    long cacheSize = 0;
-
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                        try {
-                            StorageStatsManager storageStatsManager = (StorageStatsManager) 
-                                getContext().getSystemService(Context.STORAGE_STATS_SERVICE);
-                            StorageManager storageManager = (StorageManager) 
-                                getContext().getSystemService(Context.STORAGE_SERVICE);
-                            
-                            UUID storageUuid = storageManager.getUuidForPath(new File(appInfo.sourceDir));
-                            StorageStats storageStats = storageStatsManager.queryStatsForPackage(
-                                storageUuid, appInfo.packageName, android.os.Process.myUserHandle());
-                            
-                            appSize = storageStats.getAppBytes();
-                            dataSize = storageStats.getDataBytes();
-                            cacheSize = storageStats.getCacheBytes();
-                            totalSize = appSize + dataSize;
-                        } catch (Exception e) {
-                            // Fallback to file size
-                            File sourceDir = new File(appInfo.sourceDir);
-                            totalSize = sourceDir.length();
-                            appSize = totalSize;
-                        }
-                    } else {
-                        // For older Android versions
-                        File sourceDir = new File(appInfo.sourceDir);
-                        totalSize = sourceDir.length();
-                        appSize = totalSize;
+                PackageScanner.ScanResult scan = scanner.scan(PackageScanner.FACET_STORAGE);
+                List<PackageScanner.PackageRecord> records = scan.records;
+
+                // Rank on primitive sizes; JSON, labels and icons are built only for the page
+                int count = records.size();
+                long[] keys = new long[count];
+                boolean[] include = includeSystem ? null : new boolean[count];
+                for (int i = 0; i < count; i++) {
+                    PackageScanner.PackageRecord app = records.get(i);
+                    switch (sortBy) {
+                        case "app":
+                            keys[i] = app.appBytes();
+                            break;
+                        case "data":
+                            keys[i] = app.dataBytes();
+                            break;
+                        case "cache":
+                            keys[i] = app.cacheBytes();
+                            break;
+                        default:
+                            keys[i] = app.totalBytes();
+                    }
+                    if (include != null) {
+                        include[i] = !app.isSystemApp;
                     }
+                }
+                int[] page = TopKSelector.select(keys, include, offset, limit);
+                int total = TopKSelector.count(include, count);
+
+                List<PackageScanner.PackageRecord> pageApps = new ArrayList<>(page.length);
+                for (int index : page) {
+                    pageApps.add(records.get(index));
+                }
+                PackageScanner.ScanResult labels = scanner.load(pageApps, PackageScanner.FACET_LABEL);
+
+                JSArray appsArray = new JSArray();
+                for (PackageScanner.PackageRecord app : pageApps) {
+                    appsArray.put(appStorageEntry(app, includeIcons));
+                }
+
+                JSObject result = new JSObject();
+                result.put("apps", appsArray);
+                result.put("total", total);
+                result.put("offset", offset);
+                result.put("limit", limit);
+                result.put("hasMore", offset + page.length < total);
+                result.put("cacheHits", scan.cacheHits + labels.cacheHits);
+                result.put("cacheMisses", scan.cacheMisses + labels.cacheMisses);
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error getting installed apps: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject appStorageEntry(PackageScanner.PackageRecord app, boolean includeIcons) {
+        JSObject appData = new JSObject();
+        appData.put("packageName", app.packageName);
+        appData.put("appName", app.label());
+        appData.put("isSystemApp", app.isSystemApp);
+        appData.put("totalSizeMb", app.totalBytes() / (1024.0 * 1024.0));
+        appData.put("appSizeMb", app.appBytes() / (1024.0 * 1024.0));
+        appData.put("dataSizeMb", app.dataBytes() / (1024.0 * 1024.0));
+        appData.put("cacheSizeMb", app.cacheBytes() / (1024.0 * 1024.0));
+        putIcon(appData, app, includeIcons);
+        return appData;
+    }
 
-                    appData.put("totalSizeMb", totalSize / (1024.0 * 1024.0));
-                    appData.put("appSizeMb", appSize / (1024.0 * 1024.0));
-                    appData.put("dataSizeMb", dataSize / (1024.0 * 1024.0));
-                    appData.put("cacheSizeMb", cacheSize / (1024.0 * 1024.0));
+    // Streaming mode: rows go out as "scanProgress" batches while the scan runs,
+    // and the call resolves with the same summary sent as "scanComplete"
+    private ScanProgressEmitter newEmitter(PluginCall call, String method) {
+        String scanId = call.getString("scanId", UUID.randomUUID().toString());
+        int batchSize = Math.max(1, call.getInt("batchSize", STREAM_BATCH_SIZE));
+        return new ScanProgressEmitter((eventName, data) -> notifyListeners(eventName, data),
+            scanId, method, batchSize, scanner.packageCount());
+    }
+
+    // List methods return only the icon key; icons are fetched for visible rows via getAppIcons
+    private void putIcon(JSObject appData, PackageScanner.PackageRecord app, boolean includeIcons) {
+        String key = AppIconCache.iconKey(app.packageName, app.versionCode, app.lastUpdateTime);
+        appData.put("iconKey", key);
+        if (includeIcons) {
+            String dataUrl = iconCache.get(key, app.appInfo);
+            if (dataUrl != null) {
+                appData.put("iconBase64", dataUrl);
+            }
+        }
+    }
 
-                    // Get app icon as base64 (optional, can be heavy)
+    @PluginMethod
+    public void getAppIcons(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                JSArray packageNames = call.getArray("packageNames", new JSArray());
+                PackageManager pm = getContext().getPackageManager();
+                final JSObject icons = new JSObject();
+                final JSObject iconKeys = new JSObject();
+                final AtomicInteger hits = new AtomicInteger();
+                final AtomicInteger rendered = new AtomicInteger();
+
+                List<Callable<Void>> renders = new ArrayList<>();
+                for (int i = 0; i < packageNames.length(); i++) {
+                    final String packageName = packageNames.optString(i, null);
+                    if (packageName == null || packageName.isEmpty()) continue;
+                    final PackageInfo pkgInfo;
                     try {
-                        Drawable icon = pm.getApplicationIcon(appInfo);
-                        Bitmap bitmap = drawableToBitmap(icon);
-                        if (bitmap != null) {
-                            // Scale down for performance
-                            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, 48, 48, true);
-                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                            scaledBitmap.compress(Bitmap.CompressFormat.PNG, 80, baos);
-                            byte[] byteArray = baos.toByteArray();
-                            String base64 = Base64.encodeToString(byteArray, Base64.NO_WRAP);
-                            appData.put("iconBase64", "data:image/png;base64," + base64);
-                            scaledBitmap.recycle();
-                        }
-                    } catch (Exception e) {
-                        // Icon not available
+                        pkgInfo = pm.getPackageInfo(packageName, 0);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        continue;
                     }
-
-                    appsList.add(appData);
-                } catch (Exception e) {
-                    // Skip this app
+                    long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                        ? pkgInfo.getLongVersionCode() : pkgInfo.versionCode;
+                    final String key = AppIconCache.iconKey(packageName, versionCode, pkgInfo.lastUpdateTime);
+                    iconKeys.put(packageName, key);
+
+                    String cached = iconCache.getCached(key);
+                    if (cached != null) {
+                        icons.put(packageName, cached);
+                        hits.incrementAndGet();
+                        continue;
+                    }
+                    renders.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            String dataUrl = iconCache.renderAndStore(key, pkgInfo.applicationInfo);
+                            if (dataUrl != null) {
+                                synchronized (icons) {
+                                    icons.put(packageName, dataUrl);
+                                }
+                                rendered.incrementAndGet();
+                            }
+                            return null;
+                        }
+                    });
                 }
-            }
 
-            // Sort by size descending
-            Collections.sort(appsList, new Comparator<JSObject>() {
-                @Override
-                public int compare(JSObject a, JSObject b) {
+                // Render misses in parallel on the scan workers
+                for (Future<Void> render : executor.workers().invokeAll(renders)) {
                     try {
-                        double sizeA = a.getDouble("totalSizeMb");
-                        double sizeB = b.getDouble("totalSizeMb");
-                        return Double.compare(sizeB, sizeA);
-                    } catch (Exception e) {
-                        return 0;
+                        render.get();
+                    } catch (ExecutionException e) {
+                        // Icon not available
                     }
                 }
-            });
 
-            // Limit to top 50 apps
-            int limit = Math.min(50, appsList.size());
-            for (int i = 0; i < limit; i++) {
-                appsArray.put(appsList.get(i));
+                JSObject result = new JSObject();
+                result.put("icons", icons);
+                result.put("iconKeys", iconKeys);
+                result.put("cacheHits", hits.get());
+                result.put("rendered", rendered.get());
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error getting app icons: " + e.getMessage());
             }
-
-            JSObject result = new JSObject();
-            result.put("apps", appsArray);
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting installed apps: " + e.getMessage());
-        }
+        });
     }
 
     // Helper method to check if USAGE_STATS permission is granted
@@ -373,17 +1367,19 @@ public class DeviceDiagnosticsPlugin extends Plugin {
 
     @PluginMethod
     public void checkUsageStatsPermission(PluginCall call) {
-        try {
-            boolean granted = hasUsageStatsPermission();
-            JSObject result = new JSObject();
-            result.put("granted", granted);
-            call.resolve(result);
-        } catch (Exception e) {
-            JSObject result = new JSObject();
-            result.put("granted", false);
-            result.put("error", e.getMessage());
-            call.resolve(result);
-        }
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                boolean granted = hasUsageStatsPermission();
+                JSObject result = new JSObject();
+                result.put("granted", granted);
+                call.resolve(result);
+            } catch (Exception e) {
+                JSObject result = new JSObject();
+                result.put("granted", false);
+                result.put("error", e.getMessage());
+                call.resolve(result);
+            }
+        });
     }
 
     @PluginMethod
@@ -441,106 +1437,243 @@ public class DeviceDiagnosticsPlugin extends Plugin {
 
     @PluginMethod
     public void testSensor(PluginCall call) {
-        String sensorType = call.getString("sensorType", "");
-        JSObject result = new JSObject();
-        
-        try {
-            SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
-            boolean working = false;
-            String errorMsg = null;
-            
-            switch (sensorType.toLowerCase()) {
-                case "accelerometer":
-                    Sensor accel = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-                    working = accel != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + accel.getName());
-                    }
-                    break;
-                case "gyroscope":
-                    Sensor gyro = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-                    working = gyro != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + gyro.getName());
-                    }
-                    break;
-                case "magnetometer":
-                    Sensor mag = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
-                    working = mag != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + mag.getName());
-                    }
-                    break;
-                case "proximity":
-                    Sensor prox = sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
-                    working = prox != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + prox.getName());
-                    }
-                    break;
-                case "light":
-                    Sensor light = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
-                    working = light != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + light.getName());
-                    }
-                    break;
-                case "barometer":
-                    Sensor baro = sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
-                    working = baro != null;
-                    if (working) {
-                        result.put("value", "Sensore rilevato: " + baro.getName());
-                    }
-                    break;
-                case "gps":
-                    // Check if GPS hardware exists
-                    boolean hasGpsFeature = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_LOCATION_GPS);
-                    if (!hasGpsFeature) {
-                        working = false;
-                        errorMsg = "Hardware GPS non presente";
-                    } else {
-                        // Check if location is enabled
-                        android.location.LocationManager locationManager = (android.location.LocationManager) 
-                            getContext().getSystemService(Context.LOCATION_SERVICE);
-                        
-                        boolean gpsEnabled = locationManager.isProviderEnabled(android.location.LocationManager.GPS_PROVIDER);
-                        boolean networkEnabled = locationManager.isProviderEnabled(android.location.LocationManager.NETWORK_PROVIDER);
-                        
-                        if (gpsEnabled || networkEnabled) {
-                            working = true;
-                            result.put("value", "GPS " + (gpsEnabled ? "attivo" : "via rete"));
-                        } else {
-                            working = false;
-                            errorMsg = "Localizzazione disattivata nelle impostazioni";
+        // Sampling blocks for the test window, so keep it off the fast lane
+        runOnLane(DiagnosticsExecutor.Lane.PROBE, call, () -> {
+            String sensorType = call.getString("sensorType", "");
+            try {
+                long durationMs = Math.max(50, call.getLong("durationMs", SENSOR_SAMPLE_MS));
+                long timeoutMs = Math.max(durationMs, call.getLong("timeoutMs", SENSOR_TIMEOUT_MS));
+                call.resolve(runSensorTests(new String[] {sensorType}, durationMs, timeoutMs)[0]);
+            } catch (Exception e) {
+                JSObject result = new JSObject();
+                result.put("working", false);
+                result.put("error", e.getMessage());
+                call.resolve(result);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void testSensors(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.PROBE, call, () -> {
+            try {
+                List<String> types = new ArrayList<>();
+                JSArray requested = call.getArray("types", null);
+                if (requested != null) {
+                    for (String type : requested.<String>toList()) {
+                        if (type != null && !type.isEmpty() && !types.contains(type)) {
+                            types.add(type);
                         }
                     }
-                    break;
-                case "microphone":
-                    working = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_MICROPHONE);
-                    if (working) {
-                        result.put("value", "Microfono disponibile");
-                    }
-                    break;
-                case "camera":
-                    working = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
-                    if (working) {
-                        result.put("value", "Fotocamera disponibile");
+                }
+                if (types.isEmpty()) {
+                    Collections.addAll(types, SAMPLED_SENSORS);
+                }
+                long durationMs = Math.max(50, call.getLong("durationMs", SENSOR_SAMPLE_MS));
+                long timeoutMs = Math.max(durationMs, call.getLong("timeoutMs", SENSOR_TIMEOUT_MS));
+
+                long start = SystemClock.elapsedRealtime();
+                JSObject[] tests = runSensorTests(types.toArray(new String[0]), durationMs, timeoutMs);
+                JSObject results = new JSObject();
+                int passed = 0;
+                for (int i = 0; i < tests.length; i++) {
+                    results.put(types.get(i), tests[i]);
+                    if (tests[i].optBoolean("working")) {
+                        passed++;
                     }
-                    break;
-                default:
-                    errorMsg = "Sensore non riconosciuto: " + sensorType;
+                }
+
+                JSObject report = new JSObject();
+                report.put("results", results);
+                report.put("passed", passed);
+                report.put("failed", tests.length - passed);
+                report.put("totalMs", SystemClock.elapsedRealtime() - start);
+                call.resolve(report);
+            } catch (Exception e) {
+                Log.e(TAG, "Error testing sensors: " + e.getMessage());
+                call.reject("Error testing sensors: " + e.getMessage());
             }
-            
-            result.put("working", working);
-            if (errorMsg != null) {
-                result.put("error", errorMsg);
+        });
+    }
+
+    // One result per name, in order. The hardware sensors are sampled together in a single
+    // window on the shared sensor thread; the others are feature and settings checks.
+    private JSObject[] runSensorTests(String[] names, long durationMs, long timeoutMs) throws Exception {
+        SensorManager sensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
+        JSObject[] results = new JSObject[names.length];
+        List<Integer> sampled = new ArrayList<>();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].toLowerCase();
+            int type = sampledSensorType(name);
+            if (type < 0) {
+                results[i] = featureSensorResult(name);
+                continue;
             }
-            call.resolve(result);
-        } catch (Exception e) {
-            result.put("working", false);
-            result.put("error", e.getMessage());
-            call.resolve(result);
+            Sensor sensor = sensorManager.getDefaultSensor(type);
+            if (sensor == null) {
+                results[i] = new JSObject();
+                results[i].put("working", false);
+                results[i].put("error", "Sensore non presente");
+                continue;
+            }
+            sampled.add(i);
+            sensors.add(sensor);
+        }
+
+        if (!sensors.isEmpty()) {
+            Sensor[] batch = sensors.toArray(new Sensor[0]);
+            int[] axes = new int[batch.length];
+            for (int s = 0; s < batch.length; s++) {
+                axes[s] = sensorAxes(batch[s].getType());
+            }
+            List<SensorSampler.Result> samples = sensorSampler.sample(batch, axes, durationMs, timeoutMs);
+            for (int s = 0; s < batch.length; s++) {
+                results[sampled.get(s)] = sensorTestResult(samples.get(s), timeoutMs);
+            }
+        }
+        return results;
+    }
+
+    private JSObject featureSensorResult(String name) {
+        JSObject result = new JSObject();
+        boolean working = false;
+        String errorMsg = null;
+
+        switch (name) {
+            case "gps":
+                // Check if GPS hardware exists
+                boolean hasGpsFeature = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_LOCATION_GPS);
+                if (!hasGpsFeature) {
+                    working = false;
+                    errorMsg = "Hardware GPS non presente";
+                } else {
+                    // Check if location is enabled
+                    android.location.LocationManager locationManager = (android.location.LocationManager) 
+                        getContext().getSystemService(Context.LOCATION_SERVICE);
+                
+                    boolean gpsEnabled = locationManager.isProviderEnabled(android.location.LocationManager.GPS_PROVIDER);
+                    boolean networkEnabled = locationManager.isProviderEnabled(android.location.LocationManager.NETWORK_PROVIDER);
+                
+                    if (gpsEnabled || networkEnabled) {
+                        working = true;
+                        result.put("value", "GPS " + (gpsEnabled ? "attivo" : "via rete"));
+                    } else {
+                        working = false;
+                        errorMsg = "Localizzazione disattivata nelle impostazioni";
+                    }
+                }
+                break;
+            case "microphone":
+                working = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_MICROPHONE);
+                if (working) {
+                    result.put("value", "Microfono disponibile");
+                }
+                break;
+            case "camera":
+                working = getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
+                if (working) {
+                    result.put("value", "Fotocamera disponibile");
+                }
+                break;
+            default:
+                errorMsg = "Sensore non riconosciuto: " + name;
         }
+    
+        result.put("working", working);
+        if (errorMsg != null) {
+            result.put("error", errorMsg);
+        }
+        return result;
+    }
+
+    private static final String[] SAMPLED_SENSORS = {
+        "accelerometer", "gyroscope", "magnetometer", "proximity", "light", "barometer"
+    };
+
+    // Sensors whose liveness is tested by sampling readings; -1 for the others
+    private static int sampledSensorType(String name) {
+        switch (name) {
+            case "accelerometer": return Sensor.TYPE_ACCELEROMETER;
+            case "gyroscope": return Sensor.TYPE_GYROSCOPE;
+            case "magnetometer": return Sensor.TYPE_MAGNETIC_FIELD;
+            case "proximity": return Sensor.TYPE_PROXIMITY;
+            case "light": return Sensor.TYPE_LIGHT;
+            case "barometer": return Sensor.TYPE_PRESSURE;
+            default: return -1;
+        }
+    }
+
+    private static int sensorAxes(int type) {
+        switch (type) {
+            case Sensor.TYPE_ACCELEROMETER:
+            case Sensor.TYPE_GYROSCOPE:
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    // Verdict plus the measured figures. Continuous sensors must stream changing values;
+    // on-change sensors (light, proximity) only need to report once.
+    private JSObject sensorTestResult(SensorSampler.Result sample, long timeoutMs) throws Exception {
+        SensorSampleBuffer.Stats stats = sample.stats;
+        boolean continuous = sample.continuous();
+        String error = null;
+        if (sample.registrationFailed) {
+            error = "Impossibile registrare il sensore";
+        } else if (sample.timedOut) {
+            error = "Nessun dato dal sensore entro " + timeoutMs + " ms";
+        } else if (continuous && stats.samples < 2) {
+            error = "Il sensore ha inviato una sola lettura";
+        } else if (continuous && stats.stuck) {
+            error = "Valori bloccati: il sensore restituisce sempre lo stesso valore";
+        }
+
+        JSObject result = new JSObject();
+        result.put("working", error == null);
+        if (error == null) {
+            result.put("value", continuous
+                ? "Sensore attivo: " + sample.sensor.getName() + " (" + Math.round(stats.rateHz) + " Hz)"
+                : "Sensore attivo: " + sample.sensor.getName());
+        } else {
+            result.put("error", error);
+        }
+
+        JSObject details = new JSObject();
+        details.put("sensorName", sample.sensor.getName());
+        details.put("vendor", sample.sensor.getVendor());
+        details.put("reportingMode", continuous ? "continuous" : "onChange");
+        details.put("durationMs", sample.elapsedMs);
+        details.put("samples", stats.received);
+        details.put("rateHz", stats.rateHz);
+        details.put("expectedRateHz", sample.expectedRateHz());
+        details.put("meanIntervalMs", stats.meanIntervalMs);
+        details.put("jitterMs", stats.jitterMs);
+        details.put("maxGapMs", stats.maxGapMs);
+        details.put("overwritten", stats.overwritten);
+        JSArray mean = new JSArray();
+        JSArray variance = new JSArray();
+        JSArray stddev = new JSArray();
+        JSArray min = new JSArray();
+        JSArray max = new JSArray();
+        for (int a = 0; a < stats.mean.length; a++) {
+            mean.put(stats.mean[a]);
+            variance.put(stats.variance[a]);
+            stddev.put(stats.stddev[a]);
+            min.put(stats.min[a]);
+            max.put(stats.max[a]);
+        }
+        details.put("mean", mean);
+        details.put("variance", variance);
+        details.put("stddev", stddev);
+        details.put("min", min);
+        details.put("max", max);
+        details.put("stuck", stats.stuck);
+        details.put("timedOut", sample.timedOut);
+        result.put("details", details);
+        return result;
     }
 
     @PluginMethod
@@ -576,85 +1709,195 @@ public class DeviceDiagnosticsPlugin extends Plugin {
         }
     }
 
+    // Answered from the usage history store, which is first brought up to date
+    // from the usage events since its last checkpoint, so a call only reads the
+    // events of the time since the previous one whatever the range.
     @PluginMethod
     public void getAppUsageStats(PluginCall call) {
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
-                UsageStatsManager usageStatsManager = (UsageStatsManager) 
-                    getContext().getSystemService(Context.USAGE_STATS_SERVICE);
-                
-                // Get stats for the last 7 days for more accurate recent data
-                long endTime = System.currentTimeMillis();
-                long startTime = endTime - (7L * 24 * 60 * 60 * 1000);
-                
-                List<UsageStats> usageStatsList = usageStatsManager.queryUsageStats(
-                    UsageStatsManager.INTERVAL_DAILY, startTime, endTime);
-                
-                // Aggregate stats by package (since we're querying daily)
-                Map<String, long[]> aggregatedStats = new HashMap<>();
-                
-                if (usageStatsList != null) {
-                    for (UsageStats usageStats : usageStatsList) {
-                        String pkg = usageStats.getPackageName();
-                        long timeMs = usageStats.getTotalTimeInForeground();
-                        long lastUsed = usageStats.getLastTimeUsed();
-                        
-                        if (aggregatedStats.containsKey(pkg)) {
-                            long[] existing = aggregatedStats.get(pkg);
-                            existing[0] += timeMs; // Add time
-                            existing[1] = Math.max(existing[1], lastUsed); // Keep latest
-                        } else {
-                            aggregatedStats.put(pkg, new long[]{timeMs, lastUsed});
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
+                    UsageStatsManager usageStatsManager = (UsageStatsManager) 
+                        getContext().getSystemService(Context.USAGE_STATS_SERVICE);
+                    int days = Math.max(1, Math.min(call.getInt("days", USAGE_DEFAULT_DAYS), USAGE_HISTORY_MAX_DAYS));
+                    int limit = Math.max(0, call.getInt("limit", 0));
+                    boolean daily = call.getBoolean("daily", false);
+                    boolean hasPermission = hasUsageStatsPermission();
+                    TimeZone zone = TimeZone.getDefault();
+                    long now = System.currentTimeMillis();
+
+                    // Without access the system returns no events, which must not advance the
+                    // checkpoint; whatever was stored before is still reported
+                    JSObject history = hasPermission
+                        ? updateUsageHistory(usageStatsManager, zone, now) : new JSObject();
+                    int toDay = UsageHistoryStore.dayOf(now, zone);
+                    int fromDay = toDay - days + 1;
+                    UsageHistoryStore.Totals totals = usageHistory.query(fromDay, toDay, daily);
+                    Integer firstDay = usageHistory.firstDay();
+                    history.put("checkpoint", usageHistory.checkpoint());
+                    history.put("firstDate", firstDay != null ? usageDate(firstDay) : JSONObject.NULL);
+
+                    int total = totals.packages.length;
+                    int[] ranked = TopKSelector.select(totals.foregroundMs, null, 0, limit > 0 ? limit : total);
+                    JSArray statsArray = new JSArray();
+                    for (int i : ranked) {
+                        JSObject stat = new JSObject();
+                        stat.put("packageName", totals.packages[i]);
+                        stat.put("totalTimeMs", totals.foregroundMs[i]);
+                        stat.put("totalTimeMinutes", totals.foregroundMs[i] / (1000 * 60));
+                        stat.put("lastTimeUsed", totals.lastUsed[i]);
+                        if (daily) {
+                            JSArray dailyMs = new JSArray();
+                            for (long ms : totals.daily[i]) {
+                                dailyMs.put(ms);
+                            }
+                            stat.put("dailyMs", dailyMs);
+                        }
+                        statsArray.put(stat);
+                    }
+
+                    JSObject result = new JSObject();
+                    result.put("stats", statsArray);
+                    result.put("hasPermission", hasPermission);
+                    result.put("count", statsArray.length());
+                    result.put("totalPackages", total);
+                    result.put("days", days);
+                    result.put("fromDate", usageDate(fromDay));
+                    result.put("toDate", usageDate(toDay));
+                    if (daily) {
+                        JSArray dates = new JSArray();
+                        JSArray dailyTotalMs = new JSArray();
+                        for (int d = 0; d < days; d++) {
+                            long dayTotal = 0;
+                            for (long[] packageDays : totals.daily) {
+                                dayTotal += packageDays[d];
+                            }
+                            dates.put(usageDate(fromDay + d));
+                            dailyTotalMs.put(dayTotal);
                         }
+                        result.put("dates", dates);
+                        result.put("dailyTotalMs", dailyTotalMs);
                     }
+                    result.put("history", history);
+                    call.resolve(result);
+                } else {
+                    JSObject result = new JSObject();
+                    result.put("stats", new JSArray());
+                    result.put("hasPermission", false);
+                    result.put("error", "API level too low");
+                    call.resolve(result);
                 }
-                
-                JSArray statsArray = new JSArray();
-                
-                for (Map.Entry<String, long[]> entry : aggregatedStats.entrySet()) {
-                    long[] values = entry.getValue();
-                    JSObject stat = new JSObject();
-                    stat.put("packageName", entry.getKey());
-                    stat.put("totalTimeMs", values[0]);
-                    stat.put("totalTimeMinutes", values[0] / (1000 * 60));
-                    stat.put("lastTimeUsed", values[1]);
-                    statsArray.put(stat);
+            } catch (Exception e) {
+                call.reject("Error getting usage stats: " + e.getMessage());
+            }
+        });
+    }
+
+    // Ingests the usage events since the store's checkpoint. Whole days the event
+    // log no longer covers (first run, or a long gap since the last call) are
+    // filled from the system's daily aggregates first.
+    private JSObject updateUsageHistory(UsageStatsManager usageStatsManager, TimeZone zone, long now) {
+        // One ingest at a time, or two callers would count the same events twice
+        synchronized (usageHistory) {
+            long start = SystemClock.elapsedRealtime();
+            int today = UsageHistoryStore.dayOf(now, zone);
+            int retainFromDay = today - USAGE_HISTORY_MAX_DAYS + 1;
+            long checkpoint = usageHistory.checkpoint();
+            long eventsFrom = Math.max(checkpoint, UsageHistoryStore.startOfDay(today - USAGE_EVENT_DAYS, zone));
+            JSObject history = new JSObject();
+            history.put("eventsFrom", eventsFrom);
+            try {
+                if (checkpoint < eventsFrom) {
+                    // A partially ingested checkpoint day is left as it is
+                    int firstDay = checkpoint == 0 ? retainFromDay : UsageHistoryStore.dayOf(checkpoint, zone) + 1;
+                    int eventsDay = UsageHistoryStore.dayOf(eventsFrom, zone);
+                    UsageHistoryStore.Batch backfill = new UsageHistoryStore.Batch();
+                    Set<Integer> filled = new HashSet<>();
+                    List<UsageStats> buckets = firstDay < eventsDay
+                        ? usageStatsManager.queryUsageStats(UsageStatsManager.INTERVAL_DAILY,
+                            UsageHistoryStore.startOfDay(firstDay, zone), eventsFrom)
+                        : null;
+                    if (buckets != null) {
+                        for (UsageStats stats : buckets) {
+                            // Older periods may only survive as weekly or longer buckets, which cannot be split by day
+                            long span = stats.getLastTimeStamp() - stats.getFirstTimeStamp();
+                            if (span > UsageHistoryStore.DAY_MS + 60 * 60 * 1000) continue;
+                            int day = UsageHistoryStore.dayOf(stats.getFirstTimeStamp() + span / 2, zone);
+                            if (day < firstDay || day >= eventsDay || stats.getTotalTimeInForeground() <= 0) continue;
+                            backfill.max(day, stats.getPackageName(), stats.getTotalTimeInForeground(),
+                                stats.getLastTimeUsed());
+                            filled.add(day);
+                        }
+                    }
+                    history.put("backfilledDays", filled.size());
+                    // What was in the foreground at eventsFrom is unknown
+                    usageHistory.commit(backfill, eventsFrom, Collections.<String, Set<String>>emptyMap(),
+                        retainFromDay);
                 }
-                
-                JSObject result = new JSObject();
-                result.put("stats", statsArray);
-                result.put("hasPermission", usageStatsList != null && !usageStatsList.isEmpty());
-                result.put("count", statsArray.length());
-                call.resolve(result);
-            } else {
-                JSObject result = new JSObject();
-                result.put("stats", new JSArray());
-                result.put("hasPermission", false);
-                result.put("error", "API level too low");
-                call.resolve(result);
+
+                UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+                UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, zone, eventsFrom,
+                    usageHistory.openAtCheckpoint());
+                UsageEvents events = usageStatsManager.queryEvents(eventsFrom, now);
+                UsageEvents.Event event = new UsageEvents.Event();
+                int eventsRead = 0;
+                while (events != null && events.hasNextEvent()) {
+                    events.getNextEvent(event);
+                    eventsRead++;
+                    // ACTIVITY_RESUMED / ACTIVITY_PAUSED on Android 10+ share these values
+                    switch (event.getEventType()) {
+                        case UsageEvents.Event.MOVE_TO_FOREGROUND:
+                            sessions.foreground(event.getPackageName(), event.getClassName(), event.getTimeStamp());
+                            break;
+                        case UsageEvents.Event.MOVE_TO_BACKGROUND:
+                            sessions.background(event.getPackageName(), event.getClassName(), event.getTimeStamp());
+                            break;
+                        case UsageEvents.Event.DEVICE_SHUTDOWN:
+                            sessions.closeAll(event.getTimeStamp());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                Map<String, Set<String>> open = sessions.finish(now);
+                history.put("eventsRead", eventsRead);
+                usageHistory.commit(batch, now, open, retainFromDay);
+            } catch (IOException e) {
+                // The store keeps the update in memory; the next process re-ingests
+                // from the checkpoint that made it to disk
+                history.put("error", e.getMessage());
             }
-        } catch (Exception e) {
-            call.reject("Error getting usage stats: " + e.getMessage());
+            history.put("updateMs", SystemClock.elapsedRealtime() - start);
+            return history;
         }
     }
 
+    // Local epoch day as yyyy-MM-dd
+    private static String usageDate(int day) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(day * UsageHistoryStore.DAY_MS));
+    }
+
     @PluginMethod
     public void getAppVersion(PluginCall call) {
-        try {
-            PackageInfo pInfo = getContext().getPackageManager().getPackageInfo(
-                getContext().getPackageName(), 0);
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                PackageInfo pInfo = getContext().getPackageManager().getPackageInfo(
+                    getContext().getPackageName(), 0);
             
-            JSObject result = new JSObject();
-            result.put("versionName", pInfo.versionName);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                result.put("versionCode", pInfo.getLongVersionCode());
-            } else {
-                result.put("versionCode", pInfo.versionCode);
+                JSObject result = new JSObject();
+                result.put("versionName", pInfo.versionName);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                    result.put("versionCode", pInfo.getLongVersionCode());
+                } else {
+                    result.put("versionCode", pInfo.versionCode);
+                }
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error getting app version: " + e.getMessage());
             }
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting app version: " + e.getMessage());
-        }
+        });
     }
 
     @PluginMethod
@@ -773,277 +2016,605 @@ public class DeviceDiagnosticsPlugin extends Plugin {
         }
     }
 
-    // ==================== SECURITY & INTEGRITY METHODS ====================
+    @PluginMethod
+    public void scanInstalledApks(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                boolean includeSystem = call.getBoolean("includeSystem", false);
+                long start = SystemClock.elapsedRealtime();
+                final ApkThreatDefinitions.Definitions definitions = apkThreats.current();
+                final ApkScanTotals totals = new ApkScanTotals();
+                // APKs of every installed package, skipped ones included, for pruning the cache
+                final Set<String> livePaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                final JSArray threats = new JSArray();
+
+                // Each record is hashed on the worker that visits it, so APKs hash in parallel
+                final ScanProgressEmitter emitter = call.getBoolean("stream", false)
+                    ? newEmitter(call, "scanInstalledApks") : null;
+                final List<JSObject> apps = emitter == null
+                    ? Collections.synchronizedList(new ArrayList<JSObject>()) : null;
+                scanner.scan(PackageScanner.FACET_LABEL, app -> {
+                    List<String> paths = apkPaths(app);
+                    livePaths.addAll(paths);
+                    JSObject entry = null;
+                    if (includeSystem || !app.isSystemApp) {
+                        entry = apkScanEntry(app, paths, definitions.index, totals);
+                        if (entry.has("threat") && !entry.isNull("threat")) {
+                            synchronized (threats) {
+                                threats.put(entry);
+                            }
+                        }
+                    }
+                    if (emitter != null) {
+                        emitter.add(entry);
+                    } else if (entry != null) {
+                        apps.add(entry);
+                    }
+                });
+
+                // Forget APKs that were removed or replaced by an update
+                apkHashes.retainOnly(livePaths);
+                try {
+                    apkHashes.flush();
+                } catch (IOException e) {
+                    // Cache is an optimisation only; the next scan rehashes
+                }
+
+                long elapsedMs = SystemClock.elapsedRealtime() - start;
+                JSObject summary = new JSObject();
+                summary.put("appsScanned", totals.apps.get());
+                summary.put("filesScanned", totals.files.get());
+                summary.put("filesHashed", totals.hashed.get());
+                summary.put("filesCached", totals.cached.get());
+                summary.put("filesFailed", totals.failed.get());
+                summary.put("bytesHashed", totals.bytesHashed.get());
+                summary.put("hashMbPerSecond", totals.hashNs.get() > 0
+                    ? totals.bytesHashed.get() / (1024.0 * 1024.0) * 1e9 / totals.hashNs.get() : 0);
+                summary.put("threatsFound", threats.length());
+                summary.put("threats", threats);
+                summary.put("definitionsVersion", definitions.version);
+                summary.put("definitionsHashes", definitions.index.size());
+                summary.put("elapsedMs", elapsedMs);
+                if (emitter != null) {
+                    call.resolve(emitter.complete(summary));
+                    return;
+                }
+                JSArray appsArray = new JSArray();
+                for (JSObject entry : apps) {
+                    appsArray.put(entry);
+                }
+                summary.put("apps", appsArray);
+                call.resolve(summary);
+            } catch (Exception e) {
+                Log.e(TAG, "Error scanning installed APKs: " + e.getMessage());
+                call.reject("Error scanning installed APKs: " + e.getMessage());
+            }
+        });
+    }
+
+    private static final class ApkScanTotals {
+        final AtomicInteger apps = new AtomicInteger();
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger hashed = new AtomicInteger();
+        final AtomicInteger cached = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong bytesHashed = new AtomicLong();
+        // Summed across workers, so hashMbPerSecond is per-thread throughput
+        final AtomicLong hashNs = new AtomicLong();
+    }
+
+    // Base APK plus split APKs
+    private static List<String> apkPaths(PackageScanner.PackageRecord app) {
+        List<String> paths = new ArrayList<>();
+        if (app.appInfo.sourceDir != null) {
+            paths.add(app.appInfo.sourceDir);
+        }
+        if (app.appInfo.splitSourceDirs != null) {
+            paths.addAll(Arrays.asList(app.appInfo.splitSourceDirs));
+        }
+        return paths;
+    }
+
+    // Each APK is hashed unless the cache has it with the same size and mtime
+    private JSObject apkScanEntry(PackageScanner.PackageRecord app, List<String> paths, HashIndex threats,
+                                  ApkScanTotals totals) {
+        JSObject entry = new JSObject();
+        entry.put("packageName", app.packageName);
+        entry.put("appName", app.label());
+        entry.put("isSystemApp", app.isSystemApp);
+        entry.put("versionCode", app.versionCode);
+        JSArray files = new JSArray();
+        Object threat = JSONObject.NULL;
+        for (String path : paths) {
+            totals.files.incrementAndGet();
+            File apk = new File(path);
+            long size = apk.length();
+            long lastModified = apk.lastModified();
+            JSObject file = new JSObject();
+            file.put("path", path);
+            file.put("sizeBytes", size);
+            byte[] digest = apkHashes.get(path, lastModified, size);
+            file.put("cached", digest != null);
+            if (digest == null) {
+                try {
+                    long t0 = System.nanoTime();
+                    digest = ApkHasher.sha256(apk);
+                    totals.hashNs.addAndGet(System.nanoTime() - t0);
+                    totals.hashed.incrementAndGet();
+                    totals.bytesHashed.addAndGet(size);
+                    apkHashes.put(new ApkHashCache.Entry(path, lastModified, size, digest));
+                } catch (IOException | SecurityException e) {
+                    totals.failed.incrementAndGet();
+                    file.put("error", e.getMessage());
+                    files.put(file);
+                    continue;
+                }
+            } else {
+                totals.cached.incrementAndGet();
+            }
+            String sha256 = ApkHasher.hex(digest);
+            file.put("sha256", sha256);
+            files.put(file);
+
+            int label = threats.lookup(digest);
+            if (label >= 0 && threat == JSONObject.NULL) {
+                JSObject match = new JSObject();
+                match.put("name", threats.name(label));
+                match.put("category", threats.category(label));
+                match.put("sha256", sha256);
+                match.put("path", path);
+                threat = match;
+            }
+        }
+        totals.apps.incrementAndGet();
+        entry.put("files", files);
+        entry.put("threat", threat);
+        return entry;
+    }
+
+    @PluginMethod
+    public void updateApkThreatDefinitions(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                JSObject definitions = call.getObject("definitions");
+                if (definitions == null) {
+                    call.reject("definitions is required");
+                    return;
+                }
+                int previousVersion = apkThreats.current().version;
+                boolean applied = apkThreats.update(definitions.toString(), call.getBoolean("force", false));
+                ApkThreatDefinitions.Definitions current = apkThreats.current();
+                JSObject result = new JSObject();
+                result.put("applied", applied);
+                result.put("previousVersion", previousVersion);
+                result.put("version", current.version);
+                result.put("hashes", current.index.size());
+                call.resolve(result);
+            } catch (JSONException e) {
+                call.reject("Invalid APK threat definitions: " + e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating APK threat definitions: " + e.getMessage());
+                call.reject("Error updating APK threat definitions: " + e.getMessage());
+            }
+        });
+    }
+
+    // ==================== SECURITY & INTEGRITY METHODS ====================
+
+    @PluginMethod
+    public void getSecurityStatus(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(securityStatus(new DiagnosticsSession()));
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting security status: " + e.getMessage());
+                call.reject("Error getting security status: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject securityStatus(DiagnosticsSession session) throws Exception {
+        SecurityProbes.Snapshot probes = securityProbes.snapshot();
+        JSObject result = new JSObject();
+    
+        // Root detection
+        boolean isRooted = probes.isRooted();
+        result.put("isRooted", isRooted);
+        result.put("rootMethod", probes.rootMethod());
+        result.put("rootSignatures", rootSignatureReport(probes.signatures));
+    
+        // Bootloader status
+        String bootState = probes.property(SecurityProbes.PROP_VERIFIED_BOOT_STATE);
+        String flashLocked = probes.property(SecurityProbes.PROP_FLASH_LOCKED);
+        boolean isBootloaderUnlocked = "orange".equals(bootState) || "1".equals(flashLocked) == false;
+        result.put("isBootloaderUnlocked", isBootloaderUnlocked);
+        result.put("verifiedBootState", bootState != null ? bootState : "unknown");
+    
+        // Developer options
+        int devOptions = Settings.Global.getInt(
+            getContext().getContentResolver(),
+            Settings.Global.DEVELOPMENT_SETTINGS_ENABLED, 0);
+        result.put("isDeveloperOptionsEnabled", devOptions == 1);
+    
+        // USB Debugging
+        int adbEnabled = Settings.Global.getInt(
+            getContext().getContentResolver(),
+            Settings.Global.ADB_ENABLED, 0);
+        result.put("isUsbDebuggingEnabled", adbEnabled == 1);
+    
+        // Build tags
+        String buildTags = Build.TAGS;
+        result.put("buildTags", buildTags != null ? buildTags : "unknown");
+        result.put("isTestBuild", buildTags != null && buildTags.contains("test-keys"));
+    
+        // Security patch level
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            result.put("securityPatchLevel", Build.VERSION.SECURITY_PATCH);
+        } else {
+            result.put("securityPatchLevel", "unknown");
+        }
+    
+        return result;
+    }
+
+    private JSObject rootSignatureReport(RootSignatures.Report report) {
+        JSArray matched = new JSArray();
+        for (RootSignatures.Match match : report.matches) {
+            JSArray indicators = new JSArray();
+            for (String indicator : match.indicators) {
+                indicators.put(indicator);
+            }
+            JSObject entry = new JSObject();
+            entry.put("id", match.signature.id);
+            entry.put("category", match.signature.category);
+            entry.put("method", match.signature.method != null ? match.signature.method : JSONObject.NULL);
+            entry.put("indicators", indicators);
+            entry.put("probeUs", match.probeNs / 1000);
+            matched.put(entry);
+        }
+        JSObject result = new JSObject();
+        result.put("version", report.definitionsVersion);
+        result.put("source", report.definitionsSource);
+        result.put("signatures", report.signatures);
+        result.put("matched", matched);
+        result.put("paths", report.paths);
+        result.put("packages", report.packages);
+        result.put("properties", report.properties);
+        result.put("mountRules", report.mountRules);
+        result.put("packageSetUsed", report.packageSetUsed);
+        result.put("elapsedUs", report.elapsedNs / 1000);
+        return result;
+    }
+
+    @PluginMethod
+    public void updateRootSignatures(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                JSObject definitions = call.getObject("definitions");
+                if (definitions == null) {
+                    call.reject("definitions is required");
+                    return;
+                }
+                int previousVersion = securityProbes.definitions().version;
+                boolean applied = securityProbes.updateDefinitions(definitions.toString(),
+                    call.getBoolean("force", false));
+                RootSignatures.Definitions current = securityProbes.definitions();
+                JSObject result = new JSObject();
+                result.put("applied", applied);
+                result.put("previousVersion", previousVersion);
+                result.put("version", current.version);
+                result.put("source", current.source);
+                result.put("signatures", current.signatures.size());
+                call.resolve(result);
+            } catch (JSONException e) {
+                call.reject("Invalid root signature definitions: " + e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating root signatures: " + e.getMessage());
+                call.reject("Error updating root signatures: " + e.getMessage());
+            }
+        });
+    }
+
+    // The mount table is read once per diagnostics session
+    private MountTable mounts(DiagnosticsSession session) throws Exception {
+        return session.get("mounts", () -> MountTable.read("/proc/mounts"));
+    }
 
     @PluginMethod
-    public void getSecurityStatus(PluginCall call) {
-        try {
-            JSObject result = new JSObject();
-            
-            // Root detection
-            boolean isRooted = checkRootStatus();
-            result.put("isRooted", isRooted);
-            result.put("rootMethod", detectRootMethod());
-            
-            // Bootloader status
-            String bootState = getSystemProperty("ro.boot.verifiedbootstate");
-            String flashLocked = getSystemProperty("ro.boot.flash.locked");
-            boolean isBootloaderUnlocked = "orange".equals(bootState) || "1".equals(flashLocked) == false;
-            result.put("isBootloaderUnlocked", isBootloaderUnlocked);
-            result.put("verifiedBootState", bootState != null ? bootState : "unknown");
-            
-            // Developer options
-            int devOptions = Settings.Global.getInt(
-                getContext().getContentResolver(),
-                Settings.Global.DEVELOPMENT_SETTINGS_ENABLED, 0);
-            result.put("isDeveloperOptionsEnabled", devOptions == 1);
-            
-            // USB Debugging
-            int adbEnabled = Settings.Global.getInt(
-                getContext().getContentResolver(),
-                Settings.Global.ADB_ENABLED, 0);
-            result.put("isUsbDebuggingEnabled", adbEnabled == 1);
+    public void getDangerousPermissions(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                boolean includeIcons = call.getBoolean("includeIcons", false);
+                final GrantedPermissions matcher = new GrantedPermissions(permissionClassifier(call));
+
+                if (call.getBoolean("stream", false)) {
+                    final ScanProgressEmitter emitter = newEmitter(call, "getDangerousPermissions");
+                    PackageScanner.ScanResult scan = scanner.scan(PackageScanner.FACET_LABEL,
+                        app -> emitter.add(dangerousPermissionEntry(app, includeIcons, matcher)));
+                    permissionIndex(scan.records);
+                    JSObject summary = new JSObject();
+                    summary.put("totalApps", emitter.emitted());
+                    summary.put("watchedPermissions", matcher.classifier.size());
+                    summary.put("uniqueMasks", matcher.uniqueMasks());
+                    summary.put("cacheHits", scan.cacheHits);
+                    summary.put("cacheMisses", scan.cacheMisses);
+                    call.resolve(emitter.complete(summary));
+                    return;
+                }
+
+                JSArray appsArray = new JSArray();
+                PackageScanner.ScanResult scan = scanner.scan(PackageScanner.FACET_LABEL);
             
-            // Build tags
-            String buildTags = Build.TAGS;
-            result.put("buildTags", buildTags != null ? buildTags : "unknown");
-            result.put("isTestBuild", buildTags != null && buildTags.contains("test-keys"));
+                // Requested permissions come with the package list, so no per-app getPackageInfo
+                for (PackageScanner.PackageRecord app : scan.records) {
+                    JSObject appData = dangerousPermissionEntry(app, includeIcons, matcher);
+                    if (appData != null) {
+                        appsArray.put(appData);
+                    }
+                }
+                permissionIndex(scan.records);
             
-            // Security patch level
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                result.put("securityPatchLevel", Build.VERSION.SECURITY_PATCH);
-            } else {
-                result.put("securityPatchLevel", "unknown");
+                JSObject result = new JSObject();
+                result.put("apps", appsArray);
+                result.put("totalApps", appsArray.length());
+                result.put("watchedPermissions", matcher.classifier.size());
+                result.put("uniqueMasks", matcher.uniqueMasks());
+                result.put("cacheHits", scan.cacheHits);
+                result.put("cacheMisses", scan.cacheMisses);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting dangerous permissions: " + e.getMessage());
+                call.reject("Error getting dangerous permissions: " + e.getMessage());
             }
-            
-            call.resolve(result);
+        });
+    }
+
+    // Returns null when the app holds none of the watched permissions
+    private JSObject dangerousPermissionEntry(PackageScanner.PackageRecord app, boolean includeIcons,
+                                              GrantedPermissions matcher) {
+        try {
+            PermissionClassifier.Mask mask = matcher.classifier.classify(
+                app.requestedPermissions, app.requestedPermissionsFlags);
+            if (mask.isEmpty()) return null;
+
+            JSObject appData = new JSObject();
+            appData.put("packageName", app.packageName);
+            appData.put("appName", app.label());
+            appData.put("permissions", matcher.encode(mask));
+            appData.put("permissionCount", mask.bitCount());
+            appData.put("isSystemApp", app.isSystemApp);
+            putIcon(appData, app, includeIcons);
+            return appData;
         } catch (Exception e) {
-            Log.e(TAG, "Error getting security status: " + e.getMessage());
-            call.reject("Error getting security status: " + e.getMessage());
-        }
-    }
-
-    private boolean checkRootStatus() {
-        // Check for common root indicators
-        String[] rootPaths = {
-            "/system/app/Superuser.apk",
-            "/sbin/su",
-            "/system/bin/su",
-            "/system/xbin/su",
-            "/data/local/xbin/su",
-            "/data/local/bin/su",
-            "/system/sd/xbin/su",
-            "/system/bin/failsafe/su",
-            "/data/local/su",
-            "/su/bin/su",
-            "/system/app/SuperSU.apk",
-            "/system/app/SuperSU/SuperSU.apk",
-            "/system/etc/init.d/99SuperSUDaemon",
-            "/dev/com.koushikdutta.superuser.daemon/",
-            "/system/xbin/daemonsu"
-        };
-        
-        for (String path : rootPaths) {
-            if (new File(path).exists()) {
-                return true;
-            }
+            // Skip this app
+            return null;
         }
-        
-        // Check for Magisk
-        String[] magiskPaths = {
-            "/sbin/.magisk",
-            "/cache/.disable_magisk",
-            "/dev/.magisk.unblock",
-            "/data/adb/magisk",
-            "/data/adb/magisk.img",
-            "/data/adb/magisk.db"
-        };
-        
-        for (String path : magiskPaths) {
-            if (new File(path).exists()) {
-                return true;
-            }
+    }
+
+    // Watch list for one call: the "permissions" option (full or short names), the
+    // platform's dangerous permissions with permissionSet "platform", else the default list
+    private PermissionClassifier permissionClassifier(PluginCall call) throws Exception {
+        List<String> watched = permissionNames(call.getArray("permissions", null));
+        if (!watched.isEmpty()) {
+            return new PermissionClassifier(watched, PackageInfo.REQUESTED_PERMISSION_GRANTED);
         }
-        
-        // Check for root packages
+        if ("platform".equals(call.getString("permissionSet", "default"))) {
+            return platformPermissionClassifier();
+        }
+        return DANGEROUS_PERMISSION_CLASSIFIER;
+    }
+
+    // Every permission requested by an installed app whose protection level is dangerous,
+    // resolved once per package snapshot (one getPermissionInfo per distinct permission)
+    private PermissionClassifier platformPermissionClassifier() {
+        PermissionClassifier classifier = platformPermissions;
+        if (classifier != null) return classifier;
+
         PackageManager pm = getContext().getPackageManager();
-        String[] rootPackages = {
-            "com.noshufou.android.su",
-            "com.thirdparty.superuser",
-            "eu.chainfire.supersu",
-            "com.koushikdutta.superuser",
-            "com.zachspong.temprootremovejb",
-            "com.ramdroid.appquarantine",
-            "com.topjohnwu.magisk"
-        };
-        
-        for (String pkg : rootPackages) {
+        Set<String> candidates = new HashSet<>();
+        for (PackageScanner.PackageRecord app : scanner.installed()) {
+            if (app.requestedPermissions != null) {
+                Collections.addAll(candidates, app.requestedPermissions);
+            }
+        }
+        List<String> dangerous = new ArrayList<>();
+        for (String permission : candidates) {
             try {
-                pm.getPackageInfo(pkg, 0);
-                return true;
+                PermissionInfo info = pm.getPermissionInfo(permission, 0);
+                int protection = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? info.getProtection()
+                    : info.protectionLevel & PermissionInfo.PROTECTION_MASK_BASE;
+                if (protection == PermissionInfo.PROTECTION_DANGEROUS) {
+                    dangerous.add(permission);
+                }
             } catch (PackageManager.NameNotFoundException e) {
-                // Package not found, continue
+                // Requested but not declared by anything installed
             }
         }
-        
-        return false;
+        // Stable bit order, so masks and the returned names are ordered by permission name
+        Collections.sort(dangerous);
+        classifier = new PermissionClassifier(dangerous, PackageInfo.REQUESTED_PERMISSION_GRANTED);
+        platformPermissions = classifier;
+        return classifier;
+    }
+
+    @PluginMethod
+    public void queryPermissionIndex(PluginCall call) {
+        // Queries against a built index are pure bitmap work; fetching the package list or
+        // rebuilding the index is not, so only an index of the still-fresh snapshot runs on FAST
+        final List<PackageScanner.PackageRecord> indexed = indexedFreshSnapshot();
+        DiagnosticsExecutor.Lane lane = indexed != null
+            ? DiagnosticsExecutor.Lane.FAST : DiagnosticsExecutor.Lane.HEAVY;
+        runOnLane(lane, call, () -> {
+            try {
+                List<String> allOf = permissionNames(call.getArray("allOf", null));
+                List<String> anyOf = permissionNames(call.getArray("anyOf", null));
+                List<String> noneOf = permissionNames(call.getArray("noneOf", null));
+                boolean includeSystem = call.getBoolean("includeSystem", true);
+
+                // On FAST, stay on the snapshot the lane was picked for even if it expires meanwhile
+                List<PackageScanner.PackageRecord> records = indexed != null ? indexed : scanner.installed();
+                PermissionIndexLookup lookup = permissionIndex(records);
+                PermissionIndex index = lookup.index;
+
+                long queryStart = System.nanoTime();
+                int[] matches = index.query(allOf, anyOf, noneOf, includeSystem);
+                long queryUs = (System.nanoTime() - queryStart) / 1000;
+
+                List<PackageScanner.PackageRecord> matched = new ArrayList<>(matches.length);
+                for (int app : matches) {
+                    matched.add(records.get(app));
+                }
+                scanner.load(matched, PackageScanner.FACET_LABEL);
+
+                JSArray apps = new JSArray();
+                for (PackageScanner.PackageRecord app : matched) {
+                    JSObject appData = new JSObject();
+                    appData.put("packageName", app.packageName);
+                    appData.put("appName", app.label());
+                    appData.put("isSystemApp", app.isSystemApp);
+                    apps.put(appData);
+                }
+
+                JSObject result = new JSObject();
+                result.put("apps", apps);
+                result.put("count", matches.length);
+                result.put("indexedApps", index.appCount());
+                result.put("indexedPermissions", index.permissionCount());
+                result.put("rebuilt", lookup.rebuilt);
+                result.put("queryUs", queryUs);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error querying permission index: " + e.getMessage());
+                call.reject("Error querying permission index: " + e.getMessage());
+            }
+        });
     }
 
-    private String detectRootMethod() {
-        // Check for Magisk
-        if (new File("/data/adb/magisk").exists() || 
-            new File("/sbin/.magisk").exists()) {
-            return "magisk";
+    // Index for the given package snapshot; rebuilt when the snapshot changed, which also
+    // picks up runtime grants once the snapshot expires
+    private PermissionIndexLookup permissionIndex(List<PackageScanner.PackageRecord> records) {
+        synchronized (permissionIndexLock) {
+            if (permissionIndex != null && permissionIndexSource == records) {
+                return new PermissionIndexLookup(permissionIndex, false);
+            }
+            PermissionIndex.Builder builder = new PermissionIndex.Builder(records.size(),
+                PackageInfo.REQUESTED_PERMISSION_GRANTED);
+            for (PackageScanner.PackageRecord app : records) {
+                builder.add(app.packageName, app.isSystemApp, app.requestedPermissions,
+                    app.requestedPermissionsFlags);
+            }
+            permissionIndexSource = records;
+            permissionIndex = builder.build();
+            return new PermissionIndexLookup(permissionIndex, true);
         }
-        
-        // Check for SuperSU
-        if (new File("/system/app/SuperSU.apk").exists() ||
-            new File("/system/app/SuperSU/SuperSU.apk").exists()) {
-            return "supersu";
+    }
+
+    // The snapshot the index was built from, while the scanner still serves it; else null
+    private List<PackageScanner.PackageRecord> indexedFreshSnapshot() {
+        List<PackageScanner.PackageRecord> fresh = scanner.freshSnapshot();
+        synchronized (permissionIndexLock) {
+            return fresh != null && permissionIndex != null && permissionIndexSource == fresh ? fresh : null;
         }
-        
-        // Check for generic su binary
-        if (new File("/system/xbin/su").exists() ||
-            new File("/system/bin/su").exists()) {
-            return "su_binary";
+    }
+
+    private void invalidatePermissionIndex() {
+        synchronized (permissionIndexLock) {
+            permissionIndex = null;
+            permissionIndexSource = null;
         }
-        
-        return null;
     }
 
-    private String getSystemProperty(String propName) {
-        try {
-            Class<?> systemProperties = Class.forName("android.os.SystemProperties");
-            java.lang.reflect.Method get = systemProperties.getMethod("get", String.class);
-            String value = (String) get.invoke(null, propName);
-            return (value != null && !value.isEmpty()) ? value : null;
-        } catch (Exception e) {
-            return null;
+    private static List<String> permissionNames(JSArray names) throws Exception {
+        List<String> result = new ArrayList<>();
+        if (names == null) return result;
+        for (String name : names.<String>toList()) {
+            if (name != null && !name.isEmpty()) {
+                result.add(permissionName(name));
+            }
         }
+        return result;
     }
 
-    @PluginMethod
-    public void getDangerousPermissions(PluginCall call) {
-        try {
-            PackageManager pm = getContext().getPackageManager();
-            List<ApplicationInfo> apps = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            String[] dangerousPermissions = {
-                Manifest.permission.READ_CONTACTS,
-                Manifest.permission.WRITE_CONTACTS,
-                Manifest.permission.READ_SMS,
-                Manifest.permission.SEND_SMS,
-                Manifest.permission.READ_CALL_LOG,
-                Manifest.permission.WRITE_CALL_LOG,
-                Manifest.permission.ACCESS_FINE_LOCATION,
-                Manifest.permission.ACCESS_COARSE_LOCATION,
-                Manifest.permission.CAMERA,
-                Manifest.permission.RECORD_AUDIO,
-                Manifest.permission.READ_EXTERNAL_STORAGE,
-                Manifest.permission.WRITE_EXTERNAL_STORAGE,
-                Manifest.permission.READ_PHONE_STATE,
-                Manifest.permission.CALL_PHONE,
-                Manifest.permission.READ_CALENDAR,
-                Manifest.permission.WRITE_CALENDAR
-            };
-            
-            JSArray appsArray = new JSArray();
-            
-            for (ApplicationInfo appInfo : apps) {
-                try {
-                    PackageInfo pkgInfo = pm.getPackageInfo(appInfo.packageName, 
-                        PackageManager.GET_PERMISSIONS);
-                    
-                    if (pkgInfo.requestedPermissions == null) continue;
-                    
-                    JSArray grantedDangerous = new JSArray();
-                    
-                    for (int i = 0; i < pkgInfo.requestedPermissions.length; i++) {
-                        String perm = pkgInfo.requestedPermissions[i];
-                        int flags = pkgInfo.requestedPermissionsFlags[i];
-                        
-                        // Check if permission is granted
-                        if ((flags & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0) {
-                            for (String dangerous : dangerousPermissions) {
-                                if (perm.equals(dangerous)) {
-                                    // Get short name
-                                    String shortName = perm.substring(perm.lastIndexOf('.') + 1);
-                                    grantedDangerous.put(shortName);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    
-                    if (grantedDangerous.length() > 0) {
-                        JSObject appData = new JSObject();
-                        appData.put("packageName", appInfo.packageName);
-                        appData.put("appName", pm.getApplicationLabel(appInfo).toString());
-                        appData.put("permissions", grantedDangerous);
-                        appData.put("permissionCount", grantedDangerous.length());
-                        appData.put("isSystemApp", (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0);
-                        
-                        // Get app icon
-                        try {
-                            Drawable icon = pm.getApplicationIcon(appInfo);
-                            Bitmap bitmap = drawableToBitmap(icon);
-                            if (bitmap != null) {
-                                Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, 48, 48, true);
-                                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                                scaledBitmap.compress(Bitmap.CompressFormat.PNG, 80, baos);
-                                byte[] byteArray = baos.toByteArray();
-                                String base64 = Base64.encodeToString(byteArray, Base64.NO_WRAP);
-                                appData.put("iconBase64", "data:image/png;base64," + base64);
-                                scaledBitmap.recycle();
-                            }
-                        } catch (Exception e) {
-                            // Icon not available
-                        }
-                        
-                        appsArray.put(appData);
-                    }
-                } catch (Exception e) {
-                    // Skip this app
+    // "CAMERA" -> "android.permission.CAMERA"; qualified names are kept as they are
+    private static String permissionName(String name) {
+        return name.indexOf('.') >= 0 ? name : "android.permission." + name;
+    }
+
+    // Encodes the names of each distinct permission mask once per call; apps with the
+    // same granted set share the JSArray
+    private static final class GrantedPermissions {
+        final PermissionClassifier classifier;
+        private final ConcurrentHashMap<PermissionClassifier.Mask, JSArray> encoded = new ConcurrentHashMap<>();
+
+        GrantedPermissions(PermissionClassifier classifier) {
+            this.classifier = classifier;
+        }
+
+        JSArray encode(PermissionClassifier.Mask mask) {
+            JSArray names = encoded.get(mask);
+            if (names == null) {
+                names = new JSArray();
+                for (String shortName : classifier.names(mask)) {
+                    names.put(shortName);
+                }
+                JSArray raced = encoded.putIfAbsent(mask, names);
+                if (raced != null) {
+                    names = raced;
                 }
             }
-            
-            JSObject result = new JSObject();
-            result.put("apps", appsArray);
-            result.put("totalApps", appsArray.length());
-            call.resolve(result);
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting dangerous permissions: " + e.getMessage());
-            call.reject("Error getting dangerous permissions: " + e.getMessage());
+            return names;
+        }
+
+        int uniqueMasks() {
+            return encoded.size();
+        }
+    }
+
+    private static final class PermissionIndexLookup {
+        final PermissionIndex index;
+        // Built by this call rather than reused
+        final boolean rebuilt;
+
+        PermissionIndexLookup(PermissionIndex index, boolean rebuilt) {
+            this.index = index;
+            this.rebuilt = rebuilt;
         }
     }
 
     @PluginMethod
     public void getDeviceUptime(PluginCall call) {
-        try {
-            long uptimeMs = SystemClock.elapsedRealtime();
-            long uptimeSeconds = uptimeMs / 1000;
-            long uptimeMinutes = uptimeSeconds / 60;
-            long uptimeHours = uptimeMinutes / 60;
-            long uptimeDays = uptimeHours / 24;
-            
-            // Calculate last boot time
-            long currentTimeMs = System.currentTimeMillis();
-            long bootTimeMs = currentTimeMs - uptimeMs;
-            
-            JSObject result = new JSObject();
-            result.put("uptimeMs", uptimeMs);
-            result.put("uptimeSeconds", uptimeSeconds);
-            result.put("uptimeMinutes", uptimeMinutes);
-            result.put("uptimeHours", uptimeHours);
-            result.put("uptimeDays", uptimeDays);
-            result.put("lastBootTime", bootTimeMs);
-            result.put("formattedUptime", formatUptime(uptimeMs));
-            
-            call.resolve(result);
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting device uptime: " + e.getMessage());
-            call.reject("Error getting device uptime: " + e.getMessage());
-        }
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(deviceUptime());
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting device uptime: " + e.getMessage());
+                call.reject("Error getting device uptime: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject deviceUptime() throws Exception {
+        long uptimeMs = SystemClock.elapsedRealtime();
+        long uptimeSeconds = uptimeMs / 1000;
+        long uptimeMinutes = uptimeSeconds / 60;
+        long uptimeHours = uptimeMinutes / 60;
+        long uptimeDays = uptimeHours / 24;
+    
+        // Calculate last boot time
+        long currentTimeMs = System.currentTimeMillis();
+        long bootTimeMs = currentTimeMs - uptimeMs;
+    
+        JSObject result = new JSObject();
+        result.put("uptimeMs", uptimeMs);
+        result.put("uptimeSeconds", uptimeSeconds);
+        result.put("uptimeMinutes", uptimeMinutes);
+        result.put("uptimeHours", uptimeHours);
+        result.put("uptimeDays", uptimeDays);
+        result.put("lastBootTime", bootTimeMs);
+        result.put("formattedUptime", formatUptime(uptimeMs));
+    
+        return result;
     }
 
     private String formatUptime(long uptimeMs) {
@@ -1066,123 +2637,124 @@ public class DeviceDiagnosticsPlugin extends Plugin {
 
     @PluginMethod
     public void checkSystemIntegrity(PluginCall call) {
-        try {
-            JSObject result = new JSObject();
-            
-            // Check if /system is read-only
-            boolean systemReadOnly = isSystemReadOnly();
-            result.put("systemReadOnly", systemReadOnly);
-            
-            // Check for official build
-            String buildTags = Build.TAGS;
-            boolean officialBuild = buildTags == null || !buildTags.contains("test-keys");
-            result.put("officialBuild", officialBuild);
-            
-            // Check SELinux status
-            String seLinuxStatus = getSeLinuxStatus();
-            result.put("seLinuxStatus", seLinuxStatus);
-            result.put("seLinuxEnforcing", "Enforcing".equals(seLinuxStatus));
-            
-            // Check for system modifications
-            boolean systemModified = checkSystemModifications();
-            result.put("systemModified", systemModified);
-            
-            // Check verified boot state
-            String verifiedBootState = getSystemProperty("ro.boot.verifiedbootstate");
-            result.put("verifiedBootState", verifiedBootState != null ? verifiedBootState : "unknown");
-            
-            // Check device encryption
-            boolean isEncrypted = checkDeviceEncryption();
-            result.put("isEncrypted", isEncrypted);
-            
-            // Calculate integrity score (0-100)
-            int integrityScore = 100;
-            if (!systemReadOnly) integrityScore -= 25;
-            if (!officialBuild) integrityScore -= 20;
-            if (!"Enforcing".equals(seLinuxStatus)) integrityScore -= 20;
-            if (systemModified) integrityScore -= 25;
-            if (!isEncrypted) integrityScore -= 10;
-            result.put("integrityScore", Math.max(0, integrityScore));
-            
-            call.resolve(result);
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking system integrity: " + e.getMessage());
-            call.reject("Error checking system integrity: " + e.getMessage());
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                call.resolve(systemIntegrity(new DiagnosticsSession()));
+            } catch (Exception e) {
+                Log.e(TAG, "Error checking system integrity: " + e.getMessage());
+                call.reject("Error checking system integrity: " + e.getMessage());
+            }
+        });
+    }
+
+    private JSObject systemIntegrity(DiagnosticsSession session) throws Exception {
+        SecurityProbes.Snapshot probes = securityProbes.snapshot();
+        JSObject result = new JSObject();
+    
+        // Check if /system is read-only
+        boolean systemReadOnly = isSystemReadOnly(session);
+        result.put("systemReadOnly", systemReadOnly);
+    
+        // Check for official build
+        String buildTags = Build.TAGS;
+        boolean officialBuild = buildTags == null || !buildTags.contains("test-keys");
+        result.put("officialBuild", officialBuild);
+    
+        // Check SELinux status
+        String seLinuxStatus = probes.seLinuxStatus;
+        result.put("seLinuxStatus", seLinuxStatus);
+        result.put("seLinuxEnforcing", "Enforcing".equals(seLinuxStatus));
+    
+        // Check for system modifications
+        boolean systemModified = probes.systemModified();
+        result.put("systemModified", systemModified);
+        JSArray modifications = new JSArray();
+        for (RootSignatures.Match match : probes.signatures.matches) {
+            if (RootSignatures.CATEGORY_TAMPER.equals(match.signature.category)) {
+                modifications.put(match.signature.id);
+            }
         }
+        result.put("modifications", modifications);
+    
+        // Check verified boot state
+        String verifiedBootState = probes.property(SecurityProbes.PROP_VERIFIED_BOOT_STATE);
+        result.put("verifiedBootState", verifiedBootState != null ? verifiedBootState : "unknown");
+    
+        // Check device encryption
+        boolean isEncrypted = checkDeviceEncryption(probes);
+        result.put("isEncrypted", isEncrypted);
+    
+        // Calculate integrity score (0-100)
+        int integrityScore = 100;
+        if (!systemReadOnly) integrityScore -= 25;
+        if (!officialBuild) integrityScore -= 20;
+        if (!"Enforcing".equals(seLinuxStatus)) integrityScore -= 20;
+        if (systemModified) integrityScore -= 25;
+        if (!isEncrypted) integrityScore -= 10;
+        result.put("integrityScore", Math.max(0, integrityScore));
+    
+        return result;
     }
 
-    private boolean isSystemReadOnly() {
+    private boolean isSystemReadOnly(DiagnosticsSession session) {
         try {
-            java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.FileReader("/proc/mounts"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("/system")) {
-                    reader.close();
-                    return line.contains("ro,") || line.contains(",ro ");
-                }
+            // On system-as-root devices this is the "/" mount
+            MountTable.Entry system = mounts(session).mountFor("/system");
+            if (system != null) {
+                return system.isReadOnly();
             }
-            reader.close();
         } catch (Exception e) {
             // Default to true if cannot read
         }
         return true;
     }
 
-    private String getSeLinuxStatus() {
-        try {
-            // Try to read SELinux status from /sys/fs/selinux/enforce
-            File enforceFile = new File("/sys/fs/selinux/enforce");
-            if (enforceFile.exists()) {
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.FileReader(enforceFile));
-                String status = reader.readLine();
-                reader.close();
-                return "1".equals(status) ? "Enforcing" : "Permissive";
+    @PluginMethod
+    public void getMounts(PluginCall call) {
+        runOnLane(DiagnosticsExecutor.Lane.FAST, call, () -> {
+            try {
+                long start = System.nanoTime();
+                MountTable table = MountTable.read("/proc/mounts");
+                long readUs = (System.nanoTime() - start) / 1000;
+
+                JSArray mounts = new JSArray();
+                for (MountTable.Entry entry : table.entries()) {
+                    mounts.put(mountResult(entry));
+                }
+                MountTable.Entry system = table.mountFor("/system");
+                JSObject result = new JSObject();
+                result.put("mounts", mounts);
+                result.put("count", table.entries().size());
+                result.put("system", system != null ? mountResult(system) : JSONObject.NULL);
+                result.put("systemAsRoot", system != null && "/".equals(system.mountPoint));
+                result.put("readUs", readUs);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mounts: " + e.getMessage());
+                call.reject("Error reading mounts: " + e.getMessage());
             }
-            
-            // Fallback: use getenforce command
-            Process process = Runtime.getRuntime().exec("getenforce");
-            java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(process.getInputStream()));
-            String status = reader.readLine();
-            reader.close();
-            return status != null ? status : "Unknown";
-        } catch (Exception e) {
-            return "Unknown";
-        }
+        });
     }
 
-    private boolean checkSystemModifications() {
-        // Check for common system modification indicators
-        String[] modIndicators = {
-            "/system/xposed.prop",
-            "/system/framework/XposedBridge.jar",
-            "/data/data/de.robv.android.xposed.installer",
-            "/data/user/0/org.meowcat.edxposed.manager",
-            "/data/adb/lspd"
-        };
-        
-        for (String path : modIndicators) {
-            if (new File(path).exists()) {
-                return true;
-            }
-        }
-        
-        // Check for modified build.prop
-        File buildProp = new File("/system/build.prop");
-        if (!buildProp.canRead()) {
-            return true; // Cannot read, might be modified
+    private static JSObject mountResult(MountTable.Entry entry) {
+        JSObject mount = new JSObject();
+        mount.put("device", entry.device);
+        mount.put("mountPoint", entry.mountPoint);
+        mount.put("type", entry.type);
+        JSArray options = new JSArray();
+        for (String option : entry.options.split(",")) {
+            options.put(option);
         }
-        
-        return false;
+        mount.put("options", options);
+        mount.put("readOnly", entry.isReadOnly());
+        return mount;
     }
 
-    private boolean checkDeviceEncryption() {
+    private boolean checkDeviceEncryption(SecurityProbes.Snapshot probes) {
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
                 // Check if device is encrypted
-                String encryptionState = getSystemProperty("ro.crypto.state");
+                String encryptionState = probes.property(SecurityProbes.PROP_CRYPTO_STATE);
                 return "encrypted".equals(encryptionState);
             }
         } catch (Exception e) {
@@ -1191,106 +2763,108 @@ public class DeviceDiagnosticsPlugin extends Plugin {
         return false;
     }
 
-    private Bitmap drawableToBitmap(Drawable drawable) {
-        if (drawable instanceof BitmapDrawable) {
-            return ((BitmapDrawable) drawable).getBitmap();
-        }
-
-        int width = drawable.getIntrinsicWidth();
-        int height = drawable.getIntrinsicHeight();
-        
-        if (width <= 0 || height <= 0) {
-            width = 48;
-            height = 48;
-        }
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-        drawable.draw(canvas);
-        return bitmap;
-    }
-
     @PluginMethod
     public void getTotalCacheSize(PluginCall call) {
-        try {
-            Context context = getContext();
-            PackageManager pm = context.getPackageManager();
-            long totalCacheBytes = 0;
-            int appCount = 0;
-            boolean hasPermission = hasUsageStatsPermission();
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                call.resolve(totalCacheSize());
+            } catch (Exception e) {
+                call.reject("Error getting cache size: " + e.getMessage());
+            }
+        });
+    }
 
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && hasPermission) {
-                StorageStatsManager storageStatsManager = (StorageStatsManager) context.getSystemService(Context.STORAGE_STATS_SERVICE);
-                
-                if (storageStatsManager != null) {
-                    List<ApplicationInfo> apps = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-                    android.os.UserHandle userHandle = android.os.Process.myUserHandle();
-                    UUID storageUuid = StorageManager.UUID_DEFAULT;
+    private JSObject totalCacheSize() throws Exception {
+        final AtomicLong totalCacheBytes = new AtomicLong();
+        final AtomicInteger appCount = new AtomicInteger();
+        final AtomicBoolean estimated = new AtomicBoolean();
+        boolean hasPermission = hasUsageStatsPermission();
+        int cacheHits = 0;
+        int cacheMisses = 0;
+        int volumeCount = 0;
+        boolean perVolume = false;
+        String source = "none";
+
+        if (storageStats.isSupported() && hasPermission) {
+            // One queryStatsForUser per volume (internal + adopted) instead of one call per app
+            try {
+                Map<UUID, Integer> volumes = storageStats.countByVolume(scanner.installed());
+                long volumeCacheBytes = 0;
+                int volumeApps = 0;
+                for (Map.Entry<UUID, Integer> volume : volumes.entrySet()) {
+                    volumeCacheBytes += storageStats.queryUser(volume.getKey()).getCacheBytes();
+                    volumeApps += volume.getValue();
+                }
+                totalCacheBytes.set(volumeCacheBytes);
+                appCount.set(volumeApps);
+                volumeCount = volumes.size();
+                perVolume = true;
+                source = "volume";
+            } catch (Exception e) {
+                Log.w(TAG, "Per-volume cache stats unavailable, scanning packages: " + e.getMessage());
+            }
+        }
 
-                    for (ApplicationInfo app : apps) {
-                        try {
-                            StorageStats stats = storageStatsManager.queryStatsForPackage(storageUuid, app.packageName, userHandle);
-                            totalCacheBytes += stats.getCacheBytes();
-                            appCount++;
-                        } catch (Exception e) {
-                            // Skip apps we can't query
-                        }
-                    }
+        if (storageStats.isSupported() && hasPermission && !perVolume) {
+            PackageScanner.ScanResult scan = scanner.scan(PackageScanner.FACET_STORAGE);
+            source = "package";
+            cacheHits = scan.cacheHits;
+            cacheMisses = scan.cacheMisses;
+            for (PackageScanner.PackageRecord app : scan.records) {
+                // Skip apps we can't query
+                if (app.storageFromStats()) {
+                    totalCacheBytes.addAndGet(app.cacheBytes());
+                    appCount.incrementAndGet();
                 }
-            } else if (!hasPermission) {
-                // Alternative method: estimate cache by checking common cache directories
-                // This won't be as accurate but gives an idea
-                List<ApplicationInfo> apps = pm.getInstalledApplications(PackageManager.GET_META_DATA);
-                
-                for (ApplicationInfo app : apps) {
+            }
+        } else if (!hasPermission) {
+            // Alternative method: estimate cache by checking common cache directories
+            // This won't be as accurate but gives an idea
+            source = "estimate";
+            scanner.scan(0, new PackageScanner.Visitor() {
+                @Override
+                public void visit(PackageScanner.PackageRecord app) {
                     try {
                         // Try to get cache dir size from app's data directory
-                        File appCacheDir = new File(app.dataDir, "cache");
+                        File appCacheDir = new File(app.appInfo.dataDir, "cache");
                         if (appCacheDir.exists() && appCacheDir.isDirectory()) {
-                            totalCacheBytes += getDirSize(appCacheDir);
-                            appCount++;
+                            DirectorySizer.Result size = dirSizer.size(appCacheDir);
+                            totalCacheBytes.addAndGet(size.bytes);
+                            appCount.incrementAndGet();
+                            if (size.estimated) estimated.set(true);
                         }
-                        
+
                         // Also check code_cache
-                        File codeCacheDir = new File(app.dataDir, "code_cache");
+                        File codeCacheDir = new File(app.appInfo.dataDir, "code_cache");
                         if (codeCacheDir.exists() && codeCacheDir.isDirectory()) {
-                            totalCacheBytes += getDirSize(codeCacheDir);
+                            DirectorySizer.Result size = dirSizer.size(codeCacheDir);
+                            totalCacheBytes.addAndGet(size.bytes);
+                            if (size.estimated) estimated.set(true);
                         }
                     } catch (Exception e) {
                         // Skip apps we can't access
                     }
                 }
-            }
-
-            JSObject result = new JSObject();
-            result.put("totalCacheBytes", totalCacheBytes);
-            result.put("totalCacheMb", totalCacheBytes / (1024.0 * 1024.0));
-            result.put("totalCacheGb", totalCacheBytes / (1024.0 * 1024.0 * 1024.0));
-            result.put("appsScanned", appCount);
-            result.put("hasPermission", hasPermission);
-            result.put("needsPermission", !hasPermission);
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting cache size: " + e.getMessage());
+            });
         }
+
+        JSObject result = new JSObject();
+        result.put("totalCacheBytes", totalCacheBytes.get());
+        result.put("totalCacheMb", totalCacheBytes.get() / (1024.0 * 1024.0));
+        result.put("totalCacheGb", totalCacheBytes.get() / (1024.0 * 1024.0 * 1024.0));
+        result.put("appsScanned", appCount.get());
+        result.put("hasPermission", hasPermission);
+        result.put("needsPermission", !hasPermission);
+        result.put("cacheHits", cacheHits);
+        result.put("cacheMisses", cacheMisses);
+        result.put("volumes", volumeCount);
+        result.put("source", source);
+        result.put("estimated", estimated.get());
+        return result;
     }
     
     private long getDirSize(File dir) {
-        long size = 0;
-        if (dir != null && dir.exists()) {
-            File[] files = dir.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        size += getDirSize(file);
-                    } else {
-                        size += file.length();
-                    }
-                }
-            }
-        }
-        return size;
+        return dirSizer.size(dir).bytes;
     }
 
     @PluginMethod
@@ -1332,111 +2906,101 @@ public class DeviceDiagnosticsPlugin extends Plugin {
 
     @PluginMethod
     public void getOwnAppCacheSize(PluginCall call) {
-        try {
-            Context context = getContext();
-            long totalCacheBytes = 0;
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                Context context = getContext();
+                long totalCacheBytes = 0;
             
-            // Get internal cache size
-            File cacheDir = context.getCacheDir();
-            if (cacheDir != null && cacheDir.exists()) {
-                totalCacheBytes += getDirSize(cacheDir);
-            }
+                // Get internal cache size
+                File cacheDir = context.getCacheDir();
+                if (cacheDir != null && cacheDir.exists()) {
+                    totalCacheBytes += getDirSize(cacheDir);
+                }
             
-            // Get external cache size
-            File externalCacheDir = context.getExternalCacheDir();
-            if (externalCacheDir != null && externalCacheDir.exists()) {
-                totalCacheBytes += getDirSize(externalCacheDir);
-            }
+                // Get external cache size
+                File externalCacheDir = context.getExternalCacheDir();
+                if (externalCacheDir != null && externalCacheDir.exists()) {
+                    totalCacheBytes += getDirSize(externalCacheDir);
+                }
             
-            // Get code cache (API 21+)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                File codeCacheDir = context.getCodeCacheDir();
-                if (codeCacheDir != null && codeCacheDir.exists()) {
-                    totalCacheBytes += getDirSize(codeCacheDir);
+                // Get code cache (API 21+)
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    File codeCacheDir = context.getCodeCacheDir();
+                    if (codeCacheDir != null && codeCacheDir.exists()) {
+                        totalCacheBytes += getDirSize(codeCacheDir);
+                    }
                 }
-            }
             
-            JSObject result = new JSObject();
-            result.put("cacheSizeBytes", totalCacheBytes);
-            result.put("cacheSizeMb", totalCacheBytes / (1024.0 * 1024.0));
-            result.put("cacheSizeKb", totalCacheBytes / 1024.0);
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error getting app cache size: " + e.getMessage());
-        }
+                JSObject result = new JSObject();
+                result.put("cacheSizeBytes", totalCacheBytes);
+                result.put("cacheSizeMb", totalCacheBytes / (1024.0 * 1024.0));
+                result.put("cacheSizeKb", totalCacheBytes / 1024.0);
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error getting app cache size: " + e.getMessage());
+            }
+        });
     }
 
     @PluginMethod
     public void clearAppCache(PluginCall call) {
-        try {
-            Context context = getContext();
-            long totalBefore = 0;
-            long freedBytes = 0;
+        runOnLane(DiagnosticsExecutor.Lane.HEAVY, call, () -> {
+            try {
+                Context context = getContext();
+                long totalBefore = 0;
+                long freedBytes = 0;
             
-            // Measure before
-            File cacheDir = context.getCacheDir();
-            if (cacheDir != null && cacheDir.exists()) {
-                totalBefore += getDirSize(cacheDir);
-            }
-            File externalCacheDir = context.getExternalCacheDir();
-            if (externalCacheDir != null && externalCacheDir.exists()) {
-                totalBefore += getDirSize(externalCacheDir);
-            }
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                File codeCacheDir = context.getCodeCacheDir();
-                if (codeCacheDir != null && codeCacheDir.exists()) {
-                    totalBefore += getDirSize(codeCacheDir);
+                // Measure before
+                File cacheDir = context.getCacheDir();
+                if (cacheDir != null && cacheDir.exists()) {
+                    totalBefore += getDirSize(cacheDir);
+                }
+                File externalCacheDir = context.getExternalCacheDir();
+                if (externalCacheDir != null && externalCacheDir.exists()) {
+                    totalBefore += getDirSize(externalCacheDir);
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    File codeCacheDir = context.getCodeCacheDir();
+                    if (codeCacheDir != null && codeCacheDir.exists()) {
+                        totalBefore += getDirSize(codeCacheDir);
+                    }
                 }
-            }
             
-            // Clear internal cache
-            if (cacheDir != null) {
-                freedBytes += deleteDir(cacheDir);
-            }
+                // Clear internal cache
+                if (cacheDir != null) {
+                    freedBytes += deleteDir(cacheDir);
+                    // The icon cache lives under cacheDir; its disk index is reloaded on next use
+                    iconCache.invalidateDisk();
+                }
             
-            // Clear external cache
-            if (externalCacheDir != null) {
-                freedBytes += deleteDir(externalCacheDir);
-            }
+                // Clear external cache
+                if (externalCacheDir != null) {
+                    freedBytes += deleteDir(externalCacheDir);
+                }
             
-            // Clear code cache
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                File codeCacheDir = context.getCodeCacheDir();
-                if (codeCacheDir != null) {
-                    freedBytes += deleteDir(codeCacheDir);
+                // Clear code cache
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    File codeCacheDir = context.getCodeCacheDir();
+                    if (codeCacheDir != null) {
+                        freedBytes += deleteDir(codeCacheDir);
+                    }
                 }
-            }
             
-            JSObject result = new JSObject();
-            result.put("success", true);
-            result.put("freedBytes", freedBytes);
-            result.put("freedMb", freedBytes / (1024.0 * 1024.0));
-            result.put("cacheBefore", totalBefore);
-            result.put("cacheBeforeMb", totalBefore / (1024.0 * 1024.0));
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error clearing cache: " + e.getMessage());
-        }
+                JSObject result = new JSObject();
+                result.put("success", true);
+                result.put("freedBytes", freedBytes);
+                result.put("freedMb", freedBytes / (1024.0 * 1024.0));
+                result.put("cacheBefore", totalBefore);
+                result.put("cacheBeforeMb", totalBefore / (1024.0 * 1024.0));
+                call.resolve(result);
+            } catch (Exception e) {
+                call.reject("Error clearing cache: " + e.getMessage());
+            }
+        });
     }
 
+    // Empties dir (the directory itself is kept) and returns the bytes freed
     private long deleteDir(File dir) {
-        long freedBytes = 0;
-        if (dir != null && dir.isDirectory()) {
-            String[] children = dir.list();
-            if (children != null) {
-                for (String child : children) {
-                    File file = new File(dir, child);
-                    if (file.isDirectory()) {
-                        freedBytes += deleteDir(file);
-                    } else {
-                        long fileSize = file.length();
-                        if (file.delete()) {
-                            freedBytes += fileSize;
-                        }
-                    }
-                }
-            }
-        }
-        return freedBytes;
+        return dirSizer.delete(dir, true).freedBytes;
     }
 }
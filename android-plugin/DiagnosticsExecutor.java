@@ -0,0 +1,227 @@
+package com.lablinkriparo.monitor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded execution layer for DeviceDiagnosticsPlugin.
+ * Cheap probes and package scans run on separate lanes so a slow scan never
+ * delays a RAM or uptime read, and the Capacitor bridge thread is never blocked.
+ */
+final class DiagnosticsExecutor {
+
+    enum Lane {
+        FAST("diag-fast", 2, 64),
+        HEAVY("diag-heavy", 2, 16),
+        // Individual probes fanned out by runFullDiagnostics
+        PROBE("diag-probe", 4, 32);
+
+        final String threadPrefix;
+        final int threads;
+        final int queueCapacity;
+
+        Lane(String threadPrefix, int threads, int queueCapacity) {
+            this.threadPrefix = threadPrefix;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    private final LaneExecutor[] lanes;
+    // Fan-out pool for work split by a lane task (package scan chunks); sized to the CPU count
+    private final ExecutorService workers;
+    private final int workerCount;
+    // Work-stealing pool for recursive splits (directory trees); created on first use
+    private ForkJoinPool forkJoin;
+    // Deadlines for work that completes through callbacks; timer tasks must stay short
+    private final ScheduledThreadPoolExecutor timer;
+
+    DiagnosticsExecutor() {
+        Lane[] values = Lane.values();
+        lanes = new LaneExecutor[values.length];
+        for (Lane lane : values) {
+            lanes[lane.ordinal()] = new LaneExecutor(lane);
+        }
+        workerCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        workers = Executors.newFixedThreadPool(workerCount, daemonThreads("diag-worker"));
+        timer = new ScheduledThreadPoolExecutor(1, daemonThreads("diag-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    // Throws RejectedExecutionException when the lane queue is full or shut down
+    void execute(Lane lane, Runnable task) {
+        lanes[lane.ordinal()].submit(task);
+    }
+
+    // Throws RejectedExecutionException after shutdown
+    ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return timer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    LaneStats stats(Lane lane) {
+        return lanes[lane.ordinal()].snapshot();
+    }
+
+    ExecutorService workers() {
+        return workers;
+    }
+
+    int workerCount() {
+        return workerCount;
+    }
+
+    synchronized ForkJoinPool forkJoin() {
+        if (forkJoin == null) {
+            forkJoin = new ForkJoinPool(workerCount, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    t.setName("diag-fj-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            }, null, false);
+        }
+        return forkJoin;
+    }
+
+    void shutdown() {
+        for (LaneExecutor lane : lanes) {
+            lane.pool.shutdownNow();
+        }
+        workers.shutdownNow();
+        timer.shutdownNow();
+        synchronized (this) {
+            if (forkJoin != null) {
+                forkJoin.shutdownNow();
+            }
+        }
+    }
+
+    static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    static final class LaneStats {
+        final String name;
+        final int threads;
+        final int queueDepth;
+        final int queueCapacity;
+        final int active;
+        final long submitted;
+        final long completed;
+        final long rejected;
+        final double avgWaitMs;
+        final double maxWaitMs;
+        final double avgRunMs;
+        final double maxRunMs;
+
+        LaneStats(String name, int threads, int queueDepth, int queueCapacity, int active,
+                  long submitted, long completed, long rejected,
+                  double avgWaitMs, double maxWaitMs, double avgRunMs, double maxRunMs) {
+            this.name = name;
+            this.threads = threads;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.active = active;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.avgWaitMs = avgWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.avgRunMs = avgRunMs;
+            this.maxRunMs = maxRunMs;
+        }
+    }
+
+    private static final class LaneExecutor {
+        private final Lane lane;
+        private final ThreadPoolExecutor pool;
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        LaneExecutor(Lane lane) {
+            this.lane = lane;
+            pool = new ThreadPoolExecutor(lane.threads, lane.threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(lane.queueCapacity), daemonThreads(lane.threadPrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        void submit(final Runnable task) {
+            final long enqueuedAt = System.nanoTime();
+            try {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long startedAt = System.nanoTime();
+                        record(totalWaitNanos, maxWaitNanos, startedAt - enqueuedAt);
+                        try {
+                            task.run();
+                        } finally {
+                            record(totalRunNanos, maxRunNanos, System.nanoTime() - startedAt);
+                            completed.incrementAndGet();
+                        }
+                    }
+                });
+                submitted.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        LaneStats snapshot() {
+            long done = completed.get();
+            long started = done + pool.getActiveCount();
+            return new LaneStats(
+                lane.name().toLowerCase(),
+                lane.threads,
+                pool.getQueue().size(),
+                lane.queueCapacity,
+                pool.getActiveCount(),
+                submitted.get(),
+                done,
+                rejected.get(),
+                started > 0 ? totalWaitNanos.get() / 1e6 / started : 0,
+                maxWaitNanos.get() / 1e6,
+                done > 0 ? totalRunNanos.get() / 1e6 / done : 0,
+                maxRunNanos.get() / 1e6);
+        }
+
+        private static void record(AtomicLong total, AtomicLong max, long nanos) {
+            total.addAndGet(nanos);
+            long current;
+            while (nanos > (current = max.get())) {
+                if (max.compareAndSet(current, nanos)) break;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.lablinkriparo.monitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Intermediate data shared by the probes of one diagnostics run (system
+ * properties, the mount table, ...). Each value is loaded at most once per
+ * session; probes running concurrently that ask for the same key wait for the
+ * first load instead of repeating it. Single probe calls use a fresh session.
+ */
+final class DiagnosticsSession {
+
+    private final ConcurrentHashMap<String, FutureTask<Object>> values = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, final Callable<T> loader) throws Exception {
+        FutureTask<Object> task = values.get(key);
+        if (task == null) {
+            FutureTask<Object> created = new FutureTask<>(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return loader.call();
+                }
+            });
+            task = values.putIfAbsent(key, created);
+            if (task == null) {
+                task = created;
+                created.run();
+            }
+        }
+        try {
+            return (T) task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+}
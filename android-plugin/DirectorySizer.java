@@ -0,0 +1,306 @@
+package com.lablinkriparo.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Directory sizing and deletion for the cache methods. Walks use an explicit work
+ * stack instead of recursion, so deep trees cannot overflow the thread stack.
+ * Subdirectories near the root are forked onto a fork-join pool while it has
+ * little queued work, and a walk stops at maxDepth or when the time budget
+ * runs out, in which case the result is partial and flagged as estimated.
+ * With useNio (API 26+ on Android) each entry costs a single lstat through
+ * BasicFileAttributes; otherwise it falls back to File.list(), which returns names
+ * instead of File[] but needs two stats and a canonical path check per entry.
+ * In either mode symlinks are neither followed nor counted, whether they point
+ * to a file or a directory.
+ * Plain Java only, so it runs on a desktop JVM as well.
+ */
+final class DirectorySizer {
+
+    // Only subdirectories this close to the top are forked, which bounds the nesting of
+    // joins (a join may run the forked task on the joining thread's stack)
+    private static final int FORK_DEPTH = 2;
+    // Keep forking only while the pool has little queued work of its own
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    static final class Result {
+        final long bytes;
+        final long files;
+        final long directories;
+        // Directories that were not entered because of the depth or time budget
+        final long skippedDirectories;
+        final boolean estimated;
+        final long elapsedMs;
+
+        Result(long bytes, long files, long directories, long skippedDirectories, boolean estimated, long elapsedMs) {
+            this.bytes = bytes;
+            this.files = files;
+            this.directories = directories;
+            this.skippedDirectories = skippedDirectories;
+            this.estimated = estimated;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    static final class DeleteResult {
+        final long freedBytes;
+        final long deletedFiles;
+        final long failed;
+
+        DeleteResult(long freedBytes, long deletedFiles, long failed) {
+            this.freedBytes = freedBytes;
+            this.deletedFiles = deletedFiles;
+            this.failed = failed;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final boolean useNio;
+    private final int maxDepth;
+    private final long timeBudgetMs;
+
+    // pool may be null to walk on the calling thread only
+    DirectorySizer(ForkJoinPool pool, boolean useNio, int maxDepth, long timeBudgetMs) {
+        this.pool = pool;
+        this.useNio = useNio;
+        this.maxDepth = maxDepth;
+        this.timeBudgetMs = timeBudgetMs;
+    }
+
+    Result size(File root) {
+        long start = System.nanoTime();
+        // Compared as a nanoTime difference, so "no budget" must not overflow
+        long deadline = start + (timeBudgetMs > 0 ? timeBudgetMs * 1_000_000L : Long.MAX_VALUE / 2);
+        Tally tally;
+        if (root == null || !root.isDirectory()) {
+            tally = new Tally();
+        } else {
+            SizeTask task = new SizeTask(root, 0, deadline, useNio, maxDepth);
+            tally = pool != null ? pool.invoke(task) : task.compute();
+        }
+        return new Result(tally.bytes, tally.files, tally.directories, tally.skipped,
+            tally.skipped > 0, (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    // Deletes everything below root and, unless keepRoot, root itself. Symlinks are
+    // removed without touching their targets. Runs to completion regardless of budgets.
+    DeleteResult delete(File root, boolean keepRoot) {
+        long freed = 0;
+        long deleted = 0;
+        long failed = 0;
+        if (root == null || !root.isDirectory()) {
+            return new DeleteResult(0, 0, 0);
+        }
+
+        ArrayDeque<File> stack = new ArrayDeque<>();
+        // Directories in discovery order; deleting in reverse removes children first
+        List<File> directories = new ArrayList<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            File dir = stack.pop();
+            directories.add(dir);
+            String[] names = dir.list();
+            if (names == null) continue;
+            File canonicalDir = canonical(dir);
+            for (String name : names) {
+                File file = new File(dir, name);
+                boolean link = isSymlink(file, canonicalDir, useNio);
+                if (!link && file.isDirectory()) {
+                    stack.push(file);
+                    continue;
+                }
+                // Only the link goes, so it frees nothing
+                long length = link ? 0 : file.length();
+                if (file.delete()) {
+                    freed += length;
+                    deleted++;
+                } else {
+                    failed++;
+                }
+            }
+        }
+        for (int i = directories.size() - 1; i >= (keepRoot ? 1 : 0); i--) {
+            if (!directories.get(i).delete()) {
+                failed++;
+            }
+        }
+        return new DeleteResult(freed, deleted, failed);
+    }
+
+    // canonicalDir is the canonical form of file's parent, resolved once per directory;
+    // null when that failed, in which case every entry is treated as a link
+    private static boolean isSymlink(File file, File canonicalDir, boolean useNio) {
+        if (useNio) {
+            return Files.isSymbolicLink(file.toPath());
+        }
+        if (canonicalDir == null) {
+            return true;
+        }
+        // A symlink resolves to a different canonical path than its own name
+        try {
+            return !new File(canonicalDir, file.getName()).equals(file.getCanonicalFile());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static File canonical(File dir) {
+        try {
+            return dir.getCanonicalFile();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Tally {
+        long bytes;
+        long files;
+        long directories;
+        long skipped;
+
+        void add(Tally other) {
+            bytes += other.bytes;
+            files += other.files;
+            directories += other.directories;
+            skipped += other.skipped;
+        }
+    }
+
+    private static final class SizeTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final File root;
+        // Depth of root below the top-level directory being sized
+        private final int rootDepth;
+        private final long deadline;
+        private final boolean useNio;
+        private final int maxDepth;
+
+        SizeTask(File root, int rootDepth, long deadline, boolean useNio, int maxDepth) {
+            this.root = root;
+            this.rootDepth = rootDepth;
+            this.deadline = deadline;
+            this.useNio = useNio;
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        protected Tally compute() {
+            Tally tally = new Tally();
+            List<SizeTask> forks = new ArrayList<>();
+            if (useNio) {
+                walkNio(tally, forks);
+            } else {
+                walkFiles(tally, forks);
+            }
+            for (SizeTask fork : forks) {
+                tally.add(fork.join());
+            }
+            return tally;
+        }
+
+        private void walkNio(Tally tally, List<SizeTask> forks) {
+            ArrayDeque<Path> stack = new ArrayDeque<>();
+            ArrayDeque<Integer> depths = new ArrayDeque<>();
+            stack.push(root.toPath());
+            depths.push(rootDepth);
+            while (!stack.isEmpty()) {
+                Path dir = stack.pop();
+                int depth = depths.pop();
+                if (System.nanoTime() - deadline > 0) {
+                    tally.skipped += 1 + stack.size();
+                    return;
+                }
+                tally.directories++;
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path entry : entries) {
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        if (attrs.isDirectory()) {
+                            if (depth + 1 > maxDepth) {
+                                tally.skipped++;
+                            } else if (shouldFork(depth + 1)) {
+                                forks.add(fork(entry.toFile(), depth + 1));
+                            } else {
+                                stack.push(entry);
+                                depths.push(depth + 1);
+                            }
+                        } else if (attrs.isRegularFile()) {
+                            tally.bytes += attrs.size();
+                            tally.files++;
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                    // Unreadable directory, or one that failed mid-listing (an entry vanished,
+                    // EACCES): counted, with whatever was tallied before the failure
+                }
+            }
+        }
+
+        private void walkFiles(Tally tally, List<SizeTask> forks) {
+            ArrayDeque<File> stack = new ArrayDeque<>();
+            ArrayDeque<Integer> depths = new ArrayDeque<>();
+            stack.push(root);
+            depths.push(rootDepth);
+            while (!stack.isEmpty()) {
+                File dir = stack.pop();
+                int depth = depths.pop();
+                if (System.nanoTime() - deadline > 0) {
+                    tally.skipped += 1 + stack.size();
+                    return;
+                }
+                tally.directories++;
+                String[] names = dir.list();
+                if (names == null) continue;
+                File canonicalDir = canonical(dir);
+                for (String name : names) {
+                    File file = new File(dir, name);
+                    if (isSymlink(file, canonicalDir, false)) {
+                        continue;
+                    }
+                    if (file.isDirectory()) {
+                        if (depth + 1 > maxDepth) {
+                            tally.skipped++;
+                        } else if (shouldFork(depth + 1)) {
+                            forks.add(fork(file, depth + 1));
+                        } else {
+                            stack.push(file);
+                            depths.push(depth + 1);
+                        }
+                    } else if (file.isFile()) {
+                        // Anything else was a dangling link or vanished since the listing
+                        tally.bytes += file.length();
+                        tally.files++;
+                    }
+                }
+            }
+        }
+
+        private boolean shouldFork(int depth) {
+            return depth <= FORK_DEPTH && inForkJoinPool()
+                && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS;
+        }
+
+        private SizeTask fork(File dir, int depth) {
+            SizeTask task = new SizeTask(dir, depth, deadline, useNio, maxDepth);
+            task.fork();
+            return task;
+        }
+    }
+}
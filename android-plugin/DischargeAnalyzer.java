@@ -0,0 +1,203 @@
+package com.lablinkriparo.monitor;
+
+import java.util.Arrays;
+
+/**
+ * Battery capacity and wear from a discharge time series (level, charge counter,
+ * current, voltage, temperature sampled at a fixed cadence). Unknown readings are
+ * NaN. The capacity comes from, in order of preference: the charge counter drop
+ * between level transitions over a large enough level drop, the fuel gauge's own charge counter / level
+ * ratio, or the integrated current over the level drop. No Android dependency.
+ */
+final class DischargeAnalyzer {
+
+    static final String SOURCE_DRAIN = "chargeCounterDrain";
+    static final String SOURCE_GAUGE = "fuelGauge";
+    static final String SOURCE_CURRENT = "currentIntegration";
+    static final String SOURCE_NONE = "none";
+
+    // Level is an integer percentage; smaller drops give a capacity that is off by too much
+    static final double MIN_DRAIN_LEVEL_DROP = 5;
+    static final double MIN_CURRENT_LEVEL_DROP = 2;
+    // Below this, CURRENT_NOW is reported in mA instead of uA on this device
+    private static final double MILLIAMP_THRESHOLD = 10_000;
+
+    static final class Result {
+        double durationHours;
+        double levelDrop;
+        double drainPctPerHour;
+        double consumedMah;
+        double avgCurrentMa;
+        double avgPowerMw;
+        double drainCapacityMah = Double.NaN;
+        double gaugeCapacityMah = Double.NaN;
+        double currentCapacityMah = Double.NaN;
+        double estimatedCapacityMah = Double.NaN;
+        String capacitySource = SOURCE_NONE;
+        double designCapacityMah;
+        // estimated / design, in percent
+        double healthPct = Double.NaN;
+        // 0 = as new, 100 = fully worn; NaN without a design capacity
+        double degradationScore = Double.NaN;
+        double minVoltageMv = Double.NaN;
+        double maxVoltageMv = Double.NaN;
+        double maxTemperatureC = Double.NaN;
+        double temperatureRiseC = Double.NaN;
+    }
+
+    private DischargeAnalyzer() {
+    }
+
+    static Result analyze(long[] timestampsMs, double[] levelPct, double[] chargeCounterUah, double[] currentUa,
+                          double[] voltageMv, double[] temperatureC, double designCapacityMah) {
+        Result result = new Result();
+        result.designCapacityMah = designCapacityMah;
+        int n = timestampsMs.length;
+        if (n == 0) return result;
+
+        result.durationHours = (timestampsMs[n - 1] - timestampsMs[0]) / 3_600_000.0;
+        int firstLevel = firstKnown(levelPct);
+        int lastLevel = lastKnown(levelPct);
+        if (firstLevel >= 0 && lastLevel > firstLevel) {
+            result.levelDrop = Math.max(0, levelPct[firstLevel] - levelPct[lastLevel]);
+            double hours = (timestampsMs[lastLevel] - timestampsMs[firstLevel]) / 3_600_000.0;
+            result.drainPctPerHour = hours > 0 ? result.levelDrop / hours : 0;
+        }
+
+        // Discharge current as positive mA, whatever sign and unit the driver uses
+        double scale = median(absolute(currentUa)) < MILLIAMP_THRESHOLD ? 1.0 : 0.001;
+        double powerSum = 0;
+        int powerSamples = 0;
+        for (int i = 0; i < n; i++) {
+            double currentMa = Math.abs(currentUa[i]) * scale;
+            if (i > 0) {
+                double previousMa = Math.abs(currentUa[i - 1]) * scale;
+                double hours = (timestampsMs[i] - timestampsMs[i - 1]) / 3_600_000.0;
+                if (!Double.isNaN(currentMa) && !Double.isNaN(previousMa)) {
+                    result.consumedMah += (currentMa + previousMa) / 2 * hours;
+                }
+            }
+            if (!Double.isNaN(currentMa) && !Double.isNaN(voltageMv[i])) {
+                powerSum += currentMa * voltageMv[i] / 1000;
+                powerSamples++;
+            }
+            result.minVoltageMv = min(result.minVoltageMv, voltageMv[i]);
+            result.maxVoltageMv = max(result.maxVoltageMv, voltageMv[i]);
+            result.maxTemperatureC = max(result.maxTemperatureC, temperatureC[i]);
+        }
+        result.avgCurrentMa = result.durationHours > 0 ? result.consumedMah / result.durationHours : 0;
+        result.avgPowerMw = powerSamples > 0 ? powerSum / powerSamples : 0;
+        int firstTemperature = firstKnown(temperatureC);
+        if (firstTemperature >= 0) {
+            result.temperatureRiseC = result.maxTemperatureC - temperatureC[firstTemperature];
+        }
+
+        // Charge counter drop between two level transitions, so both ends sit on a
+        // percentage boundary instead of anywhere inside a 1% step
+        int from = levelTransition(levelPct, chargeCounterUah, 0);
+        int to = from >= 0 ? lastLevelTransition(levelPct, chargeCounterUah) : -1;
+        if (from >= 0 && to > from) {
+            double counterLevelDrop = levelPct[from] - levelPct[to];
+            double drainedMah = (chargeCounterUah[from] - chargeCounterUah[to]) / 1000;
+            if (counterLevelDrop >= MIN_DRAIN_LEVEL_DROP && drainedMah > 0) {
+                result.drainCapacityMah = drainedMah / (counterLevelDrop / 100);
+            }
+        }
+        // The gauge's remaining charge scaled to 100%, per sample
+        double[] gauge = new double[n];
+        for (int i = 0; i < n; i++) {
+            gauge[i] = chargeCounterUah[i] > 0 && levelPct[i] > 0
+                ? chargeCounterUah[i] / 1000 / (levelPct[i] / 100) : Double.NaN;
+        }
+        result.gaugeCapacityMah = median(gauge);
+        if (result.levelDrop >= MIN_CURRENT_LEVEL_DROP && result.consumedMah > 0) {
+            result.currentCapacityMah = result.consumedMah / (result.levelDrop / 100);
+        }
+
+        if (!Double.isNaN(result.drainCapacityMah)) {
+            result.estimatedCapacityMah = result.drainCapacityMah;
+            result.capacitySource = SOURCE_DRAIN;
+        } else if (!Double.isNaN(result.gaugeCapacityMah)) {
+            result.estimatedCapacityMah = result.gaugeCapacityMah;
+            result.capacitySource = SOURCE_GAUGE;
+        } else if (!Double.isNaN(result.currentCapacityMah)) {
+            result.estimatedCapacityMah = result.currentCapacityMah;
+            result.capacitySource = SOURCE_CURRENT;
+        }
+
+        if (designCapacityMah > 0 && !Double.isNaN(result.estimatedCapacityMah)) {
+            result.healthPct = result.estimatedCapacityMah * 100 / designCapacityMah;
+            result.degradationScore = Math.max(0, Math.min(100, 100 - result.healthPct));
+        }
+        return result;
+    }
+
+    private static int firstKnown(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) return i;
+        }
+        return -1;
+    }
+
+    private static int lastKnown(double[] values) {
+        for (int i = values.length - 1; i >= 0; i--) {
+            if (!Double.isNaN(values[i])) return i;
+        }
+        return -1;
+    }
+
+    // First sample at or after from whose level differs from the previous known level
+    // and that has a charge counter reading
+    private static int levelTransition(double[] levelPct, double[] chargeCounterUah, int from) {
+        double previous = Double.NaN;
+        for (int i = from; i < levelPct.length; i++) {
+            if (Double.isNaN(levelPct[i])) continue;
+            if (!Double.isNaN(previous) && levelPct[i] != previous && chargeCounterUah[i] > 0) return i;
+            previous = levelPct[i];
+        }
+        return -1;
+    }
+
+    private static int lastLevelTransition(double[] levelPct, double[] chargeCounterUah) {
+        int last = -1;
+        double previous = Double.NaN;
+        for (int i = 0; i < levelPct.length; i++) {
+            if (Double.isNaN(levelPct[i])) continue;
+            if (!Double.isNaN(previous) && levelPct[i] != previous && chargeCounterUah[i] > 0) last = i;
+            previous = levelPct[i];
+        }
+        return last;
+    }
+
+    private static double[] absolute(double[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Math.abs(values[i]);
+        }
+        return result;
+    }
+
+    // Median of the known values, NaN when there are none
+    static double median(double[] values) {
+        double[] known = new double[values.length];
+        int count = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                known[count++] = value;
+            }
+        }
+        if (count == 0) return Double.NaN;
+        Arrays.sort(known, 0, count);
+        return count % 2 == 1 ? known[count / 2] : (known[count / 2 - 1] + known[count / 2]) / 2;
+    }
+
+    private static double min(double current, double value) {
+        if (Double.isNaN(value)) return current;
+        return Double.isNaN(current) ? value : Math.min(current, value);
+    }
+
+    private static double max(double current, double value) {
+        if (Double.isNaN(value)) return current;
+        return Double.isNaN(current) ? value : Math.max(current, value);
+    }
+}
@@ -0,0 +1,144 @@
+package com.lablinkriparo.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact lookup table of known-bad SHA-256 digests. Digests are kept sorted in
+ * one flat byte array (32 bytes each) with their first 8 bytes mirrored in a
+ * long[] for the binary search, plus a label index per entry: 44 bytes per
+ * hash instead of the ~200 a HashMap keyed by hex strings takes, and a lookup is
+ * one binary search over primitives with no allocation.
+ * Plain Java, so it is benchmarked on a desktop JVM.
+ */
+final class HashIndex {
+
+    static final int DIGEST_BYTES = 32;
+
+    static final class Builder {
+        private final List<byte[]> digests = new ArrayList<>();
+        private final List<Integer> entryLabels = new ArrayList<>();
+        private final Map<String, Integer> labelIndex = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> categories = new ArrayList<>();
+
+        // digest must be DIGEST_BYTES long; the first label wins for duplicates
+        Builder add(byte[] digest, String name, String category) {
+            if (digest.length != DIGEST_BYTES) {
+                throw new IllegalArgumentException("Expected a " + DIGEST_BYTES + "-byte digest");
+            }
+            String key = name + '\u0000' + category;
+            Integer label = labelIndex.get(key);
+            if (label == null) {
+                label = names.size();
+                labelIndex.put(key, label);
+                names.add(name);
+                categories.add(category);
+            }
+            digests.add(digest.clone());
+            entryLabels.add(label);
+            return this;
+        }
+
+        HashIndex build() {
+            int n = digests.size();
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = compareDigests(digests.get(a), 0, digests.get(b));
+                    return c != 0 ? c : Integer.compare(a, b);
+                }
+            });
+            long[] prefixes = new long[n];
+            byte[] flat = new byte[n * DIGEST_BYTES];
+            int[] labels = new int[n];
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                byte[] digest = digests.get(order[i]);
+                // Sorted, so a duplicate directly follows its first occurrence
+                if (size > 0 && compareDigests(flat, (size - 1) * DIGEST_BYTES, digest) == 0) continue;
+                System.arraycopy(digest, 0, flat, size * DIGEST_BYTES, DIGEST_BYTES);
+                prefixes[size] = prefix(digest, 0);
+                labels[size] = entryLabels.get(order[i]);
+                size++;
+            }
+            return new HashIndex(Arrays.copyOf(prefixes, size), Arrays.copyOf(flat, size * DIGEST_BYTES),
+                Arrays.copyOf(labels, size), names.toArray(new String[0]), categories.toArray(new String[0]));
+        }
+    }
+
+    // Sorted by unsigned digest order, which the prefixes follow as signed longs with the sign bit flipped
+    private final long[] prefixes;
+    private final byte[] digests;
+    private final int[] labels;
+    private final String[] names;
+    private final String[] categories;
+
+    private HashIndex(long[] prefixes, byte[] digests, int[] labels, String[] names, String[] categories) {
+        this.prefixes = prefixes;
+        this.digests = digests;
+        this.labels = labels;
+        this.names = names;
+        this.categories = categories;
+    }
+
+    int size() {
+        return prefixes.length;
+    }
+
+    // Label of the digest, or -1 when it is not in the index
+    int lookup(byte[] digest) {
+        if (digest.length != DIGEST_BYTES) return -1;
+        long key = prefix(digest, 0);
+        int low = 0;
+        int high = prefixes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (prefixes[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // low is the first entry with this prefix, if any; full digests break prefix ties
+        for (int i = low; i < prefixes.length && prefixes[i] == key; i++) {
+            int c = compareDigests(digests, i * DIGEST_BYTES, digest);
+            if (c == 0) return labels[i];
+            if (c > 0) break;
+        }
+        return -1;
+    }
+
+    String name(int label) {
+        return names[label];
+    }
+
+    String category(int label) {
+        return categories[label];
+    }
+
+    // First 8 bytes big-endian, sign bit flipped so signed order matches unsigned byte order
+    private static long prefix(byte[] digest, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (digest[offset + i] & 0xff);
+        }
+        return value ^ Long.MIN_VALUE;
+    }
+
+    private static int compareDigests(byte[] a, int offset, byte[] b) {
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            int c = Integer.compare(a[offset + i] & 0xff, b[i] & 0xff);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+}
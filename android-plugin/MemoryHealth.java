@@ -0,0 +1,271 @@
+package com.lablinkriparo.monitor;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extended memory diagnostics: parsers for /proc/meminfo and the PSI file
+ * /proc/pressure/memory, a bounded bandwidth test over off-heap direct buffers,
+ * and a 0-100 health score that lists the factors that lowered it, so a
+ * technician can tell "apps keep reloading" (PSI stalls, swap thrash and low
+ * available memory, which is what drives background kills) from a merely full
+ * RAM gauge. Plain Java, so the parsers and the scoring can be
+ * exercised against captured files.
+ */
+final class MemoryHealth {
+
+    static final String GRADE_GOOD = "good";
+    static final String GRADE_FAIR = "fair";
+    static final String GRADE_POOR = "poor";
+
+    // PSI averages are percentages of wall time spent stalled
+    static final class Pressure {
+        double someAvg10;
+        double someAvg60;
+        double someAvg300;
+        long someTotalUs;
+        // "full" is missing on kernels that only report "some"
+        boolean hasFull;
+        double fullAvg10;
+        double fullAvg60;
+        double fullAvg300;
+        long fullTotalUs;
+    }
+
+    static final class Bandwidth {
+        final long bufferBytes;
+        final int passes;
+        final double copyMbPerSecond;
+        final double readMbPerSecond;
+        final long elapsedMs;
+        final long checksum;
+
+        Bandwidth(long bufferBytes, int passes, double copyMbPerSecond, double readMbPerSecond, long elapsedMs,
+                  long checksum) {
+            this.bufferBytes = bufferBytes;
+            this.passes = passes;
+            this.copyMbPerSecond = copyMbPerSecond;
+            this.readMbPerSecond = readMbPerSecond;
+            this.elapsedMs = elapsedMs;
+            this.checksum = checksum;
+        }
+    }
+
+    static final class Factor {
+        final String name;
+        final int penalty;
+        final String detail;
+
+        Factor(String name, int penalty, String detail) {
+            this.name = name;
+            this.penalty = penalty;
+            this.detail = detail;
+        }
+    }
+
+    static final class Score {
+        final int score;
+        final String grade;
+        final List<Factor> factors;
+
+        Score(int score, String grade, List<Factor> factors) {
+            this.score = score;
+            this.grade = grade;
+            this.factors = factors;
+        }
+    }
+
+    private MemoryHealth() {
+    }
+
+    static Map<String, Long> readMeminfo(String path) throws IOException {
+        Reader reader = new FileReader(path);
+        try {
+            return parseMeminfo(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // "MemTotal:        5799784 kB" -> MemTotal=5799784, values in kB as in the file
+    static Map<String, Long> parseMeminfo(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+            ? (BufferedReader) source : new BufferedReader(source);
+        Map<String, Long> values = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            long value = 0;
+            boolean digits = false;
+            for (int i = colon + 1; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits = true;
+                } else if (digits) {
+                    break;
+                }
+            }
+            if (digits) {
+                values.put(line.substring(0, colon), value);
+            }
+        }
+        return values;
+    }
+
+    static Pressure readPressure(String path) throws IOException {
+        Reader reader = new FileReader(path);
+        try {
+            return parsePressure(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // "some avg10=0.00 avg60=0.00 avg300=0.00 total=0", then the same for "full"
+    static Pressure parsePressure(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+            ? (BufferedReader) source : new BufferedReader(source);
+        Pressure pressure = new Pressure();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 0) continue;
+            boolean full = "full".equals(fields[0]);
+            if (!full && !"some".equals(fields[0])) continue;
+            for (int i = 1; i < fields.length; i++) {
+                int eq = fields[i].indexOf('=');
+                if (eq <= 0) continue;
+                String key = fields[i].substring(0, eq);
+                String value = fields[i].substring(eq + 1);
+                try {
+                    if ("total".equals(key)) {
+                        if (full) pressure.fullTotalUs = Long.parseLong(value);
+                        else pressure.someTotalUs = Long.parseLong(value);
+                    } else if ("avg10".equals(key)) {
+                        if (full) pressure.fullAvg10 = Double.parseDouble(value);
+                        else pressure.someAvg10 = Double.parseDouble(value);
+                    } else if ("avg60".equals(key)) {
+                        if (full) pressure.fullAvg60 = Double.parseDouble(value);
+                        else pressure.someAvg60 = Double.parseDouble(value);
+                    } else if ("avg300".equals(key)) {
+                        if (full) pressure.fullAvg300 = Double.parseDouble(value);
+                        else pressure.someAvg300 = Double.parseDouble(value);
+                    }
+                } catch (NumberFormatException e) {
+                    // Leave the field at zero
+                }
+            }
+            if (full) {
+                pressure.hasFull = true;
+            }
+        }
+        return pressure;
+    }
+
+    // Copy and read passes over two direct buffers of megabytes / 2 each, until
+    // budgetMs is spent (at least one pass). Off-heap, so the Java heap limit and
+    // the GC do not get in the way of sizing.
+    static Bandwidth bandwidth(int megabytes, long budgetMs) {
+        int bytes = Math.max(1, megabytes / 2) * 1024 * 1024;
+        ByteBuffer source = ByteBuffer.allocateDirect(bytes);
+        ByteBuffer target = ByteBuffer.allocateDirect(bytes);
+        for (int i = 0; i + 8 <= bytes; i += 8) {
+            source.putLong(i, i * 0x9E3779B97F4A7C15L);
+        }
+
+        long copyNs = 0;
+        long readNs = 0;
+        long checksum = 0;
+        int passes = 0;
+        long start = System.nanoTime();
+        long budgetNs = budgetMs * 1_000_000L;
+        do {
+            long t0 = System.nanoTime();
+            source.clear();
+            target.clear();
+            target.put(source);
+            long t1 = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i + 8 <= bytes; i += 8) {
+                sum += target.getLong(i);
+            }
+            long t2 = System.nanoTime();
+            copyNs += t1 - t0;
+            readNs += t2 - t1;
+            checksum ^= sum;
+            passes++;
+        } while (System.nanoTime() - start < budgetNs);
+
+        double megabytesMoved = (double) bytes * passes / (1024 * 1024);
+        return new Bandwidth(bytes, passes,
+            copyNs > 0 ? megabytesMoved * 1e9 / copyNs : 0,
+            readNs > 0 ? megabytesMoved * 1e9 / readNs : 0,
+            (System.nanoTime() - start) / 1_000_000, checksum);
+    }
+
+    // meminfo and pressure may be null when unreadable
+    static Score score(long totalBytes, long availableBytes, long thresholdBytes, boolean lowMemory,
+                       Map<String, Long> meminfo, Pressure pressure) {
+        List<Factor> factors = new ArrayList<>();
+        if (lowMemory) {
+            factors.add(new Factor("lowMemory", 20, "The system reports low memory right now"));
+        } else if (thresholdBytes > 0 && availableBytes < thresholdBytes * 3 / 2) {
+            factors.add(new Factor("nearThreshold", 10,
+                "Available memory is close to the point where background apps are killed"));
+        }
+
+        double availableRatio = totalBytes > 0 ? (double) availableBytes / totalBytes : 1;
+        if (availableRatio < 0.10) {
+            factors.add(new Factor("availableLow", 25, "Less than 10% of RAM is available"));
+        } else if (availableRatio < 0.20) {
+            factors.add(new Factor("availableLow", 10, "Less than 20% of RAM is available"));
+        }
+
+        if (pressure != null) {
+            if (pressure.someAvg60 >= 10) {
+                factors.add(new Factor("pressureSome", 20,
+                    "Tasks stalled on memory " + round(pressure.someAvg60) + "% of the last minute"));
+            } else if (pressure.someAvg60 >= 2) {
+                factors.add(new Factor("pressureSome", 10,
+                    "Tasks stalled on memory " + round(pressure.someAvg60) + "% of the last minute"));
+            }
+            if (pressure.hasFull && pressure.fullAvg60 >= 2) {
+                factors.add(new Factor("pressureFull", 20,
+                    "All tasks stalled on memory " + round(pressure.fullAvg60) + "% of the last minute"));
+            } else if (pressure.hasFull && pressure.fullAvg60 >= 0.5) {
+                factors.add(new Factor("pressureFull", 10,
+                    "All tasks stalled on memory " + round(pressure.fullAvg60) + "% of the last minute"));
+            }
+        }
+
+        if (meminfo != null) {
+            Long swapTotal = meminfo.get("SwapTotal");
+            Long swapFree = meminfo.get("SwapFree");
+            if (swapTotal != null && swapFree != null && swapTotal > 0
+                    && (swapTotal - swapFree) * 10 >= swapTotal * 6) {
+                factors.add(new Factor("swapHeavy", 10, "More than 60% of swap (zram) is in use"));
+            }
+        }
+
+        int score = 100;
+        for (Factor factor : factors) {
+            score -= factor.penalty;
+        }
+        score = Math.max(0, score);
+        String grade = score >= 80 ? GRADE_GOOD : score >= 50 ? GRADE_FAIR : GRADE_POOR;
+        return new Score(score, grade, factors);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
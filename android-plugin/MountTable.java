@@ -0,0 +1,157 @@
+package com.lablinkriparo.monitor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser for /proc/mounts (fstab format: device, mount point, type, options,
+ * dump, pass), working on the raw bytes ProcFs reads. Octal escapes such as
+ * \040 in paths are decoded. Plain Java, so the integrity checks built on it can
+ * be exercised against captured tables.
+ */
+final class MountTable {
+
+    static final class Entry {
+        final String device;
+        final String mountPoint;
+        final String type;
+        final String options;
+
+        Entry(String device, String mountPoint, String type, String options) {
+            this.device = device;
+            this.mountPoint = mountPoint;
+            this.type = type;
+            this.options = options;
+        }
+
+        boolean hasOption(String option) {
+            int from = 0;
+            while (from <= options.length()) {
+                int end = options.indexOf(',', from);
+                if (end < 0) end = options.length();
+                if (end - from == option.length() && options.startsWith(option, from)) {
+                    return true;
+                }
+                from = end + 1;
+            }
+            return false;
+        }
+
+        boolean isReadOnly() {
+            return hasOption("ro");
+        }
+    }
+
+    private final List<Entry> entries;
+
+    private MountTable(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    static MountTable read(String path) throws IOException {
+        return ProcFs.local().mounts(path);
+    }
+
+    // One entry per line; malformed lines (fewer than four fields) are skipped
+    static MountTable parse(byte[] data, int offset, int length) {
+        List<Entry> entries = new ArrayList<>();
+        String[] fields = new String[4];
+        // Byte range of each field on the previous line; types and options mostly
+        // repeat from line to line, and then the previous String is reused
+        int[] previousStart = new int[4];
+        int[] previousEnd = new int[4];
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int lineEnd = i;
+            while (lineEnd < end && data[lineEnd] != '\n') lineEnd++;
+            int count = 0;
+            while (i < lineEnd && count < fields.length) {
+                while (i < lineEnd && isBlank(data[i])) i++;
+                int start = i;
+                while (i < lineEnd && !isBlank(data[i])) i++;
+                if (i > start) {
+                    if (fields[count] == null
+                        || !sameBytes(data, start, i, previousStart[count], previousEnd[count])) {
+                        fields[count] = decode(data, start, i);
+                    }
+                    previousStart[count] = start;
+                    previousEnd[count] = i;
+                    count++;
+                }
+            }
+            if (count == fields.length) {
+                entries.add(new Entry(fields[0], fields[1], fields[2], fields[3]));
+            }
+            i = lineEnd + 1;
+        }
+        return new MountTable(entries);
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    // The mount that serves path: the longest mount point that is path or one of
+    // its ancestors, and of those the one mounted last, since it hides the others.
+    // On system-as-root devices /system is served by the "/" mount.
+    Entry mountFor(String path) {
+        Entry best = null;
+        for (Entry entry : entries) {
+            if (contains(entry.mountPoint, path)
+                && (best == null || entry.mountPoint.length() >= best.mountPoint.length())) {
+                best = entry;
+            }
+        }
+        return best;
+    }
+
+    private static boolean contains(String mountPoint, String path) {
+        if (!path.startsWith(mountPoint)) return false;
+        return path.length() == mountPoint.length() || mountPoint.endsWith("/")
+            || path.charAt(mountPoint.length()) == '/';
+    }
+
+    // The kernel writes space, tab, newline and backslash in paths as \ooo
+    private static String decode(byte[] data, int start, int end) {
+        int escape = start;
+        while (escape < end && data[escape] != '\\') escape++;
+        if (escape == end) {
+            return new String(data, start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] out = new byte[end - start];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (data[i] == '\\' && isOctal(data, i + 1, end)) {
+                out[n++] = (byte) (((data[i + 1] - '0') << 6) | ((data[i + 2] - '0') << 3) | (data[i + 3] - '0'));
+                i += 3;
+            } else {
+                out[n++] = data[i];
+            }
+        }
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static boolean sameBytes(byte[] data, int start, int end, int otherStart, int otherEnd) {
+        if (end - start != otherEnd - otherStart) return false;
+        for (int i = start, j = otherStart; i < end; i++, j++) {
+            if (data[i] != data[j]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isOctal(byte[] data, int from, int end) {
+        if (from + 3 > end) return false;
+        for (int i = from; i < from + 3; i++) {
+            if (data[i] < '0' || data[i] > '7') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,228 @@
+package com.lablinkriparo.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of per-package scan results, stored in the app's private files dir.
+ * Entries are keyed by package name and only served while lastUpdateTime and
+ * versionCode still match, so a repeat scan reprocesses just the packages that
+ * were added or updated. Labels live as long as the package version (and locale);
+ * storage sizes change without an update and are only reused within maxStorageAgeMs.
+ */
+final class PackageScanCache {
+
+    private static final int MAGIC = 0x504b5343; // "PKSC"
+    private static final int FORMAT_VERSION = 1;
+
+    static final class Entry {
+        final String packageName;
+        final long lastUpdateTime;
+        final long versionCode;
+        final String label;
+        final boolean hasStorage;
+        final boolean storageFromStats;
+        final long appBytes;
+        final long dataBytes;
+        final long cacheBytes;
+        final long storageMeasuredAt;
+
+        Entry(String packageName, long lastUpdateTime, long versionCode, String label,
+              boolean hasStorage, boolean storageFromStats,
+              long appBytes, long dataBytes, long cacheBytes, long storageMeasuredAt) {
+            this.packageName = packageName;
+            this.lastUpdateTime = lastUpdateTime;
+            this.versionCode = versionCode;
+            this.label = label;
+            this.hasStorage = hasStorage;
+            this.storageFromStats = storageFromStats;
+            this.appBytes = appBytes;
+            this.dataBytes = dataBytes;
+            this.cacheBytes = cacheBytes;
+            this.storageMeasuredAt = storageMeasuredAt;
+        }
+
+        boolean hasFreshStorage(long now, long maxAgeMs) {
+            return hasStorage && now - storageMeasuredAt >= 0 && now - storageMeasuredAt < maxAgeMs;
+        }
+    }
+
+    private final File file;
+    private final String locale;
+    private final long maxStorageAgeMs;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+    // Serializes flushes, so mutators only wait for the snapshot and not for the write
+    private final Object flushLock = new Object();
+
+    PackageScanCache(File file, String locale, long maxStorageAgeMs) {
+        this.file = file;
+        this.locale = locale;
+        this.maxStorageAgeMs = maxStorageAgeMs;
+    }
+
+    long maxStorageAgeMs() {
+        return maxStorageAgeMs;
+    }
+
+    // Returns the cached entry only if it belongs to the same package version
+    Entry get(String packageName, long lastUpdateTime, long versionCode) {
+        ensureLoaded();
+        Entry entry = entries.get(packageName);
+        if (entry == null || entry.lastUpdateTime != lastUpdateTime || entry.versionCode != versionCode) {
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(Entry entry) {
+        ensureLoaded();
+        entries.put(entry.packageName, entry);
+        dirty = true;
+    }
+
+    synchronized void remove(String packageName) {
+        ensureLoaded();
+        if (entries.remove(packageName) != null) {
+            dirty = true;
+        }
+    }
+
+    // Drops entries for packages that are no longer installed
+    synchronized void retainOnly(Collection<String> packageNames) {
+        ensureLoaded();
+        Set<String> keep = new HashSet<>(packageNames);
+        if (entries.keySet().retainAll(keep)) {
+            dirty = true;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        dirty = true;
+    }
+
+    int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    void flush() throws IOException {
+        synchronized (flushLock) {
+            List<Entry> snapshot;
+            synchronized (this) {
+                if (!dirty) return;
+                snapshot = new ArrayList<>(entries.values());
+                dirty = false;
+            }
+            try {
+                write(snapshot);
+            } catch (IOException | RuntimeException e) {
+                // Nothing reached the file, so the next flush writes the entries again
+                dirty = true;
+                throw e;
+            }
+        }
+    }
+
+    private void write(List<Entry> snapshot) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(locale);
+                out.writeInt(snapshot.size());
+                for (Entry e : snapshot) {
+                    out.writeUTF(e.packageName);
+                    out.writeLong(e.lastUpdateTime);
+                    out.writeLong(e.versionCode);
+                    out.writeBoolean(e.label != null);
+                    if (e.label != null) out.writeUTF(e.label);
+                    out.writeBoolean(e.hasStorage);
+                    out.writeBoolean(e.storageFromStats);
+                    out.writeLong(e.appBytes);
+                    out.writeLong(e.dataBytes);
+                    out.writeLong(e.cacheBytes);
+                    out.writeLong(e.storageMeasuredAt);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            try {
+                read();
+            } catch (IOException e) {
+                // Corrupt or foreign cache file: start over
+                entries.clear();
+                dirty = true;
+            }
+            loaded = true;
+        }
+    }
+
+    private void read() throws IOException {
+        if (!file.exists()) return;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+            if (!locale.equals(in.readUTF())) {
+                // Labels were resolved for another locale
+                dirty = true;
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                long lastUpdateTime = in.readLong();
+                long versionCode = in.readLong();
+                String label = in.readBoolean() ? in.readUTF() : null;
+                boolean hasStorage = in.readBoolean();
+                boolean storageFromStats = in.readBoolean();
+                long appBytes = in.readLong();
+                long dataBytes = in.readLong();
+                long cacheBytes = in.readLong();
+                long storageMeasuredAt = in.readLong();
+                entries.put(packageName, new Entry(packageName, lastUpdateTime, versionCode, label,
+                    hasStorage, storageFromStats, appBytes, dataBytes, cacheBytes, storageMeasuredAt));
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.lablinkriparo.monitor;
+
+import android.app.usage.StorageStats;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Package scan engine shared by getInstalledAppsStorage, getDangerousPermissions
+ * and getTotalCacheSize. The installed package list (with requested permissions)
+ * is fetched once per snapshot, and per-package work is split into chunks that
+ * run on the diagnostics worker pool. Facets already loaded on a record are reused,
+ * so back-to-back diagnostic calls touch each package once, and facets persisted in
+ * the PackageScanCache are reused across sessions until the package is updated.
+ */
+final class PackageScanner {
+
+    static final int FACET_LABEL = 1;
+    static final int FACET_STORAGE = 1 << 1;
+
+    // Long enough to cover one diagnostic pass, short enough to pick up installs
+    private static final long SNAPSHOT_TTL_MS = 30_000;
+    private static final int MIN_CHUNK_SIZE = 16;
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    interface Visitor {
+        void visit(PackageRecord record);
+    }
+
+    static final class ScanResult {
+        final List<PackageRecord> records;
+        // Records whose requested facets were already known (in memory or on disk)
+        final int cacheHits;
+        final int cacheMisses;
+
+        ScanResult(List<PackageRecord> records, int cacheHits, int cacheMisses) {
+            this.records = records;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+        }
+    }
+
+    static final class PackageRecord {
+        final ApplicationInfo appInfo;
+        final String packageName;
+        final boolean isSystemApp;
+        final long lastUpdateTime;
+        final long versionCode;
+        final String[] requestedPermissions;
+        final int[] requestedPermissionsFlags;
+
+        private volatile String label;
+        private volatile boolean storageLoaded;
+        private boolean storageFromStats;
+        private long appBytes;
+        private long dataBytes;
+        private long cacheBytes;
+        private long storageMeasuredAt;
+
+        PackageRecord(PackageInfo pkgInfo) {
+            this.appInfo = pkgInfo.applicationInfo;
+            this.packageName = pkgInfo.packageName;
+            this.isSystemApp = (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+            this.lastUpdateTime = pkgInfo.lastUpdateTime;
+            this.versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? pkgInfo.getLongVersionCode() : pkgInfo.versionCode;
+            this.requestedPermissions = pkgInfo.requestedPermissions;
+            this.requestedPermissionsFlags = pkgInfo.requestedPermissionsFlags;
+        }
+
+        String label() {
+            return label;
+        }
+
+        long appBytes() {
+            return appBytes;
+        }
+
+        long dataBytes() {
+            return dataBytes;
+        }
+
+        long cacheBytes() {
+            return cacheBytes;
+        }
+
+        long totalBytes() {
+            return appBytes + dataBytes;
+        }
+
+        // True when sizes came from StorageStatsManager rather than the APK file length
+        boolean storageFromStats() {
+            return storageFromStats;
+        }
+    }
+
+    private final PackageManager pm;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final PackageScanCache cache;
+    private final StorageStatsReader storageStats;
+
+    // Written under the lock; volatile so freshSnapshot can read them without waiting on a fetch
+    private volatile List<PackageRecord> snapshot;
+    private volatile long snapshotAt;
+
+    PackageScanner(Context context, ExecutorService workers, int parallelism, PackageScanCache cache,
+                   StorageStatsReader storageStats) {
+        this.pm = context.getPackageManager();
+        this.workers = workers;
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.storageStats = storageStats;
+    }
+
+    ScanResult scan(int facets) throws InterruptedException, ExecutionException {
+        return scan(facets, null);
+    }
+
+    // Loads the requested facets on every record, then hands each record to the visitor
+    // on a worker thread. Records whose facets fail to load are still visited.
+    ScanResult scan(int facets, Visitor visitor) throws InterruptedException, ExecutionException {
+        List<PackageRecord> records = records();
+        ScanResult result = process(records, facets, visitor);
+        if (result.cacheMisses > 0) {
+            persist(records);
+        }
+        return result;
+    }
+
+    // Loads facets for a subset of an earlier scan, e.g. labels for the rows actually returned
+    ScanResult load(List<PackageRecord> subset, int facets) throws InterruptedException, ExecutionException {
+        ScanResult result = process(subset, facets, null);
+        if (result.cacheMisses > 0) {
+            flushCache();
+        }
+        return result;
+    }
+
+    private ScanResult process(final List<PackageRecord> records, final int facets, final Visitor visitor)
+            throws InterruptedException, ExecutionException {
+        final AtomicInteger hits = new AtomicInteger();
+        final AtomicInteger misses = new AtomicInteger();
+        int size = records.size();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE,
+            (size + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(size, start + chunkSize);
+            futures.add(workers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = from; i < to; i++) {
+                        PackageRecord record = records.get(i);
+                        if (facets != 0) {
+                            if (load(record, facets)) {
+                                hits.incrementAndGet();
+                            } else {
+                                misses.incrementAndGet();
+                            }
+                        }
+                        if (visitor != null) {
+                            visitor.visit(record);
+                        }
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return new ScanResult(records, hits.get(), misses.get());
+    }
+
+    // Size of the current package snapshot, e.g. to report progress before a scan
+    int packageCount() {
+        return records().size();
+    }
+
+    // The current package snapshot without loading any facet
+    List<PackageRecord> installed() {
+        return records();
+    }
+
+    // The current snapshot while it is fresh, else null; never fetches or waits on a fetch
+    List<PackageRecord> freshSnapshot() {
+        List<PackageRecord> current = snapshot;
+        return current != null && SystemClock.elapsedRealtime() - snapshotAt < SNAPSHOT_TTL_MS ? current : null;
+    }
+
+    // Called when the package list changed; packageName is null when unknown
+    synchronized void invalidate(String packageName) {
+        snapshot = null;
+        if (packageName != null) {
+            cache.remove(packageName);
+        }
+    }
+
+    private synchronized List<PackageRecord> records() {
+        long now = SystemClock.elapsedRealtime();
+        if (snapshot != null && now - snapshotAt < SNAPSHOT_TTL_MS) {
+            return snapshot;
+        }
+        List<PackageInfo> packages = pm.getInstalledPackages(PackageManager.GET_PERMISSIONS);
+        List<PackageRecord> records = new ArrayList<>(packages.size());
+        for (PackageInfo pkgInfo : packages) {
+            if (pkgInfo.applicationInfo != null) {
+                records.add(new PackageRecord(pkgInfo));
+            }
+        }
+        snapshotAt = now;
+        snapshot = Collections.unmodifiableList(records);
+        return snapshot;
+    }
+
+    // Returns true when every requested facet was served without recomputing it
+    private boolean load(PackageRecord record, int facets) {
+        boolean wantLabel = (facets & FACET_LABEL) != 0 && record.label == null;
+        boolean wantStorage = (facets & FACET_STORAGE) != 0 && !record.storageLoaded;
+        if (!wantLabel && !wantStorage) {
+            return true;
+        }
+
+        PackageScanCache.Entry cached = cache.get(record.packageName, record.lastUpdateTime, record.versionCode);
+        long now = System.currentTimeMillis();
+        boolean computed = false;
+
+        if (wantLabel) {
+            if (cached != null && cached.label != null) {
+                record.label = cached.label;
+            } else {
+                try {
+                    record.label = pm.getApplicationLabel(record.appInfo).toString();
+                } catch (Exception e) {
+                    record.label = record.packageName;
+                }
+                computed = true;
+            }
+        }
+        if (wantStorage) {
+            synchronized (record) {
+                if (!record.storageLoaded) {
+                    if (cached != null && cached.hasFreshStorage(now, cache.maxStorageAgeMs())) {
+                        record.appBytes = cached.appBytes;
+                        record.dataBytes = cached.dataBytes;
+                        record.cacheBytes = cached.cacheBytes;
+                        record.storageFromStats = cached.storageFromStats;
+                        record.storageMeasuredAt = cached.storageMeasuredAt;
+                    } else {
+                        loadStorage(record);
+                        record.storageMeasuredAt = now;
+                        computed = true;
+                    }
+                    record.storageLoaded = true;
+                }
+            }
+        }
+
+        if (computed) {
+            String label = record.label != null ? record.label : (cached != null ? cached.label : null);
+            if (record.storageLoaded) {
+                cache.put(new PackageScanCache.Entry(record.packageName, record.lastUpdateTime,
+                    record.versionCode, label, true, record.storageFromStats,
+                    record.appBytes, record.dataBytes, record.cacheBytes, record.storageMeasuredAt));
+            } else if (cached != null && cached.hasStorage) {
+                cache.put(new PackageScanCache.Entry(record.packageName, record.lastUpdateTime,
+                    record.versionCode, label, true, cached.storageFromStats,
+                    cached.appBytes, cached.dataBytes, cached.cacheBytes, cached.storageMeasuredAt));
+            } else {
+                cache.put(new PackageScanCache.Entry(record.packageName, record.lastUpdateTime,
+                    record.versionCode, label, false, false, 0, 0, 0, 0));
+            }
+        }
+        return !computed;
+    }
+
+    private void persist(List<PackageRecord> records) {
+        List<String> installed = new ArrayList<>(records.size());
+        for (PackageRecord record : records) {
+            installed.add(record.packageName);
+        }
+        cache.retainOnly(installed);
+        flushCache();
+    }
+
+    private void flushCache() {
+        try {
+            cache.flush();
+        } catch (IOException e) {
+            // Cache is an optimisation only; the next scan recomputes
+        }
+    }
+
+    private void loadStorage(PackageRecord record) {
+        ApplicationInfo appInfo = record.appInfo;
+        if (storageStats.isSupported()) {
+            try {
+                StorageStats stats = storageStats.queryPackage(appInfo);
+                record.appBytes = stats.getAppBytes();
+                record.dataBytes = stats.getDataBytes();
+                record.cacheBytes = stats.getCacheBytes();
+                record.storageFromStats = true;
+                return;
+            } catch (Exception e) {
+                // Fallback to file size
+            }
+        }
+        record.appBytes = new File(appInfo.sourceDir).length();
+        record.dataBytes = 0;
+        record.cacheBytes = 0;
+    }
+}
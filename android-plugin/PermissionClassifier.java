@@ -0,0 +1,152 @@
+package com.lablinkriparo.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled matcher for a watch list of permissions (the dangerous permissions
+ * reported by getDangerousPermissions). Each watched permission gets a bit index
+ * in a hash table built once, and an app's granted permissions are reduced to a
+ * Mask with one lookup per requested permission. Apps share a handful of distinct
+ * masks, so callers encode results once per mask instead of once per app.
+ * Works on the raw requestedPermissions / requestedPermissionsFlags arrays of
+ * PackageInfo and has no Android dependency, so it can be measured on a desktop JVM.
+ */
+final class PermissionClassifier {
+
+    static final class Mask {
+        static final Mask EMPTY = new Mask(new long[0]);
+
+        private final long[] words;
+        private final int hash;
+
+        private Mask(long[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        boolean isEmpty() {
+            return words.length == 0;
+        }
+
+        boolean get(int bit) {
+            int word = bit >>> 6;
+            return word < words.length && (words[word] & (1L << bit)) != 0;
+        }
+
+        int bitCount() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // Next set bit at or after from, or -1
+        int nextSetBit(int from) {
+            int word = from >>> 6;
+            if (word >= words.length) return -1;
+            long bits = words[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word == words.length) return -1;
+                bits = words[word];
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Mask && hash == ((Mask) o).hash && Arrays.equals(words, ((Mask) o).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final String[] permissions;
+    private final String[] shortNames;
+    private final Map<String, Integer> bits;
+    private final int grantedFlag;
+
+    // grantedFlag is PackageInfo.REQUESTED_PERMISSION_GRANTED; duplicates in watched are ignored
+    PermissionClassifier(Collection<String> watched, int grantedFlag) {
+        this.bits = new HashMap<>(watched.size() * 2);
+        List<String> unique = new ArrayList<>(watched.size());
+        for (String permission : watched) {
+            if (permission != null && !bits.containsKey(permission)) {
+                bits.put(permission, unique.size());
+                unique.add(permission);
+            }
+        }
+        this.permissions = unique.toArray(new String[0]);
+        this.shortNames = new String[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            shortNames[i] = shortName(permissions[i]);
+        }
+        this.grantedFlag = grantedFlag;
+    }
+
+    PermissionClassifier(String[] watched, int grantedFlag) {
+        this(Arrays.asList(watched), grantedFlag);
+    }
+
+    int size() {
+        return permissions.length;
+    }
+
+    String permission(int bit) {
+        return permissions[bit];
+    }
+
+    String shortName(int bit) {
+        return shortNames[bit];
+    }
+
+    // Bit index of a watched permission, or -1
+    int bitOf(String permission) {
+        Integer bit = bits.get(permission);
+        return bit != null ? bit : -1;
+    }
+
+    // Watched permissions the app has been granted
+    Mask classify(String[] requested, int[] flags) {
+        if (requested == null || flags == null) return Mask.EMPTY;
+        long[] words = null;
+        int count = Math.min(requested.length, flags.length);
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & grantedFlag) == 0) continue;
+            Integer bit = bits.get(requested[i]);
+            if (bit == null) continue;
+            if (words == null) {
+                words = new long[(permissions.length + 63) >>> 6];
+            }
+            words[bit >>> 6] |= 1L << bit;
+        }
+        return words == null ? Mask.EMPTY : new Mask(words);
+    }
+
+    // Short names (e.g. "CAMERA") in watch-list order
+    List<String> names(Mask mask) {
+        List<String> result = new ArrayList<>(mask.bitCount());
+        for (int bit = mask.nextSetBit(0); bit >= 0; bit = mask.nextSetBit(bit + 1)) {
+            result.add(shortNames[bit]);
+        }
+        return result;
+    }
+
+    List<String> granted(String[] requested, int[] flags) {
+        return names(classify(requested, flags));
+    }
+
+    static String shortName(String permission) {
+        return permission.substring(permission.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,163 @@
+package com.lablinkriparo.monitor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index from granted permission to the set of apps holding it, one bitmap
+ * per permission over the app positions of a package snapshot. Queries such as
+ * "RECORD_AUDIO and ACCESS_FINE_LOCATION but not INTERNET" are a few word-wise
+ * AND / OR / AND-NOT passes, with no rescan of the packages. Immutable once built;
+ * has no Android dependency, so it can be measured on a desktop JVM.
+ */
+final class PermissionIndex {
+
+    static final class Builder {
+        private final int apps;
+        private final int words;
+        private final int grantedFlag;
+        private final String[] packages;
+        private final long[] system;
+        private final Map<String, long[]> byPermission = new HashMap<>();
+        private int next;
+
+        // grantedFlag is PackageInfo.REQUESTED_PERMISSION_GRANTED
+        Builder(int apps, int grantedFlag) {
+            this.apps = apps;
+            this.words = (apps + 63) >>> 6;
+            this.grantedFlag = grantedFlag;
+            this.packages = new String[apps];
+            this.system = new long[words];
+        }
+
+        // Adds the next app; its position is the order of the add calls
+        Builder add(String packageName, boolean isSystemApp, String[] requested, int[] flags) {
+            if (next == apps) {
+                throw new IllegalStateException("Index is full (" + apps + " apps)");
+            }
+            int app = next++;
+            packages[app] = packageName;
+            int word = app >>> 6;
+            long bit = 1L << app;
+            if (isSystemApp) {
+                system[word] |= bit;
+            }
+            if (requested != null && flags != null) {
+                int count = Math.min(requested.length, flags.length);
+                for (int i = 0; i < count; i++) {
+                    if ((flags[i] & grantedFlag) == 0) continue;
+                    long[] holders = byPermission.get(requested[i]);
+                    if (holders == null) {
+                        holders = new long[words];
+                        byPermission.put(requested[i], holders);
+                    }
+                    holders[word] |= bit;
+                }
+            }
+            return this;
+        }
+
+        PermissionIndex build() {
+            return new PermissionIndex(next, words, packages, system, byPermission);
+        }
+    }
+
+    private final int apps;
+    private final int words;
+    private final String[] packages;
+    private final long[] system;
+    private final Map<String, long[]> byPermission;
+
+    private PermissionIndex(int apps, int words, String[] packages, long[] system,
+                            Map<String, long[]> byPermission) {
+        this.apps = apps;
+        this.words = words;
+        this.packages = packages;
+        this.system = system;
+        this.byPermission = byPermission;
+    }
+
+    int appCount() {
+        return apps;
+    }
+
+    int permissionCount() {
+        return byPermission.size();
+    }
+
+    String packageName(int app) {
+        return packages[app];
+    }
+
+    // Apps holding every permission of allOf, at least one of anyOf (ignored when empty)
+    // and none of noneOf. Null collections count as empty. Returns app positions, ascending.
+    int[] query(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf,
+                boolean includeSystem) {
+        long[] result = new long[words];
+        for (int w = 0; w < words; w++) {
+            result[w] = -1L;
+        }
+        // Clear the positions past the last app
+        if ((apps & 63) != 0) {
+            result[words - 1] = (1L << apps) - 1;
+        }
+        if (!includeSystem) {
+            andNot(result, system);
+        }
+        if (allOf != null) {
+            for (String permission : allOf) {
+                long[] holders = byPermission.get(permission);
+                if (holders == null) return new int[0];
+                for (int w = 0; w < words; w++) {
+                    result[w] &= holders[w];
+                }
+            }
+        }
+        if (anyOf != null && !anyOf.isEmpty()) {
+            long[] union = new long[words];
+            for (String permission : anyOf) {
+                long[] holders = byPermission.get(permission);
+                if (holders == null) continue;
+                for (int w = 0; w < words; w++) {
+                    union[w] |= holders[w];
+                }
+            }
+            for (int w = 0; w < words; w++) {
+                result[w] &= union[w];
+            }
+        }
+        if (noneOf != null) {
+            for (String permission : noneOf) {
+                long[] holders = byPermission.get(permission);
+                if (holders != null) {
+                    andNot(result, holders);
+                }
+            }
+        }
+        return positions(result);
+    }
+
+    private static void andNot(long[] target, long[] mask) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] &= ~mask[w];
+        }
+    }
+
+    private static int[] positions(long[] bitmap) {
+        int count = 0;
+        for (long word : bitmap) {
+            count += Long.bitCount(word);
+        }
+        int[] positions = new int[count];
+        int n = 0;
+        for (int w = 0; w < bitmap.length; w++) {
+            long word = bitmap[w];
+            while (word != 0) {
+                positions[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+}
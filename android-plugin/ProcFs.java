@@ -0,0 +1,73 @@
+package com.lablinkriparo.monitor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reader for small procfs and sysfs files. These report a size of 0 and are
+ * generated on every read, so each file is read whole, to EOF, into a byte
+ * buffer that is kept and grown per thread instead of going through a
+ * Reader and per-line Strings. Plain Java, so it runs on a desktop JVM as well.
+ */
+final class ProcFs {
+
+    private static final int INITIAL_BYTES = 16 * 1024;
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<ProcFs> LOCAL = new ThreadLocal<ProcFs>() {
+        @Override
+        protected ProcFs initialValue() {
+            return new ProcFs();
+        }
+    };
+
+    private byte[] buffer = new byte[INITIAL_BYTES];
+
+    private ProcFs() {
+    }
+
+    // The calling thread's reader; its buffer is overwritten by the next read
+    static ProcFs local() {
+        return LOCAL.get();
+    }
+
+    // Reads the whole file into buffer() and returns its length
+    int read(String path) throws IOException {
+        FileInputStream in = new FileInputStream(path);
+        try {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    if (buffer.length >= MAX_BYTES) {
+                        throw new IOException(path + " is larger than " + MAX_BYTES + " bytes");
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int n = in.read(buffer, length, buffer.length - length);
+                if (n < 0) return length;
+                length += n;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    // First line without its line break; null for an empty file
+    String readLine(String path) throws IOException {
+        int length = read(path);
+        int end = 0;
+        while (end < length && buffer[end] != '\n') end++;
+        if (end > 0 && buffer[end - 1] == '\r') end--;
+        return length == 0 ? null : new String(buffer, 0, end, StandardCharsets.UTF_8);
+    }
+
+    MountTable mounts(String path) throws IOException {
+        return MountTable.parse(buffer, 0, read(path));
+    }
+}
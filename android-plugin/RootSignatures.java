@@ -0,0 +1,443 @@
+package com.lablinkriparo.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Data-driven root and tamper detection. Versioned definitions list signatures,
+ * each a set of indicators (paths, packages, system properties, mount entries)
+ * of which any one is enough for a match. Compiling a set of definitions builds
+ * a lookup plan that dedupes every path, package and property across signatures,
+ * so a run stats each path once, resolves packages in one installed-set query
+ * when there are many of them, and reads the mount table once, however large the
+ * definitions grow. The report lists the matched signatures with the indicators
+ * that hit and the probe time attributed to each. Built-in definitions cover the
+ * classic su/SuperSU/Magisk/Xposed indicators; newer ones arrive as JSON.
+ */
+final class RootSignatures {
+
+    static final String CATEGORY_ROOT = "root";
+    static final String CATEGORY_TAMPER = "tamper";
+    // Informational: reported but not counted as root or tampering
+    static final String CATEGORY_BUILD = "build";
+
+    static final int BUILT_IN_VERSION = 1;
+
+    // Above this many packages, one installed-set query beats a lookup per package
+    private static final int PACKAGE_SET_THRESHOLD = 16;
+
+    // What a run needs from the device; implemented over the Android APIs
+    interface Environment {
+        boolean exists(String path);
+
+        // null when the installed set cannot be listed
+        Set<String> installedPackages();
+
+        boolean isInstalled(String packageName);
+
+        // null when unset
+        String property(String name);
+
+        MountTable mounts() throws IOException;
+    }
+
+    static final class PropertyRule {
+        final String name;
+        // Exactly one of equals / matches is set; neither means "set to anything"
+        final String equals;
+        final Pattern matches;
+
+        PropertyRule(String name, String equals, Pattern matches) {
+            this.name = name;
+            this.equals = equals;
+            this.matches = matches;
+        }
+
+        boolean test(String value) {
+            if (value == null) return false;
+            if (equals != null) return equals.equals(value);
+            if (matches != null) return matches.matcher(value).matches();
+            return true;
+        }
+
+        String describe() {
+            if (equals != null) return name + "=" + equals;
+            if (matches != null) return name + "~" + matches.pattern();
+            return name;
+        }
+    }
+
+    static final class MountRule {
+        // Unset fields match anything; a mountPoint ending in * is a prefix
+        final String mountPoint;
+        final String device;
+        final String type;
+        final String option;
+
+        MountRule(String mountPoint, String device, String type, String option) {
+            this.mountPoint = mountPoint;
+            this.device = device;
+            this.type = type;
+            this.option = option;
+        }
+
+        boolean test(MountTable.Entry entry) {
+            if (mountPoint != null) {
+                boolean prefix = mountPoint.endsWith("*");
+                String point = prefix ? mountPoint.substring(0, mountPoint.length() - 1) : mountPoint;
+                if (prefix ? !entry.mountPoint.startsWith(point) : !entry.mountPoint.equals(point)) return false;
+            }
+            if (device != null && !device.equals(entry.device)) return false;
+            if (type != null && !type.equals(entry.type)) return false;
+            return option == null || entry.hasOption(option);
+        }
+
+        String describe() {
+            StringBuilder description = new StringBuilder("mount");
+            if (mountPoint != null) description.append(" on ").append(mountPoint);
+            if (device != null) description.append(" from ").append(device);
+            if (type != null) description.append(" type ").append(type);
+            if (option != null) description.append(" (").append(option).append(')');
+            return description.toString();
+        }
+    }
+
+    static final class Signature {
+        final String id;
+        final String category;
+        // Reported as rootMethod when this is the first root signature to match; may be null
+        final String method;
+        final List<String> paths = new ArrayList<>();
+        final List<String> packages = new ArrayList<>();
+        final List<PropertyRule> properties = new ArrayList<>();
+        final List<MountRule> mounts = new ArrayList<>();
+
+        Signature(String id, String category, String method) {
+            this.id = id;
+            this.category = category;
+            this.method = method;
+        }
+
+        Signature paths(String... values) {
+            paths.addAll(Arrays.asList(values));
+            return this;
+        }
+
+        Signature packages(String... values) {
+            packages.addAll(Arrays.asList(values));
+            return this;
+        }
+
+        Signature property(String name, String equals) {
+            properties.add(new PropertyRule(name, equals, null));
+            return this;
+        }
+
+        Signature mount(String mountPoint, String device, String type, String option) {
+            mounts.add(new MountRule(mountPoint, device, type, option));
+            return this;
+        }
+    }
+
+    static final class Definitions {
+        final int version;
+        final String source;
+        final List<Signature> signatures;
+
+        Definitions(int version, String source, List<Signature> signatures) {
+            this.version = version;
+            this.source = source;
+            this.signatures = Collections.unmodifiableList(signatures);
+        }
+
+        static Definitions builtIn() {
+            List<Signature> signatures = new ArrayList<>();
+            signatures.add(new Signature("magisk", CATEGORY_ROOT, "magisk")
+                .paths("/data/adb/magisk", "/sbin/.magisk", "/cache/.disable_magisk", "/dev/.magisk.unblock",
+                    "/data/adb/magisk.img", "/data/adb/magisk.db")
+                .packages("com.topjohnwu.magisk")
+                .mount(null, "magisk", null, null)
+                .mount("/sbin/.magisk*", null, null, null));
+            signatures.add(new Signature("supersu", CATEGORY_ROOT, "supersu")
+                .paths("/system/app/SuperSU.apk", "/system/app/SuperSU/SuperSU.apk",
+                    "/system/etc/init.d/99SuperSUDaemon", "/system/xbin/daemonsu")
+                .packages("eu.chainfire.supersu"));
+            signatures.add(new Signature("su-binary", CATEGORY_ROOT, "su_binary")
+                .paths("/system/xbin/su", "/system/bin/su", "/sbin/su", "/data/local/xbin/su", "/data/local/bin/su",
+                    "/system/sd/xbin/su", "/system/bin/failsafe/su", "/data/local/su", "/su/bin/su"));
+            signatures.add(new Signature("superuser", CATEGORY_ROOT, null)
+                .paths("/system/app/Superuser.apk", "/dev/com.koushikdutta.superuser.daemon/")
+                .packages("com.noshufou.android.su", "com.thirdparty.superuser", "com.koushikdutta.superuser"));
+            signatures.add(new Signature("root-tools", CATEGORY_ROOT, null)
+                .packages("com.zachspong.temprootremovejb", "com.ramdroid.appquarantine"));
+            signatures.add(new Signature("xposed", CATEGORY_TAMPER, null)
+                .paths("/system/xposed.prop", "/system/framework/XposedBridge.jar",
+                    "/data/data/de.robv.android.xposed.installer"));
+            signatures.add(new Signature("edxposed", CATEGORY_TAMPER, null)
+                .paths("/data/user/0/org.meowcat.edxposed.manager"));
+            signatures.add(new Signature("lsposed", CATEGORY_TAMPER, null)
+                .paths("/data/adb/lspd"));
+            signatures.add(new Signature("debuggable-build", CATEGORY_BUILD, null)
+                .property("ro.debuggable", "1")
+                .property("ro.secure", "0"));
+            return new Definitions(BUILT_IN_VERSION, "builtIn", signatures);
+        }
+
+        // {"version": 2, "signatures": [{"id", "category", "method"?, "paths"?, "packages"?,
+        //   "properties"?: [{"name", "equals" | "matches"}], "mounts"?: [{"mountPoint", "device", "type", "option"}]}]}
+        static Definitions parse(String json, String source) throws JSONException {
+            JSONObject root = new JSONObject(json);
+            int version = root.getInt("version");
+            JSONArray items = root.getJSONArray("signatures");
+            List<Signature> signatures = new ArrayList<>();
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.getJSONObject(i);
+                String category = item.getString("category");
+                if (!CATEGORY_ROOT.equals(category) && !CATEGORY_TAMPER.equals(category)
+                        && !CATEGORY_BUILD.equals(category)) {
+                    throw new JSONException("Unknown category " + category + " in signature " + i);
+                }
+                Signature signature = new Signature(item.getString("id"), category, optString(item, "method"));
+                JSONArray paths = item.optJSONArray("paths");
+                for (int p = 0; paths != null && p < paths.length(); p++) {
+                    signature.paths.add(paths.getString(p));
+                }
+                JSONArray packages = item.optJSONArray("packages");
+                for (int p = 0; packages != null && p < packages.length(); p++) {
+                    signature.packages.add(packages.getString(p));
+                }
+                JSONArray properties = item.optJSONArray("properties");
+                for (int p = 0; properties != null && p < properties.length(); p++) {
+                    JSONObject rule = properties.getJSONObject(p);
+                    String matches = optString(rule, "matches");
+                    try {
+                        signature.properties.add(new PropertyRule(rule.getString("name"), optString(rule, "equals"),
+                            matches != null ? Pattern.compile(matches) : null));
+                    } catch (PatternSyntaxException e) {
+                        throw new JSONException("Bad pattern in signature " + signature.id + ": " + e.getMessage());
+                    }
+                }
+                JSONArray mounts = item.optJSONArray("mounts");
+                for (int p = 0; mounts != null && p < mounts.length(); p++) {
+                    JSONObject rule = mounts.getJSONObject(p);
+                    signature.mounts.add(new MountRule(optString(rule, "mountPoint"), optString(rule, "device"),
+                        optString(rule, "type"), optString(rule, "option")));
+                }
+                signatures.add(signature);
+            }
+            return new Definitions(version, source, signatures);
+        }
+
+        private static String optString(JSONObject object, String key) {
+            return object.has(key) && !object.isNull(key) ? object.optString(key) : null;
+        }
+    }
+
+    static final class Match {
+        final Signature signature;
+        final List<String> indicators;
+        final long probeNs;
+
+        Match(Signature signature, List<String> indicators, long probeNs) {
+            this.signature = signature;
+            this.indicators = indicators;
+            this.probeNs = probeNs;
+        }
+    }
+
+    static final class Report {
+        final int definitionsVersion;
+        final String definitionsSource;
+        final List<Match> matches;
+        final int signatures;
+        final int paths;
+        final int packages;
+        final int properties;
+        final int mountRules;
+        final boolean packageSetUsed;
+        final long elapsedNs;
+
+        Report(int definitionsVersion, String definitionsSource, List<Match> matches, int signatures, int paths,
+               int packages, int properties, int mountRules, boolean packageSetUsed, long elapsedNs) {
+            this.definitionsVersion = definitionsVersion;
+            this.definitionsSource = definitionsSource;
+            this.matches = matches;
+            this.signatures = signatures;
+            this.paths = paths;
+            this.packages = packages;
+            this.properties = properties;
+            this.mountRules = mountRules;
+            this.packageSetUsed = packageSetUsed;
+            this.elapsedNs = elapsedNs;
+        }
+
+        boolean matched(String category) {
+            for (Match match : matches) {
+                if (category.equals(match.signature.category)) return true;
+            }
+            return false;
+        }
+
+        // First matching root signature that names a method, in definition order
+        String rootMethod() {
+            for (Match match : matches) {
+                if (CATEGORY_ROOT.equals(match.signature.category) && match.signature.method != null) {
+                    return match.signature.method;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Definitions definitions;
+    // Unique probes, and for each signature the indexes of the ones it uses
+    private final String[] paths;
+    private final String[] packages;
+    private final String[] properties;
+    private final MountRule[] mountRules;
+    private final int[][] signaturePaths;
+    private final int[][] signaturePackages;
+    private final int[][] signatureProperties;
+    private final int[][] signatureMounts;
+
+    RootSignatures(Definitions definitions) {
+        this.definitions = definitions;
+        int count = definitions.signatures.size();
+        Map<String, Integer> pathIndex = new LinkedHashMap<>();
+        Map<String, Integer> packageIndex = new LinkedHashMap<>();
+        Map<String, Integer> propertyIndex = new LinkedHashMap<>();
+        List<MountRule> mounts = new ArrayList<>();
+        signaturePaths = new int[count][];
+        signaturePackages = new int[count][];
+        signatureProperties = new int[count][];
+        signatureMounts = new int[count][];
+        for (int s = 0; s < count; s++) {
+            Signature signature = definitions.signatures.get(s);
+            signaturePaths[s] = indexes(signature.paths, pathIndex);
+            signaturePackages[s] = indexes(signature.packages, packageIndex);
+            List<String> names = new ArrayList<>();
+            for (PropertyRule rule : signature.properties) {
+                names.add(rule.name);
+            }
+            signatureProperties[s] = indexes(names, propertyIndex);
+            signatureMounts[s] = new int[signature.mounts.size()];
+            for (int m = 0; m < signature.mounts.size(); m++) {
+                signatureMounts[s][m] = mounts.size();
+                mounts.add(signature.mounts.get(m));
+            }
+        }
+        paths = pathIndex.keySet().toArray(new String[0]);
+        packages = packageIndex.keySet().toArray(new String[0]);
+        properties = propertyIndex.keySet().toArray(new String[0]);
+        mountRules = mounts.toArray(new MountRule[0]);
+    }
+
+    Definitions definitions() {
+        return definitions;
+    }
+
+    Report run(Environment environment) {
+        long start = System.nanoTime();
+
+        boolean[] pathHits = new boolean[paths.length];
+        long[] pathNs = new long[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            long t0 = System.nanoTime();
+            pathHits[i] = environment.exists(paths[i]);
+            pathNs[i] = System.nanoTime() - t0;
+        }
+
+        boolean[] packageHits = new boolean[packages.length];
+        long[] packageNs = new long[packages.length];
+        Set<String> installed = packages.length > PACKAGE_SET_THRESHOLD ? environment.installedPackages() : null;
+        for (int i = 0; i < packages.length; i++) {
+            long t0 = System.nanoTime();
+            packageHits[i] = installed != null ? installed.contains(packages[i]) : environment.isInstalled(packages[i]);
+            packageNs[i] = System.nanoTime() - t0;
+        }
+
+        String[] propertyValues = new String[properties.length];
+        long[] propertyNs = new long[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            long t0 = System.nanoTime();
+            propertyValues[i] = environment.property(properties[i]);
+            propertyNs[i] = System.nanoTime() - t0;
+        }
+
+        // One pass over the mount table for all rules
+        String[] mountHits = new String[mountRules.length];
+        long[] mountNs = new long[mountRules.length];
+        if (mountRules.length > 0) {
+            try {
+                for (MountTable.Entry entry : environment.mounts().entries()) {
+                    for (int r = 0; r < mountRules.length; r++) {
+                        if (mountHits[r] != null) continue;
+                        long t0 = System.nanoTime();
+                        if (mountRules[r].test(entry)) {
+                            mountHits[r] = entry.device + " on " + entry.mountPoint;
+                        }
+                        mountNs[r] += System.nanoTime() - t0;
+                    }
+                }
+            } catch (IOException e) {
+                // Mount rules cannot match without a mount table
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        List<Signature> signatures = definitions.signatures;
+        for (int s = 0; s < signatures.size(); s++) {
+            Signature signature = signatures.get(s);
+            List<String> indicators = new ArrayList<>();
+            long probeNs = 0;
+            for (int i : signaturePaths[s]) {
+                probeNs += pathNs[i];
+                if (pathHits[i]) indicators.add(paths[i]);
+            }
+            for (int i : signaturePackages[s]) {
+                probeNs += packageNs[i];
+                if (packageHits[i]) indicators.add("package:" + packages[i]);
+            }
+            for (int r = 0; r < signature.properties.size(); r++) {
+                int i = signatureProperties[s][r];
+                probeNs += propertyNs[i];
+                PropertyRule rule = signature.properties.get(r);
+                if (rule.test(propertyValues[i])) indicators.add(rule.describe());
+            }
+            for (int i : signatureMounts[s]) {
+                probeNs += mountNs[i];
+                if (mountHits[i] != null) indicators.add(mountRules[i].describe() + ": " + mountHits[i]);
+            }
+            if (!indicators.isEmpty()) {
+                matches.add(new Match(signature, indicators, probeNs));
+            }
+        }
+        return new Report(definitions.version, definitions.source, matches, signatures.size(), paths.length,
+            packages.length, properties.length, mountRules.length, installed != null, System.nanoTime() - start);
+    }
+
+    private static int[] indexes(List<String> values, Map<String, Integer> index) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            Integer existing = index.get(values.get(i));
+            if (existing == null) {
+                existing = index.size();
+                index.put(values.get(i), existing);
+            }
+            result[i] = existing;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.lablinkriparo.monitor;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+/**
+ * Streams scan results to JS as Capacitor events. Records are collected into
+ * batches of batchSize and emitted as "scanProgress"; a final "scanComplete"
+ * event carries the summary. Only one batch is held at a time, so peak memory
+ * is bounded by the batch size instead of the number of installed packages.
+ * Safe to feed from the scan worker threads.
+ */
+final class ScanProgressEmitter {
+
+    static final String EVENT_PROGRESS = "scanProgress";
+    static final String EVENT_COMPLETE = "scanComplete";
+
+    interface Sink {
+        void emit(String eventName, JSObject data);
+    }
+
+    private final Sink sink;
+    private final String scanId;
+    private final String method;
+    private final int batchSize;
+    private final int total;
+
+    private JSArray batch = new JSArray();
+    private int processed;
+    private int emitted;
+    private int batches;
+
+    ScanProgressEmitter(Sink sink, String scanId, String method, int batchSize, int total) {
+        this.sink = sink;
+        this.scanId = scanId;
+        this.method = method;
+        this.batchSize = Math.max(1, batchSize);
+        this.total = total;
+    }
+
+    // Records one processed package; item may be null when the package produced no result
+    synchronized void add(JSObject item) {
+        processed++;
+        if (item != null) {
+            batch.put(item);
+            emitted++;
+        }
+        if (batch.length() >= batchSize) {
+            flush();
+        }
+    }
+
+    synchronized int emitted() {
+        return emitted;
+    }
+
+    synchronized JSObject complete(JSObject summary) {
+        flush();
+        summary.put("scanId", scanId);
+        summary.put("method", method);
+        summary.put("processed", processed);
+        summary.put("total", total);
+        summary.put("emitted", emitted);
+        summary.put("batches", batches);
+        sink.emit(EVENT_COMPLETE, summary);
+        return summary;
+    }
+
+    private void flush() {
+        if (batch.length() == 0) return;
+        JSObject event = new JSObject();
+        event.put("scanId", scanId);
+        event.put("method", method);
+        event.put("batchIndex", batches++);
+        event.put("items", batch);
+        event.put("processed", processed);
+        event.put("total", total);
+        sink.emit(EVENT_PROGRESS, event);
+        batch = new JSArray();
+    }
+}
@@ -0,0 +1,283 @@
+package com.lablinkriparo.monitor;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probe layer behind getSecurityStatus and checkSystemIntegrity. One snapshot
+ * runs the compiled root/tamper signatures (see RootSignatures) and reads the
+ * boot properties, and both methods (also when run together by
+ * runFullDiagnostics) derive their answers from it. Definitions pushed through
+ * updateDefinitions are stored next to the scan cache and replace the built-in
+ * ones while their version is higher. The snapshot is reused for
+ * SNAPSHOT_TTL_MS and dropped early when packages change. The reflective
+ * SystemProperties.get handle is resolved once per process, and ro.* values are
+ * kept for the life of the process, since they cannot change after boot.
+ */
+final class SecurityProbes {
+
+    static final long SNAPSHOT_TTL_MS = 60_000;
+
+    static final String PROP_VERIFIED_BOOT_STATE = "ro.boot.verifiedbootstate";
+    static final String PROP_FLASH_LOCKED = "ro.boot.flash.locked";
+    static final String PROP_CRYPTO_STATE = "ro.crypto.state";
+    private static final String[] PROPERTIES = {PROP_VERIFIED_BOOT_STATE, PROP_FLASH_LOCKED, PROP_CRYPTO_STATE};
+
+    private static final Object PROPERTY_LOCK = new Object();
+    private static volatile boolean propertyGetResolved;
+    private static Method propertyGet;
+    // Absent properties are stored as "", as the map cannot hold null
+    private static final ConcurrentHashMap<String, String> bootProperties = new ConcurrentHashMap<>();
+
+    static final class Snapshot {
+        final long takenAt;
+        final long probeMs;
+        private final Map<String, String> properties;
+        final RootSignatures.Report signatures;
+        final boolean buildPropReadable;
+        final String seLinuxStatus;
+
+        Snapshot(long takenAt, long probeMs, Map<String, String> properties, RootSignatures.Report signatures,
+                 boolean buildPropReadable, String seLinuxStatus) {
+            this.takenAt = takenAt;
+            this.probeMs = probeMs;
+            this.properties = properties;
+            this.signatures = signatures;
+            this.buildPropReadable = buildPropReadable;
+            this.seLinuxStatus = seLinuxStatus;
+        }
+
+        // null when unset or unreadable
+        String property(String name) {
+            return properties.get(name);
+        }
+
+        boolean isRooted() {
+            return signatures.matched(RootSignatures.CATEGORY_ROOT);
+        }
+
+        String rootMethod() {
+            return signatures.rootMethod();
+        }
+
+        boolean systemModified() {
+            // An unreadable build.prop might be modified
+            return signatures.matched(RootSignatures.CATEGORY_TAMPER) || !buildPropReadable;
+        }
+    }
+
+    private final Context context;
+    // Downloaded definitions, used while newer than the built-in ones
+    private final File definitionsFile;
+    private RootSignatures plan;
+    private Snapshot snapshot;
+
+    SecurityProbes(Context context, File definitionsFile) {
+        this.context = context;
+        this.definitionsFile = definitionsFile;
+    }
+
+    // Concurrent callers share one probe run
+    synchronized Snapshot snapshot() {
+        long now = SystemClock.elapsedRealtime();
+        if (snapshot == null || now - snapshot.takenAt >= SNAPSHOT_TTL_MS) {
+            snapshot = probe(now);
+        }
+        return snapshot;
+    }
+
+    synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    synchronized RootSignatures.Definitions definitions() {
+        return plan().definitions();
+    }
+
+    // Stores and switches to the given definitions when they are newer than the
+    // current ones (or force is set); returns false when they were not applied
+    synchronized boolean updateDefinitions(String json, boolean force) throws JSONException, IOException {
+        RootSignatures.Definitions definitions = RootSignatures.Definitions.parse(json, "downloaded");
+        if (!force && definitions.version <= plan().definitions().version) {
+            return false;
+        }
+        File parent = definitionsFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temp = new File(definitionsFile.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(definitionsFile)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + definitionsFile);
+        }
+        plan = new RootSignatures(definitions);
+        snapshot = null;
+        return true;
+    }
+
+    private RootSignatures plan() {
+        if (plan == null) {
+            RootSignatures.Definitions definitions = RootSignatures.Definitions.builtIn();
+            if (definitionsFile.isFile()) {
+                try {
+                    RootSignatures.Definitions stored =
+                        RootSignatures.Definitions.parse(read(definitionsFile), "downloaded");
+                    // An app update may ship newer built-in definitions than the stored ones
+                    if (stored.version > definitions.version) {
+                        definitions = stored;
+                    }
+                } catch (Exception e) {
+                    // Unreadable or corrupt file: keep the built-in definitions
+                }
+            }
+            plan = new RootSignatures(definitions);
+        }
+        return plan;
+    }
+
+    private Snapshot probe(long now) {
+        Map<String, String> properties = new HashMap<>();
+        for (String name : PROPERTIES) {
+            String value = systemProperty(name);
+            if (value != null) {
+                properties.put(name, value);
+            }
+        }
+
+        final PackageManager pm = context.getPackageManager();
+        RootSignatures.Report signatures = plan().run(new RootSignatures.Environment() {
+            @Override
+            public boolean exists(String path) {
+                return new File(path).exists();
+            }
+
+            @Override
+            public Set<String> installedPackages() {
+                try {
+                    Set<String> names = new HashSet<>();
+                    for (ApplicationInfo app : pm.getInstalledApplications(0)) {
+                        names.add(app.packageName);
+                    }
+                    return names;
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public boolean isInstalled(String packageName) {
+                try {
+                    pm.getPackageInfo(packageName, 0);
+                    return true;
+                } catch (PackageManager.NameNotFoundException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public String property(String name) {
+                return systemProperty(name);
+            }
+
+            @Override
+            public MountTable mounts() throws IOException {
+                return MountTable.read("/proc/mounts");
+            }
+        });
+
+        boolean buildPropReadable = new File("/system/build.prop").canRead();
+        return new Snapshot(now, SystemClock.elapsedRealtime() - now, properties, signatures, buildPropReadable,
+            seLinuxStatus());
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, n);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    static String systemProperty(String name) {
+        boolean immutable = name.startsWith("ro.");
+        if (immutable) {
+            String cached = bootProperties.get(name);
+            if (cached != null) return cached.isEmpty() ? null : cached;
+        }
+        String value = null;
+        Method get = propertyGet();
+        if (get != null) {
+            try {
+                value = (String) get.invoke(null, name);
+            } catch (Exception e) {
+                value = null;
+            }
+        }
+        if (value != null && value.isEmpty()) {
+            value = null;
+        }
+        if (immutable) {
+            bootProperties.put(name, value != null ? value : "");
+        }
+        return value;
+    }
+
+    private static Method propertyGet() {
+        if (!propertyGetResolved) {
+            synchronized (PROPERTY_LOCK) {
+                if (!propertyGetResolved) {
+                    try {
+                        Class<?> systemProperties = Class.forName("android.os.SystemProperties");
+                        propertyGet = systemProperties.getMethod("get", String.class);
+                    } catch (Exception e) {
+                        propertyGet = null;
+                    }
+                    propertyGetResolved = true;
+                }
+            }
+        }
+        return propertyGet;
+    }
+
+    private static String seLinuxStatus() {
+        try {
+            String status = ProcFs.local().readLine("/sys/fs/selinux/enforce");
+            return "1".equals(status) ? "Enforcing" : "Permissive";
+        } catch (IOException e) {
+            // Missing, or denied to apps by some policies
+            return "Unknown";
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lablinkriparo.monitor;
+
+/**
+ * Preallocated ring of sensor readings (event timestamp plus up to axes values)
+ * filled from the sensor listener thread without allocating per event. When the
+ * ring is full the oldest readings are overwritten (and counted); stats()
+ * summarizes what is retained: effective rate, interval jitter, per-axis mean,
+ * variance, standard deviation and range, and whether the values never moved.
+ * No Android dependency.
+ */
+final class SensorSampleBuffer {
+
+    // Fewer readings than this are not enough to call a sensor stuck
+    static final int MIN_STUCK_SAMPLES = 10;
+
+    static final class Stats {
+        final int samples;
+        final long received;
+        final double spanMs;
+        final double rateHz;
+        final double meanIntervalMs;
+        // Standard deviation of the intervals between readings
+        final double jitterMs;
+        final double maxGapMs;
+        final double[] mean;
+        final double[] variance;
+        final double[] stddev;
+        final double[] min;
+        final double[] max;
+        // Readings pushed out of the full ring; received = samples + overwritten
+        final long overwritten;
+        // Every axis reported exactly the same value for the whole window
+        final boolean stuck;
+
+        Stats(int samples, long received, double spanMs, double rateHz, double meanIntervalMs,
+              double jitterMs, double maxGapMs, double[] mean, double[] variance, double[] min, double[] max,
+              boolean stuck) {
+            this.samples = samples;
+            this.received = received;
+            this.overwritten = received - samples;
+            this.spanMs = spanMs;
+            this.rateHz = rateHz;
+            this.meanIntervalMs = meanIntervalMs;
+            this.jitterMs = jitterMs;
+            this.maxGapMs = maxGapMs;
+            this.mean = mean;
+            this.variance = variance;
+            this.stddev = new double[variance.length];
+            for (int a = 0; a < variance.length; a++) {
+                this.stddev[a] = Math.sqrt(variance[a]);
+            }
+            this.min = min;
+            this.max = max;
+            this.stuck = stuck;
+        }
+    }
+
+    private final int capacity;
+    private final int axes;
+    private final long[] timestamps;
+    private final float[] values;
+    private int head;
+    private int size;
+    private long received;
+
+    SensorSampleBuffer(int capacity, int axes) {
+        this.capacity = Math.max(2, capacity);
+        this.axes = Math.max(1, axes);
+        this.timestamps = new long[this.capacity];
+        this.values = new float[this.capacity * this.axes];
+    }
+
+    int axes() {
+        return axes;
+    }
+
+    // timestampNs is SensorEvent.timestamp; extra values beyond axes are ignored
+    synchronized void add(long timestampNs, float[] reading) {
+        timestamps[head] = timestampNs;
+        int count = Math.min(axes, reading.length);
+        System.arraycopy(reading, 0, values, head * axes, count);
+        for (int a = count; a < axes; a++) {
+            values[head * axes + a] = 0f;
+        }
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+        received++;
+    }
+
+    synchronized long received() {
+        return received;
+    }
+
+    synchronized Stats stats() {
+        double[] mean = new double[axes];
+        double[] m2 = new double[axes];
+        float[] min = new float[axes];
+        float[] max = new float[axes];
+        int oldest = (head - size + capacity) % capacity;
+
+        double intervalSum = 0;
+        double intervalSquares = 0;
+        long maxGap = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = (oldest + i) % capacity;
+            if (i > 0) {
+                long interval = timestamps[slot] - timestamps[(slot - 1 + capacity) % capacity];
+                intervalSum += interval;
+                intervalSquares += (double) interval * interval;
+                maxGap = Math.max(maxGap, interval);
+            }
+            // Welford's running mean / variance per axis
+            for (int a = 0; a < axes; a++) {
+                float value = values[slot * axes + a];
+                double delta = value - mean[a];
+                mean[a] += delta / (i + 1);
+                m2[a] += delta * (value - mean[a]);
+                if (i == 0 || value < min[a]) min[a] = value;
+                if (i == 0 || value > max[a]) max[a] = value;
+            }
+        }
+
+        double[] variance = new double[axes];
+        double[] low = new double[axes];
+        double[] high = new double[axes];
+        boolean constant = size > 0;
+        for (int a = 0; a < axes; a++) {
+            variance[a] = size > 1 ? m2[a] / (size - 1) : 0;
+            low[a] = min[a];
+            high[a] = max[a];
+            if (min[a] != max[a]) {
+                constant = false;
+            }
+        }
+
+        int intervals = size - 1;
+        double spanMs = 0;
+        double rateHz = 0;
+        double meanIntervalMs = 0;
+        double jitterMs = 0;
+        if (intervals > 0) {
+            long span = timestamps[(oldest + size - 1) % capacity] - timestamps[oldest];
+            spanMs = span / 1e6;
+            rateHz = span > 0 ? intervals * 1e9 / span : 0;
+            double meanInterval = intervalSum / intervals;
+            meanIntervalMs = meanInterval / 1e6;
+            jitterMs = Math.sqrt(Math.max(0, intervalSquares / intervals - meanInterval * meanInterval)) / 1e6;
+        }
+        return new Stats(size, received, spanMs, rateHz, meanIntervalMs, jitterMs, maxGap / 1e6,
+            mean, variance, low, high, constant && size >= MIN_STUCK_SAMPLES);
+    }
+}
@@ -0,0 +1,170 @@
+package com.lablinkriparo.monitor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liveness test for hardware sensors: registers listeners at the fastest rate on
+ * one dedicated HandlerThread for a short window and records every event into a
+ * preallocated SensorSampleBuffer per sensor. The wait is bounded by a hard timeout, so a
+ * sensor that never reports cannot hang the calling lane.
+ */
+final class SensorSampler {
+
+    // Readings kept per sensor, whatever the rate
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 8192;
+    // On-change sensors (light, proximity) only report when the value moves
+    private static final int ON_CHANGE_CAPACITY = 64;
+
+    static final class Result {
+        final Sensor sensor;
+        final SensorSampleBuffer.Stats stats;
+        // The listener could not be registered
+        final boolean registrationFailed;
+        // No reading arrived before the timeout
+        final boolean timedOut;
+        final long elapsedMs;
+
+        Result(Sensor sensor, SensorSampleBuffer.Stats stats, boolean registrationFailed, boolean timedOut,
+               long elapsedMs) {
+            this.sensor = sensor;
+            this.stats = stats;
+            this.registrationFailed = registrationFailed;
+            this.timedOut = timedOut;
+            this.elapsedMs = elapsedMs;
+        }
+
+        boolean continuous() {
+            return sensor.getReportingMode() == Sensor.REPORTING_MODE_CONTINUOUS;
+        }
+
+        // Rate the sensor advertises at SENSOR_DELAY_FASTEST; 0 for on-change sensors
+        double expectedRateHz() {
+            int minDelayUs = sensor.getMinDelay();
+            return minDelayUs > 0 ? 1e6 / minDelayUs : 0;
+        }
+    }
+
+    private final SensorManager sensorManager;
+    private HandlerThread thread;
+    private Handler handler;
+
+    SensorSampler(SensorManager sensorManager) {
+        this.sensorManager = sensorManager;
+    }
+
+    // Samples every sensor over the same window: all listeners share the HandlerThread looper
+    // and each writes to its own buffer, so a batch takes as long as a single test. Sensors
+    // still silent at the end of the window get until timeoutMs for a first reading.
+    List<Result> sample(Sensor[] sensors, int[] axes, long durationMs, long timeoutMs)
+            throws InterruptedException {
+        int count = sensors.length;
+        SensorSampleBuffer[] buffers = new SensorSampleBuffer[count];
+        CountDownLatch[] firstReadings = new CountDownLatch[count];
+        SensorEventListener[] listeners = new SensorEventListener[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new SensorSampleBuffer(capacityFor(sensors[i], durationMs), axes[i]);
+            firstReadings[i] = new CountDownLatch(1);
+            listeners[i] = listener(buffers[i], firstReadings[i]);
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        boolean[] registered = new boolean[count];
+        boolean[] open = new boolean[count];
+        boolean[] timedOut = new boolean[count];
+        long[] elapsed = new long[count];
+        try {
+            Handler handler = handler();
+            for (int i = 0; i < count; i++) {
+                registered[i] = sensorManager.registerListener(listeners[i], sensors[i],
+                    SensorManager.SENSOR_DELAY_FASTEST, handler);
+                open[i] = registered[i];
+            }
+            long remaining = start + durationMs - SystemClock.elapsedRealtime();
+            if (remaining > 0) {
+                Thread.sleep(remaining);
+            }
+            // Close the window for every sensor that reported, then wait for the silent ones
+            for (int i = 0; i < count; i++) {
+                if (open[i] && buffers[i].received() > 0) {
+                    sensorManager.unregisterListener(listeners[i], sensors[i]);
+                    open[i] = false;
+                    elapsed[i] = SystemClock.elapsedRealtime() - start;
+                }
+            }
+            long deadline = start + Math.max(durationMs, timeoutMs);
+            for (int i = 0; i < count; i++) {
+                if (!open[i]) continue;
+                long wait = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                timedOut[i] = !firstReadings[i].await(wait, TimeUnit.MILLISECONDS);
+                sensorManager.unregisterListener(listeners[i], sensors[i]);
+                open[i] = false;
+                elapsed[i] = SystemClock.elapsedRealtime() - start;
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                if (open[i]) {
+                    sensorManager.unregisterListener(listeners[i], sensors[i]);
+                }
+            }
+        }
+
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new Result(sensors[i], buffers[i].stats(), !registered[i], timedOut[i], elapsed[i]));
+        }
+        return results;
+    }
+
+    private static SensorEventListener listener(final SensorSampleBuffer buffer, final CountDownLatch firstReading) {
+        return new SensorEventListener() {
+            @Override
+            public void onSensorChanged(SensorEvent event) {
+                buffer.add(event.timestamp, event.values);
+                firstReading.countDown();
+            }
+
+            @Override
+            public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            }
+        };
+    }
+
+    synchronized void shutdown() {
+        if (thread != null) {
+            thread.quitSafely();
+            thread = null;
+            handler = null;
+        }
+    }
+
+    private synchronized Handler handler() {
+        if (handler == null) {
+            thread = new HandlerThread("diag-sensors");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    private static int capacityFor(Sensor sensor, long durationMs) {
+        int minDelayUs = sensor.getMinDelay();
+        if (minDelayUs <= 0) {
+            return ON_CHANGE_CAPACITY;
+        }
+        // Room for twice the advertised rate; some sensors overshoot their min delay
+        long expected = durationMs * 1000 / minDelayUs;
+        return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, expected * 2));
+    }
+}
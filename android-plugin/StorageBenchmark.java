@@ -0,0 +1,271 @@
+package com.lablinkriparo.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage throughput and latency benchmark on a temp file: sequential write and
+ * read in blockSize chunks, then random 4K writes and reads at aligned offsets,
+ * all through a FileChannel with direct buffers. Each phase ends with an fsync
+ * that is counted in its time, so write speeds are what reached the flash. Every
+ * operation is timed individually for the percentiles and histogram. Reads may
+ * still be served partly from the page cache, which an app cannot drop; the
+ * random reads hit it least. Each phase stops at its time budget, so a worn
+ * part cannot stall the call. Plain Java only, so it runs on a desktop JVM as well.
+ */
+final class StorageBenchmark {
+
+    static final String SEQUENTIAL_WRITE = "sequentialWrite";
+    static final String SEQUENTIAL_READ = "sequentialRead";
+    static final String RANDOM_WRITE = "randomWrite";
+    static final String RANDOM_READ = "randomRead";
+
+    static final int RANDOM_BLOCK = 4096;
+    static final String FILE_PREFIX = "storage-bench-";
+
+    // Upper bounds of the histogram buckets in microseconds: <2, <4, <8, ... and the rest
+    static final int HISTOGRAM_BUCKETS = 24;
+
+    static final class Latencies {
+        private long[] nanos = new long[256];
+        private int count;
+        private boolean sorted;
+
+        void add(long latencyNs) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNs;
+            sorted = false;
+        }
+
+        int count() {
+            return count;
+        }
+
+        // Nearest-rank percentile, p in [0, 100]
+        long percentileNs(double p) {
+            if (count == 0) return 0;
+            sort();
+            int rank = (int) Math.ceil(p / 100 * count);
+            return nanos[Math.max(0, Math.min(count - 1, rank - 1))];
+        }
+
+        long maxNs() {
+            if (count == 0) return 0;
+            sort();
+            return nanos[count - 1];
+        }
+
+        long meanNs() {
+            if (count == 0) return 0;
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += nanos[i];
+            }
+            return sum / count;
+        }
+
+        // Operation count per power-of-two microsecond bucket, see HISTOGRAM_BUCKETS
+        long[] histogram() {
+            long[] buckets = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < count; i++) {
+                long micros = nanos[i] / 1000;
+                int bucket = micros < 2 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+                buckets[Math.min(HISTOGRAM_BUCKETS - 1, bucket)]++;
+            }
+            return buckets;
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Arrays.sort(nanos, 0, count);
+                sorted = true;
+            }
+        }
+    }
+
+    static final class Phase {
+        final String name;
+        final int blockSize;
+        long bytes;
+        long operations;
+        // Includes the closing fsync
+        long elapsedNs;
+        long syncNs;
+        // Stopped at the time budget before covering the whole file
+        boolean truncated;
+        final Latencies latencies = new Latencies();
+
+        Phase(String name, int blockSize) {
+            this.name = name;
+            this.blockSize = blockSize;
+        }
+
+        double mbPerSecond() {
+            return elapsedNs > 0 ? bytes / (1024.0 * 1024.0) * 1e9 / elapsedNs : 0;
+        }
+
+        double iops() {
+            return elapsedNs > 0 ? operations * 1e9 / elapsedNs : 0;
+        }
+    }
+
+    static final class Report {
+        final List<Phase> phases;
+        final long fileBytes;
+        final long elapsedMs;
+
+        Report(List<Phase> phases, long fileBytes, long elapsedMs) {
+            this.phases = phases;
+            this.fileBytes = fileBytes;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private final File directory;
+    private final long sizeBytes;
+    private final int blockSize;
+    private final int randomOperations;
+    private final long phaseBudgetNs;
+    private final boolean syncRandomWrites;
+
+    // sizeBytes is rounded down to whole blocks; with syncRandomWrites each random
+    // write is followed by fdatasync, as a database commit would
+    StorageBenchmark(File directory, long sizeBytes, int blockSize, int randomOperations, long phaseBudgetMs,
+                     boolean syncRandomWrites) {
+        this.directory = directory;
+        this.blockSize = Math.max(RANDOM_BLOCK, blockSize / RANDOM_BLOCK * RANDOM_BLOCK);
+        this.sizeBytes = Math.max(this.blockSize, sizeBytes / this.blockSize * this.blockSize);
+        this.randomOperations = Math.max(1, randomOperations);
+        this.phaseBudgetNs = phaseBudgetMs * 1_000_000L;
+        this.syncRandomWrites = syncRandomWrites;
+    }
+
+    // Removes temp files left behind by a run that was killed
+    static void deleteLeftovers(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().startsWith(FILE_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    Report run() throws IOException {
+        long start = System.nanoTime();
+        File file = new File(directory, FILE_PREFIX + start + ".tmp");
+        List<Phase> phases = new ArrayList<>();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer block = ByteBuffer.allocateDirect(blockSize);
+            ByteBuffer small = ByteBuffer.allocateDirect(RANDOM_BLOCK);
+            fill(block);
+            fill(small);
+
+            Phase write = sequential(channel, block, SEQUENTIAL_WRITE, sizeBytes, true);
+            phases.add(write);
+            // Later phases only cover what the write phase got to
+            long fileBytes = write.bytes;
+            phases.add(sequential(channel, block, SEQUENTIAL_READ, fileBytes, false));
+            phases.add(random(channel, small, RANDOM_WRITE, fileBytes, true));
+            phases.add(random(channel, small, RANDOM_READ, fileBytes, false));
+            return new Report(phases, fileBytes, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    private Phase sequential(FileChannel channel, ByteBuffer buffer, String name, long length, boolean write)
+            throws IOException {
+        Phase phase = new Phase(name, blockSize);
+        long phaseStart = System.nanoTime();
+        for (long position = 0; position < length; position += blockSize) {
+            if (System.nanoTime() - phaseStart > phaseBudgetNs) {
+                phase.truncated = true;
+                break;
+            }
+            long t0 = System.nanoTime();
+            transfer(channel, buffer, position, write);
+            phase.latencies.add(System.nanoTime() - t0);
+            phase.bytes += blockSize;
+            phase.operations++;
+        }
+        finish(channel, phase, phaseStart, write);
+        return phase;
+    }
+
+    private Phase random(FileChannel channel, ByteBuffer buffer, String name, long length, boolean write)
+            throws IOException {
+        Phase phase = new Phase(name, RANDOM_BLOCK);
+        long slots = length / RANDOM_BLOCK;
+        // Fixed seed per phase, so every run touches the same offsets
+        long state = write ? 0x5DEECE66DL : 0x2545F4914F6CDD1DL;
+        long phaseStart = System.nanoTime();
+        for (int i = 0; i < randomOperations && slots > 0; i++) {
+            if (System.nanoTime() - phaseStart > phaseBudgetNs) {
+                phase.truncated = true;
+                break;
+            }
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            long position = ((z ^ (z >>> 31)) >>> 1) % slots * RANDOM_BLOCK;
+
+            long t0 = System.nanoTime();
+            transfer(channel, buffer, position, write);
+            if (write && syncRandomWrites) {
+                channel.force(false);
+            }
+            phase.latencies.add(System.nanoTime() - t0);
+            phase.bytes += RANDOM_BLOCK;
+            phase.operations++;
+        }
+        finish(channel, phase, phaseStart, write);
+        return phase;
+    }
+
+    private static void finish(FileChannel channel, Phase phase, long phaseStart, boolean write) throws IOException {
+        if (write) {
+            long t0 = System.nanoTime();
+            channel.force(true);
+            phase.syncNs = System.nanoTime() - t0;
+        }
+        phase.elapsedNs = System.nanoTime() - phaseStart;
+    }
+
+    private static void transfer(FileChannel channel, ByteBuffer buffer, long position, boolean write)
+            throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = write
+                ? channel.write(buffer, position + buffer.position())
+                : channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of benchmark file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    // Incompressible content, in case the file system compresses
+    private static void fill(ByteBuffer buffer) {
+        long state = buffer.capacity();
+        buffer.clear();
+        while (buffer.remaining() >= 8) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = (state ^ (state >>> 30)) * 0xBF58476D1CE4E5B9L;
+            buffer.putLong(z ^ (z >>> 31));
+        }
+        buffer.clear();
+    }
+}
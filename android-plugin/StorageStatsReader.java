@@ -0,0 +1,122 @@
+package com.lablinkriparo.monitor;
+
+import android.app.usage.ExternalStorageStats;
+import android.app.usage.StorageStats;
+import android.app.usage.StorageStatsManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.storage.StorageManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared access to StorageStatsManager (API 26+). System services are resolved
+ * once, the storage volume of each app is resolved once per install location,
+ * and callers that only need totals can ask per volume (queryStatsForUser) instead
+ * of per package, which also covers apps moved to adopted storage.
+ * All query methods require the usage access permission and throw when denied.
+ */
+final class StorageStatsReader {
+
+    private final Context context;
+    private final UserHandle user = Process.myUserHandle();
+    // Volume root (/data or /mnt/expand/<uuid>) -> storage UUID
+    private final Map<String, UUID> volumeByLocation = new ConcurrentHashMap<>();
+
+    private volatile StorageStatsManager storageStatsManager;
+    private volatile StorageManager storageManager;
+
+    StorageStatsReader(Context context) {
+        this.context = context;
+    }
+
+    boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+
+    // Storage volume holding the app's code and data
+    UUID volumeOf(ApplicationInfo appInfo) throws IOException {
+        if (appInfo.storageUuid != null) {
+            return appInfo.storageUuid;
+        }
+        String location = installLocation(appInfo.sourceDir);
+        UUID uuid = volumeByLocation.get(location);
+        if (uuid == null) {
+            uuid = storageManager().getUuidForPath(new File(appInfo.sourceDir));
+            volumeByLocation.put(location, uuid);
+        }
+        return uuid;
+    }
+
+    StorageStats queryPackage(ApplicationInfo appInfo) throws IOException {
+        try {
+            return storageStatsManager().queryStatsForPackage(volumeOf(appInfo), appInfo.packageName, user);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new IOException("Package not found: " + appInfo.packageName, e);
+        }
+    }
+
+    // Aggregate for every app of the current user on one volume: one call instead of one per package
+    StorageStats queryUser(UUID volume) throws IOException {
+        return storageStatsManager().queryStatsForUser(volume, user);
+    }
+
+    // Shared storage (media, downloads, app-specific external dirs) of the current user on one volume
+    ExternalStorageStats queryExternalUser(UUID volume) throws IOException {
+        return storageStatsManager().queryExternalStatsForUser(volume, user);
+    }
+
+    // Groups the installed apps by the volume they live on; apps whose volume
+    // cannot be resolved are left out
+    Map<UUID, Integer> countByVolume(List<PackageScanner.PackageRecord> records) {
+        Map<UUID, Integer> counts = new LinkedHashMap<>();
+        for (PackageScanner.PackageRecord record : records) {
+            try {
+                UUID volume = volumeOf(record.appInfo);
+                Integer count = counts.get(volume);
+                counts.put(volume, count == null ? 1 : count + 1);
+            } catch (IOException | RuntimeException e) {
+                // Volume not mounted or path unknown
+            }
+        }
+        return counts;
+    }
+
+    private StorageStatsManager storageStatsManager() {
+        StorageStatsManager manager = storageStatsManager;
+        if (manager == null) {
+            manager = (StorageStatsManager) context.getSystemService(Context.STORAGE_STATS_SERVICE);
+            storageStatsManager = manager;
+        }
+        return manager;
+    }
+
+    private StorageManager storageManager() {
+        StorageManager manager = storageManager;
+        if (manager == null) {
+            manager = (StorageManager) context.getSystemService(Context.STORAGE_SERVICE);
+            storageManager = manager;
+        }
+        return manager;
+    }
+
+    // Adopted volumes are mounted under /mnt/expand/<uuid>; everything else lives on internal storage
+    private static String installLocation(String sourceDir) {
+        String prefix = "/mnt/expand/";
+        if (sourceDir != null && sourceDir.startsWith(prefix)) {
+            int end = sourceDir.indexOf('/', prefix.length());
+            return end > 0 ? sourceDir.substring(0, end) : sourceDir;
+        }
+        return "/data";
+    }
+}
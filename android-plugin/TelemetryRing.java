@@ -0,0 +1,79 @@
+package com.lablinkriparo.monitor;
+
+/**
+ * Preallocated ring of telemetry rows (a timestamp plus a fixed number of double
+ * columns) written by the sampling thread and drained in batches by the flusher.
+ * If the flusher falls behind, the oldest rows are overwritten and counted as
+ * dropped. Unknown readings are stored as NaN. No Android dependency.
+ */
+final class TelemetryRing {
+
+    static final class Batch {
+        final long[] timestamps;
+        // values[column][row]
+        final double[][] values;
+        // Rows overwritten before they could be drained, since the previous batch
+        final long dropped;
+
+        Batch(long[] timestamps, double[][] values, long dropped) {
+            this.timestamps = timestamps;
+            this.values = values;
+            this.dropped = dropped;
+        }
+
+        int size() {
+            return timestamps.length;
+        }
+    }
+
+    private final int capacity;
+    private final int columns;
+    private final long[] timestamps;
+    private final double[] values;
+    private int head;
+    private int size;
+    private long dropped;
+    private long written;
+
+    TelemetryRing(int capacity, int columns) {
+        this.capacity = Math.max(1, capacity);
+        this.columns = columns;
+        this.timestamps = new long[this.capacity];
+        this.values = new double[this.capacity * columns];
+    }
+
+    // row must hold at least columns values
+    synchronized void add(long timestamp, double[] row) {
+        timestamps[head] = timestamp;
+        System.arraycopy(row, 0, values, head * columns, columns);
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        } else {
+            dropped++;
+        }
+        written++;
+    }
+
+    synchronized long written() {
+        return written;
+    }
+
+    // Removes and returns every buffered row, oldest first
+    synchronized Batch drain() {
+        long[] batchTimestamps = new long[size];
+        double[][] batchValues = new double[columns][size];
+        int oldest = (head - size + capacity) % capacity;
+        for (int i = 0; i < size; i++) {
+            int slot = (oldest + i) % capacity;
+            batchTimestamps[i] = timestamps[slot];
+            for (int c = 0; c < columns; c++) {
+                batchValues[c][i] = values[slot * columns + c];
+            }
+        }
+        Batch batch = new Batch(batchTimestamps, batchValues, dropped);
+        size = 0;
+        dropped = 0;
+        return batch;
+    }
+}
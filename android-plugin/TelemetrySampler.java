@@ -0,0 +1,366 @@
+package com.lablinkriparo.monitor;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Continuous hardware telemetry for stress and burn-in tests. A dedicated
+ * HandlerThread samples the enabled channels every intervalMs into a TelemetryRing
+ * and, every batchMs, drains it into one "telemetry" event with a column array
+ * per reading, so a 10 Hz stream costs one bridge message per batch. Battery
+ * voltage and temperature come from a registered ACTION_BATTERY_CHANGED receiver
+ * rather than a sticky query per sample; CPU frequencies are read from sysfs
+ * through files kept open for the whole session.
+ */
+final class TelemetrySampler {
+
+    static final String EVENT_TELEMETRY = "telemetry";
+
+    static final String CHANNEL_BATTERY = "battery";
+    static final String CHANNEL_MEMORY = "memory";
+    static final String CHANNEL_CPU = "cpu";
+    static final String CHANNEL_THERMAL = "thermal";
+    static final String[] CHANNELS = {CHANNEL_BATTERY, CHANNEL_MEMORY, CHANNEL_CPU, CHANNEL_THERMAL};
+
+    // Column names per channel, in row order
+    private static final String[][] COLUMNS = {
+        {"currentUa", "voltageMv", "temperatureC", "levelPct"},
+        {"availableMb", "percentUsed"},
+        {"avgFreqKhz", "maxFreqKhz"},
+        {"status"}
+    };
+
+    // Batches the ring can hold if the flusher stalls
+    private static final int RING_BATCHES = 4;
+
+    static final class Summary {
+        final String sessionId;
+        // False when the telemetry thread did not finish in time; the counters are then unknown (0)
+        final boolean drained;
+        final long samples;
+        final long batches;
+        final long dropped;
+        final long durationMs;
+
+        Summary(String sessionId, boolean drained, long samples, long batches, long dropped, long durationMs) {
+            this.sessionId = sessionId;
+            this.drained = drained;
+            this.samples = samples;
+            this.batches = batches;
+            this.dropped = dropped;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private final Context context;
+    private final ScanProgressEmitter.Sink sink;
+    private final String sessionId;
+    private final long intervalMs;
+    private final long batchMs;
+    private final boolean[] enabled = new boolean[CHANNELS.length];
+    private final TelemetryRing ring;
+    private final double[] row;
+
+    private HandlerThread thread;
+    private Handler handler;
+    private BroadcastReceiver batteryReceiver;
+    private BatteryManager batteryManager;
+    private ActivityManager activityManager;
+    private final ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+    private PowerManager powerManager;
+    private RandomAccessFile[] cpuFreqFiles = new RandomAccessFile[0];
+    private final byte[] readBuffer = new byte[32];
+
+    // Written by the battery receiver on the telemetry thread
+    private volatile double batteryVoltageMv = Double.NaN;
+    private volatile double batteryTemperatureC = Double.NaN;
+    private volatile boolean stopped;
+
+    // Owned by the telemetry thread
+    private long startUptime;
+    private long ticks;
+    private long flushes;
+    private long batches;
+    private long dropped;
+
+    TelemetrySampler(Context context, ScanProgressEmitter.Sink sink, String sessionId, List<String> channels,
+                     long intervalMs, long batchMs) {
+        this.context = context;
+        this.sink = sink;
+        this.sessionId = sessionId;
+        this.intervalMs = intervalMs;
+        this.batchMs = batchMs;
+        int count = 0;
+        for (int c = 0; c < CHANNELS.length; c++) {
+            enabled[c] = channels.contains(CHANNELS[c]);
+            if (enabled[c]) {
+                count += COLUMNS[c].length;
+            }
+        }
+        this.row = new double[count];
+        int capacity = (int) Math.min(65536, RING_BATCHES * (batchMs / intervalMs + 1));
+        this.ring = new TelemetryRing(capacity, count);
+    }
+
+    String sessionId() {
+        return sessionId;
+    }
+
+    List<String> channels() {
+        List<String> channels = new ArrayList<>();
+        for (int c = 0; c < CHANNELS.length; c++) {
+            if (enabled[c]) {
+                channels.add(CHANNELS[c]);
+            }
+        }
+        return channels;
+    }
+
+    synchronized void start() {
+        thread = new HandlerThread("diag-telemetry");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (stopped) return;
+                open();
+                startUptime = SystemClock.uptimeMillis();
+                handler.post(sampleTick);
+                handler.postAtTime(flushTick, startUptime + batchMs);
+            }
+        });
+    }
+
+    // Stops sampling and pushes the rows still buffered as a last batch. The last flush runs
+    // on the telemetry thread, which owns the ring and the counters; they are read only once
+    // that thread has finished
+    synchronized Summary stop() throws InterruptedException {
+        if (thread == null) {
+            return new Summary(sessionId, true, 0, batches, dropped, 0);
+        }
+        stopped = true;
+        final long stopUptime = SystemClock.uptimeMillis();
+        handler.removeCallbacks(sampleTick);
+        handler.removeCallbacks(flushTick);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+                close();
+            }
+        });
+        thread.quitSafely();
+        thread.join(1000);
+        boolean drained = !thread.isAlive();
+        thread = null;
+        if (!drained) {
+            return new Summary(sessionId, false, 0, 0, 0, 0);
+        }
+        // startUptime stays 0 when stop ran before the session opened
+        long durationMs = startUptime > 0 ? stopUptime - startUptime : 0;
+        return new Summary(sessionId, true, ring.written(), batches, dropped, durationMs);
+    }
+
+    private final Runnable sampleTick = new Runnable() {
+        @Override
+        public void run() {
+            if (stopped) return;
+            sample();
+            long now = SystemClock.uptimeMillis();
+            // Fixed-rate schedule; ticks missed under load are skipped rather than bunched up
+            ticks = Math.max(ticks + 1, (now - startUptime) / intervalMs + 1);
+            handler.postAtTime(this, startUptime + ticks * intervalMs);
+        }
+    };
+
+    private final Runnable flushTick = new Runnable() {
+        @Override
+        public void run() {
+            if (stopped) return;
+            flush();
+            flushes = Math.max(flushes + 1, (SystemClock.uptimeMillis() - startUptime) / batchMs);
+            handler.postAtTime(this, startUptime + (flushes + 1) * batchMs);
+        }
+    };
+
+    private void open() {
+        if (enabled[0]) {
+            batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+            batteryReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    int voltage = intent.getIntExtra(BatteryManager.EXTRA_VOLTAGE, -1);
+                    int temperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+                    batteryVoltageMv = voltage > 0 ? voltage : Double.NaN;
+                    batteryTemperatureC = temperature != Integer.MIN_VALUE ? temperature / 10.0 : Double.NaN;
+                }
+            };
+            // The sticky broadcast is delivered right away, then again on every change
+            context.registerReceiver(batteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null, handler);
+        }
+        if (enabled[1]) {
+            activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        }
+        if (enabled[2]) {
+            cpuFreqFiles = openCpuFreqFiles();
+        }
+        if (enabled[3]) {
+            powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        }
+    }
+
+    private void close() {
+        if (batteryReceiver != null) {
+            try {
+                context.unregisterReceiver(batteryReceiver);
+            } catch (Exception e) {
+                // Already unregistered
+            }
+            batteryReceiver = null;
+        }
+        for (RandomAccessFile file : cpuFreqFiles) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing to release
+            }
+        }
+        cpuFreqFiles = new RandomAccessFile[0];
+    }
+
+    private void sample() {
+        int column = 0;
+        if (enabled[0]) {
+            row[column++] = batteryProperty(BatteryManager.BATTERY_PROPERTY_CURRENT_NOW);
+            row[column++] = batteryVoltageMv;
+            row[column++] = batteryTemperatureC;
+            row[column++] = batteryProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        }
+        if (enabled[1]) {
+            activityManager.getMemoryInfo(memoryInfo);
+            row[column++] = memoryInfo.availMem / (1024.0 * 1024.0);
+            row[column++] = memoryInfo.totalMem > 0
+                ? (memoryInfo.totalMem - memoryInfo.availMem) * 100.0 / memoryInfo.totalMem : Double.NaN;
+        }
+        if (enabled[2]) {
+            long sum = 0;
+            long max = 0;
+            int online = 0;
+            for (RandomAccessFile file : cpuFreqFiles) {
+                long freq = readLong(file);
+                // Offline cores fail the read
+                if (freq > 0) {
+                    sum += freq;
+                    max = Math.max(max, freq);
+                    online++;
+                }
+            }
+            row[column++] = online > 0 ? (double) sum / online : Double.NaN;
+            row[column++] = online > 0 ? max : Double.NaN;
+        }
+        if (enabled[3]) {
+            row[column] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? powerManager.getCurrentThermalStatus() : Double.NaN;
+        }
+        ring.add(System.currentTimeMillis(), row);
+    }
+
+    private double batteryProperty(int property) {
+        int value = batteryManager.getIntProperty(property);
+        return value != Integer.MIN_VALUE ? value : Double.NaN;
+    }
+
+    private void flush() {
+        TelemetryRing.Batch batch = ring.drain();
+        dropped += batch.dropped;
+        if (batch.size() == 0) return;
+
+        JSObject event = new JSObject();
+        event.put("sessionId", sessionId);
+        event.put("batchIndex", batches++);
+        event.put("count", batch.size());
+        event.put("dropped", batch.dropped);
+        event.put("intervalMs", intervalMs);
+        JSArray timestamps = new JSArray();
+        for (long timestamp : batch.timestamps) {
+            timestamps.put(timestamp);
+        }
+        event.put("timestamps", timestamps);
+        int column = 0;
+        for (int c = 0; c < CHANNELS.length; c++) {
+            if (!enabled[c]) continue;
+            JSObject channel = new JSObject();
+            for (String name : COLUMNS[c]) {
+                channel.put(name, series(batch.values[column++]));
+            }
+            event.put(CHANNELS[c], channel);
+        }
+        sink.emit(EVENT_TELEMETRY, event);
+    }
+
+    // Unknown readings (NaN) are sent as null
+    static JSArray series(double[] values) {
+        JSArray array = new JSArray();
+        for (double value : values) {
+            array.put(Double.isNaN(value) ? JSONObject.NULL : (Object) value);
+        }
+        return array;
+    }
+
+    private static RandomAccessFile[] openCpuFreqFiles() {
+        File[] cpus = new File("/sys/devices/system/cpu").listFiles();
+        if (cpus == null) return new RandomAccessFile[0];
+        Arrays.sort(cpus);
+        List<RandomAccessFile> files = new ArrayList<>();
+        for (File cpu : cpus) {
+            if (!cpu.getName().matches("cpu[0-9]+")) continue;
+            try {
+                files.add(new RandomAccessFile(new File(cpu, "cpufreq/scaling_cur_freq"), "r"));
+            } catch (IOException | SecurityException e) {
+                // Not readable on this device
+            }
+        }
+        return files.toArray(new RandomAccessFile[0]);
+    }
+
+    // Rereads a sysfs counter from the start; -1 when unavailable
+    private long readLong(RandomAccessFile file) {
+        try {
+            file.seek(0);
+            int read = file.read(readBuffer);
+            long value = 0;
+            boolean digits = false;
+            for (int i = 0; i < read; i++) {
+                byte b = readBuffer[i];
+                if (b < '0' || b > '9') break;
+                value = value * 10 + (b - '0');
+                digits = true;
+            }
+            return digits ? value : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.lablinkriparo.monitor;
+
+/**
+ * Bounded-heap top-K selection over primitive keys. Used by getInstalledAppsStorage
+ * to rank apps by size without sorting (or building JSON for) the whole package list.
+ * Ordering is key descending, ties broken by index ascending, so pages are stable.
+ */
+final class TopKSelector {
+
+    private TopKSelector() {
+    }
+
+    // Returns the indices ranked [offset, offset + limit) among the included entries.
+    // include may be null to consider every index.
+    static int[] select(long[] keys, boolean[] include, int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            return new int[0];
+        }
+        long wanted = (long) offset + limit;
+        int capacity = (int) Math.min(wanted, keys.length);
+        if (capacity == 0) {
+            return new int[0];
+        }
+
+        // Min-heap on rank: the root is the worst entry currently kept
+        int[] heap = new int[capacity];
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (include != null && !include[i]) continue;
+            if (size < capacity) {
+                heap[size] = i;
+                siftUp(heap, size, keys);
+                size++;
+            } else if (better(keys, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, 0, size, keys);
+            }
+        }
+
+        // Heap sort in place: repeatedly move the worst to the end, leaving best-first order
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(heap, 0, end, keys);
+        }
+
+        if (offset >= size) {
+            return new int[0];
+        }
+        int count = Math.min(limit, size - offset);
+        int[] page = new int[count];
+        System.arraycopy(heap, offset, page, 0, count);
+        return page;
+    }
+
+    static int count(boolean[] include, int length) {
+        if (include == null) return length;
+        int count = 0;
+        for (boolean included : include) {
+            if (included) count++;
+        }
+        return count;
+    }
+
+    // True when index a ranks ahead of index b
+    private static boolean better(long[] keys, int a, int b) {
+        return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int pos, long[] keys) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            // Min-heap on rank: parent must be worse than (or equal to) the child
+            if (!better(keys, heap[parent], item)) break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int pos, int size, long[] keys) {
+        int item = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && better(keys, heap[child], heap[right])) {
+                child = right;
+            }
+            if (!better(keys, item, heap[child])) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+}
@@ -0,0 +1,547 @@
+package com.lablinkriparo.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Rolling per-package, per-day foreground totals behind getAppUsageStats, kept in
+ * the app's private files dir so ranges reach back past what the system retains.
+ * The file is append-only: each update appends its usage records followed by a
+ * checkpoint (the time up to which usage has been ingested, with the activities
+ * still in the foreground at that time). On load, records after the last
+ * checkpoint, and anything after it that does not parse, are ignored, so a torn
+ * write loses only that update.
+ * The file is rewritten compacted once it holds mostly superseded records or
+ * days older than the retention window. Days are local epoch days. Plain Java,
+ * so the aggregation runs on a desktop JVM as well.
+ */
+final class UsageHistoryStore {
+
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private static final int MAGIC = 0x55534748; // "USGH"
+    private static final int FORMAT_VERSION = 2;
+    private static final byte RECORD_PACKAGE = 1;
+    private static final byte RECORD_USAGE = 2;
+    private static final byte RECORD_CHECKPOINT = 3;
+    // Superseded records tolerated before a rewrite
+    private static final int COMPACT_SLACK = 4096;
+
+    /** Usage collected for one update; nothing is stored until commit. */
+    static final class Batch {
+        // day -> package -> {foregroundMs, lastUsed}
+        private final TreeMap<Integer, Map<String, long[]>> days = new TreeMap<>();
+
+        // Adds to the day's total
+        void add(int day, String packageName, long foregroundMs, long lastUsed) {
+            long[] usage = usage(day, packageName);
+            usage[0] += foregroundMs;
+            usage[1] = Math.max(usage[1], lastUsed);
+        }
+
+        // Keeps the larger total, for sources that may report the same day twice
+        void max(int day, String packageName, long foregroundMs, long lastUsed) {
+            long[] usage = usage(day, packageName);
+            usage[0] = Math.max(usage[0], foregroundMs);
+            usage[1] = Math.max(usage[1], lastUsed);
+        }
+
+        boolean isEmpty() {
+            return days.isEmpty();
+        }
+
+        private long[] usage(int day, String packageName) {
+            Map<String, long[]> packages = days.get(day);
+            if (packages == null) {
+                packages = new HashMap<>();
+                days.put(day, packages);
+            }
+            long[] usage = packages.get(packageName);
+            if (usage == null) {
+                usage = new long[2];
+                packages.put(packageName, usage);
+            }
+            return usage;
+        }
+    }
+
+    /**
+     * Turns activity foreground/background events into per-day foreground time. A
+     * package is in the foreground while any of its activities is, so a second
+     * activity resumed inside the app does not start a new session, and a pause
+     * for an activity that is not open (a duplicate, or one whose resume predates
+     * the window) is ignored. Sessions that cross midnight are split between the
+     * days. Activities still open at finish are counted up to the window end and
+     * carried into the next window, which continues them from its start.
+     */
+    static final class Sessions {
+        private final Batch batch;
+        private final TimeZone zone;
+        // package -> session start, and the package's activities in the foreground
+        private final Map<String, Long> starts = new HashMap<>();
+        private final Map<String, Set<String>> open = new HashMap<>();
+
+        // carried: the activities open when the previous window ended, as returned by finish
+        Sessions(Batch batch, TimeZone zone, long from, Map<String, Set<String>> carried) {
+            this.batch = batch;
+            this.zone = zone;
+            for (Map.Entry<String, Set<String>> session : carried.entrySet()) {
+                if (session.getValue().isEmpty()) continue;
+                starts.put(session.getKey(), from);
+                open.put(session.getKey(), new HashSet<>(session.getValue()));
+            }
+        }
+
+        void foreground(String packageName, String activity, long time) {
+            Set<String> activities = open.get(packageName);
+            if (activities == null) {
+                activities = new HashSet<>();
+                open.put(packageName, activities);
+                starts.put(packageName, time);
+            }
+            activities.add(activity != null ? activity : "");
+        }
+
+        void background(String packageName, String activity, long time) {
+            Set<String> activities = open.get(packageName);
+            if (activities == null || !activities.remove(activity != null ? activity : "")) return;
+            if (activities.isEmpty()) {
+                open.remove(packageName);
+                record(packageName, starts.remove(packageName), time);
+            }
+        }
+
+        // Device shutdown: everything in the foreground stopped
+        void closeAll(long time) {
+            for (Map.Entry<String, Long> session : starts.entrySet()) {
+                record(session.getKey(), session.getValue(), time);
+            }
+            starts.clear();
+            open.clear();
+        }
+
+        // Counts open sessions up to end and returns them for the next window
+        Map<String, Set<String>> finish(long end) {
+            Map<String, Set<String>> carried = new HashMap<>(open);
+            closeAll(end);
+            return carried;
+        }
+
+        private void record(String packageName, long start, long end) {
+            if (end <= start) {
+                batch.add(dayOf(end, zone), packageName, 0, end);
+                return;
+            }
+            while (start < end) {
+                int day = dayOf(start, zone);
+                // DST changes make the split up to an hour off on those two days
+                long split = Math.max(start + 1, Math.min(end, startOfDay(day + 1, zone)));
+                batch.add(day, packageName, split - start, split);
+                start = split;
+            }
+        }
+    }
+
+    /** Per-package totals over a day range, packages in no particular order. */
+    static final class Totals {
+        final int fromDay;
+        final int toDay;
+        final String[] packages;
+        final long[] foregroundMs;
+        final long[] lastUsed;
+        // Per package, one entry per day from fromDay; null unless requested
+        final long[][] daily;
+
+        Totals(int fromDay, int toDay, String[] packages, long[] foregroundMs, long[] lastUsed, long[][] daily) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.packages = packages;
+            this.foregroundMs = foregroundMs;
+            this.lastUsed = lastUsed;
+            this.daily = daily;
+        }
+    }
+
+    private final File file;
+    private final List<String> packages = new ArrayList<>();
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    // day -> package id -> {foregroundMs, lastUsed}
+    private final TreeMap<Integer, Map<Integer, long[]>> days = new TreeMap<>();
+    private long checkpoint;
+    // Activities in the foreground at the checkpoint, per package
+    private Map<String, Set<String>> openAtCheckpoint = Collections.emptyMap();
+    private boolean loaded;
+    // Package names and usage records currently in the file
+    private int filePackages;
+    private int fileRecords;
+    // Set when the file has an uncommitted tail or is unreadable, so the next commit rewrites it
+    private boolean rewrite;
+
+    UsageHistoryStore(File file) {
+        this.file = file;
+    }
+
+    static int dayOf(long time, TimeZone zone) {
+        long local = time + zone.getOffset(time);
+        return (int) (local >= 0 ? local / DAY_MS : (local - DAY_MS + 1) / DAY_MS);
+    }
+
+    static long startOfDay(int day, TimeZone zone) {
+        long local = day * DAY_MS;
+        return local - zone.getOffset(local - zone.getOffset(local));
+    }
+
+    // Time up to which usage has been ingested; 0 for an empty store
+    synchronized long checkpoint() {
+        ensureLoaded();
+        return checkpoint;
+    }
+
+    synchronized Map<String, Set<String>> openAtCheckpoint() {
+        ensureLoaded();
+        return openAtCheckpoint;
+    }
+
+    synchronized Integer firstDay() {
+        ensureLoaded();
+        return days.isEmpty() ? null : days.firstKey();
+    }
+
+    // Applies the batch, advances the checkpoint (with the activities open at it)
+    // and drops days before retainFromDay. Memory is updated even when the file
+    // write fails, in which case the next process re-ingests from the last stored
+    // checkpoint.
+    synchronized void commit(Batch batch, long newCheckpoint, Map<String, Set<String>> open, int retainFromDay)
+        throws IOException {
+        ensureLoaded();
+        List<long[]> appended = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, long[]>> day : batch.days.entrySet()) {
+            if (day.getKey() < retainFromDay) continue;
+            for (Map.Entry<String, long[]> usage : day.getValue().entrySet()) {
+                Integer id = packageIds.get(usage.getKey());
+                if (id == null) {
+                    id = packages.size();
+                    packages.add(usage.getKey());
+                    packageIds.put(usage.getKey(), id);
+                }
+                long[] value = usage.getValue();
+                apply(day.getKey(), id, value[0], value[1]);
+                appended.add(new long[]{day.getKey(), id, value[0], value[1]});
+            }
+        }
+        if (newCheckpoint >= checkpoint) {
+            checkpoint = newCheckpoint;
+            openAtCheckpoint = copy(open);
+        }
+        boolean expired = !days.isEmpty() && days.firstKey() < retainFromDay;
+        days.headMap(retainFromDay).clear();
+
+        if (rewrite || expired || fileRecords + appended.size() > 2 * liveRecords() + COMPACT_SLACK) {
+            writeCompacted();
+        } else {
+            append(appended);
+        }
+    }
+
+    synchronized Totals query(int fromDay, int toDay, boolean daily) {
+        ensureLoaded();
+        int width = toDay - fromDay + 1;
+        Map<Integer, Integer> rows = new HashMap<>();
+        List<long[]> totals = new ArrayList<>();
+        List<long[]> dailyRows = new ArrayList<>();
+        for (Map.Entry<Integer, Map<Integer, long[]>> day : days.subMap(fromDay, true, toDay, true).entrySet()) {
+            for (Map.Entry<Integer, long[]> usage : day.getValue().entrySet()) {
+                Integer row = rows.get(usage.getKey());
+                if (row == null) {
+                    row = totals.size();
+                    rows.put(usage.getKey(), row);
+                    totals.add(new long[]{usage.getKey(), 0, 0});
+                    if (daily) {
+                        dailyRows.add(new long[width]);
+                    }
+                }
+                long[] total = totals.get(row);
+                total[1] += usage.getValue()[0];
+                total[2] = Math.max(total[2], usage.getValue()[1]);
+                if (daily) {
+                    dailyRows.get(row)[day.getKey() - fromDay] += usage.getValue()[0];
+                }
+            }
+        }
+        int n = totals.size();
+        String[] names = new String[n];
+        long[] foregroundMs = new long[n];
+        long[] lastUsed = new long[n];
+        for (int i = 0; i < n; i++) {
+            long[] total = totals.get(i);
+            names[i] = packages.get((int) total[0]);
+            foregroundMs[i] = total[1];
+            lastUsed[i] = total[2];
+        }
+        return new Totals(fromDay, toDay, names, foregroundMs, lastUsed,
+            daily ? dailyRows.toArray(new long[0][]) : null);
+    }
+
+    synchronized void clear() throws IOException {
+        ensureLoaded();
+        packages.clear();
+        packageIds.clear();
+        days.clear();
+        checkpoint = 0;
+        openAtCheckpoint = Collections.emptyMap();
+        writeCompacted();
+    }
+
+    private void apply(int day, int id, long foregroundMs, long lastUsed) {
+        Map<Integer, long[]> usage = days.get(day);
+        if (usage == null) {
+            usage = new HashMap<>();
+            days.put(day, usage);
+        }
+        long[] value = usage.get(id);
+        if (value == null) {
+            usage.put(id, new long[]{foregroundMs, lastUsed});
+        } else {
+            value[0] += foregroundMs;
+            value[1] = Math.max(value[1], lastUsed);
+        }
+    }
+
+    private int liveRecords() {
+        int count = 0;
+        for (Map<Integer, long[]> usage : days.values()) {
+            count += usage.size();
+        }
+        return count;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        try {
+            read();
+        } catch (IOException e) {
+            // Corrupt or foreign file: start over
+            packages.clear();
+            packageIds.clear();
+            days.clear();
+            checkpoint = 0;
+            openAtCheckpoint = Collections.emptyMap();
+            rewrite = true;
+        }
+    }
+
+    private void read() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown usage history format");
+            }
+            List<String> pendingPackages = new ArrayList<>();
+            List<long[]> pending = new ArrayList<>();
+            int committedRecords = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0) break;
+                try {
+                    if (type == RECORD_PACKAGE) {
+                        pendingPackages.add(in.readUTF());
+                    } else if (type == RECORD_USAGE) {
+                        int day = in.readInt();
+                        int id = in.readInt();
+                        long foregroundMs = in.readLong();
+                        long lastUsed = in.readLong();
+                        if (id < 0 || id >= packages.size() + pendingPackages.size()) {
+                            throw new IOException("Unknown package id " + id);
+                        }
+                        pending.add(new long[]{day, id, foregroundMs, lastUsed});
+                    } else if (type == RECORD_CHECKPOINT) {
+                        long time = in.readLong();
+                        Map<String, Set<String>> open = readOpen(in);
+                        checkpoint = time;
+                        openAtCheckpoint = open;
+                        for (String name : pendingPackages) {
+                            packageIds.put(name, packages.size());
+                            packages.add(name);
+                        }
+                        for (long[] record : pending) {
+                            apply((int) record[0], (int) record[1], record[2], record[3]);
+                        }
+                        committedRecords += pending.size();
+                        pendingPackages.clear();
+                        pending.clear();
+                    } else {
+                        throw new IOException("Unknown record type " + type);
+                    }
+                } catch (IOException e) {
+                    // Torn or garbage tail (a short read, or zero-filled blocks after a crash
+                    // mid-append): keep what the last checkpoint committed and drop the rest
+                    rewrite = true;
+                    break;
+                }
+            }
+            if (!pending.isEmpty() || !pendingPackages.isEmpty()) {
+                rewrite = true;
+            }
+            filePackages = packages.size();
+            fileRecords = committedRecords;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void append(List<long[]> records) throws IOException {
+        if (!file.exists()) {
+            writeCompacted();
+            return;
+        }
+        // A failed append may leave a partial record behind; rewrite next time
+        rewrite = true;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try {
+            for (int id = filePackages; id < packages.size(); id++) {
+                out.writeByte(RECORD_PACKAGE);
+                out.writeUTF(packages.get(id));
+            }
+            for (long[] record : records) {
+                writeUsage(out, (int) record[0], (int) record[1], record[2], record[3]);
+            }
+            writeCheckpoint(out);
+        } finally {
+            out.close();
+        }
+        filePackages = packages.size();
+        fileRecords += records.size();
+        rewrite = false;
+    }
+
+    // Only packages that still have usage in the window are kept, renumbered
+    private void writeCompacted() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        int[] remap = new int[packages.size()];
+        Arrays.fill(remap, -1);
+        List<String> kept = new ArrayList<>();
+        for (Map<Integer, long[]> usage : days.values()) {
+            for (Integer id : usage.keySet()) {
+                if (remap[id] < 0) {
+                    remap[id] = kept.size();
+                    kept.add(packages.get(id));
+                }
+            }
+        }
+        TreeMap<Integer, Map<Integer, long[]>> renumbered = new TreeMap<>();
+        for (Map.Entry<Integer, Map<Integer, long[]>> day : days.entrySet()) {
+            Map<Integer, long[]> usage = new HashMap<>();
+            for (Map.Entry<Integer, long[]> entry : day.getValue().entrySet()) {
+                usage.put(remap[entry.getKey()], entry.getValue());
+            }
+            renumbered.put(day.getKey(), usage);
+        }
+
+        rewrite = true;
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        int records = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            for (String name : kept) {
+                out.writeByte(RECORD_PACKAGE);
+                out.writeUTF(name);
+            }
+            for (Map.Entry<Integer, Map<Integer, long[]>> day : renumbered.entrySet()) {
+                for (Map.Entry<Integer, long[]> usage : day.getValue().entrySet()) {
+                    long[] value = usage.getValue();
+                    writeUsage(out, day.getKey(), usage.getKey(), value[0], value[1]);
+                    records++;
+                }
+            }
+            writeCheckpoint(out);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+
+        packages.clear();
+        packageIds.clear();
+        for (String name : kept) {
+            packageIds.put(name, packages.size());
+            packages.add(name);
+        }
+        days.clear();
+        days.putAll(renumbered);
+        filePackages = packages.size();
+        fileRecords = records;
+        rewrite = false;
+    }
+
+    private void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeByte(RECORD_CHECKPOINT);
+        out.writeLong(checkpoint);
+        out.writeInt(openAtCheckpoint.size());
+        for (Map.Entry<String, Set<String>> session : openAtCheckpoint.entrySet()) {
+            out.writeUTF(session.getKey());
+            out.writeInt(session.getValue().size());
+            for (String activity : session.getValue()) {
+                out.writeUTF(activity);
+            }
+        }
+    }
+
+    private static Map<String, Set<String>> readOpen(DataInputStream in) throws IOException {
+        int packageCount = in.readInt();
+        if (packageCount < 0) throw new IOException("Invalid open session count");
+        Map<String, Set<String>> open = new HashMap<>();
+        for (int i = 0; i < packageCount; i++) {
+            String packageName = in.readUTF();
+            int activityCount = in.readInt();
+            if (activityCount < 0) throw new IOException("Invalid open activity count");
+            Set<String> activities = new HashSet<>();
+            for (int j = 0; j < activityCount; j++) {
+                activities.add(in.readUTF());
+            }
+            open.put(packageName, activities);
+        }
+        return open;
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> open) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<String, Set<String>> session : open.entrySet()) {
+            copy.put(session.getKey(), Collections.unmodifiableSet(new HashSet<>(session.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static void writeUsage(DataOutputStream out, int day, int id, long foregroundMs, long lastUsed)
+        throws IOException {
+        out.writeByte(RECORD_USAGE);
+        out.writeInt(day);
+        out.writeInt(id);
+        out.writeLong(foregroundMs);
+        out.writeLong(lastUsed);
+    }
+}
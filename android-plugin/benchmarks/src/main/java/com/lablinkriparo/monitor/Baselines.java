@@ -0,0 +1,130 @@
+package com.lablinkriparo.monitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The implementations the plugin used before the current cores, kept verbatim in
+ * shape so every benchmark has a before/after pair.
+ */
+final class Baselines {
+
+    private Baselines() {
+    }
+
+    // Recursive File.listFiles() walk, the original getDirSize
+    static long dirSize(File dir) {
+        long size = 0;
+        if (dir != null && dir.exists()) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isDirectory()) {
+                        size += dirSize(file);
+                    } else {
+                        size += file.length();
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    // The original deleteDir: files are removed, emptied directories are left behind
+    static long deleteDir(File dir) {
+        long freedBytes = 0;
+        if (dir != null && dir.isDirectory()) {
+            String[] children = dir.list();
+            if (children != null) {
+                for (String child : children) {
+                    File file = new File(dir, child);
+                    if (file.isDirectory()) {
+                        freedBytes += deleteDir(file);
+                    } else {
+                        long fileSize = file.length();
+                        if (file.delete()) {
+                            freedBytes += fileSize;
+                        }
+                    }
+                }
+            }
+        }
+        return freedBytes;
+    }
+
+    // Full sort of every app by size, then the first page
+    static int[] sortAndLimit(final long[] sizes, int offset, int limit) {
+        Integer[] order = new Integer[sizes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(sizes[b], sizes[a]);
+            }
+        });
+        int count = Math.max(0, Math.min(limit, order.length - offset));
+        int[] page = new int[count];
+        for (int i = 0; i < count; i++) {
+            page[i] = order[offset + i];
+        }
+        return page;
+    }
+
+    // Line scan of isSystemReadOnly before MountTable
+    static boolean systemReadOnly(String mounts) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(mounts));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.contains("/system")) {
+                reader.close();
+                return line.contains("ro,") || line.contains(",ro ");
+            }
+        }
+        reader.close();
+        return true;
+    }
+
+    // Inline loop of getDangerousPermissions before PermissionClassifier
+    static List<String> grantedDangerous(String[] requested, int[] flags, String[] dangerous, int grantedFlag) {
+        List<String> granted = new ArrayList<>();
+        for (int i = 0; i < requested.length; i++) {
+            String perm = requested[i];
+            if ((flags[i] & grantedFlag) != 0) {
+                for (String candidate : dangerous) {
+                    if (perm.equals(candidate)) {
+                        granted.add(perm.substring(perm.lastIndexOf('.') + 1));
+                        break;
+                    }
+                }
+            }
+        }
+        return granted;
+    }
+
+    // Filtering the full app list per query, as JS had to before PermissionIndex
+    static List<Integer> filterApps(String[][] requested, int[][] flags, int grantedFlag,
+                                    List<String> allOf, List<String> noneOf) {
+        List<Integer> matches = new ArrayList<>();
+        for (int p = 0; p < requested.length; p++) {
+            List<String> granted = new ArrayList<>();
+            for (int i = 0; i < requested[p].length; i++) {
+                if ((flags[p][i] & grantedFlag) != 0) {
+                    granted.add(requested[p][i]);
+                }
+            }
+            if (granted.containsAll(allOf) && Collections.disjoint(granted, noneOf)) {
+                matches.add(p);
+            }
+        }
+        return matches;
+    }
+}
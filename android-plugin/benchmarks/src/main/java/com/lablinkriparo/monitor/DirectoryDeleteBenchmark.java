@@ -0,0 +1,57 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clearing cache trees. Every invocation needs a fresh tree, so this runs as
+ * single shots and the tree is rebuilt outside the measured region.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectoryDeleteBenchmark {
+
+    @Param({"50", "500"})
+    public int packages;
+
+    private File root;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        root = Fixtures.cacheTree(packages);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        Fixtures.deleteTree(root);
+    }
+
+    @Benchmark
+    public long recursiveDelete() {
+        return Baselines.deleteDir(root);
+    }
+
+    @Benchmark
+    public long iterativeDelete() {
+        return new DirectorySizer(null, true, 64, 0).delete(root, true).freedBytes;
+    }
+}
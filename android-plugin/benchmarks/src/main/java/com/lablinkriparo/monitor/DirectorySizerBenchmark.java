@@ -0,0 +1,77 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizing the cache trees of N apps: the recursive walk getTotalCacheSize used to
+ * run versus DirectorySizer in each of its modes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectorySizerBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int packages;
+
+    private File root;
+    private ForkJoinPool pool;
+    private DirectorySizer nio;
+    private DirectorySizer fileList;
+    private DirectorySizer parallelNio;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Fixtures.cacheTree(packages);
+        pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        nio = new DirectorySizer(null, true, 64, 0);
+        fileList = new DirectorySizer(null, false, 64, 0);
+        parallelNio = new DirectorySizer(pool, true, 64, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        Fixtures.deleteTree(root);
+    }
+
+    @Benchmark
+    public long recursiveListFiles() {
+        return Baselines.dirSize(root);
+    }
+
+    @Benchmark
+    public long iterativeFileList() {
+        return fileList.size(root).bytes;
+    }
+
+    @Benchmark
+    public long iterativeNio() {
+        return nio.size(root).bytes;
+    }
+
+    @Benchmark
+    public long forkJoinNio() {
+        return parallelNio.size(root).bytes;
+    }
+}
@@ -0,0 +1,177 @@
+package com.lablinkriparo.monitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic inputs shaped like a real device: installed packages
+ * with their requested permissions, per-app cache directory trees and a
+ * /proc/mounts table, plus APK digests. Sizes are driven by the benchmark @Param values.
+ */
+final class Fixtures {
+
+    // Same flag value as PackageInfo.REQUESTED_PERMISSION_GRANTED
+    static final int GRANTED = 2;
+
+    static final String[] DANGEROUS = {
+        "android.permission.READ_CONTACTS",
+        "android.permission.WRITE_CONTACTS",
+        "android.permission.READ_SMS",
+        "android.permission.SEND_SMS",
+        "android.permission.READ_CALL_LOG",
+        "android.permission.WRITE_CALL_LOG",
+        "android.permission.ACCESS_FINE_LOCATION",
+        "android.permission.ACCESS_COARSE_LOCATION",
+        "android.permission.CAMERA",
+        "android.permission.RECORD_AUDIO",
+        "android.permission.READ_EXTERNAL_STORAGE",
+        "android.permission.WRITE_EXTERNAL_STORAGE",
+        "android.permission.READ_PHONE_STATE",
+        "android.permission.CALL_PHONE",
+        "android.permission.READ_CALENDAR",
+        "android.permission.WRITE_CALENDAR"
+    };
+
+    private static final String[] NORMAL = {
+        "android.permission.INTERNET",
+        "android.permission.ACCESS_NETWORK_STATE",
+        "android.permission.ACCESS_WIFI_STATE",
+        "android.permission.WAKE_LOCK",
+        "android.permission.VIBRATE",
+        "android.permission.FOREGROUND_SERVICE",
+        "android.permission.RECEIVE_BOOT_COMPLETED",
+        "android.permission.POST_NOTIFICATIONS",
+        "android.permission.BLUETOOTH",
+        "android.permission.NFC",
+        "android.permission.USE_BIOMETRIC",
+        "com.google.android.c2dm.permission.RECEIVE",
+        "com.google.android.gms.permission.AD_ID",
+        "com.android.vending.BILLING",
+        "com.android.launcher.permission.INSTALL_SHORTCUT"
+    };
+
+    static final class Packages {
+        final String[][] requested;
+        final int[][] flags;
+        // Total size per package, for ranking
+        final long[] sizes;
+
+        Packages(String[][] requested, int[][] flags, long[] sizes) {
+            this.requested = requested;
+            this.flags = flags;
+            this.sizes = sizes;
+        }
+    }
+
+    private Fixtures() {
+    }
+
+    static Packages packages(int count) {
+        Random random = new Random(count);
+        String[][] requested = new String[count][];
+        int[][] flags = new int[count][];
+        long[] sizes = new long[count];
+        for (int p = 0; p < count; p++) {
+            int permissions = 3 + random.nextInt(40);
+            requested[p] = new String[permissions];
+            flags[p] = new int[permissions];
+            for (int i = 0; i < permissions; i++) {
+                if (random.nextInt(4) == 0) {
+                    requested[p][i] = DANGEROUS[random.nextInt(DANGEROUS.length)];
+                } else if (random.nextInt(3) == 0) {
+                    // App-defined permissions, unique per package
+                    requested[p][i] = "com.example.app" + p + ".permission.C2D_MESSAGE_" + i;
+                } else {
+                    requested[p][i] = NORMAL[random.nextInt(NORMAL.length)];
+                }
+                // Permissions come back as new String objects from binder, not interned constants
+                requested[p][i] = new String(requested[p][i]);
+                flags[p][i] = 1 | (random.nextInt(3) > 0 ? GRANTED : 0);
+            }
+            // Long-tailed sizes: most apps are small, a few are huge
+            sizes[p] = (long) (Math.pow(random.nextDouble(), 4) * 4_000_000_000L) + random.nextInt(1_000_000);
+        }
+        return new Packages(requested, flags, sizes);
+    }
+
+    // One cache dir per package with a few nested subdirectories, like app cache trees
+    static File cacheTree(int packages) throws IOException {
+        File root = Files.createTempDirectory("diag-bench-").toFile();
+        Random random = new Random(packages);
+        byte[] payload = new byte[16 * 1024];
+        for (int p = 0; p < packages; p++) {
+            File cache = new File(root, "com.example.app" + p + "/cache");
+            populate(cache, random, payload, 0);
+        }
+        return root;
+    }
+
+    private static void populate(File dir, Random random, byte[] payload, int depth) throws IOException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        int files = 1 + random.nextInt(4);
+        for (int i = 0; i < files; i++) {
+            FileOutputStream out = new FileOutputStream(new File(dir, "entry" + i + ".tmp"));
+            try {
+                out.write(payload, 0, random.nextInt(payload.length));
+            } finally {
+                out.close();
+            }
+        }
+        if (depth < 3) {
+            int children = random.nextInt(3);
+            for (int i = 0; i < children; i++) {
+                populate(new File(dir, "d" + i), random, payload, depth + 1);
+            }
+        }
+    }
+
+    // A /proc/mounts table: the usual Android mounts followed by per-app and apex entries
+    static String mounts(int lines) {
+        String[] base = {
+            "/dev/block/dm-5 / ext4 ro,seclabel,relatime 0 0",
+            "tmpfs /dev tmpfs rw,seclabel,nosuid,relatime,size=3830748k,nr_inodes=957687,mode=755 0 0",
+            "devpts /dev/pts devpts rw,seclabel,relatime,mode=600,ptmxmode=000 0 0",
+            "proc /proc proc rw,relatime,gid=3009,hidepid=invisible 0 0",
+            "sysfs /sys sysfs rw,seclabel,relatime 0 0",
+            "selinuxfs /sys/fs/selinux selinuxfs rw,relatime 0 0",
+            "/dev/block/dm-6 /system_ext ext4 ro,seclabel,relatime 0 0",
+            "/dev/block/dm-7 /product ext4 ro,seclabel,relatime 0 0",
+            "/dev/block/dm-8 /vendor ext4 ro,seclabel,relatime 0 0",
+            "/dev/block/dm-47 /data f2fs rw,lazytime,seclabel,nosuid,nodev,noatime 0 0",
+            "/dev/fuse /storage/emulated fuse rw,lazytime,nosuid,nodev,noexec,noatime 0 0"
+        };
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i < base.length) {
+                out.append(base[i]);
+            } else {
+                out.append("/dev/block/loop").append(i).append(" /apex/com.android.module")
+                    .append(i).append("@3400000").append(i)
+                    .append(" ext4 ro,dirsync,seclabel,nodev,noatime 0 0");
+            }
+            out.append('\n');
+        }
+        // The legacy check looks for /system; put a bind mount of it near the end
+        out.append("/dev/block/dm-5 /system/bin/app\\040process ext4 ro,seclabel,relatime 0 0\n");
+        return out.toString();
+    }
+
+    // Random SHA-256-sized digests; the same seed gives the same set
+    static byte[][] digests(int count, long seed) {
+        Random random = new Random(seed);
+        byte[][] digests = new byte[count][HashIndex.DIGEST_BYTES];
+        for (byte[] digest : digests) {
+            random.nextBytes(digest);
+        }
+        return digests;
+    }
+
+    static void deleteTree(File root) {
+        new DirectorySizer(null, true, Integer.MAX_VALUE, 0).delete(root, false);
+    }
+}
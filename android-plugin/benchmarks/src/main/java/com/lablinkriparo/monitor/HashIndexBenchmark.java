@@ -0,0 +1,84 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scanInstalledApks: checking one device's worth of APK digests against the
+ * threat definitions, with the compact HashIndex versus a HashMap keyed by hex
+ * strings (the obvious shape for definitions parsed from JSON).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashIndexBenchmark {
+
+    // Split APKs included, a typical device hashes a few hundred files
+    private static final int DEVICE_FILES = 400;
+
+    @Param({"1000", "100000", "1000000"})
+    public int definitions;
+
+    private byte[][] known;
+    private byte[][] device;
+    private HashIndex index;
+    private Map<String, String> hexMap;
+
+    @Setup
+    public void setUp() {
+        known = Fixtures.digests(definitions, 1);
+        // Mostly clean files with a few known-bad ones mixed in
+        device = Fixtures.digests(DEVICE_FILES, 2);
+        for (int i = 0; i < DEVICE_FILES; i += 50) {
+            device[i] = known[(i * 7919) % definitions].clone();
+        }
+        index = build();
+        hexMap = new HashMap<>();
+        for (int i = 0; i < definitions; i++) {
+            hexMap.put(ApkHasher.hex(known[i]), "Threat." + (i % 64));
+        }
+    }
+
+    @Benchmark
+    public HashIndex build() {
+        HashIndex.Builder builder = new HashIndex.Builder();
+        for (int i = 0; i < definitions; i++) {
+            builder.add(known[i], "Threat." + (i % 64), "malware");
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int indexLookup() {
+        int found = 0;
+        for (byte[] digest : device) {
+            if (index.lookup(digest) >= 0) found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int hexMapLookup() {
+        int found = 0;
+        for (byte[] digest : device) {
+            if (hexMap.get(ApkHasher.hex(digest)) != null) found++;
+        }
+        return found;
+    }
+}
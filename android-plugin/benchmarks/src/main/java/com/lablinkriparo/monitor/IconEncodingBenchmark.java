@@ -0,0 +1,85 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Icon pipeline of AppIconCache. Android's Bitmap does not exist on the JVM, so
+ * the render miss (scale to 48x48, PNG encode, base64 data URL) is measured with
+ * java.awt as a stand-in of the same shape; the cache-hit path (PNG bytes from
+ * disk to data URL) is the same work on both platforms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class IconEncodingBenchmark {
+
+    private static final int ICON_SIZE = 48;
+    private static final String DATA_URL_PREFIX = "data:image/png;base64,";
+
+    // Launcher icon sizes for mdpi, xxhdpi and xxxhdpi
+    @Param({"48", "144", "192"})
+    public int sourceSize;
+
+    private BufferedImage source;
+    private byte[] png;
+
+    @Setup
+    public void setUp() throws IOException {
+        source = new BufferedImage(sourceSize, sourceSize, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < sourceSize; y++) {
+            for (int x = 0; x < sourceSize; x++) {
+                int alpha = (x - sourceSize / 2) * (x - sourceSize / 2)
+                    + (y - sourceSize / 2) * (y - sourceSize / 2) < sourceSize * sourceSize / 4 ? 0xff : 0;
+                source.setRGB(x, y, alpha << 24 | (x * 255 / sourceSize) << 16 | (y * 255 / sourceSize) << 8 | 0x80);
+            }
+        }
+        png = encode(scale(source));
+    }
+
+    @Benchmark
+    public String renderMiss() throws IOException {
+        return DATA_URL_PREFIX + Base64.getEncoder().encodeToString(encode(scale(source)));
+    }
+
+    @Benchmark
+    public String diskHit() {
+        return DATA_URL_PREFIX + Base64.getEncoder().encodeToString(png);
+    }
+
+    private static BufferedImage scale(BufferedImage image) {
+        BufferedImage scaled = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, ICON_SIZE, ICON_SIZE, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
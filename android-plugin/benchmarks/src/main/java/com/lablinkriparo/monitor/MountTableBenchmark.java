@@ -0,0 +1,54 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing /proc/mounts for the read-only /system check, from the raw bytes
+ * ProcFs reads versus the original line scan. Real tables range from
+ * about 50 lines to several hundred on devices with many APEX modules.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MountTableBenchmark {
+
+    @Param({"50", "500"})
+    public int lines;
+
+    private String mounts;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        mounts = Fixtures.mounts(lines);
+        bytes = mounts.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public boolean lineScan() throws IOException {
+        return Baselines.systemReadOnly(mounts);
+    }
+
+    @Benchmark
+    public boolean parsedTable() {
+        MountTable.Entry system = MountTable.parse(bytes, 0, bytes.length).mountFor("/system");
+        return system == null || system.isReadOnly();
+    }
+}
@@ -0,0 +1,75 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intersecting every app's granted permissions with the dangerous list, the
+ * per-package core of getDangerousPermissions. classifierEncoded also builds the
+ * name list only once per distinct mask, as the plugin does for its JSArrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int packages;
+
+    private Fixtures.Packages fixture;
+    private PermissionClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.packages(packages);
+        classifier = new PermissionClassifier(Fixtures.DANGEROUS, Fixtures.GRANTED);
+    }
+
+    @Benchmark
+    public void nestedLoop(Blackhole bh) {
+        for (int p = 0; p < packages; p++) {
+            bh.consume(Baselines.grantedDangerous(fixture.requested[p], fixture.flags[p],
+                Fixtures.DANGEROUS, Fixtures.GRANTED));
+        }
+    }
+
+    @Benchmark
+    public void classifier(Blackhole bh) {
+        for (int p = 0; p < packages; p++) {
+            bh.consume(classifier.granted(fixture.requested[p], fixture.flags[p]));
+        }
+    }
+
+    @Benchmark
+    public void classifierEncoded(Blackhole bh) {
+        Map<PermissionClassifier.Mask, List<String>> encoded = new HashMap<>();
+        for (int p = 0; p < packages; p++) {
+            PermissionClassifier.Mask mask = classifier.classify(fixture.requested[p], fixture.flags[p]);
+            if (mask.isEmpty()) continue;
+            List<String> names = encoded.get(mask);
+            if (names == null) {
+                names = classifier.names(mask);
+                encoded.put(mask, names);
+            }
+            bh.consume(names);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * queryPermissionIndex: building the inverted index once per package snapshot, and
+ * answering an allOf / noneOf query from it versus filtering every app's list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionIndexBenchmark {
+
+    private static final List<String> ALL_OF = Arrays.asList(
+        "android.permission.RECORD_AUDIO", "android.permission.ACCESS_FINE_LOCATION");
+    private static final List<String> NONE_OF = Collections.singletonList("android.permission.CAMERA");
+
+    @Param({"50", "500", "5000"})
+    public int packages;
+
+    private Fixtures.Packages fixture;
+    private PermissionIndex index;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.packages(packages);
+        index = build();
+    }
+
+    @Benchmark
+    public PermissionIndex build() {
+        PermissionIndex.Builder builder = new PermissionIndex.Builder(packages, Fixtures.GRANTED);
+        for (int p = 0; p < packages; p++) {
+            builder.add("com.example.app" + p, p % 4 == 0, fixture.requested[p], fixture.flags[p]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int[] indexQuery() {
+        return index.query(ALL_OF, null, NONE_OF, true);
+    }
+
+    @Benchmark
+    public List<Integer> linearFilter() {
+        return Baselines.filterApps(fixture.requested, fixture.flags, Fixtures.GRANTED, ALL_OF, NONE_OF);
+    }
+}
@@ -0,0 +1,52 @@
+package com.lablinkriparo.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ranking apps by size for one page of getInstalledAppsStorage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopKBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int packages;
+
+    @Param({"0", "100"})
+    public int offset;
+
+    private static final int LIMIT = 50;
+
+    private long[] sizes;
+
+    @Setup
+    public void setUp() {
+        sizes = Fixtures.packages(packages).sizes;
+    }
+
+    @Benchmark
+    public int[] fullSort() {
+        return Baselines.sortAndLimit(sizes, offset, LIMIT);
+    }
+
+    @Benchmark
+    public int[] boundedHeap() {
+        return TopKSelector.select(sizes, null, offset, LIMIT);
+    }
+}
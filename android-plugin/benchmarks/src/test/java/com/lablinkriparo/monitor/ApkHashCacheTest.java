@@ -0,0 +1,106 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApkHashCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void digestsSurviveReloadWhileTheFileIsUnchanged() throws IOException {
+        File file = new File(temp.getRoot(), "cache/apk-hashes.bin");
+        ApkHashCache cache = new ApkHashCache(file);
+        cache.put(entry("/data/app/a/base.apk", 10, 100, 1));
+        cache.flush();
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        ApkHashCache reloaded = new ApkHashCache(file);
+        assertArrayEquals(digest(1), reloaded.get("/data/app/a/base.apk", 10, 100));
+        assertNull(reloaded.get("/data/app/a/base.apk", 11, 100));
+        assertNull(reloaded.get("/data/app/a/base.apk", 10, 101));
+    }
+
+    @Test
+    public void failedFlushLeavesNoTempFileAndIsRetried() throws IOException {
+        File file = new File(temp.getRoot(), "apk-hashes.bin");
+        File tmp = new File(file.getPath() + ".tmp");
+        ApkHashCache cache = new ApkHashCache(file);
+        cache.put(entry("/data/app/a/base.apk", 10, 100, 1));
+        // A directory in the way of the temp file makes the write fail
+        assertTrue(tmp.mkdir());
+        try {
+            cache.flush();
+            fail("flush over a directory succeeded");
+        } catch (IOException expected) {
+        }
+        assertFalse(file.exists());
+        assertFalse(tmp.exists());
+
+        cache.flush();
+        assertFalse(tmp.exists());
+        assertNotNull(new ApkHashCache(file).get("/data/app/a/base.apk", 10, 100));
+    }
+
+    @Test
+    public void retainOnlyDropsRemovedApks() throws IOException {
+        File file = new File(temp.getRoot(), "apk-hashes.bin");
+        ApkHashCache cache = new ApkHashCache(file);
+        cache.put(entry("/data/app/a/base.apk", 10, 100, 1));
+        cache.put(entry("/data/app/b/base.apk", 10, 100, 2));
+        cache.flush();
+        cache.retainOnly(Collections.singleton("/data/app/a/base.apk"));
+        cache.flush();
+
+        assertEquals(1, new ApkHashCache(file).size());
+    }
+
+    @Test
+    public void putsDuringFlushesAreAllPersisted() throws Exception {
+        File file = new File(temp.getRoot(), "apk-hashes.bin");
+        final ApkHashCache cache = new ApkHashCache(file);
+        final int count = 2000;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    cache.put(entry("/data/app/" + i + "/base.apk", 10, 100, i));
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            cache.flush();
+        }
+        writer.join();
+        cache.flush();
+
+        assertEquals(count, new ApkHashCache(file).size());
+    }
+
+    private static ApkHashCache.Entry entry(String path, long lastModified, long size, int seed) {
+        return new ApkHashCache.Entry(path, lastModified, size, digest(seed));
+    }
+
+    private static byte[] digest(int seed) {
+        byte[] sha256 = new byte[ApkHasher.DIGEST_BYTES];
+        for (int i = 0; i < sha256.length; i++) {
+            sha256[i] = (byte) (seed + i);
+        }
+        return sha256;
+    }
+}
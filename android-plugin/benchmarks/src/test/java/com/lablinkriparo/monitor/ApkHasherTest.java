@@ -0,0 +1,51 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ApkHasherTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void fileSpanningSeveralBuffersMatchesMessageDigest() throws Exception {
+        // Not a multiple of the read buffer, so the last read is partial
+        assertDigest(5 * 1024 * 1024 / 2 + 17);
+    }
+
+    @Test
+    public void emptyFileMatchesMessageDigest() throws Exception {
+        assertDigest(0);
+    }
+
+    private void assertDigest(int length) throws Exception {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        File file = temp.newFile();
+        write(file, data);
+
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+        assertArrayEquals(expected, ApkHasher.sha256(file));
+        // Again on the same thread, with the buffer left over from the first file
+        assertArrayEquals(expected, ApkHasher.sha256(file));
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
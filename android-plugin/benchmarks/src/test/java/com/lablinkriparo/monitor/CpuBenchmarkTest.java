@@ -0,0 +1,50 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CpuBenchmarkTest {
+
+    @Test
+    public void workloadsAreDeterministicAndAdditivePerUnit() {
+        assertEquals(CpuBenchmark.hash(0, 3), CpuBenchmark.hash(0, 3));
+        assertEquals(CpuBenchmark.hash(0, 3), CpuBenchmark.hash(0, 1) + CpuBenchmark.hash(1, 3));
+        assertNotEquals(CpuBenchmark.hash(0, 1), CpuBenchmark.hash(1, 2));
+        assertEquals(CpuBenchmark.matrix(0, 3), CpuBenchmark.matrix(0, 1) + CpuBenchmark.matrix(1, 3));
+
+        double[][] arrays = {new double[8], {1, 2, 3, 4, 5, 6, 7, 8}, {1, 1, 1, 1, 1, 1, 1, 1}};
+        long checksum = CpuBenchmark.triad(arrays, 0, 8, 2);
+        assertEquals(4.0, arrays[0][0], 0);
+        assertEquals(11.0, arrays[0][7], 0);
+        assertEquals(Double.doubleToLongBits(4.0) + Double.doubleToLongBits(11.0), checksum);
+    }
+
+    @Test
+    public void fullRunGivesTheSameChecksumsEveryTime() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            CpuBenchmark benchmark = new CpuBenchmark(pool, 3);
+            CpuBenchmark.Report first = benchmark.run(2);
+            CpuBenchmark.Report second = benchmark.run(2);
+
+            assertEquals(2, first.threads);
+            assertEquals(2, first.rounds.length);
+            assertEquals(3, first.scores.size());
+            for (int i = 0; i < first.scores.size(); i++) {
+                CpuBenchmark.Score score = first.scores.get(i);
+                assertEquals(score.workload, score.checksum, second.scores.get(i).checksum);
+                assertTrue(score.workload, score.singleThread > 0);
+                assertTrue(score.workload, score.allCores > 0);
+            }
+            assertTrue(first.singleThreadScore > 0);
+            assertTrue(first.throttlePct >= 0 && first.throttlePct <= 100);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CpuLoadGeneratorTest {
+
+    @Test
+    public void settingsAreClamped() {
+        CpuLoadGenerator load = new CpuLoadGenerator(-2, 1.5, 0);
+        assertEquals(0, load.threads());
+        assertEquals(1.0, load.duty(), 0);
+        assertEquals(0.0, new CpuLoadGenerator(1, -0.5, 100).duty(), 0);
+    }
+
+    @Test
+    public void zeroDutyStartsNoWorkers() throws InterruptedException {
+        CpuLoadGenerator load = new CpuLoadGenerator(2, 0, 20);
+        load.start();
+        Thread.sleep(60);
+        load.stop();
+        assertEquals(0, load.iterations());
+        assertEquals(0, loadThreads());
+    }
+
+    @Test
+    public void workersHashWhileRunningAndStopOnStop() throws InterruptedException {
+        CpuLoadGenerator load = new CpuLoadGenerator(2, 0.5, 20);
+        load.start();
+        Thread.sleep(200);
+        load.stop();
+        long iterations = load.iterations();
+        assertTrue(iterations > 0);
+        assertEquals(0, loadThreads());
+
+        Thread.sleep(60);
+        assertEquals(iterations, load.iterations());
+    }
+
+    private static int loadThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("diag-load-") && thread.isAlive()) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,149 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectorySizerTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void nestedDirectoriesAreSummed() throws IOException {
+        File root = temp.newFolder("root");
+        write(new File(root, "a.bin"), 100);
+        write(new File(root, "one/b.bin"), 200);
+        write(new File(root, "one/two/c.bin"), 300);
+        write(new File(root, "one/two/three/four/d.bin"), 400);
+        new File(root, "empty").mkdir();
+
+        for (DirectorySizer sizer : sizers(64)) {
+            DirectorySizer.Result result = sizer.size(root);
+            assertEquals(1000, result.bytes);
+            assertEquals(4, result.files);
+            // root, one, two, three, four, empty
+            assertEquals(6, result.directories);
+            assertFalse(result.estimated);
+        }
+    }
+
+    @Test
+    public void depthLimitMarksTheResultEstimated() throws IOException {
+        File root = temp.newFolder("root");
+        write(new File(root, "a.bin"), 100);
+        write(new File(root, "one/two/b.bin"), 200);
+
+        for (DirectorySizer sizer : sizers(1)) {
+            DirectorySizer.Result result = sizer.size(root);
+            assertEquals(100, result.bytes);
+            assertEquals(1, result.skippedDirectories);
+            assertTrue(result.estimated);
+        }
+    }
+
+    @Test
+    public void symlinkLoopIsNotFollowed() throws IOException {
+        File root = temp.newFolder("root");
+        write(new File(root, "one/a.bin"), 100);
+        Files.createSymbolicLink(new File(root, "one/loop").toPath(), root.toPath());
+
+        for (DirectorySizer sizer : sizers(64)) {
+            DirectorySizer.Result result = sizer.size(root);
+            assertEquals(100, result.bytes);
+            assertEquals(1, result.files);
+            assertEquals(2, result.directories);
+        }
+    }
+
+    @Test
+    public void symlinkToFileIsNotCounted() throws IOException {
+        File root = temp.newFolder("root");
+        File outside = temp.newFile("outside.bin");
+        write(outside, 5000);
+        write(new File(root, "a.bin"), 100);
+        Files.createSymbolicLink(new File(root, "link.bin").toPath(), outside.toPath());
+        Files.createSymbolicLink(new File(root, "dangling.bin").toPath(), new File(root, "missing").toPath());
+
+        for (DirectorySizer sizer : sizers(64)) {
+            DirectorySizer.Result result = sizer.size(root);
+            assertEquals(100, result.bytes);
+            assertEquals(1, result.files);
+        }
+    }
+
+    @Test
+    public void unreadableDirectoryIsCountedWithoutContents() throws IOException {
+        File root = temp.newFolder("root");
+        write(new File(root, "a.bin"), 100);
+        File locked = new File(root, "locked");
+        write(new File(locked, "b.bin"), 200);
+        assertTrue(locked.setReadable(false, false));
+        try {
+            // Root can list it anyway
+            Assume.assumeTrue(locked.list() == null);
+            for (DirectorySizer sizer : sizers(64)) {
+                DirectorySizer.Result result = sizer.size(root);
+                assertEquals(100, result.bytes);
+                assertEquals(2, result.directories);
+            }
+        } finally {
+            locked.setReadable(true, false);
+        }
+    }
+
+    @Test
+    public void deleteRemovesLinksWithoutTouchingTargets() throws IOException {
+        File outside = temp.newFolder("outside");
+        File target = new File(outside, "target.bin");
+        write(target, 5000);
+        for (boolean useNio : new boolean[]{true, false}) {
+            File root = new File(temp.getRoot(), "root-" + useNio);
+            write(new File(root, "a.bin"), 100);
+            write(new File(root, "one/b.bin"), 200);
+            Files.createSymbolicLink(new File(root, "one/file-link").toPath(), target.toPath());
+            Files.createSymbolicLink(new File(root, "dir-link").toPath(), outside.toPath());
+
+            DirectorySizer.DeleteResult result = new DirectorySizer(null, useNio, 64, 0).delete(root, true);
+
+            assertEquals(300, result.freedBytes);
+            assertEquals(4, result.deletedFiles);
+            assertEquals(0, result.failed);
+            assertTrue(root.isDirectory());
+            assertEquals(0, root.list().length);
+            assertEquals(5000, target.length());
+        }
+    }
+
+    private static DirectorySizer[] sizers(int maxDepth) {
+        return new DirectorySizer[]{
+            new DirectorySizer(POOL, true, maxDepth, 0),
+            new DirectorySizer(POOL, false, maxDepth, 0),
+            new DirectorySizer(null, true, maxDepth, 0),
+            new DirectorySizer(null, false, maxDepth, 0),
+        };
+    }
+
+    private static void write(File file, int bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[bytes]);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DischargeAnalyzerTest {
+
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void linearDischargeGivesItsRateAndCapacity() {
+        // One hour, a sample every 2 minutes: 100% -> 70% at a steady 1000 mA and 4000 mV
+        // on a 4000 mAh battery (40 mAh per percent) rated at 5000 mAh
+        int n = 31;
+        long[] timestamps = new long[n];
+        double[] level = new double[n];
+        double[] counter = new double[n];
+        double[] current = new double[n];
+        double[] voltage = new double[n];
+        double[] temperature = new double[n];
+        for (int i = 0; i < n; i++) {
+            timestamps[i] = i * 120_000L;
+            level[i] = 100 - i;
+            counter[i] = level[i] * 40_000;
+            // Discharge reported as negative microamps
+            current[i] = -1_000_000;
+            voltage[i] = 4000;
+            temperature[i] = 30 + i / 6.0;
+        }
+
+        DischargeAnalyzer.Result result =
+            DischargeAnalyzer.analyze(timestamps, level, counter, current, voltage, temperature, 5000);
+
+        assertEquals(1.0, result.durationHours, EPSILON);
+        assertEquals(30, result.levelDrop, EPSILON);
+        assertEquals(30, result.drainPctPerHour, EPSILON);
+        assertEquals(1000, result.consumedMah, EPSILON);
+        assertEquals(1000, result.avgCurrentMa, EPSILON);
+        assertEquals(4000, result.avgPowerMw, EPSILON);
+        assertEquals(4000, result.drainCapacityMah, EPSILON);
+        assertEquals(4000, result.gaugeCapacityMah, EPSILON);
+        assertEquals(1000 / 0.30, result.currentCapacityMah, EPSILON);
+        assertEquals(DischargeAnalyzer.SOURCE_DRAIN, result.capacitySource);
+        assertEquals(4000, result.estimatedCapacityMah, EPSILON);
+        assertEquals(80, result.healthPct, EPSILON);
+        assertEquals(20, result.degradationScore, EPSILON);
+        assertEquals(5, result.temperatureRiseC, EPSILON);
+    }
+
+    @Test
+    public void milliampCurrentIsNotRescaled() {
+        long[] timestamps = {0, 1_800_000, 3_600_000};
+        double[] nan = {Double.NaN, Double.NaN, Double.NaN};
+        double[] current = {500, 500, 500};
+
+        DischargeAnalyzer.Result result =
+            DischargeAnalyzer.analyze(timestamps, nan, nan, current, nan, nan, 0);
+
+        assertEquals(500, result.consumedMah, EPSILON);
+        assertEquals(DischargeAnalyzer.SOURCE_NONE, result.capacitySource);
+        assertTrue(Double.isNaN(result.healthPct));
+    }
+
+    @Test
+    public void noSamplesGiveAnEmptyResult() {
+        DischargeAnalyzer.Result result = DischargeAnalyzer.analyze(new long[0], new double[0], new double[0],
+            new double[0], new double[0], new double[0], 5000);
+
+        assertEquals(0, result.durationHours, 0);
+        assertEquals(0, result.drainPctPerHour, 0);
+        assertEquals(DischargeAnalyzer.SOURCE_NONE, result.capacitySource);
+        assertTrue(Double.isNaN(result.estimatedCapacityMah));
+    }
+
+    @Test
+    public void singleSampleHasNoDrainRateAndFallsBackToTheGauge() {
+        DischargeAnalyzer.Result result = DischargeAnalyzer.analyze(new long[]{1000}, new double[]{80},
+            new double[]{3_200_000}, new double[]{-1_000_000}, new double[]{4000}, new double[]{30}, 5000);
+
+        assertEquals(0, result.durationHours, 0);
+        assertEquals(0, result.levelDrop, 0);
+        assertEquals(0, result.drainPctPerHour, 0);
+        assertEquals(0, result.consumedMah, 0);
+        assertTrue(Double.isNaN(result.drainCapacityMah));
+        assertTrue(Double.isNaN(result.currentCapacityMah));
+        assertEquals(DischargeAnalyzer.SOURCE_GAUGE, result.capacitySource);
+        assertEquals(4000, result.estimatedCapacityMah, EPSILON);
+    }
+
+    @Test
+    public void levelDropBelowTheMinimumGivesNoDrainCapacity() {
+        // 3% is under MIN_DRAIN_LEVEL_DROP, so only the gauge ratio is usable
+        long[] timestamps = {0, 600_000, 1_200_000, 1_800_000};
+        double[] level = {50, 49, 48, 47};
+        double[] counter = {2_000_000, 1_960_000, 1_920_000, 1_880_000};
+        double[] nan = {Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+
+        DischargeAnalyzer.Result result = DischargeAnalyzer.analyze(timestamps, level, counter, nan, nan, nan, 0);
+
+        assertEquals(6, result.drainPctPerHour, EPSILON);
+        assertTrue(Double.isNaN(result.drainCapacityMah));
+        assertEquals(DischargeAnalyzer.SOURCE_GAUGE, result.capacitySource);
+    }
+
+    @Test
+    public void medianIgnoresUnknownValues() {
+        assertEquals(2, DischargeAnalyzer.median(new double[]{3, Double.NaN, 1, 2}), 0);
+        assertEquals(1.5, DischargeAnalyzer.median(new double[]{2, 1}), 0);
+        assertTrue(Double.isNaN(DischargeAnalyzer.median(new double[]{Double.NaN})));
+    }
+}
@@ -0,0 +1,118 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackageScanCacheTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void entriesSurviveReloadForTheSameVersion() throws IOException {
+        File file = new File(temp.getRoot(), "cache/package-scan.bin");
+        PackageScanCache cache = new PackageScanCache(file, "it_IT", HOUR);
+        cache.put(entry("app", 10, 2, "App"));
+        cache.put(entry("other", 20, 3, null));
+        cache.flush();
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        PackageScanCache reloaded = new PackageScanCache(file, "it_IT", HOUR);
+        assertEquals(2, reloaded.size());
+        assertEquals("App", reloaded.get("app", 10, 2).label);
+        assertNull(reloaded.get("other", 20, 3).label);
+        // An update invalidates the entry
+        assertNull(reloaded.get("app", 11, 2));
+        assertNull(reloaded.get("app", 10, 3));
+    }
+
+    @Test
+    public void anotherLocaleStartsEmpty() throws IOException {
+        File file = new File(temp.getRoot(), "package-scan.bin");
+        PackageScanCache cache = new PackageScanCache(file, "it_IT", HOUR);
+        cache.put(entry("app", 10, 2, "App"));
+        cache.flush();
+
+        assertEquals(0, new PackageScanCache(file, "en_US", HOUR).size());
+    }
+
+    @Test
+    public void failedFlushLeavesNoTempFileAndIsRetried() throws IOException {
+        File file = new File(temp.getRoot(), "package-scan.bin");
+        File tmp = new File(file.getPath() + ".tmp");
+        PackageScanCache cache = new PackageScanCache(file, "it_IT", HOUR);
+        cache.put(entry("app", 10, 2, "App"));
+        // A directory in the way of the temp file makes the write fail
+        assertTrue(tmp.mkdir());
+        try {
+            cache.flush();
+            fail("flush over a directory succeeded");
+        } catch (IOException expected) {
+        }
+        assertFalse(file.exists());
+        // The failed write cleans up after itself, which here removes the empty directory
+        assertFalse(tmp.exists());
+
+        cache.flush();
+        assertFalse(tmp.exists());
+        assertNotNull(new PackageScanCache(file, "it_IT", HOUR).get("app", 10, 2));
+    }
+
+    @Test
+    public void retainOnlyDropsUninstalledPackages() throws IOException {
+        File file = new File(temp.getRoot(), "package-scan.bin");
+        PackageScanCache cache = new PackageScanCache(file, "it_IT", HOUR);
+        cache.put(entry("app", 10, 2, "App"));
+        cache.put(entry("gone", 10, 2, "Gone"));
+        cache.flush();
+        cache.retainOnly(Collections.singleton("app"));
+        cache.flush();
+
+        PackageScanCache reloaded = new PackageScanCache(file, "it_IT", HOUR);
+        assertEquals(1, reloaded.size());
+        assertNull(reloaded.get("gone", 10, 2));
+    }
+
+    @Test
+    public void putsDuringFlushesAreAllPersisted() throws Exception {
+        File file = new File(temp.getRoot(), "package-scan.bin");
+        final PackageScanCache cache = new PackageScanCache(file, "it_IT", HOUR);
+        final int count = 2000;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    cache.put(entry("app" + i, 10, 2, "App " + i));
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            cache.flush();
+        }
+        writer.join();
+        cache.flush();
+
+        assertEquals(count, new PackageScanCache(file, "it_IT", HOUR).size());
+    }
+
+    private static PackageScanCache.Entry entry(String packageName, long lastUpdateTime, long versionCode,
+                                                String label) {
+        return new PackageScanCache.Entry(packageName, lastUpdateTime, versionCode, label,
+            true, true, 100, 200, 300, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SensorSampleBufferTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void unevenIntervalsGiveRateJitterAndAxisSpread() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4, 2);
+        buffer.add(0, new float[] {1f, -1f});
+        buffer.add(10 * MS, new float[] {2f, -1f});
+        buffer.add(20 * MS, new float[] {3f, -1f});
+        buffer.add(40 * MS, new float[] {6f, -1f});
+
+        SensorSampleBuffer.Stats stats = buffer.stats();
+        assertEquals(4, stats.samples);
+        assertEquals(4, stats.received);
+        assertEquals(0, stats.overwritten);
+        assertEquals(40, stats.spanMs, EPSILON);
+        // Three intervals over 40 ms
+        assertEquals(75, stats.rateHz, EPSILON);
+        assertEquals(40.0 / 3, stats.meanIntervalMs, EPSILON);
+        // Population stddev of 10, 10, 20 ms
+        assertEquals(Math.sqrt(200.0 / 9), stats.jitterMs, EPSILON);
+        assertEquals(20, stats.maxGapMs, EPSILON);
+
+        assertArrayEquals(new double[] {3, -1}, stats.mean, EPSILON);
+        // Sample variance of 1, 2, 3, 6 is 14 / 3
+        assertArrayEquals(new double[] {14.0 / 3, 0}, stats.variance, EPSILON);
+        assertArrayEquals(new double[] {Math.sqrt(14.0 / 3), 0}, stats.stddev, EPSILON);
+        assertArrayEquals(new double[] {1, -1}, stats.min, EPSILON);
+        assertArrayEquals(new double[] {6, -1}, stats.max, EPSILON);
+        assertFalse(stats.stuck);
+    }
+
+    @Test
+    public void fullRingKeepsNewestAndCountsOverwritten() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4, 1);
+        for (int i = 0; i < 6; i++) {
+            buffer.add(i * 10 * MS, new float[] {i});
+        }
+
+        SensorSampleBuffer.Stats stats = buffer.stats();
+        assertEquals(4, stats.samples);
+        assertEquals(6, stats.received);
+        assertEquals(2, stats.overwritten);
+        // Only 20..50 ms is retained
+        assertEquals(30, stats.spanMs, EPSILON);
+        assertEquals(100, stats.rateHz, EPSILON);
+        assertEquals(0, stats.jitterMs, EPSILON);
+        assertEquals(10, stats.maxGapMs, EPSILON);
+        assertArrayEquals(new double[] {2}, stats.min, EPSILON);
+        assertArrayEquals(new double[] {5}, stats.max, EPSILON);
+        assertArrayEquals(new double[] {3.5}, stats.mean, EPSILON);
+    }
+
+    @Test
+    public void shortReadingFillsMissingAxesWithZero() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4, 3);
+        buffer.add(0, new float[] {4f, 4f, 4f});
+        buffer.add(10 * MS, new float[] {2f});
+
+        SensorSampleBuffer.Stats stats = buffer.stats();
+        assertArrayEquals(new double[] {2, 0, 0}, stats.min, EPSILON);
+        assertArrayEquals(new double[] {4, 4, 4}, stats.max, EPSILON);
+    }
+
+    @Test
+    public void constantValuesAreStuckOnlyWithEnoughSamples() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(32, 3);
+        for (int i = 0; i < SensorSampleBuffer.MIN_STUCK_SAMPLES - 1; i++) {
+            buffer.add(i * 5 * MS, new float[] {0f, 9.81f, 0f});
+        }
+        assertFalse(buffer.stats().stuck);
+
+        buffer.add(1000 * MS, new float[] {0f, 9.81f, 0f});
+        SensorSampleBuffer.Stats stats = buffer.stats();
+        assertTrue(stats.stuck);
+        assertArrayEquals(new double[] {0, 0, 0}, stats.stddev, EPSILON);
+    }
+
+    @Test
+    public void emptyBufferHasNoRate() {
+        SensorSampleBuffer.Stats stats = new SensorSampleBuffer(8, 3).stats();
+        assertEquals(0, stats.samples);
+        assertEquals(0, stats.overwritten);
+        assertEquals(0, stats.rateHz, EPSILON);
+        assertEquals(0, stats.jitterMs, EPSILON);
+        assertFalse(stats.stuck);
+    }
+}
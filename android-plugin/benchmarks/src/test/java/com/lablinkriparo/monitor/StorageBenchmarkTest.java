@@ -0,0 +1,98 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StorageBenchmarkTest {
+
+    private static final int BLOCK = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void runsAllPhasesOverTheWholeFile() throws IOException {
+        File dir = temp.getRoot();
+        StorageBenchmark.Report report = new StorageBenchmark(dir, 1024 * 1024 + 123, BLOCK, 50, 10_000, false).run();
+
+        assertEquals(1024 * 1024, report.fileBytes);
+        assertEquals(4, report.phases.size());
+        String[] names = new String[4];
+        for (int i = 0; i < 4; i++) {
+            names[i] = report.phases.get(i).name;
+        }
+        assertArrayEquals(new String[]{StorageBenchmark.SEQUENTIAL_WRITE, StorageBenchmark.SEQUENTIAL_READ,
+            StorageBenchmark.RANDOM_WRITE, StorageBenchmark.RANDOM_READ}, names);
+
+        for (StorageBenchmark.Phase phase : report.phases) {
+            assertFalse(phase.name, phase.truncated);
+            assertTrue(phase.name, phase.elapsedNs > 0);
+            assertEquals(phase.name, phase.operations, phase.latencies.count());
+            assertEquals(phase.name, phase.operations * phase.blockSize, phase.bytes);
+            long histogramTotal = 0;
+            for (long bucket : phase.latencies.histogram()) {
+                histogramTotal += bucket;
+            }
+            assertEquals(phase.name, phase.operations, histogramTotal);
+            assertTrue(phase.name, phase.latencies.percentileNs(50) <= phase.latencies.percentileNs(99));
+            assertTrue(phase.name, phase.latencies.percentileNs(99) <= phase.latencies.maxNs());
+        }
+        assertEquals(1024 * 1024 / BLOCK, report.phases.get(0).operations);
+        assertEquals(50, report.phases.get(2).operations);
+        assertEquals(StorageBenchmark.RANDOM_BLOCK, report.phases.get(3).blockSize);
+        // Only write phases end with an fsync
+        assertTrue(report.phases.get(0).syncNs > 0);
+        assertEquals(0, report.phases.get(1).syncNs);
+        // The test file is removed after the run
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void exhaustedBudgetTruncatesTheWritePhase() throws IOException {
+        StorageBenchmark.Report report = new StorageBenchmark(temp.getRoot(), 4 * 1024 * 1024, BLOCK, 100, 0, true)
+            .run();
+        assertTrue(report.phases.get(0).truncated);
+        // Later phases only cover what was written
+        assertTrue(report.fileBytes < 4 * 1024 * 1024);
+        assertEquals(report.fileBytes, report.phases.get(1).bytes);
+    }
+
+    @Test
+    public void leftoversAreDeleted() throws IOException {
+        File dir = temp.getRoot();
+        File leftover = new File(dir, StorageBenchmark.FILE_PREFIX + "1.tmp");
+        File other = new File(dir, "keep.txt");
+        assertTrue(leftover.createNewFile());
+        assertTrue(other.createNewFile());
+
+        StorageBenchmark.deleteLeftovers(dir);
+
+        assertFalse(leftover.exists());
+        assertTrue(other.exists());
+    }
+
+    @Test
+    public void latencyPercentilesUseNearestRank() {
+        StorageBenchmark.Latencies latencies = new StorageBenchmark.Latencies();
+        for (int i = 1000; i >= 1; i--) {
+            latencies.add(i * 1000L);
+        }
+        assertEquals(500_000, latencies.percentileNs(50));
+        assertEquals(990_000, latencies.percentileNs(99));
+        assertEquals(1_000_000, latencies.maxNs());
+        assertEquals(500_500, latencies.meanNs());
+        long[] histogram = latencies.histogram();
+        // 1 us goes to the first bucket, 2-3 us to the second
+        assertEquals(1, histogram[0]);
+        assertEquals(2, histogram[1]);
+    }
+}
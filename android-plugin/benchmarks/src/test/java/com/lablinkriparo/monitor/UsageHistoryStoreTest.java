@@ -0,0 +1,224 @@
+package com.lablinkriparo.monitor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UsageHistoryStoreTest {
+
+    private static final long SECOND = 1000;
+    private static final long HOUR = 60 * 60 * SECOND;
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Rome");
+    private static final Map<String, Set<String>> NONE = Collections.emptyMap();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private int day;
+    private long midnight;
+    // A week before the events, like the first ingest window
+    private long from;
+
+    @Before
+    public void setUp() {
+        day = UsageHistoryStore.dayOf(1_760_000_000_000L, ZONE);
+        midnight = UsageHistoryStore.startOfDay(day, ZONE);
+        from = midnight - 7 * UsageHistoryStore.DAY_MS;
+    }
+
+    @Test
+    public void secondActivityInsideTheAppDoesNotStartAnotherSession() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        long t = midnight + HOUR;
+        sessions.foreground("app", "Main", t);
+        sessions.foreground("app", "Detail", t + SECOND);
+        sessions.background("app", "Main", t + 60 * SECOND);
+        sessions.background("app", "Detail", t + 61 * SECOND);
+        sessions.finish(midnight + 2 * HOUR);
+
+        assertEquals(61 * SECOND, total(commit(batch), "app"));
+    }
+
+    @Test
+    public void duplicatePauseIsIgnored() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        long t = midnight + HOUR;
+        sessions.foreground("app", "Main", t);
+        sessions.foreground("app", "Main", t + SECOND);
+        sessions.background("app", "Main", t + 60 * SECOND);
+        sessions.background("app", "Main", t + 61 * SECOND);
+        sessions.finish(midnight + 2 * HOUR);
+
+        assertEquals(60 * SECOND, total(commit(batch), "app"));
+    }
+
+    @Test
+    public void orphanPauseAddsNoTime() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        sessions.background("app", "Main", midnight + HOUR);
+        Map<String, Set<String>> open = sessions.finish(midnight + 2 * HOUR);
+
+        assertEquals(0, total(commit(batch), "app"));
+        assertTrue(open.isEmpty());
+    }
+
+    @Test
+    public void sessionOpenAtCheckpointContinuesFromWindowStart() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        long t = midnight + HOUR;
+        sessions.foreground("app", "Main", t);
+        Map<String, Set<String>> open = sessions.finish(t + 10 * SECOND);
+        assertEquals(Collections.singleton("Main"), open.get("app"));
+
+        UsageHistoryStore.Batch next = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions resumed =
+            new UsageHistoryStore.Sessions(next, ZONE, t + 10 * SECOND, open);
+        resumed.background("app", "Other", t + 15 * SECOND);
+        resumed.background("app", "Main", t + 20 * SECOND);
+        resumed.finish(t + 30 * SECOND);
+
+        UsageHistoryStore store = store();
+        commit(store, batch, t + 10 * SECOND, open);
+        commit(store, next, t + 30 * SECOND, NONE);
+        assertEquals(20 * SECOND, total(store.query(day, day, false), "app"));
+    }
+
+    @Test
+    public void sessionAcrossMidnightIsSplit() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        sessions.foreground("app", "Main", midnight - HOUR);
+        sessions.background("app", "Main", midnight + 2 * HOUR);
+        sessions.finish(midnight + 3 * HOUR);
+
+        UsageHistoryStore store = store();
+        commit(store, batch, midnight + 3 * HOUR, NONE);
+        UsageHistoryStore.Totals totals = store.query(day - 1, day, true);
+        assertArrayEquals(new long[]{HOUR, 2 * HOUR}, totals.daily[0]);
+    }
+
+    @Test
+    public void shutdownClosesOpenSessions() {
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        UsageHistoryStore.Sessions sessions = new UsageHistoryStore.Sessions(batch, ZONE, from, NONE);
+        sessions.foreground("app", "Main", midnight + HOUR);
+        sessions.closeAll(midnight + HOUR + 5 * SECOND);
+        sessions.background("app", "Main", midnight + 2 * HOUR);
+        Map<String, Set<String>> open = sessions.finish(midnight + 3 * HOUR);
+
+        assertEquals(5 * SECOND, total(commit(batch), "app"));
+        assertTrue(open.isEmpty());
+    }
+
+    @Test
+    public void checkpointAndOpenSessionsSurviveReload() throws IOException {
+        File file = new File(temp.getRoot(), "usage-history.bin");
+        UsageHistoryStore store = new UsageHistoryStore(file);
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        batch.add(day, "app", HOUR, midnight + HOUR);
+        Map<String, Set<String>> open = new HashMap<>();
+        open.put("app", new HashSet<>(Collections.singleton("Main")));
+        store.commit(batch, midnight + 2 * HOUR, open, day - 400);
+
+        UsageHistoryStore reloaded = new UsageHistoryStore(file);
+        assertEquals(midnight + 2 * HOUR, reloaded.checkpoint());
+        assertEquals(open, reloaded.openAtCheckpoint());
+        assertEquals(HOUR, total(reloaded.query(day, day, false), "app"));
+    }
+
+    @Test
+    public void tornTailIsDropped() throws IOException {
+        assertTailIsDropped(new byte[]{2, 0, 0});
+    }
+
+    @Test
+    public void zeroFilledTailIsDropped() throws IOException {
+        assertTailIsDropped(new byte[]{0, 0, 0});
+    }
+
+    @Test
+    public void tailWithUnknownPackageIdIsDropped() throws IOException {
+        // A complete usage record for package id 7, which the file never defined
+        assertTailIsDropped(new byte[]{2, 0, 0, 0, 0, 0, 0, 0, 7, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 1});
+    }
+
+    private void assertTailIsDropped(byte[] tail) throws IOException {
+        File file = new File(temp.getRoot(), "usage-history.bin");
+        UsageHistoryStore store = new UsageHistoryStore(file);
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        batch.add(day, "app", HOUR, midnight + HOUR);
+        store.commit(batch, midnight + 2 * HOUR, NONE, day - 400);
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(tail);
+        } finally {
+            out.close();
+        }
+
+        UsageHistoryStore reloaded = new UsageHistoryStore(file);
+        assertEquals(HOUR, total(reloaded.query(day, day, false), "app"));
+        UsageHistoryStore.Batch more = new UsageHistoryStore.Batch();
+        more.add(day, "app", HOUR, midnight + 3 * HOUR);
+        reloaded.commit(more, midnight + 4 * HOUR, NONE, day - 400);
+        assertEquals(2 * HOUR, total(new UsageHistoryStore(file).query(day, day, false), "app"));
+    }
+
+    @Test
+    public void daysBeforeRetentionAreDropped() throws IOException {
+        UsageHistoryStore store = store();
+        UsageHistoryStore.Batch batch = new UsageHistoryStore.Batch();
+        batch.add(day - 1, "old", HOUR, midnight - HOUR);
+        batch.add(day, "new", HOUR, midnight + HOUR);
+        store.commit(batch, midnight + 2 * HOUR, NONE, day - 400);
+        store.commit(new UsageHistoryStore.Batch(), midnight + 3 * HOUR, NONE, day);
+
+        UsageHistoryStore.Totals totals = store.query(day - 10, day, false);
+        assertEquals(1, totals.packages.length);
+        assertEquals("new", totals.packages[0]);
+    }
+
+    private UsageHistoryStore store() {
+        return new UsageHistoryStore(new File(temp.getRoot(), "usage-history-" + System.nanoTime() + ".bin"));
+    }
+
+    private UsageHistoryStore.Totals commit(UsageHistoryStore.Batch batch) {
+        UsageHistoryStore store = store();
+        commit(store, batch, midnight + 3 * HOUR, NONE);
+        return store.query(day - 8, day + 1, false);
+    }
+
+    private void commit(UsageHistoryStore store, UsageHistoryStore.Batch batch, long checkpoint,
+                        Map<String, Set<String>> open) {
+        try {
+            store.commit(batch, checkpoint, open, day - 400);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static long total(UsageHistoryStore.Totals totals, String packageName) {
+        for (int i = 0; i < totals.packages.length; i++) {
+            if (totals.packages[i].equals(packageName)) return totals.foregroundMs[i];
+        }
+        return 0;
+    }
+}
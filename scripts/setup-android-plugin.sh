@@ -4,7 +4,7 @@
 # Esegui dopo: npx cap add android
 
 PLUGIN_SOURCE="android-plugin/DeviceDiagnosticsPlugin.java"
-PLUGIN_DEST="android/app/src/main/java/com/lablinkriparo/monitor/DeviceDiagnosticsPlugin.java"
+PLUGIN_DEST_DIR="android/app/src/main/java/com/lablinkriparo/monitor"
 MAIN_ACTIVITY="android/app/src/main/java/com/lablinkriparo/monitor/MainActivity.java"
 MANIFEST="android/app/src/main/AndroidManifest.xml"
 FILE_PATHS_SOURCE="android-plugin/res/xml/file_paths.xml"
@@ -12,11 +12,11 @@ FILE_PATHS_DEST="android/app/src/main/res/xml/file_paths.xml"
 
 echo "🔧 Configurazione plugin DeviceDiagnostics..."
 
-# 1. Copia il file del plugin
+# 1. Copia i file del plugin (plugin + classi di supporto)
 if [ -f "$PLUGIN_SOURCE" ]; then
-    mkdir -p "$(dirname $PLUGIN_DEST)"
-    cp "$PLUGIN_SOURCE" "$PLUGIN_DEST"
-    echo "✅ Plugin copiato in $PLUGIN_DEST"
+    mkdir -p "$PLUGIN_DEST_DIR"
+    cp android-plugin/*.java "$PLUGIN_DEST_DIR/"
+    echo "✅ Plugin copiato in $PLUGIN_DEST_DIR"
 else
     echo "❌ Errore: File plugin non trovato in $PLUGIN_SOURCE"
     exit 1
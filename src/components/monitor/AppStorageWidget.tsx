@@ -10,6 +10,7 @@ import { toast } from 'sonner';
 import { cn } from '@/lib/utils';
 import { Capacitor } from '@capacitor/core';
 import DeviceDiagnostics, { AppStorageInfo, AppUsageStat } from '@/plugins/DeviceStoragePlugin';
+import { useAppIcons } from '@/hooks/useAppIcons';
 
 interface AppStorageWidgetProps {
   onRefresh?: () => void;
@@ -343,6 +344,7 @@ export const AppStorageWidget = ({ onRefresh }: AppStorageWidgetProps) => {
   const totalSize = apps.reduce((sum, app) => sum + app.totalSizeMb, 0);
   const problemApps = analyzedApps.filter(a => a.riskLevel !== 'low');
   const displayedApps = expanded ? filteredAndSortedApps : filteredAndSortedApps.slice(0, 8);
+  const appIcons = useAppIcons(displayedApps.map(a => a.app.packageName));
 
   const formatLastUsed = (timestamp?: number) => {
     if (!timestamp || timestamp === 0) return 'Mai usata';
@@ -598,9 +600,9 @@ export const AppStorageWidget = ({ onRefresh }: AppStorageWidgetProps) => {
                   <div className="flex items-start gap-3">
                     {/* App Icon */}
                     <div className="w-10 h-10 rounded-lg flex items-center justify-center bg-muted shrink-0 overflow-hidden">
-                      {analysis.app.iconBase64 ? (
+                      {appIcons[analysis.app.packageName] ? (
                         <img 
-                          src={analysis.app.iconBase64} 
+                          src={appIcons[analysis.app.packageName]} 
                           alt={analysis.app.appName || 'App'} 
                           className="w-full h-full object-cover"
                         />
@@ -20,6 +20,7 @@ import {
 } from "lucide-react";
 import { Capacitor } from "@capacitor/core";
 import DeviceDiagnostics, { DangerousPermissionApp } from "@/plugins/DeviceStoragePlugin";
+import { useAppIcons } from "@/hooks/useAppIcons";
 
 const getPermissionIcon = (permission: string) => {
   const p = permission.toUpperCase();
@@ -83,6 +84,18 @@ export const DangerousPermissionsWidget = () => {
     loadPermissions();
   }, [isNative]);
 
+  const allApps = apps ?? [];
+  const filteredApps = showSystemApps 
+    ? allApps 
+    : allApps.filter(app => !app.isSystemApp);
+
+  const userAppsCount = allApps.filter(app => !app.isSystemApp).length;
+
+  // Sort by permission count
+  const sortedApps = [...filteredApps].sort((a, b) => b.permissionCount - a.permissionCount);
+  const displayApps = expanded ? sortedApps : sortedApps.slice(0, 5);
+  const appIcons = useAppIcons(displayApps.map(app => app.packageName));
+
   if (loading) {
     return (
       <Card>
@@ -117,16 +130,6 @@ export const DangerousPermissionsWidget = () => {
     );
   }
 
-  const filteredApps = showSystemApps 
-    ? apps 
-    : apps.filter(app => !app.isSystemApp);
-
-  const userAppsCount = apps.filter(app => !app.isSystemApp).length;
-
-  // Sort by permission count
-  const sortedApps = [...filteredApps].sort((a, b) => b.permissionCount - a.permissionCount);
-  const displayApps = expanded ? sortedApps : sortedApps.slice(0, 5);
-
   return (
     <Card>
       <CardHeader className="pb-2">
@@ -175,9 +178,9 @@ export const DangerousPermissionsWidget = () => {
                   className="flex items-start gap-3 p-2 rounded-lg bg-muted/50"
                 >
                   {/* App Icon */}
-                  {app.iconBase64 ? (
+                  {appIcons[app.packageName] ? (
                     <img
-                      src={app.iconBase64}
+                      src={appIcons[app.packageName]}
                       alt={app.appName}
                       className="w-8 h-8 rounded"
                     />
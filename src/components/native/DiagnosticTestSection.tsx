@@ -40,6 +40,7 @@ import { toast } from "sonner";
 import { Capacitor } from "@capacitor/core";
 import DeviceDiagnostics, { SensorsInfo, AppStorageInfo, DangerousPermissionApp } from "@/plugins/DeviceStoragePlugin";
 import { useNativeDeviceInfo } from "@/hooks/useNativeDeviceInfo";
+import { useAppIcons } from "@/hooks/useAppIcons";
 
 interface TestResult {
   status: "idle" | "testing" | "pass" | "fail" | "warning";
@@ -389,6 +390,14 @@ export const DiagnosticTestSection = () => {
   const totalTested = passedTests + failedTests + warningTests;
   const overallScore = totalTested > 0 ? Math.round((passedTests / totalTested) * 100) : 0;
 
+  const topPermissionApps = appsWithPermissions
+    ? [...appsWithPermissions].sort((a, b) => b.permissionCount - a.permissionCount).slice(0, 15)
+    : [];
+  const topInstalledApps = installedApps && !appsWithPermissions
+    ? [...installedApps].sort((a, b) => b.totalSizeMb - a.totalSizeMb).slice(0, 10)
+    : [];
+  const appIcons = useAppIcons([...topPermissionApps, ...topInstalledApps].map(app => app.packageName));
+
   return (
     <div className="space-y-4">
       {/* Hero Stats Card - fixed height to prevent layout shift */}
@@ -624,17 +633,14 @@ export const DiagnosticTestSection = () => {
                 <Badge variant="outline" className="text-[10px]">Permessi pericolosi</Badge>
               </div>
               <div className="space-y-1.5 max-h-64 overflow-y-auto">
-                {[...appsWithPermissions]
-                  .sort((a, b) => b.permissionCount - a.permissionCount)
-                  .slice(0, 15)
-                  .map((app, idx) => (
+                {topPermissionApps.map((app, idx) => (
                   <div key={app.packageName} className="p-2 rounded-lg bg-muted/50 border border-border/50">
                     <div className="flex items-center gap-2">
                       <div className="flex items-center justify-center w-5 h-5 flex-shrink-0 rounded bg-muted text-[10px] font-bold text-muted-foreground">
                         {idx + 1}
                       </div>
-                      {app.iconBase64 ? (
-                        <img src={app.iconBase64} alt="" className="w-7 h-7 rounded flex-shrink-0" />
+                      {appIcons[app.packageName] ? (
+                        <img src={appIcons[app.packageName]} alt="" className="w-7 h-7 rounded flex-shrink-0" />
                       ) : (
                         <div className="w-7 h-7 rounded bg-gradient-to-br from-slate-200 to-slate-300 flex-shrink-0" />
                       )}
@@ -691,14 +697,11 @@ export const DiagnosticTestSection = () => {
                 <Badge variant="outline" className="text-[10px]">Per dimensione</Badge>
               </div>
               <div className="space-y-1.5 max-h-48 overflow-y-auto">
-                {[...installedApps]
-                  .sort((a, b) => b.totalSizeMb - a.totalSizeMb)
-                  .slice(0, 10)
-                  .map((app, idx) => (
+                {topInstalledApps.map((app, idx) => (
                   <div key={app.packageName} className="flex items-center gap-2 p-2 rounded bg-muted/50">
                     <div className="text-[10px] font-bold text-muted-foreground w-4">{idx + 1}</div>
-                    {app.iconBase64 ? (
-                      <img src={app.iconBase64} alt="" className="w-6 h-6 rounded" />
+                    {appIcons[app.packageName] ? (
+                      <img src={appIcons[app.packageName]} alt="" className="w-6 h-6 rounded" />
                     ) : (
                       <div className="w-6 h-6 rounded bg-muted" />
                     )}
@@ -0,0 +1,30 @@
+import { useEffect, useState } from 'react';
+import { attachAppIcons } from '@/plugins/DeviceStoragePlugin';
+
+// Icons for the rows a list currently shows, by package name. Each change of the visible rows
+// fetches only the packages not seen yet, in one batched getAppIcons call via attachAppIcons.
+export const useAppIcons = (packageNames: string[]): Record<string, string> => {
+  const [icons, setIcons] = useState<Record<string, string>>({});
+  const visibleKey = packageNames.join('|');
+
+  useEffect(() => {
+    const missing = packageNames.filter(name => !(name in icons));
+    if (missing.length === 0) return;
+
+    let cancelled = false;
+    attachAppIcons(missing.map((packageName): { packageName: string; iconBase64?: string } => ({ packageName })))
+      .then(rows => {
+        if (cancelled) return;
+        setIcons(prev => {
+          const next = { ...prev };
+          // Empty string marks a package without an icon so it is not requested again
+          rows.forEach(row => { next[row.packageName] = row.iconBase64 || ''; });
+          return next;
+        });
+      });
+    return () => { cancelled = true; };
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [visibleKey]);
+
+  return icons;
+};
@@ -1,6 +1,6 @@
 import { useState, useCallback } from 'react';
 import { supabase } from '@/integrations/supabase/client';
-import DeviceDiagnostics from '@/plugins/DeviceStoragePlugin';
+import DeviceDiagnostics, { attachAppIcons } from '@/plugins/DeviceStoragePlugin';
 import { Capacitor } from '@capacitor/core';
 
 // ==========================================
@@ -565,8 +565,13 @@ export const useMalwareScanner = () => {
       const results: ScanResult[] = [];
       const totalApps = appsToScan.length;
 
+      let iconBatch: typeof appsToScan = [];
       for (let i = 0; i < appsToScan.length; i++) {
-        const app = appsToScan[i];
+        // Icons only for the apps the progress view is about to show, one batched call per UI step
+        if (i % 5 === 0) {
+          iconBatch = await attachAppIcons(appsToScan.slice(i, i + 5));
+        }
+        const app = iconBatch[i % 5];
         const progress = 20 + Math.floor((i / totalApps) * 70);
         
         const result = analyzeApp({
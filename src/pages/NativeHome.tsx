@@ -169,7 +169,7 @@ export const NativeHome = ({
       try {
         const DeviceDiagnostics = (await import("@/plugins/DeviceStoragePlugin")).default;
         const [appsResult, usageResult] = await Promise.all([
-          DeviceDiagnostics.getInstalledAppsStorage(),
+          DeviceDiagnostics.getInstalledAppsStorage({ limit: 30, includeIcons: false }),
           DeviceDiagnostics.getAppUsageStats().catch(() => ({ stats: [], hasPermission: false })),
         ]);
 
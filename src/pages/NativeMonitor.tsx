@@ -776,7 +776,7 @@ const NativeMonitor = ({ user, onOpenSettings }: NativeMonitorProps) => {
         
         // Get both apps storage and usage stats in parallel
         const [appsResult, usageResult] = await Promise.all([
-          DeviceDiagnostics.getInstalledAppsStorage(),
+          DeviceDiagnostics.getInstalledAppsStorage({ limit: 30, includeIcons: false }),
           DeviceDiagnostics.getAppUsageStats().catch(() => ({ stats: [], hasPermission: false }))
         ]);
         
@@ -1,4 +1,5 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
 
 export interface DeviceStorageInfo {
   totalBytes: number;
@@ -10,11 +11,71 @@ export interface DeviceStorageInfo {
   percentUsed: number;
 }
 
+export interface StorageBreakdown extends DeviceStorageInfo {
+  breakdown: {
+    appsBytes: number;
+    appDataBytes?: number; // only with usage access
+    cacheBytes?: number; // only with usage access
+    mediaBytes?: number; // only with usage access
+    otherBytes: number; // includes app data and cache when those are not measured
+    appsGb: number;
+    appDataGb?: number;
+    cacheGb?: number;
+    mediaGb?: number;
+    otherGb: number;
+  };
+  source: 'user' | 'package'; // 'package' = summed from a full package scan
+  needsPermission: boolean;
+  cacheHits?: number;
+  cacheMisses?: number;
+}
+
 export interface RamInfo {
   totalMb: number;
   availableMb: number;
   usedMb: number;
   percentUsed: number;
+  lowMemory?: boolean; // native only
+  thresholdMb?: number; // below this availableMb the system starts killing background apps
+  // Present with extended: true
+  meminfoKb?: Record<string, number> | null; // /proc/meminfo as-is
+  pressure?: MemoryPressure | null; // null when PSI is unavailable
+  thisAppLowMemoryKills?: number | null; // kills of this diagnostics app only, last 7 days (Android 11+); not in health
+  bandwidth?: MemoryBandwidth | null; // with bandwidthTest: true
+  bandwidthError?: string;
+  health?: MemoryHealth;
+}
+
+export interface RamInfoOptions {
+  extended?: boolean;
+  bandwidthTest?: boolean; // about one second over off-heap buffers
+  bandwidthMb?: number; // default 32 (max 128)
+}
+
+export interface MemoryPressure {
+  // Percent of wall time some / all tasks were stalled on memory
+  someAvg10: number;
+  someAvg60: number;
+  someAvg300: number;
+  someTotalUs: number;
+  fullAvg10?: number;
+  fullAvg60?: number;
+  fullAvg300?: number;
+  fullTotalUs?: number;
+}
+
+export interface MemoryBandwidth {
+  bufferMb: number;
+  passes: number;
+  copyMbPerSecond: number;
+  readMbPerSecond: number;
+  elapsedMs: number;
+}
+
+export interface MemoryHealth {
+  score: number; // 0-100, higher is healthier
+  grade: 'good' | 'fair' | 'poor';
+  factors: { name: string; penalty: number; detail: string }[];
 }
 
 export interface SensorStatus {
@@ -53,6 +114,7 @@ export interface AppStorageInfo {
   dataSizeMb: number;
   cacheSizeMb: number;
   isSystemApp: boolean;
+  iconKey?: string;
   iconBase64?: string;
 }
 
@@ -61,6 +123,36 @@ export interface AppUsageStat {
   totalTimeMs: number;
   totalTimeMinutes: number;
   lastTimeUsed: number;
+  dailyMs?: number[]; // with daily: true, aligned with AppUsageStatsResult.dates
+}
+
+export interface AppUsageStatsOptions {
+  days?: number; // range ending today, default 7 (max 400)
+  limit?: number; // top N by foreground time; default all
+  daily?: boolean; // per-day buckets, default false
+}
+
+export interface AppUsageStatsResult {
+  stats: AppUsageStat[]; // most used first
+  hasPermission: boolean;
+  count?: number;
+  error?: string;
+  // Native only
+  totalPackages?: number; // packages with usage in the range, before limit
+  days?: number;
+  fromDate?: string; // yyyy-MM-dd, device local days
+  toDate?: string;
+  dates?: string[]; // with daily: true
+  dailyTotalMs?: number[]; // all packages, per date
+  history?: {
+    checkpoint: number; // usage is stored up to this time
+    firstDate: string | null; // oldest day in the store
+    eventsFrom?: number; // start of the events read by this call
+    eventsRead?: number;
+    backfilledDays?: number; // days filled from the system's daily aggregates
+    updateMs?: number;
+    error?: string;
+  };
 }
 
 export interface SecurityStatus {
@@ -73,6 +165,50 @@ export interface SecurityStatus {
   buildTags: string;
   isTestBuild: boolean;
   securityPatchLevel: string;
+  rootSignatures?: RootSignatureReport; // native only
+}
+
+export interface RootSignatureMatch {
+  id: string;
+  category: 'root' | 'tamper' | 'build';
+  method: string | null;
+  indicators: string[]; // the paths, packages, properties or mounts that hit
+  probeUs: number;
+}
+
+export interface RootSignatureReport {
+  version: number;
+  source: 'builtIn' | 'downloaded';
+  signatures: number;
+  matched: RootSignatureMatch[];
+  // Unique probes after deduplication across signatures
+  paths: number;
+  packages: number;
+  properties: number;
+  mountRules: number;
+  packageSetUsed: boolean; // packages resolved with one installed-set query
+  elapsedUs: number;
+}
+
+export interface RootSignatureDefinitions {
+  version: number; // only applied when higher than the current version, unless forced
+  signatures: {
+    id: string;
+    category: 'root' | 'tamper' | 'build';
+    method?: string;
+    paths?: string[];
+    packages?: string[];
+    properties?: { name: string; equals?: string; matches?: string }[]; // matches is a Java regex
+    mounts?: { mountPoint?: string; device?: string; type?: string; option?: string }[]; // mountPoint may end in *
+  }[];
+}
+
+export interface RootSignatureUpdateResult {
+  applied: boolean;
+  previousVersion: number;
+  version: number;
+  source: 'builtIn' | 'downloaded';
+  signatures: number;
 }
 
 export interface DangerousPermissionApp {
@@ -81,6 +217,7 @@ export interface DangerousPermissionApp {
   permissions: string[];
   permissionCount: number;
   isSystemApp: boolean;
+  iconKey?: string;
   iconBase64?: string;
 }
 
@@ -103,6 +240,23 @@ export interface SystemIntegrityStatus {
   verifiedBootState: string;
   isEncrypted: boolean;
   integrityScore: number;
+  modifications?: string[]; // ids of matched tamper signatures, native only
+}
+
+export interface MountEntry {
+  device: string;
+  mountPoint: string;
+  type: string;
+  options: string[];
+  readOnly: boolean;
+}
+
+export interface MountsResult {
+  mounts: MountEntry[]; // in mount order; a later entry hides an earlier one on the same mount point
+  count: number;
+  system: MountEntry | null; // the mount that serves /system
+  systemAsRoot: boolean; // /system is served by the "/" mount
+  readUs: number;
 }
 
 export interface CacheInfo {
@@ -112,6 +266,11 @@ export interface CacheInfo {
   appsScanned: number;
   hasPermission: boolean;
   needsPermission: boolean;
+  cacheHits?: number;
+  cacheMisses?: number;
+  volumes?: number; // storage volumes (internal + adopted) covered by the total
+  source?: 'volume' | 'package' | 'estimate' | 'none';
+  estimated?: boolean; // a directory walk hit its depth or time budget; the total is a lower bound
 }
 
 export interface OwnAppCacheInfo {
@@ -128,31 +287,480 @@ export interface ClearCacheResult {
   cacheBeforeMb?: number;
 }
 
+export interface AppListOptions {
+  // Inline base64 icons in the list (served from the native icon cache); default false.
+  // Lists load icons only for the rows on screen with attachAppIcons / useAppIcons
+  includeIcons?: boolean;
+}
+
+export interface DangerousPermissionsOptions extends AppListOptions {
+  // Permissions to report, full ('android.permission.CAMERA') or short ('CAMERA') names; overrides permissionSet
+  permissions?: string[];
+  // 'default': the built-in list of 16; 'platform': every permission declared dangerous on the device
+  permissionSet?: 'default' | 'platform';
+}
+
+export interface PermissionIndexQuery {
+  // Full ('android.permission.CAMERA') or short ('CAMERA') permission names
+  allOf?: string[];
+  anyOf?: string[];
+  noneOf?: string[];
+  includeSystem?: boolean; // default true
+}
+
+export interface PermissionIndexResult {
+  apps: { packageName: string; appName: string; isSystemApp: boolean }[];
+  count: number;
+  indexedApps: number;
+  indexedPermissions: number;
+  rebuilt: boolean; // the index was (re)built for this query
+  queryUs: number; // time spent on the set operations
+}
+
+export interface SensorTestOptions {
+  sensorType: string;
+  durationMs?: number; // sampling window for hardware sensors, default 500
+  timeoutMs?: number; // longest wait for a first reading, default 2000
+}
+
+export interface SensorSampleDetails {
+  sensorName: string;
+  vendor: string;
+  reportingMode: 'continuous' | 'onChange';
+  durationMs: number;
+  samples: number;
+  rateHz: number;
+  expectedRateHz: number; // advertised fastest rate, 0 for on-change sensors
+  meanIntervalMs: number;
+  jitterMs: number;
+  maxGapMs: number;
+  overwritten: number; // readings dropped once the sample ring was full
+  mean: number[]; // per axis
+  variance: number[]; // per axis
+  stddev: number[]; // per axis
+  min: number[]; // per axis
+  max: number[]; // per axis
+  stuck: boolean; // values never changed during the window
+  timedOut: boolean;
+}
+
+export interface SensorTestResult {
+  working: boolean;
+  value?: any;
+  error?: string;
+  details?: SensorSampleDetails; // accelerometer, gyroscope, magnetometer, proximity, light, barometer
+}
+
+export interface SensorBatchOptions {
+  // Default: accelerometer, gyroscope, magnetometer, proximity, light, barometer
+  types?: string[];
+  durationMs?: number; // one shared sampling window, default 500
+  timeoutMs?: number; // default 2000
+}
+
+export interface SensorBatchReport {
+  results: Record<string, SensorTestResult>; // keyed by sensor type
+  passed: number;
+  failed: number;
+  totalMs: number;
+}
+
+export type TelemetryChannel = 'battery' | 'memory' | 'cpu' | 'thermal';
+
+export interface TelemetryOptions {
+  intervalMs?: number; // sample period, default 1000, minimum 50
+  batchMs?: number; // how often samples are pushed, default max(1000, intervalMs)
+  channels?: TelemetryChannel[]; // default all
+}
+
+export interface TelemetrySession {
+  sessionId: string;
+  intervalMs: number;
+  batchMs: number;
+  channels: TelemetryChannel[];
+}
+
+// One array per reading, aligned with timestamps; null where the device does not report it
+export interface TelemetryBatch {
+  sessionId: string;
+  batchIndex: number;
+  count: number;
+  dropped: number; // samples overwritten before they could be sent
+  intervalMs: number;
+  timestamps: number[]; // epoch ms
+  battery?: { currentUa: (number | null)[]; voltageMv: (number | null)[]; temperatureC: (number | null)[]; levelPct: (number | null)[] };
+  memory?: { availableMb: (number | null)[]; percentUsed: (number | null)[] };
+  cpu?: { avgFreqKhz: (number | null)[]; maxFreqKhz: (number | null)[] };
+  thermal?: { status: (number | null)[] }; // PowerManager.THERMAL_STATUS_*, Android 10+
+}
+
+export interface TelemetrySummary {
+  stopped: boolean; // false when no session was running
+  sessionId?: string;
+  drained?: boolean; // false when the sampler thread did not finish in time; the counters are then omitted
+  samples?: number;
+  batches?: number;
+  dropped?: number;
+  durationMs?: number;
+}
+
+export interface BatteryStressOptions {
+  durationSec?: number; // default 300, 30..3600
+  // none: screen only; low: half the cores at 50%; medium: all cores at 60%; high: all cores at 100%
+  loadLevel?: 'none' | 'low' | 'medium' | 'high'; // default 'medium'
+  keepScreenOn?: boolean; // default true
+}
+
+export interface BatteryStressProgressEvent {
+  testId: string;
+  elapsedSec: number;
+  durationSec: number;
+  levelPct: number | null;
+  currentUa: number | null;
+  voltageMv: number | null;
+  temperatureC: number | null;
+}
+
+export interface BatteryStressResult {
+  testId: string;
+  durationSec: number;
+  plannedDurationSec: number;
+  aborted: boolean;
+  loadLevel: string;
+  keepScreenOn: boolean;
+  threads: number;
+  duty: number;
+  loadIterations: number;
+  chargingAtStart: boolean;
+  chargingDuringTest: boolean; // results are not meaningful if the charger was connected
+  samples: number;
+  sampleIntervalMs: number;
+  capacity: {
+    estimatedMah: number | null;
+    source: 'chargeCounterDrain' | 'fuelGauge' | 'currentIntegration' | 'none';
+    drainMah: number | null;
+    gaugeMah: number | null;
+    currentMah: number | null;
+    designMah: number | null;
+    healthPct: number | null;
+    degradationScore: number | null; // 0 = as new, 100 = fully worn
+  };
+  discharge: {
+    levelDrop: number;
+    drainPctPerHour: number;
+    consumedMah: number;
+    avgCurrentMa: number;
+    avgPowerMw: number;
+    minVoltageMv: number | null;
+    maxVoltageMv: number | null;
+    maxTemperatureC: number | null;
+    temperatureRiseC: number | null;
+  };
+  series: {
+    timestamps: number[];
+    levelPct: (number | null)[];
+    currentUa: (number | null)[];
+    voltageMv: (number | null)[];
+    temperatureC: (number | null)[];
+  };
+}
+
+export interface CpuBenchmarkOptions {
+  rounds?: number; // all-core rounds used for throttling, default 5 (max 20)
+  memoryMb?: number; // memory bandwidth working set, default 48 (max 256)
+}
+
+export interface CpuBenchmarkScore {
+  unit: 'Mops/s' | 'MFLOPS' | 'MB/s';
+  singleThread: number;
+  allCores: number;
+  scaling: number; // allCores / singleThread
+  checksum: string; // hex, identical on every run of the same benchmarkVersion
+}
+
+export interface CpuBenchmarkReport {
+  benchmarkVersion: number; // scores only compare within one version
+  scores: {
+    integerHash: CpuBenchmarkScore;
+    matrixMultiply: CpuBenchmarkScore;
+    memoryBandwidth: CpuBenchmarkScore;
+  };
+  singleThreadScore: number; // geometric mean of the singleThread scores
+  allCoreScore: number;
+  threads: number;
+  cores: number;
+  coreEfficiency: number; // 1.0 = perfect scaling across threads
+  rounds: number[]; // all-core integerHash Mops/s per round
+  throttlePct: number; // drop from the best round to the last one
+  throttled: boolean;
+  elapsedMs: number;
+}
+
+export interface StorageBenchmarkOptions {
+  sizeMb?: number; // test file size, default 64 (8-1024)
+  blockSize?: number; // sequential block in bytes, default 1 MiB
+  randomOps?: number; // 4K operations per random phase, default 2000
+  syncRandomWrites?: boolean; // fdatasync after every random write, default true
+}
+
+export interface StorageBenchmarkPhase {
+  blockSize: number;
+  bytes: number;
+  operations: number;
+  mbPerSecond: number;
+  iops: number;
+  elapsedMs: number; // includes the closing fsync for write phases
+  syncMs: number;
+  truncated: boolean; // hit the per-phase time budget
+  latencyUs: {
+    p50: number;
+    p99: number;
+    max: number;
+    mean: number;
+    // Exclusive upper bound per bucket (2, 4, 8, ...); null for the open-ended last bucket
+    histogramUpperBounds: (number | null)[];
+    histogram: number[];
+  };
+}
+
+export interface StorageBenchmarkResult {
+  phases: {
+    sequentialWrite: StorageBenchmarkPhase;
+    sequentialRead: StorageBenchmarkPhase;
+    randomWrite: StorageBenchmarkPhase;
+    randomRead: StorageBenchmarkPhase;
+  };
+  fileBytes: number;
+  blockSize: number;
+  syncRandomWrites: boolean;
+  availableBytes: number;
+  elapsedMs: number;
+}
+
+export interface ApkScanOptions {
+  includeSystem?: boolean; // default false
+}
+
+export interface ApkScanFile {
+  path: string; // base APK, then split APKs
+  sizeBytes: number;
+  cached: boolean; // digest reused because size and mtime were unchanged
+  sha256?: string; // lowercase hex; absent when the file could not be read
+  error?: string;
+}
+
+export interface ApkThreatMatch {
+  name: string;
+  category: string;
+  sha256: string;
+  path: string;
+}
+
+export interface ApkScanEntry {
+  packageName: string;
+  appName: string;
+  isSystemApp: boolean;
+  versionCode: number;
+  files: ApkScanFile[];
+  threat: ApkThreatMatch | null;
+}
+
+export interface ApkScanResult {
+  appsScanned: number;
+  filesScanned: number;
+  filesHashed: number;
+  filesCached: number;
+  filesFailed: number;
+  bytesHashed: number;
+  hashMbPerSecond: number; // per hashing thread
+  threatsFound: number;
+  threats: ApkScanEntry[];
+  definitionsVersion: number; // 0 until definitions have been pushed
+  definitionsHashes: number;
+  elapsedMs: number;
+  apps?: ApkScanEntry[]; // omitted when streaming
+}
+
+export interface ApkThreatDefinitions {
+  version: number; // only applied when higher than the current version, unless forced
+  hashes: { sha256: string; name: string; category?: string }[]; // category defaults to 'malware'
+}
+
+export interface ApkThreatDefinitionsUpdateResult {
+  applied: boolean;
+  previousVersion: number;
+  version: number;
+  hashes: number;
+}
+
+export interface ScanStreamOptions {
+  // Emit rows as 'scanProgress' batches instead of resolving with the full list
+  stream: true;
+  batchSize?: number; // default 25
+  scanId?: string; // echoed in every event; generated when omitted
+}
+
+export interface ScanProgressEvent<T = unknown> {
+  scanId: string;
+  method: 'getInstalledAppsStorage' | 'getDangerousPermissions' | 'scanInstalledApks';
+  batchIndex: number;
+  items: T[];
+  processed: number; // packages processed so far
+  total: number; // packages in the scan
+}
+
+export interface ScanCompleteEvent {
+  scanId: string;
+  method: 'getInstalledAppsStorage' | 'getDangerousPermissions' | 'scanInstalledApks';
+  processed: number;
+  total: number;
+  emitted: number; // rows sent in scanProgress events
+  batches: number;
+  totalApps?: number; // getDangerousPermissions only
+  watchedPermissions?: number; // getDangerousPermissions only
+  uniqueMasks?: number; // getDangerousPermissions only
+  cacheHits?: number;
+  cacheMisses?: number;
+}
+
+export interface InstalledAppsStorageOptions extends AppListOptions {
+  limit?: number; // default 50
+  offset?: number; // default 0
+  sortBy?: 'total' | 'app' | 'data' | 'cache'; // default 'total'
+  includeSystem?: boolean; // default true
+}
+
+export interface InstalledAppsStorageResult {
+  apps: AppStorageInfo[];
+  total?: number; // apps matching the filter, for paging
+  offset?: number;
+  limit?: number;
+  hasMore?: boolean;
+  cacheHits?: number;
+  cacheMisses?: number;
+}
+
+export interface AppIconsResult {
+  icons: Record<string, string>; // packageName -> data URL
+  iconKeys: Record<string, string>; // packageName -> icon cache key
+  cacheHits: number;
+  rendered: number;
+}
+
+export interface ExecutorLaneStats {
+  threads: number;
+  queueDepth: number;
+  queueCapacity: number;
+  active: number;
+  submitted: number;
+  completed: number;
+  rejected: number;
+  avgWaitMs: number;
+  maxWaitMs: number;
+  avgRunMs: number;
+  maxRunMs: number;
+}
+
+export interface ExecutorStats {
+  lanes: Record<'fast' | 'heavy' | 'probe', ExecutorLaneStats>;
+}
+
+export type DiagnosticProbeName =
+  | 'storage'
+  | 'storageBreakdown'
+  | 'ram'
+  | 'sensors'
+  | 'battery'
+  | 'security'
+  | 'integrity'
+  | 'uptime'
+  | 'cache';
+
+export interface DiagnosticProbeResult<T = unknown> {
+  status: 'ok' | 'error' | 'timeout' | 'rejected' | 'unknown';
+  data?: T;
+  error?: string;
+  waitMs?: number; // queued before the probe started
+  durationMs?: number;
+}
+
+export interface FullDiagnosticsOptions {
+  probes?: DiagnosticProbeName[]; // default: all
+  timeoutMs?: number; // per probe, default 5000
+}
+
+export interface FullDiagnosticsReport {
+  probes: {
+    storage?: DiagnosticProbeResult<DeviceStorageInfo>;
+    storageBreakdown?: DiagnosticProbeResult<StorageBreakdown>;
+    ram?: DiagnosticProbeResult<RamInfo>;
+    sensors?: DiagnosticProbeResult<SensorsInfo>;
+    battery?: DiagnosticProbeResult<BatteryAdvancedInfo>;
+    security?: DiagnosticProbeResult<SecurityStatus>;
+    integrity?: DiagnosticProbeResult<SystemIntegrityStatus>;
+    uptime?: DiagnosticProbeResult<DeviceUptime>;
+    cache?: DiagnosticProbeResult<CacheInfo>;
+  };
+  totalMs: number;
+  timeoutMs: number;
+  completed: number;
+  failed: number;
+  timedOut: number;
+}
+
 export interface DeviceDiagnosticsPlugin {
   getStorageInfo(): Promise<DeviceStorageInfo>;
-  getRamInfo(): Promise<RamInfo>;
+  getStorageBreakdown(): Promise<StorageBreakdown>;
+  getRamInfo(options?: RamInfoOptions): Promise<RamInfo>;
   getSensorsInfo(): Promise<SensorsInfo>;
   getBatteryAdvancedInfo(): Promise<BatteryAdvancedInfo>;
-  testSensor(options: { sensorType: string }): Promise<{ working: boolean; value?: any; error?: string }>;
-  getInstalledAppsStorage(): Promise<{ apps: AppStorageInfo[] }>;
+  testSensor(options: SensorTestOptions): Promise<SensorTestResult>;
+  testSensors(options?: SensorBatchOptions): Promise<SensorBatchReport>;
+  getInstalledAppsStorage(options: InstalledAppsStorageOptions & ScanStreamOptions): Promise<ScanCompleteEvent>;
+  getInstalledAppsStorage(options?: InstalledAppsStorageOptions): Promise<InstalledAppsStorageResult>;
+  getAppIcons(options: { packageNames: string[] }): Promise<AppIconsResult>;
   checkUsageStatsPermission(): Promise<{ granted: boolean; error?: string }>;
   requestUsageStatsPermission(): Promise<{ granted: boolean; settingsOpened?: boolean }>;
   openAppSettings(options: { packageName: string }): Promise<{ opened: boolean }>;
   openDeviceSettings(): Promise<{ opened: boolean }>;
-  getAppUsageStats(): Promise<{ stats: AppUsageStat[]; hasPermission: boolean; count?: number }>;
+  getAppUsageStats(options?: AppUsageStatsOptions): Promise<AppUsageStatsResult>;
   getAppVersion(): Promise<{ versionName: string; versionCode: number }>;
   downloadApk(options: { url: string; fileName: string }): Promise<{ success: boolean; filePath?: string; error?: string }>;
   installApk(options: { filePath: string }): Promise<{ success: boolean; error?: string }>;
   // Security & Integrity methods
   getSecurityStatus(): Promise<SecurityStatus>;
-  getDangerousPermissions(): Promise<{ apps: DangerousPermissionApp[]; totalApps: number }>;
+  updateRootSignatures(options: { definitions: RootSignatureDefinitions; force?: boolean }): Promise<RootSignatureUpdateResult>;
+  getDangerousPermissions(options: DangerousPermissionsOptions & ScanStreamOptions): Promise<ScanCompleteEvent>;
+  getDangerousPermissions(options?: DangerousPermissionsOptions): Promise<{ apps: DangerousPermissionApp[]; totalApps: number; watchedPermissions: number; uniqueMasks: number; cacheHits?: number; cacheMisses?: number }>;
+  queryPermissionIndex(options: PermissionIndexQuery): Promise<PermissionIndexResult>;
   getDeviceUptime(): Promise<DeviceUptime>;
   checkSystemIntegrity(): Promise<SystemIntegrityStatus>;
+  getMounts(): Promise<MountsResult>;
+  scanInstalledApks(options: ApkScanOptions & ScanStreamOptions): Promise<ScanCompleteEvent & ApkScanResult>;
+  scanInstalledApks(options?: ApkScanOptions): Promise<ApkScanResult>;
+  updateApkThreatDefinitions(options: { definitions: ApkThreatDefinitions; force?: boolean }): Promise<ApkThreatDefinitionsUpdateResult>;
   // Cache management
   getTotalCacheSize(): Promise<CacheInfo>;
   getOwnAppCacheSize(): Promise<OwnAppCacheInfo>;
   openStorageSettings(): Promise<{ opened: boolean; fallback?: boolean }>;
   clearAppCache(): Promise<ClearCacheResult>;
+  // Execution lanes
+  getExecutorStats(): Promise<ExecutorStats>;
+  // All probes in one round trip
+  runFullDiagnostics(options?: FullDiagnosticsOptions): Promise<FullDiagnosticsReport>;
+  // Continuous telemetry, delivered through the 'telemetry' event
+  startTelemetry(options?: TelemetryOptions): Promise<TelemetrySession>;
+  stopTelemetry(): Promise<TelemetrySummary>;
+  // Battery drain test; resolves when the test ends (or is stopped)
+  runBatteryStressTest(options?: BatteryStressOptions): Promise<BatteryStressResult>;
+  stopBatteryStressTest(): Promise<{ stopped: boolean; testId?: string }>;
+  runCpuBenchmark(options?: CpuBenchmarkOptions): Promise<CpuBenchmarkReport>;
+  runStorageBenchmark(options?: StorageBenchmarkOptions): Promise<StorageBenchmarkResult>;
+  // Streaming scans
+  addListener(eventName: 'scanProgress', listenerFunc: (event: ScanProgressEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'scanComplete', listenerFunc: (event: ScanCompleteEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'telemetry', listenerFunc: (event: TelemetryBatch) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'batteryStressProgress', listenerFunc: (event: BatteryStressProgressEvent) => void): Promise<PluginListenerHandle>;
 }
 
 // This will use the native implementation on Android/iOS, or fallback to web
@@ -160,4 +768,18 @@ const DeviceDiagnostics = registerPlugin<DeviceDiagnosticsPlugin>('DeviceDiagnos
   web: () => import('./DeviceStoragePluginWeb').then(m => new m.DeviceDiagnosticsWeb()),
 });
 
+// Fills iconBase64 for the given rows with one batched getAppIcons call (icons are cached natively);
+// pass only the rows on screen
+export async function attachAppIcons<T extends { packageName: string; iconBase64?: string }>(apps: T[]): Promise<T[]> {
+  const missing = apps.filter(app => !app.iconBase64).map(app => app.packageName);
+  if (missing.length === 0) return apps;
+  try {
+    const { icons } = await DeviceDiagnostics.getAppIcons({ packageNames: missing });
+    return apps.map(app => (icons[app.packageName] && !app.iconBase64 ? { ...app, iconBase64: icons[app.packageName] } : app));
+  } catch (e) {
+    console.log('[DeviceDiagnostics] getAppIcons failed:', e);
+    return apps;
+  }
+}
+
 export default DeviceDiagnostics;
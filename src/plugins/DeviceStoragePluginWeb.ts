@@ -2,18 +2,29 @@ import { WebPlugin } from '@capacitor/core';
 import type { 
   DeviceDiagnosticsPlugin, 
   DeviceStorageInfo, 
+  StorageBreakdown,
   RamInfo, 
   SensorsInfo, 
   BatteryAdvancedInfo,
   SensorStatus,
-  AppStorageInfo,
+  SensorTestOptions,
+  SensorTestResult,
+  SensorBatchOptions,
+  SensorBatchReport,
+  TelemetrySummary,
   SecurityStatus,
-  DangerousPermissionApp,
   DeviceUptime,
   SystemIntegrityStatus,
   CacheInfo,
   ClearCacheResult,
-  OwnAppCacheInfo
+  OwnAppCacheInfo,
+  ExecutorStats,
+  DiagnosticProbeName,
+  DiagnosticProbeResult,
+  FullDiagnosticsOptions,
+  FullDiagnosticsReport,
+  AppIconsResult,
+  AppUsageStatsResult
 } from './DeviceStoragePlugin';
 
 export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnosticsPlugin {
@@ -68,6 +79,11 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     };
   }
 
+  async getStorageBreakdown(): Promise<StorageBreakdown> {
+    console.log('[DeviceDiagnosticsWeb] getStorageBreakdown: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
   async getRamInfo(): Promise<RamInfo> {
     console.log('[DeviceDiagnosticsWeb] getRamInfo called - using web fallback');
     
@@ -253,7 +269,7 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     };
   }
 
-  async testSensor(options: { sensorType: string }): Promise<{ working: boolean; value?: any; error?: string }> {
+  async testSensor(options: SensorTestOptions): Promise<SensorTestResult> {
     try {
       switch (options.sensorType) {
         case 'gps':
@@ -372,12 +388,38 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     }
   }
 
-  async getInstalledAppsStorage(): Promise<{ apps: AppStorageInfo[] }> {
+  async testSensors(options?: SensorBatchOptions): Promise<SensorBatchReport> {
+    const types = options?.types?.length
+      ? options.types
+      : ['accelerometer', 'gyroscope', 'magnetometer', 'proximity', 'light', 'barometer'];
+    const start = performance.now();
+    // Web tests wait on independent events, so they can all run at once
+    const tests = await Promise.all(types.map((sensorType) => this.testSensor({ sensorType })));
+    const results: Record<string, SensorTestResult> = {};
+    types.forEach((type, i) => {
+      results[type] = tests[i];
+    });
+    const passed = tests.filter((test) => test.working).length;
+    return {
+      results,
+      passed,
+      failed: tests.length - passed,
+      totalMs: Math.round(performance.now() - start)
+    };
+  }
+
+  // Always throws, so it satisfies both the list and the streaming signatures
+  async getInstalledAppsStorage(): Promise<never> {
     // Web cannot access installed apps - throw error to trigger "plugin required" message
     console.log('[DeviceDiagnosticsWeb] getInstalledAppsStorage: Not available on web platform');
     throw new Error('not implemented - native plugin required');
   }
 
+  async getAppIcons(options: { packageNames: string[] }): Promise<AppIconsResult> {
+    console.log('[DeviceDiagnosticsWeb] getAppIcons: Not available on web platform');
+    return { icons: {}, iconKeys: {}, cacheHits: 0, rendered: 0 };
+  }
+
   async checkUsageStatsPermission(): Promise<{ granted: boolean; error?: string }> {
     // Web cannot check this permission - return false
     console.log('[DeviceDiagnosticsWeb] checkUsageStatsPermission: Not available on web platform');
@@ -402,7 +444,7 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     throw new Error('not implemented - native plugin required');
   }
 
-  async getAppUsageStats(): Promise<{ stats: any[]; hasPermission: boolean; count?: number }> {
+  async getAppUsageStats(): Promise<AppUsageStatsResult> {
     // Web cannot get app usage stats
     console.log('[DeviceDiagnosticsWeb] getAppUsageStats: Not available on web platform');
     return { stats: [], hasPermission: false, count: 0 };
@@ -441,11 +483,21 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     };
   }
 
-  async getDangerousPermissions(): Promise<{ apps: DangerousPermissionApp[]; totalApps: number }> {
+  async updateRootSignatures(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] updateRootSignatures: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async getDangerousPermissions(): Promise<never> {
     console.log('[DeviceDiagnosticsWeb] getDangerousPermissions: Not available on web platform');
     throw new Error('not implemented - native plugin required');
   }
 
+  async queryPermissionIndex(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] queryPermissionIndex: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
   async getDeviceUptime(): Promise<DeviceUptime> {
     console.log('[DeviceDiagnosticsWeb] getDeviceUptime: Returning estimated values');
     // Web can't get real uptime, return placeholder
@@ -475,6 +527,21 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
     };
   }
 
+  async getMounts(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] getMounts: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async scanInstalledApks(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] scanInstalledApks: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async updateApkThreatDefinitions(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] updateApkThreatDefinitions: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
   async getTotalCacheSize(): Promise<CacheInfo> {
     console.log('[DeviceDiagnosticsWeb] getTotalCacheSize: Not available on web platform');
     // Try to estimate from storage API if available
@@ -572,4 +639,85 @@ export class DeviceDiagnosticsWeb extends WebPlugin implements DeviceDiagnostics
       };
     }
   }
+
+  async getExecutorStats(): Promise<ExecutorStats> {
+    console.log('[DeviceDiagnosticsWeb] getExecutorStats: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  // Same report shape as native, built from the web fallbacks above
+  async startTelemetry(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] startTelemetry: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async stopTelemetry(): Promise<TelemetrySummary> {
+    return { stopped: false };
+  }
+
+  async runBatteryStressTest(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] runBatteryStressTest: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async stopBatteryStressTest(): Promise<{ stopped: boolean }> {
+    return { stopped: false };
+  }
+
+  async runCpuBenchmark(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] runCpuBenchmark: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async runStorageBenchmark(): Promise<never> {
+    console.log('[DeviceDiagnosticsWeb] runStorageBenchmark: Not available on web platform');
+    throw new Error('not implemented - native plugin required');
+  }
+
+  async runFullDiagnostics(options?: FullDiagnosticsOptions): Promise<FullDiagnosticsReport> {
+    const runners: Record<DiagnosticProbeName, () => Promise<unknown>> = {
+      storage: () => this.getStorageInfo(),
+      storageBreakdown: () => this.getStorageBreakdown(),
+      ram: () => this.getRamInfo(),
+      sensors: () => this.getSensorsInfo(),
+      battery: () => this.getBatteryAdvancedInfo(),
+      security: () => this.getSecurityStatus(),
+      integrity: () => this.checkSystemIntegrity(),
+      uptime: () => this.getDeviceUptime(),
+      cache: () => this.getTotalCacheSize(),
+    };
+    const timeoutMs = options?.timeoutMs ?? 5000;
+    const names = options?.probes?.length ? options.probes : (Object.keys(runners) as DiagnosticProbeName[]);
+    const started = performance.now();
+
+    const entries = await Promise.all(names.map(async (name): Promise<[string, DiagnosticProbeResult]> => {
+      const runner = runners[name];
+      if (!runner) return [name, { status: 'unknown' }];
+      const probeStart = performance.now();
+      let timer: ReturnType<typeof setTimeout> | undefined;
+      const timeout = new Promise<'timeout'>(resolve => { timer = setTimeout(() => resolve('timeout'), timeoutMs); });
+      try {
+        const data = await Promise.race([runner(), timeout]);
+        const durationMs = Math.round(performance.now() - probeStart);
+        return data === 'timeout'
+          ? [name, { status: 'timeout', error: `No result within ${timeoutMs} ms`, waitMs: 0, durationMs }]
+          : [name, { status: 'ok', data, waitMs: 0, durationMs }];
+      } catch (e: any) {
+        return [name, { status: 'error', error: e?.message, waitMs: 0, durationMs: Math.round(performance.now() - probeStart) }];
+      } finally {
+        clearTimeout(timer);
+      }
+    }));
+
+    const probes = Object.fromEntries(entries) as FullDiagnosticsReport['probes'];
+    const results = entries.map(([, result]) => result);
+    return {
+      probes,
+      totalMs: Math.round(performance.now() - started),
+      timeoutMs,
+      completed: results.filter(r => r.status === 'ok').length,
+      failed: results.filter(r => r.status === 'error').length,
+      timedOut: results.filter(r => r.status === 'timeout').length,
+    };
+  }
 }